@@ -25,10 +25,13 @@
  * 
  * This class makes use of the FollowerRanking class, much like the Trend class from WeetStore. Having this allows for the sorting of all the users follower rankings as required
  * in the getTopUsers() method. It implements a compareTo() function which is specified in the coursework javadocs so that the users can be sorted by their ranking appropriatley.
+ * The rankings are kept sorted as the follows come in, in an order statistic tree (RankTree) which also knows each user's place on the leaderboard.
  * 
- * One thing to note is that for this class I have trees inside of trees. This is O(n^2) space complexity however the number of users following/followed will be a small subset
- * of the overall number of users in the system, so the size should not grow too big. Another way to possible implement this is to use sets, because follower relationships must be
- * unique, and then the mutual methods could have intersection methods which would be quicker than the O(n^2) implementations as of current.
+ * The relationships themselves arent kept in trees. Each user's follows and followers are sorted arrays of user ids with the follow times alongside (AdjacencyLists),
+ * which is 12 bytes an edge in each direction rather than a tree node, finds a user in O(1) through a hash map and reads their edges straight through one array.
+ * After a bulk load every user's edges sit end to end in one shared pair of arrays (compressed sparse row), and a user only gets arrays of their own once they gain an edge.
+ * A user with thousands of followers has their ids compressed into Roaring style containers (RoaringIntSet), a bit each when they are packed closely,
+ * and isAFollower(), getNumFollowers() and the mutual queries work on the compressed ids directly.
  *
  * @author: u1814232
  */
@@ -38,322 +41,784 @@ package uk.ac.warwick.java.cs126.services;
 import uk.ac.warwick.java.cs126.models.Weet;
 import uk.ac.warwick.java.cs126.models.User;
 
+import uk.ac.warwick.java.cs126.services.collections.*;
+import uk.ac.warwick.java.cs126.services.persistence.CsvFile;
+import uk.ac.warwick.java.cs126.services.persistence.SnapshotFile;
+import uk.ac.warwick.java.cs126.services.persistence.WriteAheadLog;
+
+import java.io.DataOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.UncheckedIOException;
 
 
 public class FollowerStore implements IFollowerStore {
 
-    //A tree which holds all the follows a user has (their id), which holds all the follows in its own tree.
-    private AVLTree<Integer, AVLTree<Integer, Date>> follows;
-    //A tree which holds all the followers a user has (their id), which holds all the followers in its own tree.
-    private AVLTree<Integer, AVLTree<Integer, Date>> followers;
+    //The users each user follows, their ids in ascending order with the times they were followed.
+    private AdjacencyLists follows;
+    //The followers of each user, their ids in ascending order with the times they followed.
+    private AdjacencyLists followers;
 
-    //An arraylist holding the follower rankings of all users who have followers, sorting this using the FollowerRankign Comparable will sort the top followed users.
-    private MyArrayList<FollowerRanking> followerLeaderboard;
+    //The follower ranking of every user who has followers by their id, and the same rankings kept sorted by the FollowerRanking Comparable in an order statistic tree,
+    //so a follow moves one user's ranking in O(logU) and a user's place on the leaderboard is found without sorting everyone.
+    private IntHashMap<FollowerRanking> rankings;
+    private RankTree<FollowerRanking> leaderboard;
+    //The number of rankings made so far, each ranking is numbered in turn so users with the same followers at the same time go in the order they always have.
+    private int rankingsMade;
 
-    public FollowerStore() {
-        //Create the new trees so they are in memory, same for the follower leaderboard
-        this.follows = new AVLTree<>();
-        this.followers = new AVLTree<>();
+    //The leaderboard as getTopUsers() last walked it, copied out again until a follow changes the leaderboard, which sets it back to null so the next call rebuilds it.
+    //Volatile because it is filled in by readers holding only the read lock, two readers racing to rebuild it just build the same array.
+    private volatile int[] topUsersSnapshot;
+
+    //The first 4 bytes of every snapshot file of this store ("WFOL" in ASCII), and the version of the snapshot format saveSnapshot() writes.
+    //Change the version whenever the format changes, loadSnapshot() wont read a version it doesnt know.
+    private static final int SNAPSHOT_MAGIC = 0x57464f4c;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    //The write ahead log every follow is appended to before addFollower() stores it, null unless openLog() has been called.
+    private WriteAheadLog<Follow> log;
+
+    //Told each user's new follower count whenever it goes up, e.g. a UserStore ranking its autocomplete by followers. Empty until addFollowerCountListener() is called.
+    private MyArrayList<FollowerCountListener> countListeners;
 
-        this.followerLeaderboard = new MyArrayList<>();
+    //Guards the trees and the leaderboard so the store can be shared by the web server's request threads. Any number of threads can hold the read lock
+    //and query at once, while adding a follower takes the write lock so no query can see a tree half way through an insert or rotation.
+    private ReentrantReadWriteLock lock;
+
+    public FollowerStore() {
+        //Create the new edge lists so they are in memory, same for the follower leaderboard
+        this.follows = new AdjacencyLists();
+        this.followers = new AdjacencyLists();
+
+        this.rankings = new IntHashMap<>();
+        this.leaderboard = new RankTree<>();
+        this.rankingsMade = 0;
+        this.topUsersSnapshot = null;
+        this.log = null;
+        this.countListeners = new MyArrayList<>();
+
+        this.lock = new ReentrantReadWriteLock();
     }
 
     /**
      * addFollower() - Create the follower relationship between two users, where uid1 follows uid2.
-     * O(logn) checks of the follower relationships, and needed updates. O(n) update of the follower ranking leaderboard.
+     * O(logk) check of the follower relationship in the follower's sorted follows, then O(k) inserts into both sorted edge lists (O(1) when the new id is the largest).
+     * O(logU) update of the followed user's place on the follower ranking leaderboard, where U is the number of users with followers.
      * You could take the follower ranking part out and put it in a queue of jobs, which another computer could process (in an ideal real world implementation)
      * @param uid1 - The user following
      * @param uid2 - The user being followed by the following user
      * @param followDate - The date which the follow relationship occured.
+     * When a write ahead log is open the follow is appended to it first, and addFollower() waits for it to reach the disk as openLog()'s durability level says.
      * @return - True if the follower relationship was created, false otherwise (it probably already exists).
+     * @throws UncheckedIOException - If the follow couldnt be written to the log, in which case it isnt created, or couldnt be forced to the disk after creating it.
      */
     public boolean addFollower(int uid1, int uid2, Date followDate) {
-        //uid1 follows uid2. So uid1 follows should contain uid2 and the uid2 followers should contain uid1. This should not happen if it is already contained.
+        WriteAheadLog<Follow> followLog;
+        long record;
+        this.lock.writeLock().lock();
+        try {
+            //uid1 follows uid2. So uid1 follows should contain uid2 and the uid2 followers should contain uid1. This should not happen if it is already contained.
+
+            //First we need to make sure the uid1 doesnt follow uid2, this will be done by a binary search of uid1's follows.
+            //If uid1 follows uid2 already this can be returned false, else add the relationship and true.
+            //We only need to search one of the lists, either follows or followers to known this because they should match.
+            if(this.follows.contains(uid1, uid2)) {
+                return false;
+            }
 
-        //First we need to make sure the uid1 doesnt follow uid2, this will be done by a tree traversal.
-        //If uid1 follows uid2 already this can be returned false, else add the relationship and true.
-        //We only need to search one of the trees, either follows or followers to known this because they should match.
-        if(this.follows.get(uid1) != null && this.follows.get(uid1).get(uid2) != null) {
-            return false;
+            //Log the follow before creating it, if it cant be logged it isnt created.
+            followLog = this.log;
+            record = WriteAheadLog.appendIfOpen(this.log, new Follow(uid1, uid2, followDate.getTime()));
+            storeFollow(uid1, uid2, followDate.getTime());
+        } finally {
+            this.lock.writeLock().unlock();
         }
 
-        //Make sure that the the follows tree contains the user of id uid1, if not add them.
-        if(this.follows.get(uid1) == null) {
-            //They arent there, add them with an empty follows tree as a subtree in the node.
-            this.follows.insertKeyValuePair(uid1, new AVLTree<Integer, Date>());
-        }
+        //Wait for the follow to reach the disk outside of the lock, so the writers behind us can log theirs and share the same force.
+        WriteAheadLog.awaitIfOpen(followLog, record);
+        return true;
+    }
 
+    //Creates a follow which doesnt already exist, without logging it. The caller must hold the write lock.
+    private void storeFollow(int uid1, int uid2, long followTime) {
         //The follower relationship doesnt already exist, we can add the relationship.
-        //Firstly, lets add uid1 following uid2. Find uid1 in the follows tree and add uid2 to the subtree in the uid1 node.
-        this.follows.get(uid1).insertKeyValuePair(uid2, followDate);
+        //Firstly, lets add uid1 following uid2. The lists give uid1 a run of follows if this is their first.
+        this.follows.insert(uid1, uid2, followTime);
+
+        //Now need to add the corresponding action to the followers of uid2.
+        //This is essentially the same operation but reversed on the followers.
+        this.followers.insert(uid2, uid1, followTime);
 
+        //uid2 has a new follower at the given date, move their ranking to its new place on the leaderboard.
+        rankFollower(uid2, followTime);
+    }
 
-        if(this.followers.get(uid2) == null) {
-            //They arent there, add them with an empty follows tree as a subtree in the node.
-            this.followers.insertKeyValuePair(uid2, new AVLTree<Integer, Date>());
-            //We need to insert this person into the tree because they have no followers.
-            this.followerLeaderboard.add(new FollowerRanking(uid2));
+    //O(logU) update of a user's ranking for a follower at the given time. A user's first follower gives them a ranking, otherwise their ranking has to come out
+    //of the leaderboard before it changes and go back in at its new place.
+    private void rankFollower(int uid, long followTime) {
+        FollowerRanking ranking = this.rankings.get(uid);
+        if(ranking == null) {
+            ranking = new FollowerRanking(uid, this.rankingsMade++);
+            this.rankings.put(uid, ranking);
+        } else {
+            this.leaderboard.remove(ranking);
         }
+        ranking.addFollower(followTime);
+        this.leaderboard.insert(ranking);
+        this.topUsersSnapshot = null;
+        notifyFollowerCount(uid, ranking.getFollowers());
+    }
 
-        //Now need to add the corresponding action to the followers of uid2.
-        //This is essentially the same operation but reversed on the follower tree.
-        this.followers.get(uid2).insertKeyValuePair(uid1, followDate);
-
-        //The user has a follower and we just added them to the leaderboard, lets update their leaderboard to reflect the fact they have a follower at the given date.
-        for(int i=0; i<this.followerLeaderboard.size(); i++) {
-            FollowerRanking ranking = this.followerLeaderboard.get(i);
-            //We should always find a user, there should never be a scenario when the user isnt in the arraylist.
-            if(ranking.getUserId() == uid2) {
-                //We have found the ranking update it.
-                ranking.addFollower(followDate);
+    /**
+     * addFollowers() - O(n logn) bulk load of many follower relationships at once, e.g. the whole of followers.csv on start up, where uid1s[i] follows uid2s[i].
+     * Into an empty store the relationships are sorted twice (across the processors), by follower and by followed user, so the follows and followers are laid
+     * straight out as shared sorted arrays in O(n) rather than through inserts, and the leaderboard is counted in the same pass rather than with a scan per relationship.
+     * Into a store which already has relationships they are created one at a time, and then every user's edges are packed back into shared arrays.
+     * Like the rest of the bulk load they arent written to the write ahead log, the file they came from is already on the disk.
+     * A relationship repeated later on is skipped, the same as addFollower() would.
+     * @param uid1s - The users following.
+     * @param uid2s - The users being followed.
+     * @param followDates - The dates the follows happened.
+     * @return - The number of relationships which were added.
+     */
+    public int addFollowers(int[] uid1s, int[] uid2s, Date[] followDates) {
+        this.lock.writeLock().lock();
+        try {
+            if(!this.follows.isEmpty()) {
+                //Created one at a time but not logged, the same as the bulk build below.
+                int added = 0;
+                for(int i=0; i<uid1s.length; i++) {
+                    if(!this.follows.contains(uid1s[i], uid2s[i])) {
+                        storeFollow(uid1s[i], uid2s[i], followDates[i].getTime());
+                        added++;
+                    }
+                }
+                this.follows.compact();
+                this.followers.compact();
+                return added;
             }
-            
+
+            //Each relationship keyed by both of its users, one way round for the follows and the other for the followers.
+            TimeNode<Date>[] byFollower = TimeNode.newArray(uid1s.length);
+            TimeNode<Date>[] byFollowed = TimeNode.newArray(uid1s.length);
+            for(int i=0; i<uid1s.length; i++) {
+                byFollower[i] = new TimeNode<>(pairKey(uid1s[i], uid2s[i]), followDates[i]);
+                byFollowed[i] = new TimeNode<>(pairKey(uid2s[i], uid1s[i]), followDates[i]);
+            }
+            //The pair keys are longs, so the time tree's sort orders them without boxing.
+            TimeTree.sortNodes(byFollower, byFollower.length);
+            TimeTree.sortNodes(byFollowed, byFollowed.length);
+
+            int added = buildRelationships(this.follows, byFollower, false);
+            buildRelationships(this.followers, byFollowed, true);
+            return added;
+        } finally {
+            this.lock.writeLock().unlock();
         }
+    }
 
-        return true;
+    //A key for a pair of users, ordered by the first user and then the second. Flipping the sign bit of the second keeps negative ids in order.
+    private long pairKey(int first, int second) {
+        return ((long) first << 32) | ((second ^ 0x80000000) & 0xFFFFFFFFL);
+    }
+
+    //O(n) build of the follows or followers from relationships sorted by pairKey(), largest first, returning the number of distinct relationships.
+    //The sort leaves repeats of a relationship next to each other, the earliest added last, so that is the one we keep.
+    //The edges are written from the back of the arrays forwards so they end up in the ascending order the lists keep.
+    private int buildRelationships(AdjacencyLists index, TimeNode<Date>[] sorted, boolean rankFollowers) {
+        int[] edgeUsers = new int[sorted.length];
+        int[] edgeIds = new int[sorted.length];
+        long[] edgeTimes = new long[sorted.length];
+        int out = sorted.length;
+        FollowerRanking ranking = null;
+        MyArrayList<FollowerRanking> newRankings = new MyArrayList<>();
+        int i = 0;
+        while(i < sorted.length) {
+            long key = sorted[i].key;
+            while(i + 1 < sorted.length && sorted[i + 1].key == key) {
+                i++;
+            }
+            int user = (int) (key >>> 32);
+            long followTime = sorted[i].value.getTime();
+            out--;
+            edgeUsers[out] = user;
+            edgeIds[out] = (int) key ^ 0x80000000;
+            edgeTimes[out] = followTime;
+
+            if(rankFollowers) {
+                //A new user's relationships have started, they get their own ranking.
+                if(ranking == null || ranking.getUserId() != user) {
+                    ranking = new FollowerRanking(user, this.rankingsMade++);
+                    this.rankings.put(user, ranking);
+                    newRankings.add(ranking);
+                }
+                ranking.addFollower(followTime);
+            }
+            i++;
+        }
+
+        //The rankings only go on the leaderboard once their followers have all been counted, as their place depends on them.
+        for(int r=0; r<newRankings.size(); r++) {
+            this.leaderboard.insert(newRankings.get(r));
+            notifyFollowerCount(newRankings.get(r).getUserId(), newRankings.get(r).getFollowers());
+        }
+        if(newRankings.size() > 0) {
+            this.topUsersSnapshot = null;
+        }
 
+        int distinct = sorted.length - out;
+        if(out > 0) {
+            //Some relationships were repeated, move the distinct ones down to the start of the arrays.
+            System.arraycopy(edgeUsers, out, edgeUsers, 0, distinct);
+            System.arraycopy(edgeIds, out, edgeIds, 0, distinct);
+            System.arraycopy(edgeTimes, out, edgeTimes, 0, distinct);
+        }
+        index.buildFromSorted(edgeUsers, edgeIds, edgeTimes, distinct);
+        return distinct;
+    }
 
+    //Loads a CSV file with its dates written in CsvFile.DATE_FORMAT, see loadFollowers(path, dateFormat).
+    public int loadFollowers(String path) throws IOException {
+        return loadFollowers(path, CsvFile.DATE_FORMAT);
     }
 
     /**
-     * getFollowers() - O(n) (scaling with the amount of users) method for gettting all the users which follow the provided user id.
-     * @param uid - The user we want to get all of the followers for.
-     * @return - null when no followers exist for the provided user, else an array of integer representing all the follower user ids. (sorted by the date of the following)
+     * loadFollowers() - Bulk loads every relationship in a CSV file such as followers.csv through addFollowers(), parsing the lines across all the processors.
+     * Each line is uid1,uid2,date where uid1 follows uid2.
+     * A first line which doesnt start with an id is taken to be a header and skipped.
+     * @param path - The path of the CSV file.
+     * @param dateFormat - The SimpleDateFormat pattern the dates are written in.
+     * @return - The number of relationships which were added.
+     * @throws IOException - If the file cant be read or one of its lines cant be parsed, in which case no relationships are added.
      */
-    public int[] getFollowers(int uid) {
-        //Check that the user actually has followers
-        if(this.followers.get(uid) != null) {
-            //The user actuallly has follows so we can traverse them and return them.
-            AVLTree<Integer, Date> userFollowersTree = this.followers.get(uid);
-            userFollowersTree.clearNodes();
-            userFollowersTree.inOrderTraversal(userFollowersTree.getRoot());
-            MyArrayList<Node<Integer, Date>> followerNodes = userFollowersTree.getNodesTraversed();
-
-            //We want all the followers sorted by the date they follows, we will add them to a date keyed tree and traverse this for the right order
-            //This is still only a O(n) operation.
-            AVLTree<Date, Integer> sortedFollowersTree = new AVLTree<>();
-            for(int i=0; i<followerNodes.size(); i++) {
-                sortedFollowersTree.insertKeyValuePair(followerNodes.get(i).getValue(), followerNodes.get(i).getKey());
+    public int loadFollowers(String path, String dateFormat) throws IOException {
+        final String[] lines = CsvFile.readLines(path);
+        final int[] uid1s = new int[lines.length];
+        final int[] uid2s = new int[lines.length];
+        final Date[] followDates = new Date[lines.length];
+        CsvFile.parse(path, lines, "relationship", dateFormat, (i, line, format) -> {
+            String[] fields = line.split(",");
+            uid1s[i] = Integer.parseInt(fields[0].trim());
+            uid2s[i] = Integer.parseInt(fields[1].trim());
+            followDates[i] = format.parse(fields[2].trim());
+        });
+        return addFollowers(uid1s, uid2s, followDates);
+    }
+
+    /**
+     * saveSnapshot() - O(n) method saving every follower relationship and the indexes built from them to a compact binary snapshot file, which loadSnapshot() can read back
+     * on the next start far quicker than parsing followers.csv. The file is SNAPSHOT_MAGIC, SNAPSHOT_VERSION and the number of relationships (a long), then:
+     * the follows and then the followers as they are laid out, the number of users with a run and then each user's id, run length, ids ascending, times and ids in date order,
+     * then the number of rankings and each ranking's user, followers, latest follow (milliseconds) and the order it was made in, in leaderboard order,
+     * then a CRC32 of everything before it.
+     * @param path - The path of the snapshot file, replaced if it already exists.
+     * @throws IOException - If the file cant be written.
+     */
+    public void saveSnapshot(String path) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            SnapshotFile.write(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, out -> {
+                out.writeLong(this.follows.edgeCount());
+                writeLists(out, this.follows);
+                writeLists(out, this.followers);
+
+                out.writeInt(this.leaderboard.size());
+                RankTree<FollowerRanking>.TreeIterator rankingIterator = this.leaderboard.iterator(0);
+                while(rankingIterator.hasNext()) {
+                    FollowerRanking ranking = rankingIterator.next();
+                    out.writeInt(ranking.getUserId());
+                    out.writeInt(ranking.getFollowers());
+                    out.writeLong(ranking.getLastUpdated());
+                    out.writeInt(ranking.made);
+                }
+            });
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    //Writes one side of the graph the way it is laid out, each run's ids, times and date order, so loadSnapshot() doesnt have to sort it again.
+    private void writeLists(DataOutputStream out, AdjacencyLists lists) throws IOException {
+        out.writeInt(lists.userCount());
+        for(int slot=0; slot<lists.userCount(); slot++) {
+            int size = lists.size(slot);
+            int[] runIds = new int[size];
+            out.writeInt(lists.userAt(slot));
+            out.writeInt(size);
+            lists.copyIds(slot, runIds);
+            for(int i=0; i<size; i++) {
+                out.writeInt(runIds[i]);
+            }
+            for(int i=0; i<size; i++) {
+                out.writeLong(lists.timeAt(slot, i));
+            }
+            //copyIdsByTime() gives the latest first, the date order is saved earliest first.
+            lists.copyIdsByTime(slot, runIds, size);
+            for(int i=size - 1; i>=0; i--) {
+                out.writeInt(runIds[i]);
+            }
+        }
+    }
+
+    /**
+     * loadSnapshot() - O(n) method loading the relationships and indexes saved by saveSnapshot() into an empty store. The file is memory mapped rather than read through a stream,
+     * and its checksum and version are checked before anything is read. Both sides of the graph are laid straight back out with buildFromRuns() and the leaderboard is
+     * linked back together with buildFromSorted(), so nothing is sorted. If the store already has relationships the saved follows are added through addFollowers() instead.
+     * @param path - The path of the snapshot file.
+     * @return - The number of relationships which were added.
+     * @throws IOException - If the file cant be read, isnt a follower snapshot of a version we can read, or is corrupt, in which case the store is left as it was.
+     */
+    public int loadSnapshot(String path) throws IOException {
+        ByteBuffer buffer = SnapshotFile.map(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+        try {
+            //Everything is decoded into new structures first, so a bad file leaves the store as it was.
+            long edgeCount = buffer.getLong();
+            if(edgeCount < 0 || edgeCount * 16 > buffer.remaining()) {
+                throw new IOException(path + " ends part way through");
+            }
+            AdjacencyLists newFollows = readLists(buffer, (int) edgeCount, path);
+            AdjacencyLists newFollowers = readLists(buffer, (int) edgeCount, path);
+
+            FollowerRanking[] newRankings = new FollowerRanking[buffer.getInt()];
+            IntHashMap<FollowerRanking> rankingsById = new IntHashMap<>();
+            int made = 0;
+            for(int i=0; i<newRankings.length; i++) {
+                newRankings[i] = new FollowerRanking(buffer.getInt(), buffer.getInt(), buffer.getLong(), buffer.getInt());
+                rankingsById.put(newRankings[i].getUserId(), newRankings[i]);
+                if(newRankings[i].made >= made) {
+                    made = newRankings[i].made + 1;
+                }
+            }
+            RankTree<FollowerRanking> newLeaderboard = new RankTree<>();
+            newLeaderboard.buildFromSorted(newRankings, newRankings.length);
+
+            this.lock.writeLock().lock();
+            try {
+                if(!this.follows.isEmpty()) {
+                    return addFollowers(newFollows);
+                }
+
+                this.follows = newFollows;
+                this.followers = newFollowers;
+                this.rankings = rankingsById;
+                this.leaderboard = newLeaderboard;
+                this.rankingsMade = made;
+                this.topUsersSnapshot = null;
+                for(int i=0; i<newRankings.length; i++) {
+                    notifyFollowerCount(newRankings[i].getUserId(), newRankings[i].getFollowers());
+                }
+                return (int) edgeCount;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } catch(BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException(path + " ends part way through");
+        }
+    }
+
+    //Reads one side of the graph written by writeLists() into new lists, checking the runs add up to the number of relationships.
+    private AdjacencyLists readLists(ByteBuffer buffer, int edgeCount, String path) throws IOException {
+        int runCount = buffer.getInt();
+        int[] runUsers = new int[runCount];
+        int[] runSizes = new int[runCount];
+        int[] edgeIds = new int[edgeCount];
+        long[] edgeTimes = new long[edgeCount];
+        int[] edgeOrder = new int[edgeCount];
+        int start = 0;
+        for(int r=0; r<runCount; r++) {
+            runUsers[r] = buffer.getInt();
+            runSizes[r] = buffer.getInt();
+            if(runSizes[r] <= 0 || runSizes[r] > edgeCount - start) {
+                throw new IOException(path + " has runs which dont add up to its relationships");
+            }
+            int end = start + runSizes[r];
+            for(int i=start; i<end; i++) {
+                edgeIds[i] = buffer.getInt();
             }
+            for(int i=start; i<end; i++) {
+                edgeTimes[i] = buffer.getLong();
+            }
+            for(int i=start; i<end; i++) {
+                edgeOrder[i] = buffer.getInt();
+            }
+            start = end;
+        }
+        if(start != edgeCount) {
+            throw new IOException(path + " has runs which dont add up to its relationships");
+        }
+        AdjacencyLists lists = new AdjacencyLists();
+        lists.buildFromRuns(runUsers, runSizes, runCount, edgeIds, edgeTimes, edgeOrder);
+        return lists;
+    }
 
-            sortedFollowersTree.clearNodes();
-            sortedFollowersTree.inOrderTraversal(sortedFollowersTree.getRoot());
-            MyArrayList<Node<Date, Integer>> sortedFollowersNodes = sortedFollowersTree.getNodesTraversed();
+    //Adds every follow in a set of lists through addFollowers(), for a snapshot loaded into a store which already has relationships.
+    private int addFollowers(AdjacencyLists loaded) {
+        int count = (int) loaded.edgeCount();
+        int[] uid1s = new int[count];
+        int[] uid2s = new int[count];
+        Date[] followDates = new Date[count];
+        int next = 0;
+        for(int slot=0; slot<loaded.userCount(); slot++) {
+            int[] userFollows = new int[loaded.size(slot)];
+            loaded.copyIds(slot, userFollows);
+            for(int i=0; i<userFollows.length; i++) {
+                uid1s[next] = loaded.userAt(slot);
+                uid2s[next] = userFollows[i];
+                followDates[next] = new Date(loaded.timeAt(slot, i));
+                next++;
+            }
+        }
+        return addFollowers(uid1s, uid2s, followDates);
+    }
 
-            //Traverse the sorted date tree and extract the uid's from the nodes to return.
-            int[] followsReturned = new int[sortedFollowersNodes.size()];
-            for(int i=0; i<sortedFollowersNodes.size(); i++) {
-                followsReturned[i] = sortedFollowersNodes.get(i).getValue();
+    /**
+     * openLog() - O(r logn) method opening a write ahead log at the path, creating it if it doesnt exist, where r is the number of follows in it.
+     * The follows already in the log are added first, bringing a store loaded from a snapshot or followers.csv up to date with the follows made since (any it already has are skipped).
+     * From then on every follow passed to addFollower() is appended to the log before it is created. The bulk loaders dont log, the files they load from are already on the disk.
+     * @param path - The path of the log file.
+     * @param durability - WriteAheadLog.SYNC, BATCHED or ASYNC.
+     * @param batchMillis - How long BATCHED holds a force back for and how often ASYNC forces the log, not used by SYNC.
+     * @return - The number of follows added from the log.
+     * @throws IOException - If the log cant be opened or read, or isnt a follower log, in which case no log is opened.
+     */
+    public int openLog(String path, int durability, long batchMillis) throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if(this.log != null) {
+                throw new IllegalStateException("A log is already open");
             }
-            return followsReturned;
+            //The log is only set once the replay is done, so the follows replayed through addFollower() arent logged a second time.
+            final int[] replayed = {0};
+            this.log = new WriteAheadLog<>(path, new FollowCodec(), durability, batchMillis, follow -> {
+                if(addFollower(follow.uid1, follow.uid2, new Date(follow.time))) {
+                    replayed[0]++;
+                }
+            });
+            return replayed[0];
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * closeLog() - Forces the rest of the write ahead log to the disk and closes it, follows added after this arent logged.
+     * @throws IOException - If the log couldnt be forced to the disk.
+     */
+    public void closeLog() throws IOException {
+        WriteAheadLog<Follow> closing;
+        this.lock.writeLock().lock();
+        try {
+            closing = this.log;
+            this.log = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if(closing != null) {
+            closing.close();
+        }
+    }
+
+    //A follow as it goes through the log, uid1 following uid2 at the time (milliseconds).
+    private static class Follow {
+        private final int uid1;
+        private final int uid2;
+        private final long time;
+
+        Follow(int uid1, int uid2, long time) {
+            this.uid1 = uid1;
+            this.uid2 = uid2;
+            this.time = time;
+        }
+    }
+
+    //The follow log's record format, the two user ids and the date (milliseconds), the same as a snapshot.
+    private static class FollowCodec implements WriteAheadLog.RecordCodec<Follow> {
+
+        //The first 4 bytes of every write ahead log of this store ("WLFO" in ASCII).
+        public int magic() {
+            return 0x574c464f;
+        }
+
+        public int version() {
+            return 1;
+        }
+
+        public ByteBuffer encode(Follow follow) {
+            ByteBuffer record = ByteBuffer.allocate(16);
+            record.putInt(follow.uid1).putInt(follow.uid2).putLong(follow.time).flip();
+            return record;
+        }
+
+        public Follow decode(ByteBuffer record) {
+            return new Follow(record.getInt(), record.getInt(), record.getLong());
+        }
+    }
+
+    /**
+     * getFollowers() - O(k) method for gettting all the k users which follow the provided user id. Each user's followers are kept in the order they followed
+     * as well as by id, so they are read straight off in date order rather than sorted on every call.
+     * @param uid - The user we want to get all of the followers for.
+     * @return - null when no followers exist for the provided user, else an array of integer representing all the follower user ids. (sorted by the date of the following)
+     */
+    public int[] getFollowers(int uid) {
+        return getFollowers(uid, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * getFollowers() - O(logk logk + limit) method to get just the latest followers of a user, e.g. one page of a follower list, without reading all k of them.
+     * @param uid - The user we want the followers of.
+     * @param limit - The most followers to return.
+     * @param since - Only followers who followed at or after this date are returned, null for no limit on the date.
+     * @return - null when no followers exist for the provided user, else the latest of their followers as getFollowers(uid) orders them, which may be empty.
+     */
+    public int[] getFollowers(int uid, int limit, Date since) {
+        this.lock.readLock().lock();
+        try {
+            return latestEdges(this.followers, uid, limit, since);
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return null;
     }
 
 
     /**
-     * getFollows() - O(n) method to get all the follows of a user (scaling with the amount of users)
+     * getFollows() - O(k) method to get all the k follows of a user, read straight off in date order the same as getFollowers().
      * @param uid - The user id of the user we want to get all the follows for.
      * @return - null if there are no follows, else an array of integers where each integer is a user the provided uid follows (sorted by the date of the follow)
      */
     public int[] getFollows(int uid) {
-        //Check that the user actually has followers
-        if(this.follows.get(uid) != null) {
-            //The user actuallly has follows so we can traverse them and return them.
-            AVLTree<Integer, Date> userFollowsTree = this.follows.get(uid);
-            userFollowsTree.clearNodes();
-            userFollowsTree.inOrderTraversal(userFollowsTree.getRoot());
-            MyArrayList<Node<Integer, Date>> followNodes = userFollowsTree.getNodesTraversed();
-
-            //We now want to add all the users back to a tree sorted by date key so we can sort them.
-            AVLTree<Date, Integer> sortedFollowsTree = new AVLTree<>();
-            for(int i=0; i<followNodes.size(); i++) {
-                sortedFollowsTree.insertKeyValuePair(followNodes.get(i).getValue(), followNodes.get(i).getKey());
-            }
+        return getFollows(uid, Integer.MAX_VALUE, null);
+    }
 
-            sortedFollowsTree.clearNodes();
-            sortedFollowsTree.inOrderTraversal(sortedFollowsTree.getRoot());
-            MyArrayList<Node<Date, Integer>> sortedFollowNodes = sortedFollowsTree.getNodesTraversed();
+    /**
+     * getFollows() - O(logk logk + limit) method to get just the users a user followed most recently.
+     * @param uid - The user we want the follows of.
+     * @param limit - The most follows to return.
+     * @param since - Only users followed at or after this date are returned, null for no limit on the date.
+     * @return - null if there are no follows, else the latest of the follows as getFollows(uid) orders them, which may be empty.
+     */
+    public int[] getFollows(int uid, int limit, Date since) {
+        this.lock.readLock().lock();
+        try {
+            return latestEdges(this.follows, uid, limit, since);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-            //Get all the sorted follows by date put of its tree and add to the return array as uid's and not Nodes
-            int[] followsReturned = new int[sortedFollowNodes.size()];
-            for(int i=0; i<sortedFollowNodes.size(); i++) {
-                followsReturned[i] = sortedFollowNodes.get(i).getValue();
-            }
-            return followsReturned;
+    //The latest of a user's edges in the follows or followers, the most recent first. For the same date the smaller id comes first, as it always has.
+    private int[] latestEdges(AdjacencyLists lists, int uid, int limit, Date since) {
+        int slot = lists.slotOf(uid);
+        if(slot < 0) {
+            return null;
         }
-        return null;
+        int available = since == null ? lists.size(slot) : lists.countSince(slot, since.getTime());
+        int[] toReturn = new int[Math.max(0, Math.min(limit, available))];
+        lists.copyIdsByTime(slot, toReturn, toReturn.length);
+        return toReturn;
     }
 
 
     /**
-     * isAFollower() - O(logn) operation search an AVLTree to find out if a follower relationship is present.
-     * We only need to look down one of the trees at the top because we have a symmetric relationship between followers 
+     * isAFollower() - O(logk) binary search of a user's sorted followers to find out if a follower relationship is present.
+     * We only need to look in one of the lists because we have a symmetric relationship between followers 
      * @param uidFollower - The person who is following
      * @param uidFollows - The person who is followed
      * @return true if uidFollower follows uidFollows, else false.
      */
     public boolean isAFollower(int uidFollower, int uidFollows) {
-        if(this.followers.get(uidFollows).get(uidFollower) != null) {
-            return true;
-        } else {
-            return false;
+        this.lock.readLock().lock();
+        try {
+            //A user without any followers has no list, which contains() treats as not following.
+            return this.followers.contains(uidFollows, uidFollower);
+        } finally {
+            this.lock.readLock().unlock();
         }
     }
 
 
     /**
-     * getNumFollowers() - O(logn) method to search a binary tree, we then read the trees size variable to get the size, which is incremented everytime a node
-     * is added to the tree, this saves us having to traverse the tree and count the size of the arraylist returned (memory vs time tradeoff)
+     * getNumFollowers() - O(1) method to find the user's followers through the hash map, we then read the length of their list, which is incremented everytime a follower
+     * is added, this saves us having to count the followers themselves.
      * @param uid - The user we want to find the size of their follower tree (how many followers they have)
      * @return - An int count of the number of followers a user has which is provided as the argument.
      */
     public int getNumFollowers(int uid) {
-        //Check if the user actually has follows, to prevent nullPointerExceptions
-        if(this.followers.get(uid) != null) {
-            ///The user actually has follows, find out how many by reading the treesize variable from their follower tree.
-            return this.followers.get(uid).getTreeSize();
+        this.lock.readLock().lock();
+        try {
+            //Check if the user actually has followers, a user without any has no list.
+            int slot = this.followers.slotOf(uid);
+            if(slot >= 0) {
+                return this.followers.size(slot);
+            }
+            return 0;
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return 0;
     }
 
     /**
-     * getMutualFollowers() - O(n^2) method for finding common elements between two arraylists of followers.
+     * getMutualFollowers() - O(a + b) method for finding common elements between the followers of two users, intersecting their sorted followers
+     * (O(a log(b/a)) when one has far more followers than the other, and container by container when they are compressed, see AdjacencyLists.intersect()),
+     * then O(m logm) to sort the m mutual followers by date.
      * @param uid1 - User 1 we want the followers for
      * @param uid2 - User 2 we want the followers for
      * @return - An integer array of user id's where the users are followers of both uid1 and uid2
      */
     public int[] getMutualFollowers(int uid1, int uid2) {
-        //Get the followers for the users.
-        AVLTree<Integer, Date> uid1Followers = this.followers.get(uid1);
-        AVLTree<Integer, Date> uid2Followers = this.followers.get(uid2);
-
-        //Now convert the two trees into a list of the nodes.
-        uid1Followers.clearNodes();
-        uid2Followers.clearNodes();
-
-        uid1Followers.inOrderTraversal(uid1Followers.getRoot());
-        uid2Followers.inOrderTraversal(uid2Followers.getRoot());
-
-        MyArrayList<Node<Integer, Date>> uid1List = uid1Followers.getNodesTraversed();
-        MyArrayList<Node<Integer, Date>> uid2List = uid2Followers.getNodesTraversed();
-
-        //A tree to store the mutual followers in, keyed by date so we have the relationships sorted.
-        AVLTree<Date, Integer> sortedMutualTree = new AVLTree<>();
-
-        for(int i=0; i<uid1List.size(); i++) {
-            for(int j=0; j<uid2List.size(); j++) {
-                if(uid1List.get(i).getKey() == uid2List.get(j).getKey()) {
-                    //We have a mutual follower, now we need to find out which user had the follower first as we want to use this date in the sorting.
-                    if(uid1List.get(i).getValue().equals(uid2List.get(j).getValue())) {
-                        //Doesnt really matter, just going to add uid1 value.
-                        sortedMutualTree.insertKeyValuePair(uid1List.get(i).getValue(), uid1List.get(i).getKey());
-                    } else if (uid1List.get(i).getValue().before(uid2List.get(j).getValue())) {
-                        //uid1 follow before uid2 follow, add uid1
-                        sortedMutualTree.insertKeyValuePair(uid1List.get(i).getValue(), uid1List.get(i).getKey());
-                    } else {
-                        //add uid2
-                        sortedMutualTree.insertKeyValuePair(uid2List.get(j).getValue(), uid2List.get(j).getKey());
-                    }
-                }
-            }
+        this.lock.readLock().lock();
+        try {
+            return mutualEdges(this.followers, uid1, uid2);
+        } finally {
+            this.lock.readLock().unlock();
         }
-
-
-        //Now we have found the mutual followers, in order traverse the sorted mutual tree to get the followers out in most recent first order
-        //We will then convert from Nodes in the tree to an array as required in the interface.
-        sortedMutualTree.clearNodes();
-        sortedMutualTree.inOrderTraversal(sortedMutualTree.getRoot());
-        MyArrayList<Node<Date, Integer>> sortedMutualList = sortedMutualTree.getNodesTraversed();
-        int[] toReturn = new int[sortedMutualList.size()];
-        for(int l=0; l<sortedMutualList.size(); l++) {
-            toReturn[l] = sortedMutualList.get(l).getValue();
-        }
-        return toReturn;
     }
 
     /**
-     * getMutualFollows() - O(n^2) method for finding common elements between two arraylists of follows.
+     * getMutualFollows() - O(a + b) method for finding common elements between the follows of two users, the same as getMutualFollowers().
      * @param uid1 - User 1 we want the follows for
      * @param uid2 - User 2 we want the follows for
      * @return - An integer array of user id's where the users are followed by both uid1 and uid2
      */
     public int[] getMutualFollows(int uid1, int uid2) {
-        //Get the followers for the users.
-        AVLTree<Integer, Date> uid1Follows = this.follows.get(uid1);
-        AVLTree<Integer, Date> uid2Follows = this.follows.get(uid2);
-
-        //Now convert the two trees into a list of the nodes.
-        uid1Follows.clearNodes();
-        uid2Follows.clearNodes();
-
-        uid1Follows.inOrderTraversal(uid1Follows.getRoot());
-        uid2Follows.inOrderTraversal(uid2Follows.getRoot());
-
-        MyArrayList<Node<Integer, Date>> uid1List = uid1Follows.getNodesTraversed();
-        MyArrayList<Node<Integer, Date>> uid2List = uid2Follows.getNodesTraversed();
-
-        AVLTree<Date, Integer> sortedMutualTree = new AVLTree<>();
-
-        for(int i=0; i<uid1List.size(); i++) {
-            for(int j=0; j<uid2List.size(); j++) {
-                if(uid1List.get(i).getKey() == uid2List.get(j).getKey()) {
-                    //We have found a mutual follows, we now need to find which user followed first and use this date in the sorted return tree.
-                    if(uid1List.get(i).getValue().equals(uid2List.get(j).getValue())) {
-                        //Doesnt really matter, just going to add uid1 value.
-                        sortedMutualTree.insertKeyValuePair(uid1List.get(i).getValue(), uid1List.get(i).getKey());
-                    } else if (uid1List.get(i).getValue().before(uid2List.get(j).getValue())) {
-                        //uid1 follow before uid2 follow, add uid1
-                        sortedMutualTree.insertKeyValuePair(uid1List.get(i).getValue(), uid1List.get(i).getKey());
-                    } else {
-                        //add uid2
-                        sortedMutualTree.insertKeyValuePair(uid2List.get(j).getValue(), uid2List.get(j).getKey());
-                    }
-                }
-            }
+        this.lock.readLock().lock();
+        try {
+            return mutualEdges(this.follows, uid1, uid2);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    //The ids both users have an edge to in the lists, most recent first by whichever of the two edges came first. Empty if either user has no edges.
+    private int[] mutualEdges(AdjacencyLists lists, int uid1, int uid2) {
+        int slot1 = lists.slotOf(uid1);
+        int slot2 = lists.slotOf(uid2);
+        if(slot1 < 0 || slot2 < 0) {
+            return new int[0];
+        }
+
+        //Find where each mutual user is in both lists, in ascending id order.
+        int most = lists.size(slot1) < lists.size(slot2) ? lists.size(slot1) : lists.size(slot2);
+        int[] ids = new int[most];
+        int[] positions1 = new int[most];
+        int[] positions2 = new int[most];
+        int mutual = lists.intersect(slot1, slot2, ids, positions1, positions2);
+
+        //Key each mutual user by the date of whichever edge came first and sort them, most recent first.
+        //They go in from the largest id down, so users with the same date come out in the order they always have.
+        TimeNode<Integer>[] sortedMutual = TimeNode.newArray(mutual);
+        for(int k=0; k<mutual; k++) {
+            int m = mutual - 1 - k;
+            long time1 = lists.timeAt(slot1, positions1[m]);
+            long time2 = lists.timeAt(slot2, positions2[m]);
+            sortedMutual[k] = new TimeNode<>(time1 <= time2 ? time1 : time2, ids[m]);
         }
+        TimeTree.sortNodes(sortedMutual, mutual);
 
-        //Traverse the sorted follows tree so we can get the users in most recent first order
-        //We will then convert from Nodes in the tree to an array of user ids and return it.
-        sortedMutualTree.clearNodes();
-        sortedMutualTree.inOrderTraversal(sortedMutualTree.getRoot());
-        MyArrayList<Node<Date, Integer>> sortedMutualList = sortedMutualTree.getNodesTraversed();
-        int[] toReturn = new int[sortedMutualList.size()];
-        for(int l=0; l<sortedMutualList.size(); l++) {
-            toReturn[l] = sortedMutualList.get(l).getValue();
+        int[] toReturn = new int[mutual];
+        for(int l=0; l<mutual; l++) {
+            toReturn[l] = sortedMutual[l].getValue();
         }
         return toReturn;
     }
 
     /**
-     * getTopUsers() - O(n) method to get the tops users from the follower ranking arraylist. We need to sort this arraylist using a tree and the FollowerRanking Comparable
-     * to get the users in the order required in the javadoc. I update the follower leaderboard when adding a follower relationship because it allows this method to run quicker
-     * As specified in the addFollower method you could take that part of the method out and add it to a job queue so the method isnt slower than needs be.
+     * getTopUsers() - O(U) copy of the leaderboard, which is only walked (also O(U) but far slower, a node at a time) on the first call after a follow.
+     * Between follows the ids are kept in an array and each caller is given its own copy of it, so nothing a caller does to theirs can change what the next one sees.
+     * The leaderboard is kept in order by the FollowerRanking Comparable as each follow is added, so nothing needs sorting here.
      * @return An array of user ids where the first elements are the ones who have the most followers, and they got them before the following elements as required.
      */
     public int[] getTopUsers() {
-        //Create a tree to sort the data within.
-        AVLTree<FollowerRanking, Integer> sortedLeaderboardTree = new AVLTree<>();
+        this.lock.readLock().lock();
+        try {
+            int[] topUsers = this.topUsersSnapshot;
+            if(topUsers == null) {
+                topUsers = new int[this.leaderboard.size()];
+                RankTree<FollowerRanking>.TreeIterator rankingIterator = this.leaderboard.iterator(0);
+                for(int i=0; i<topUsers.length; i++) {
+                    topUsers[i] = rankingIterator.next().getUserId();
+                }
+                this.topUsersSnapshot = topUsers;
+            }
+            int[] toReturn = new int[topUsers.length];
+            System.arraycopy(topUsers, 0, toReturn, 0, topUsers.length);
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-        //Collect all of the users from the followerLeaderboard list and themm to a tree for sorting.
-        for(int i=0; i<this.followerLeaderboard.size(); i++) {
-            FollowerRanking ranking = this.followerLeaderboard.get(i);
-            sortedLeaderboardTree.insertKeyValuePair(ranking, ranking.getUserId());
+    /**
+     * getTopUsers() - O(logU + limit) method to get just the top of the leaderboard, e.g. for the home page, without walking every user who has followers.
+     * @param limit - The most users to return.
+     * @return - The first limit users of getTopUsers(), fewer if not that many users have followers.
+     */
+    public int[] getTopUsers(int limit) {
+        this.lock.readLock().lock();
+        try {
+            int[] topUsers = new int[Math.max(0, Math.min(limit, this.leaderboard.size()))];
+            RankTree<FollowerRanking>.TreeIterator rankingIterator = this.leaderboard.iterator(0);
+            for(int i=0; i<topUsers.length; i++) {
+                topUsers[i] = rankingIterator.next().getUserId();
+            }
+            return topUsers;
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
 
-        //Now we have all of our data in a tree, we should be able to inorder traverse this tree and get the correct leaderboard based on the FollowerRanking comparator.
-        //Lets do that and then return the array of user ids rather than the nodes we have traversed.
-        sortedLeaderboardTree.clearNodes();
-        sortedLeaderboardTree.inOrderTraversal(sortedLeaderboardTree.getRoot());
-        MyArrayList<Node<FollowerRanking, Integer>> sortedList = sortedLeaderboardTree.getNodesTraversed();
+    /**
+     * getUserRank() - O(logU) method to get a user's place on the leaderboard, counting the rankings above theirs as the leaderboard tree is walked down to it.
+     * @param uid - The user to find.
+     * @return - 1 for the most followed user, the same order as getTopUsers(), or -1 if the user has no followers.
+     */
+    public int getUserRank(int uid) {
+        this.lock.readLock().lock();
+        try {
+            FollowerRanking ranking = this.rankings.get(uid);
+            if(ranking == null) {
+                return -1;
+            }
+            return this.leaderboard.indexOf(ranking) + 1;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * addFollowerCountListener() - O(U) method telling a listener the follower count of every user who has followers, and from then on each user's new count
+     * every time they gain a follower, however the follow is added.
+     * The listener is only ever called while the write lock is held, so it hears of the counts in order, but it mustnt call back into this store or wait on
+     * anything which might.
+     * @param listener - The listener to add.
+     */
+    public void addFollowerCountListener(FollowerCountListener listener) {
+        this.lock.writeLock().lock();
+        try {
+            this.countListeners.add(listener);
+            RankTree<FollowerRanking>.TreeIterator rankingIterator = this.leaderboard.iterator(0);
+            while(rankingIterator.hasNext()) {
+                FollowerRanking ranking = rankingIterator.next();
+                listener.followerCountChanged(ranking.getUserId(), ranking.getFollowers());
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
-        int[] toReturn = new int[sortedList.size()];
-        for(int i=0; i<sortedList.size(); i++) {
-            toReturn[i] = sortedList.get(i).getKey().getUserId();
+    //Tells every listener a user's new follower count. The caller must hold the write lock.
+    private void notifyFollowerCount(int uid, int followers) {
+        for(int i=0; i<this.countListeners.size(); i++) {
+            this.countListeners.get(i).followerCountChanged(uid, followers);
         }
+    }
 
-        return toReturn;
+    public interface FollowerCountListener {
+        //Called with a user's follower count each time it goes up.
+        void followerCountChanged(int uid, int followers);
     }
 
 
@@ -364,20 +829,31 @@ public class FollowerStore implements IFollowerStore {
 
         private int userId;
         private int followers;
-        private Date whenUpdated;
+        //The time of the latest follow in milliseconds, Long.MIN_VALUE until the first one.
+        private long whenUpdated;
+        //The order the rankings were made in, a later ranking wins a tie so no two rankings are ever equal in the leaderboard tree.
+        private int made;
 
-        public FollowerRanking(int userId) {
+        public FollowerRanking(int userId, int made) {
             this.userId = userId;
             this.followers = 0;
-            this.whenUpdated = null;
+            this.whenUpdated = Long.MIN_VALUE;
+            this.made = made;
         }
 
-        public void addFollower(Date dateUpdated) {
+        //A ranking read back from a snapshot, with its followers already counted.
+        public FollowerRanking(int userId, int followers, long whenUpdated, int made) {
+            this.userId = userId;
+            this.followers = followers;
+            this.whenUpdated = whenUpdated;
+            this.made = made;
+        }
+
+        public void addFollower(long timeUpdated) {
             this.followers++;
             //Only update the when updated follower if its before the currently stored date, solves problems of date overwriting on bad conditions
-            //Need the null check for scenarios where the date is new because its a first follower
-            if(this.whenUpdated == null || dateUpdated.after(this.whenUpdated)) {
-                this.whenUpdated = dateUpdated;
+            if(timeUpdated > this.whenUpdated) {
+                this.whenUpdated = timeUpdated;
             }
         }
 
@@ -389,7 +865,7 @@ public class FollowerStore implements IFollowerStore {
             return this.userId;
         }
 
-        public Date getLastUpdated() {
+        public long getLastUpdated() {
             return this.whenUpdated;
         }
 
@@ -403,391 +879,18 @@ public class FollowerStore implements IFollowerStore {
                 return -1;
             } else {
                 //compare the dates the followers match.
-                if(this.whenUpdated.before(otherRanking.getLastUpdated())) {
+                if(this.whenUpdated < otherRanking.getLastUpdated()) {
                     return 1;
-                } else if (this.whenUpdated.after(otherRanking.getLastUpdated())) {
+                } else if (this.whenUpdated > otherRanking.getLastUpdated()) {
                     return -1;
                 } else {
-                    return 0;
-                }
-            }
-
-
-        }
-    }
-
-    class AVLTree<K extends Comparable<K>, V> {
-
-        //The root node of this tree. The single node at the top for which every other node stems from.
-        private Node root;
-        //the number of nodes within the tree (root = 1)
-        private int treeSize;
-
-        //Constructor for the tree, just sets the treesize to an intiial amount which can be configured.
-        public AVLTree() {
-            this.treeSize = 0;
-        }
-
-        public Node getRoot() {
-            return this.root;
-        }
-
-        public int getTreeSize() {
-            return this.treeSize;
-        }
-
-        public void setRoot(Node n) {
-            this.root = n;
-        }
-
-        public void setTreeSize(int size) {
-            this.treeSize = size;
-        }
-
-        //O(logn) insertion in this tree as we need to traverse the tree to find the right location.
-        private Node insertNode(Node locationNode, Node insertingNode) {
-            if (locationNode != null) {
-                //Compare the location node we intend to the key of the node we are inserting.
-                int comparison = ((Comparable<K>) locationNode.key).compareTo((K) insertingNode.key);
-
-                //If the value is less than or equal to the current node we are checking put it on the left.
-                if (comparison <= 0) {
-                    //The key of the location node is comparatively less or equal to the node we are inserting, we can recursively call the insert down the left of this tree.
-                    locationNode.left = insertNode(locationNode.left, insertingNode);
-                } else {
-                    //The key of the location node is comparatively more than the node we are inserting, we can recursively call the insert down the right of this tree.
-                    locationNode.right = insertNode(locationNode.right, insertingNode);
+                    //The same followers at the same time, the ranking made last comes first as it always has.
+                    return Integer.compare(this.made, otherRanking.made);
                 }
-
-                //We have just inserted data into this nodes subtree somewhere, we should rebalance this node now so it maintains optimal data structure efficiency.
-                return locationNode.balanceNode();
-            } else {
-                return insertingNode;
-            }
-        }
-
-        //O(logn) peroformance as it just makes a call to the function insertNode()
-        public void insertKeyValuePair(K key, V value) {
-            this.treeSize++;
-            root = insertNode(root, new Node<>(key, value));
-        }
-
-        //Check if the tree has data within it or not by comparing the root value to null as everything stems from this node.
-        public boolean isEmpty() {
-            return this.root == null;
-        }
-
-        //Clear the tree of all its nodes by deleting the greatest parent (root node)
-        public void clearTree() {
-            this.root = null;
-        }
-
-
-        //O(logn) performance as we traverse the tree to find the value found at the key, the maximum height of the tree is logn of the numbers of nodes.
-        public V get(K key) {
-            //The key isnt provided? return null we cant search for nothing.
-            if (key == null) {
-                return null;
-            }
-
-            //The node we are trying to find, we will search recursively down the subtrees by calling the second get method below this (the private recursive method)
-            Node toFind = get(root, key);
-            if (toFind == null) {
-                return null;
             }
 
-            //We found the node we were looking for, return the value associated within it as the recursive searched is only returning a node for abstraction purposes if needed later.
-            return (V) toFind.value;
-        }
-
-        private Node get(Node currentNode, K key) {
-            //Cant search against nothing, return null to show an error occured.
-            if (currentNode == null)
-                return null;
-
-            //The comparison we are making between the the key we have and the key we are looking for in the avl tree structure
-            int comparison = ((Comparable<K>) currentNode.key).compareTo(key);
-
-            if (comparison < 0) {
-                //The node we are looking for has a key less than the current node, we should go down the left subtree.
-                return get(currentNode.left, key);
-            } else if (comparison > 0) {
-                //The key we are searching for has a value greater than the key at the current node, search down the right subtree.
-                return get(currentNode.right, key);
-            } else {
-                //We are at the node (comparison == 0) we are looking for, return this node.
-                return currentNode;
-            }
-        }
-
 
-        //Internal storage for the nodes we have traversed in the tree, if this was to be improved I would abstract this outside of the tree so we can define
-        //search paramaters elsewhere in the program to stop the need for having to iterate across all the nodes again once traversed to see which ones match the condition.
-        private MyArrayList<Node<K, V>> nodes = new MyArrayList<>();
-
-        //O(n) performance to get all the nodes in the list in ascending order by key.
-        public void inOrderTraversal(Node n) {
-            //The node doesnt exist, we cant traverse this.
-            if(n == null) {
-                return;
-            }
-
-            inOrderTraversal(n.left); //left
-            //We must use addToTail so the list is inserted in ascending order based on the AVLTree comparable.
-            this.nodes.add(n); //root
-            inOrderTraversal(n.right); //right
-        }
-
-        //Method to clear the locally stored nodes linked list.
-        public void clearNodes() {
-            this.nodes.clear();
-        }
-
-        //Getter method for the array found above the preOrderTraversal() method because the data for this is stored there.
-        public MyArrayList<Node<K, V>> getNodesTraversed() {
-            return this.nodes;
-        }
-
-    //End of the AVLTree class
-    }
-
-    class Node<K, V> {
-        //The data associated with the Node, the key value pair with the key being the Weet id and the value being the Weet
-        //Slightly inefficient use for memory as I am storing the id twice but its a negligible amount for the scale of this project.
-        public K key;
-        public V value;
-
-        //The pointers to the nodes surrounding this node, the sibling nodes and the parent.
-        public Node left;
-        public Node right;
-        public Node parent;
-
-        //A useful variable to store the height of the subtree with this node as its parent, not strictly needed but helpful
-        //The number of nodes at both the left of this node and the right of this node summed.
-        public int height;
-
-        //Constructor to instantiate a new node within the AVL Tree.
-        public Node(K key, V value) {
-            this.key = key;
-            this.value = value;
-            this.height = 1;
-        }
-
-        //A method to perform a right rotation on the tree to aid in its balancing.
-        //Just follows the procedures defined in the ADT specification.
-        //Rotations are ran in O(logn) time.
-        public Node rotateRight() {
-            //Store the left node temporarily, we will overwrite it but also want it again in the future.
-            Node tempNode = this.left;
-
-            //Update the current left node to the be the current right node.
-            this.left = tempNode.right;
-            this.calculateNodeHeight();
-
-            //Set the current right node to this node, (the parent of the current right node)
-            tempNode.right = this;
-            tempNode.calculateNodeHeight();
-
-            //Upward shift of the nodes.
-            tempNode.parent = this.parent;
-
-            //Return an updated version of this node after having been rotated.
-            return tempNode;
-        }
-
-        //A left rotation on this node, aiding in the self balance of the tree to ensure O(logn) search times.
-        //Just follows the principles defined in the ADT definition.
-        //Rotations are ran in O(logn) time.
-        public Node rotateLeft() {
-            Node tempNode = this.right;
-
-            //Perform the leftward balance, making the current right node to be the current left node.
-            this.right = tempNode.left;
-            this.calculateNodeHeight();
-
-            //second step in this balancing maneoveur, changing the left node of this tree to be itself.
-            tempNode.left = this;
-            tempNode.calculateNodeHeight();
-
-            //We now return the node again but the balanced version of it.
-            return tempNode;
-        }
-
-        //Recalculates this nodes height from the top down in both the left and right subtrees.
-        public void calculateNodeHeight() {
-            int subTreeHeight = 1;
-
-            if (left != null)
-                subTreeHeight += left.height;
-
-            if (right != null)
-                subTreeHeight += right.height;
-
-            //Overwrite the current class height variable to be the newly computed height of this node.
-            this.height = subTreeHeight;
-        }
-
-        //Returns the balance between this nodes left subtree and right subtree (the difference in heights between them)
-        private int calculateBalance() {
-            //Calculate the left height of this node.
-            int leftHeight = 0;
-            if (left != null)
-                leftHeight += left.height;
-
-            //Calculate the right height of this node
-            int rightHeight = 0;
-            if (right != null)
-                rightHeight += right.height;
-
-            //Returns the difference between the two heights, producing our "balance"
-            return leftHeight - rightHeight;
-        }
-
-
-        //Balance the tree so that at most the tree is of O(logn) height. The tree can baalnce itself in O(logn) time as defined in the ADT specification.
-        public Node balanceNode() {
-            //Update the current node height, good practice so we can accuratley perform the following operations.
-            this.calculateNodeHeight();
-
-            int currentNodeBalance = this.calculateBalance();
-
-            //Check for a right skew on this nodes data, if so we should balance towards the left.
-            if (currentNodeBalance > 1) {
-                if (this.left.calculateBalance() < 0) {
-                    this.left = this.left.rotateLeft();
-                }
-                return rotateRight();
-
-            //Check for a left skew, if so balance towards the right.
-            } else if (currentNodeBalance < -1) {
-                if (this.right.calculateBalance() > 0) {
-                    this.right = this.right.rotateRight();
-                }
-                return rotateLeft();
-            }
-
-            //Return this node again in its balanced form.
-            //This could also be potentially called if the node had no skew, and is therefore just returning itself
-            return this;
-        }
-
-        //Getters for the generic values found within the node. Used often when a traversal has occured and we want to get the data out from the tree.
-        public V getValue() {
-            return this.value;
-        }
-
-        public K getKey() {
-            return this.key;
-        }
-
-        //End of the Node class.
-    }
-
-
-    class MyArrayList<E> {
-
-        //the internal object array which holds all of our elements.
-        private Object[] array;
-        //the number of elements currently being held by the arraylist.
-        private int size;
-        //the maximum amount of elements we can currently hold without resizing the internal array.
-        private int capacity;
-
-        public MyArrayList() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
-        }
-
-        /**
-         * add() - O(1) method to add a new element to the arraylist at the next available position, in the case where the internal array is full a full copy of the arraylist is performed to double its capacity.
-         * In the situation where this occurs the add method runs in O(n) time.
-         * @param element - The element we are trying to add to the arraylist
-         * @return true when the element is added, false otherwise (should never actually be false).
-         */
-        public boolean add(E element) {
-            if (this.size == this.capacity) {
-                //The size is the same as the capacity we will have to resize the array, copy all elements over to the new array and then overwrite the old array and redefine the new capacity.
-                Object[] newArray = new Object[this.capacity * 2];
-                for (int i = 0; i < size; i++) {
-                    newArray[i] = this.array[i];
-                }
-                this.array = newArray;
-                this.capacity = this.capacity * 2;
-                this.array[size] = element;
-                this.size++;
-            } else {
-                this.array[size] = element;
-                this.size++;
-            }
-            return true;
-        }
-
-
-        /**
-         * contains() - O(n) method that checks if the provided element is contained within the arraylist.
-         * @param element - The element to check for in the arraylist.
-         * @return - true if the element being checked exists, false otherwise.
-         */
-        public boolean contains(E element) {
-            for (int i=0; i<size; i++) {
-                //Must use a .equals rather than == because it may not be off a primitve type due to the generic nature of the arraylist.
-                if(this.array[i].equals(element)) {
-                    return true;
-                }
-            }
-            return false;
-        }
-
-        /**
-         * clear() - O(1) method that resets the arraylist back to its post instantiated state, not used too often.
-         */
-        public void clear() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
-        }
-
-        /**
-         * isEmpty() - O(1) method to check if the arraylist actually contains some elements.
-         */
-        public boolean isEmpty() {
-            return this.size() == 0;
-        }
-
-        /**
-         * size() - Essentially just a getter for the private size variable and is therefore O(1).
-         */
-        public int size() {
-            return size;
-        }
-
-        /**
-         * get() - O(1) method that returns the element contained at the index provieed.
-         * @param index - The position in the arraylist we want to get the data for.
-         * @return the element we have found in the arraylist at the provided index, the type of this element is E.
-         */
-        // This line allows us to cast our object to type (E) without any warnings.
-        // For further detais, please see: http://docs.oracle.com/javase/1.5.0/docs/api/java/lang/SuppressWarnings.html
-        @SuppressWarnings("unchecked")
-        public E get(int index) {
-            return (E) this.array[index];
-        }
-
-        /**
-         * indexOf() - O(n) method that finds the index of an element in the arraylist when provided with the element itself.
-         * @param element - The element we want to find the index for.
-         * @return - The integer value of the index where this element exists in the arraylist.
-         */
-        public int indexOf(E element) {
-            for (int i=0;i<this.size();i++) {
-                if (element.equals(this.get(i))) {
-                    return i;
-                }
-            }
-            return -1;
         }
-    //End of the arraylist class.
     }
 //End of the followerstore class.
 }
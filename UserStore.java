@@ -30,497 +30,1434 @@ package uk.ac.warwick.java.cs126.services;
 
 import uk.ac.warwick.java.cs126.models.User;
 
+import uk.ac.warwick.java.cs126.services.collections.*;
+import uk.ac.warwick.java.cs126.services.persistence.CsvFile;
+import uk.ac.warwick.java.cs126.services.persistence.SnapshotFile;
+import uk.ac.warwick.java.cs126.services.persistence.WriteAheadLog;
+
+import java.io.DataOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.UncheckedIOException;
 
 
 public class UserStore implements IUserStore {
 
-    //An AVL tree of all the users in the system, keyed by their user id because this is unique.
-    private AVLTree<Integer, User> userTree = new AVLTree<>();
+    //A hash map of all the users in the system, keyed by their user id because this is unique.
+    //getUser() runs for every weet rendered, so the ids are hashed straight to a slot without boxing rather than searched for in a tree.
+    private IntHashMap<User> usersById = new IntHashMap<>();
 
-    //An AVL tree of all the users in the system, keyed by their user date so we can sort by when they were created.
-    private AVLTree<Date, User> userDateTree = new AVLTree<>();
+    //A TimeTree of all the users in the system, keyed by the time they joined so we can sort by when they were created.
+    private TimeTree<User> userDateTree = new TimeTree<>();
+
+    //An index of every 3 character sequence (trigram) found in a user's name to the users having it, each keyed by join date.
+    //A name search of 3 or more characters must contain all of its own trigrams, so only the users in the smallest of those posting trees need checking
+    //rather than every user. Costs O(L) extra entries per user where L is the length of their name.
+    private AVLTree<String, TimeTree<User>> usersByTrigram;
+
+    //A trie of the lower case user names, each node keeping the users whose names start with its prefix, used by getUsersWithPrefix() for @mention autocomplete.
+    private NameTrie usersByName;
+
+    //The follower store getUsersWithPrefix() is ranked by and the follower count it has told us of each user, see rankByFollowers(). Both null until then,
+    //and rankedBy is only set once every count so far has been told, so a query never reads the trie's top users half built.
+    private IntIntHashMap followerCounts;
+    private FollowerStore rankedBy;
+
+    //Every user in the order getUsers() returns them, copied for each caller until a user is added, which sets it back to null so the next call rebuilds it.
+    //Volatile because it is filled in by readers holding only the read lock, two readers racing to rebuild it just build the same array.
+    private volatile User[] usersSnapshot;
+
+    //The write ahead log every user is appended to before addUser() stores them, null unless openLog() has been called.
+    private WriteAheadLog<User> log;
+
+    //The cursor to pass to the paged methods to get the first page, there is no user before the first one.
+    public static final int FIRST_PAGE = -1;
+
+    //The number of users every node of the name trie keeps ranked by followers once rankByFollowers() is called, and so the largest limit it can answer from them.
+    public static final int RANKED_PREFIX_LIMIT = 16;
+
+    //The first 4 bytes of every snapshot file of this store ("WUSR" in ASCII), and the version of the snapshot format saveSnapshot() writes.
+    //Change the version whenever the format changes, loadSnapshot() wont read a version it doesnt know.
+    private static final int SNAPSHOT_MAGIC = 0x57555352;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    //The rows holding every user when the store is in compact mode, in which case the trees above are left empty. Null when the store uses the trees.
+    private CompactUsers compactUsers;
+
+    //Guards both of the trees so the store can be shared by the web server's request threads. Any number of threads can hold the read lock
+    //and query at once, while adding a user takes the write lock so no query can see a tree half way through an insert or rotation.
+    private ReentrantReadWriteLock lock;
 
     public UserStore() {
-        this.userTree = new AVLTree<>();
-        this.userDateTree = new AVLTree<>();
+        this(false);
     }
 
     /**
-    * addUser() - O(logn) method to create a new user in the system.
+     * UserStore() - Creates an empty store, in compact mode if asked. A compact store keeps every user as a row of primitive arrays with their name in a shared
+     * byte arena, and its indexes as sorted arrays of rows, using a fraction of the memory of the trees. User objects are only made as queries return them,
+     * so every query makes new ones, and getUsers() copies every user out on each call rather than keeping the array.
+     * Adding a user who joined before the newest users already stored is slower than with the trees, see CompactUsers.
+     * @param compact - True to keep the users in the compact form, false for the trees.
+     */
+    public UserStore(boolean compact) {
+        this.usersById = new IntHashMap<>();
+        this.userDateTree = new TimeTree<>();
+        this.usersByTrigram = new AVLTree<>();
+        this.usersByName = new NameTrie();
+        this.followerCounts = null;
+        this.rankedBy = null;
+        this.usersSnapshot = null;
+        this.log = null;
+        this.compactUsers = compact ? new CompactUsers() : null;
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+    * addUser() - O(L logn) method to create a new user in the system, where L is the length of their name.
+    * When a write ahead log is open the user is appended to it first, and addUser() waits for it to reach the disk as openLog()'s durability level says.
     * @param usr - The user to create if not already present
     * @return - True if the user was created in the tree, false otherwise
+    * @throws UncheckedIOException - If the user couldnt be written to the log, in which case they arent created, or couldnt be forced to the disk after creating them.
     */
     public boolean addUser(User usr) {
-        //Check for the user already in the system by searching through the AVLTree
-        //We only need to check one of the user trees because they should contain the same content just one with a date key and one with their id as a key.
-        if(this.userTree.get(usr.getId()) != null) {
-            return false;
+        WriteAheadLog<User> userLog;
+        long record;
+        this.lock.writeLock().lock();
+        try {
+            //Check for the user already in the system by looking them up in the id map
+            if(containsUser(usr.getId())) {
+                return false;
+            }
+            //Log the user before creating them, if they cant be logged they arent created.
+            userLog = this.log;
+            record = WriteAheadLog.appendIfOpen(this.log, usr);
+            storeUser(usr);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        //Wait for the user to reach the disk outside of the lock, so the writers behind us can log theirs and share the same force.
+        WriteAheadLog.awaitIfOpen(userLog, record);
+        return true;
+    }
+
+    //O(1) expected, true if a user with the id is already stored. The caller must hold the lock.
+    //We only need to check one of the user indexes because they should contain the same content just one with a date key and one with their id as a key.
+    private boolean containsUser(int id) {
+        return this.compactUsers != null ? this.compactUsers.contains(id) : this.usersById.get(id) != null;
+    }
+
+    //Creates a user who isnt already in the store, without logging them. The caller must hold the write lock.
+    private void storeUser(User usr) {
+        if(this.compactUsers != null) {
+            //Compact mode copies the user into its rows instead of the trees.
+            this.compactUsers.add(usr);
         } else {
             //The user doesnt already exist, add them in the format specified.
-            this.userTree.insertKeyValuePair(usr.getId(), usr);
-            this.userDateTree.insertKeyValuePair(usr.getDateJoined(), usr);
-            return true;
+            this.usersById.put(usr.getId(), usr);
+            this.userDateTree.insertKeyValuePair(usr.getDateJoined().getTime(), usr);
+            indexName(usr);
         }
+        this.usersSnapshot = null;
     }
 
     /**
-    * getUser() - Get a user object from the tree when specified with a user id.
-    * @param uid - The users ID for which we want to get the user object for
-    * @return - The user object if its present in the tree, null if its not.
-    */
-    public User getUser(int uid) {
-        //We must use the id key tree because these are unique, if we used the date we may return the wrong user.
-        return this.userTree.get(uid);
+     * addUsers() - O(n logn) bulk load of many users at once, e.g. the whole of names.csv on start up.
+     * Into an empty store the users are sorted by join date (across the processors) and every tree is built bottom up from sorted input in O(n),
+     * rather than n rebalancing inserts. Into a store which already has users they are just created one at a time.
+     * Like the rest of the bulk load they arent written to the write ahead log, the file they came from is already on the disk.
+     * A user with the same id as an earlier one is skipped, the same as addUser() would.
+     * @param users - The users to add.
+     * @return - The number of users which were added.
+     */
+    public int addUsers(User[] users) {
+        this.lock.writeLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return addCompactUsers(users);
+            }
+            if(this.usersById.size() != 0) {
+                //Created one at a time but not logged, the same as the bulk build below.
+                int added = 0;
+                for(int i=0; i<users.length; i++) {
+                    if(!containsUser(users[i].getId())) {
+                        storeUser(users[i]);
+                        added++;
+                    }
+                }
+                return added;
+            }
+
+            //Index the ids first, dropping any repeated ones, then sort the rest into the date tree.
+            TimeNode<User>[] byDate = TimeNode.newArray(users.length);
+            int count = 0;
+            for(int i=0; i<users.length; i++) {
+                if(this.usersById.get(users[i].getId()) == null) {
+                    this.usersById.put(users[i].getId(), users[i]);
+                    byDate[count++] = new TimeNode<User>(users[i].getDateJoined().getTime(), users[i]);
+                }
+            }
+            TimeTree.sortNodes(byDate, count);
+
+            //Group the users by every trigram in their name, taking them in date order means every group is already sorted for its posting tree.
+            AVLTree<String, MyArrayList<User>> trigramGroups = new AVLTree<>();
+            for(int i=0; i<count; i++) {
+                User usr = byDate[i].value;
+                String[] trigrams = Terms.distinctTrigrams(usr.getName());
+                for(int j=0; j<trigrams.length; j++) {
+                    MyArrayList<User> group = trigramGroups.get(trigrams[j]);
+                    if(group == null) {
+                        group = new MyArrayList<>();
+                        trigramGroups.insertKeyValuePair(trigrams[j], group);
+                    }
+                    group.add(usr);
+                }
+            }
+
+            this.userDateTree.buildFromSorted(byDate, count);
+
+            //The grouping tree iterates its trigrams in the index's order, so the index can be built bottom up from it as well.
+            Node<String, TimeTree<User>>[] trigrams = Node.newArray(trigramGroups.getTreeSize());
+            AVLTree<String, MyArrayList<User>>.TreeIterator groups = trigramGroups.iterator();
+            for(int i=0; groups.hasNext(); i++) {
+                Node<String, MyArrayList<User>> group = groups.next();
+                MyArrayList<User> groupUsers = group.getValue();
+                TimeNode<User>[] postings = TimeNode.newArray(groupUsers.size());
+                for(int j=0; j<groupUsers.size(); j++) {
+                    postings[j] = new TimeNode<User>(groupUsers.get(j).getDateJoined().getTime(), groupUsers.get(j));
+                }
+                TimeTree<User> postingTree = new TimeTree<>();
+                postingTree.buildFromSorted(postings, postings.length);
+                trigrams[i] = new Node<String, TimeTree<User>>(group.getKey(), postingTree);
+            }
+            this.usersByTrigram.buildFromSorted(trigrams, trigrams.length);
+            this.usersByName.addSorted(byDate, count);
+
+            this.usersSnapshot = null;
+            return count;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
     }
 
-    /**
-     * getUsers() - Get an array of user objects from the tree (all the users in the system)
-     * @return - The array of users which are in the system, will be an empty array if none are present.
-     */
-    public User[] getUsers() {
-        this.userDateTree.clearNodes();
-    	this.userDateTree.inOrderTraversal(this.userDateTree.getRoot());
-        MyArrayList<Node<Date, User>> sortedDateList = this.userDateTree.getNodesTraversed();
-        User[] usersReturn = new User[sortedDateList.size()];
-        for(int i=0; i<sortedDateList.size(); i++) {
-            usersReturn[i] = sortedDateList.get(i).getValue();
+    //O(n logn) bulk add into a compact store. The users are sorted by join date and added oldest first, so every row goes on the end of its lists rather than
+    //shifting any, and the arrays are grown once up front.
+    private int addCompactUsers(User[] users) {
+        //Drop the ids already stored or repeated, keeping the first of each as addUser() would, before the order is changed.
+        IntIntHashMap seen = new IntIntHashMap();
+        TimeNode<User>[] byDate = TimeNode.newArray(users.length);
+        int count = 0;
+        //The arena holds UTF-8, so the names are measured in those bytes rather than in chars, on top of the bytes already in it.
+        int nameBytes = this.compactUsers.nameBytes();
+        for(int i=0; i<users.length; i++) {
+            if(!this.compactUsers.contains(users[i].getId()) && seen.get(users[i].getId()) < 0) {
+                seen.put(users[i].getId(), i);
+                byDate[count++] = new TimeNode<User>(users[i].getDateJoined().getTime(), users[i]);
+                nameBytes += users[i].getName().getBytes(StandardCharsets.UTF_8).length;
+            }
         }
+        TimeTree.sortNodes(byDate, count);
+        this.compactUsers.ensureCapacity(this.compactUsers.size() + count, nameBytes);
 
-        return usersReturn;
+        //The sorted nodes are in the date tree's order, newest first, so they are added from the back.
+        for(int i=count - 1; i>=0; i--) {
+            this.compactUsers.add(byDate[i].value);
+        }
+        this.usersSnapshot = null;
+        return count;
+    }
+
+    //Loads a CSV file with its dates written in CsvFile.DATE_FORMAT, see loadUsers(path, dateFormat).
+    public int loadUsers(String path) throws IOException {
+        return loadUsers(path, CsvFile.DATE_FORMAT);
     }
 
     /**
-     * getUsersContaining() - O(n) method to find all the users in the system who have a certain phrase/word contained within their name 
-     * @param query - The query we want to check for in the user's names.
-     * @return - A user array of all the users having the query in their name.
+     * loadUsers() - Bulk loads every user in a CSV file such as names.csv through addUsers(), parsing the lines across all the processors.
+     * Each line is id,name,date. The name is everything between the first and last comma so it may contain commas itself.
+     * A first line which doesnt start with an id is taken to be a header and skipped.
+     * @param path - The path of the CSV file.
+     * @param dateFormat - The SimpleDateFormat pattern the dates are written in.
+     * @return - The number of users which were added.
+     * @throws IOException - If the file cant be read or one of its lines cant be parsed, in which case no users are added.
      */
-    public User[] getUsersContaining(String query) {
-    	//Traverse the new tree in order so we get most recent first.
-    	this.userDateTree.clearNodes();
-    	this.userDateTree.inOrderTraversal(this.userDateTree.getRoot());
-        MyArrayList<Node<Date, User>> sortedDateList = this.userDateTree.getNodesTraversed();
-        
-        //Go through all the users we have found sorted by the date they joined. If they contain the specified query then add them to the arraylist.
-        MyArrayList<User> containingUsers = new MyArrayList<>();
-        for(int i=0; i<sortedDateList.size(); i++) {
-            User user = sortedDateList.get(i).getValue();
-            if(user.getName().contains(query)) {
-                //The user has the query, add them to the contains arraylist.
-                containingUsers.add(user);
-            }
-        }
+    public int loadUsers(String path, String dateFormat) throws IOException {
+        final String[] lines = CsvFile.readLines(path);
+        final User[] users = new User[lines.length];
+        CsvFile.parse(path, lines, "user", dateFormat, (i, line, format) -> {
+            int firstComma = line.indexOf(',');
+            int lastComma = line.lastIndexOf(',');
+            users[i] = new User(line.substring(firstComma + 1, lastComma), Integer.parseInt(line.substring(0, firstComma).trim()),
+                    format.parse(line.substring(lastComma + 1).trim()));
+        });
+        return addUsers(users);
+    }
+
+    /**
+     * saveSnapshot() - O(n) method saving every user and the name index to a compact binary snapshot file, which loadSnapshot() can read back on the next start
+     * far quicker than parsing names.csv and indexing every name again.
+     * The file is SNAPSHOT_MAGIC and SNAPSHOT_VERSION, then the number of users and each user's id, join date (milliseconds) and length prefixed UTF-8 name oldest first,
+     * then the number of trigrams and each trigram followed by the number of users posted under it and their ids in the order of its tree, then a CRC32 of everything before it.
+     * @param path - The path of the snapshot file, replaced if it already exists.
+     * @throws IOException - If the file cant be written.
+     */
+    public void saveSnapshot(String path) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            SnapshotFile.write(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, out -> {
+                if(this.compactUsers != null) {
+                    //The rows are written in the same format, without making any user objects.
+                    this.compactUsers.write(out);
+                    return;
+                }
 
-    	//Create the storage array which we can return of type User.
-    	User[] toReturn = new User[containingUsers.size()];
-    	for(int k=0; k<containingUsers.size(); k++) {
-    		toReturn[k] = containingUsers.get(k);
-    	}
-        return toReturn;
+                User[] users = getUsers();
+                out.writeInt(users.length);
+                for(int i=users.length - 1; i>=0; i--) {
+                    out.writeInt(users[i].getId());
+                    out.writeLong(users[i].getDateJoined().getTime());
+                    SnapshotFile.writeString(out, users[i].getName());
+                }
+
+                out.writeInt(this.usersByTrigram.getTreeSize());
+                AVLTree<String, TimeTree<User>>.TreeIterator trigrams = this.usersByTrigram.iterator();
+                while(trigrams.hasNext()) {
+                    Node<String, TimeTree<User>> trigram = trigrams.next();
+                    SnapshotFile.writeString(out, trigram.getKey());
+                    out.writeInt(trigram.getValue().getTreeSize());
+                    TimeTree<User>.TreeIterator postings = trigram.getValue().iterator();
+                    while(postings.hasNext()) {
+                        out.writeInt(postings.next().getValue().getId());
+                    }
+                }
+            });
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
-     * getUsersJoinedBefore() - O(n) method to get all the users which joined the system before a provided date.
-     * @param dateBefore - The date we want to use to compare against user joined dates. If the user joined before this date we will return them.
-     * @return - A user array of all the users joining the system before the date provided.
+     * loadSnapshot() - O(n) method loading the users and name index saved by saveSnapshot() into an empty store. The file is memory mapped rather than read through a stream,
+     * and its checksum and version are checked before anything is read. Everything was saved in the order of its tree, so every tree is linked straight back together
+     * with buildFromSorted() rather than sorting or indexing any name. If the store already has users the saved users are added through addUsers() instead.
+     * @param path - The path of the snapshot file.
+     * @return - The number of users which were added.
+     * @throws IOException - If the file cant be read, isnt a user snapshot of a version we can read, or is corrupt, in which case the store is left as it was.
      */
-    public User[] getUsersJoinedBefore(Date dateBefore) {
-        //Get all the users in the system sorted by the date they joined.
-        this.userDateTree.clearNodes();
-    	this.userDateTree.inOrderTraversal(this.userDateTree.getRoot());
-        MyArrayList<Node<Date, User>> sortedDateList = this.userDateTree.getNodesTraversed();
+    public int loadSnapshot(String path) throws IOException {
+        ByteBuffer buffer = SnapshotFile.map(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+        try {
+            //Everything is decoded into new structures first, so a bad file leaves the store as it was.
+            User[] users = new User[buffer.getInt()];
+            IntHashMap<User> byId = new IntHashMap<>();
+            TimeNode<User>[] byDate = TimeNode.newArray(users.length);
+            for(int i=0; i<users.length; i++) {
+                int id = buffer.getInt();
+                Date dateJoined = new Date(buffer.getLong());
+                users[i] = new User(SnapshotFile.readString(buffer), id, dateJoined);
+                byId.put(id, users[i]);
+                //Saved oldest first, the date tree's order is newest first.
+                byDate[users.length - 1 - i] = new TimeNode<User>(dateJoined.getTime(), users[i]);
+            }
+            if(this.compactUsers != null) {
+                //A compact store rebuilds its row lists from the users rather than linking trees it wont use.
+                return addUsers(users);
+            }
+            TimeTree<User> dateTree = new TimeTree<>();
+            dateTree.buildFromSorted(byDate, byDate.length);
+
+            Node<String, TimeTree<User>>[] trigrams = Node.newArray(buffer.getInt());
+            for(int i=0; i<trigrams.length; i++) {
+                String trigram = SnapshotFile.readString(buffer);
+                TimeNode<User>[] postings = TimeNode.newArray(buffer.getInt());
+                for(int j=0; j<postings.length; j++) {
+                    User usr = byId.get(buffer.getInt());
+                    if(usr == null) {
+                        throw new IOException(path + " indexes a user it doesnt contain");
+                    }
+                    postings[j] = new TimeNode<User>(usr.getDateJoined().getTime(), usr);
+                }
+                TimeTree<User> postingTree = new TimeTree<>();
+                postingTree.buildFromSorted(postings, postings.length);
+                trigrams[i] = new Node<String, TimeTree<User>>(trigram, postingTree);
+            }
+            AVLTree<String, TimeTree<User>> trigramTree = new AVLTree<>();
+            trigramTree.buildFromSorted(trigrams, trigrams.length);
+
+            //The name trie isnt saved, it is quick to build again from the users in date order.
+            NameTrie nameTrie = new NameTrie();
+            nameTrie.addSorted(byDate, byDate.length);
 
-        MyArrayList<User> usersBefore = new MyArrayList<>();
-        for(int i=0; i<sortedDateList.size(); i++) {
-            User user = sortedDateList.get(i).getValue();
-            if(user.getDateJoined().before(dateBefore)) {
-                //the uer joined before the date specified, we can add them to the return array.
-                usersBefore.add(user);
+            this.lock.writeLock().lock();
+            try {
+                if(this.usersById.size() != 0) {
+                    return addUsers(users);
+                }
+
+                this.usersById = byId;
+                this.userDateTree = dateTree;
+                this.usersByTrigram = trigramTree;
+                this.usersByName = nameTrie;
+                if(this.followerCounts != null) {
+                    this.usersByName.rankUsers(this.followerCounts, this.userDateTree);
+                }
+                this.usersSnapshot = null;
+                return users.length;
+            } finally {
+                this.lock.writeLock().unlock();
             }
+        } catch(BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException(path + " ends part way through");
         }
-
-    	//Create the storage array which we can return of type User.
-    	User[] toReturn = new User[usersBefore.size()];
-    	for(int k=0; k<usersBefore.size(); k++) {
-    		toReturn[k] = usersBefore.get(k);
-    	}
-        return toReturn;
     }
 
+    /**
+     * openLog() - O(r L logn) method opening a write ahead log at the path, creating it if it doesnt exist, where r is the number of users in it.
+     * The users already in the log are added first, bringing a store loaded from a snapshot or names.csv up to date with the users who joined since (any it already has are skipped).
+     * From then on every user passed to addUser() is appended to the log before they are created. The bulk loaders dont log, the files they load from are already on the disk.
+     * @param path - The path of the log file.
+     * @param durability - WriteAheadLog.SYNC, BATCHED or ASYNC.
+     * @param batchMillis - How long BATCHED holds a force back for and how often ASYNC forces the log, not used by SYNC.
+     * @return - The number of users added from the log.
+     * @throws IOException - If the log cant be opened or read, or isnt a user log, in which case no log is opened.
+     */
+    public int openLog(String path, int durability, long batchMillis) throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if(this.log != null) {
+                throw new IllegalStateException("A log is already open");
+            }
+            //The log is only set once the replay is done, so the users replayed through addUser() arent logged a second time.
+            final int[] replayed = {0};
+            this.log = new WriteAheadLog<>(path, new UserCodec(), durability, batchMillis, usr -> {
+                if(addUser(usr)) {
+                    replayed[0]++;
+                }
+            });
+            return replayed[0];
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
+    /**
+     * closeLog() - Forces the rest of the write ahead log to the disk and closes it, users added after this arent logged.
+     * @throws IOException - If the log couldnt be forced to the disk.
+     */
+    public void closeLog() throws IOException {
+        WriteAheadLog<User> closing;
+        this.lock.writeLock().lock();
+        try {
+            closing = this.log;
+            this.log = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if(closing != null) {
+            closing.close();
+        }
+    }
 
-    class AVLTree<K extends Comparable<K>, V> {
+    //The user log's record format, a user's id, join date (milliseconds) and length prefixed UTF-8 name, the same as a snapshot.
+    private static class UserCodec implements WriteAheadLog.RecordCodec<User> {
 
-        //The root node of this tree. The single node at the top for which every other node stems from.
-        private Node root;
-        //the number of nodes within the tree (root = 1)
-        private int treeSize;
+        //The first 4 bytes of every write ahead log of this store ("WLUS" in ASCII).
+        public int magic() {
+            return 0x574c5553;
+        }
 
-        //Constructor for the tree, just sets the treesize to an intiial amount which can be configured.
-        public AVLTree() {
-            this.treeSize = 0;
+        public int version() {
+            return 1;
         }
 
-        public Node getRoot() {
-            return this.root;
+        public ByteBuffer encode(User usr) {
+            byte[] name = usr.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(16 + name.length);
+            record.putInt(usr.getId()).putLong(usr.getDateJoined().getTime());
+            record.putInt(name.length).put(name).flip();
+            return record;
         }
 
-        public int getTreeSize() {
-            return this.treeSize;
+        public User decode(ByteBuffer record) {
+            int id = record.getInt();
+            Date dateJoined = new Date(record.getLong());
+            return new User(SnapshotFile.readString(record), id, dateJoined);
         }
+    }
 
-        public void setRoot(Node n) {
-            this.root = n;
+    /**
+    * getUser() - O(1) expected method to get a user object from the id map when specified with a user id.
+    * @param uid - The users ID for which we want to get the user object for
+    * @return - The user object if its present in the store, null if its not.
+    */
+    public User getUser(int uid) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.get(uid);
+            }
+            //We must use the id map because these are unique, if we used the date we may return the wrong user.
+            return this.usersById.get(uid);
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
 
-        public void setTreeSize(int size) {
-            this.treeSize = size;
+    /**
+     * getUsers() - Get an array of user objects from the tree (all the users in the system)
+     * O(n) copy between additions, the array is only rebuilt from the tree (also O(n) but far slower, a node at a time) on the first call after a user is added.
+     * Each caller is given its own copy, so nothing a caller does to theirs can change what the next one sees.
+     * @return - The array of users which are in the system, will be an empty array if none are present.
+     */
+    public User[] getUsers() {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                //Keeping the array would keep an object for every user, which is what compact mode is avoiding.
+                return this.compactUsers.getUsers();
+            }
+            User[] usersReturn = this.usersSnapshot;
+            if(usersReturn == null) {
+                //Walk the date tree straight into the return array, we know its size already so nothing else needs allocating.
+                usersReturn = new User[this.userDateTree.getTreeSize()];
+                TimeTree<User>.TreeIterator iterator = this.userDateTree.iterator();
+                for(int i=0; iterator.hasNext(); i++) {
+                    usersReturn[i] = iterator.next().getValue();
+                }
+                this.usersSnapshot = usersReturn;
+            }
+
+            return usersReturn.clone();
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
 
-        //O(logn) insertion in this tree as we need to traverse the tree to find the right location.
-        private Node insertNode(Node locationNode, Node insertingNode) {
-            if (locationNode != null) {
-                //Compare the location node we intend to the key of the node we are inserting.
-                int comparison = ((Comparable<K>) locationNode.key).compareTo((K) insertingNode.key);
+    /**
+     * getUsersPage() - O(logn + limit) method to get one page of the users sorted by the date they joined, without traversing or copying every user.
+     * The page carries on from the user with the cursor id, so passing the id of the last user on a page gets the next page.
+     * @param afterUid - The id of the last user on the previous page, or FIRST_PAGE for the first page.
+     * @param limit - The most users to return.
+     * @return - An array of at most limit users following the cursor, empty if the cursor isnt a user or there are no more users.
+     */
+    public User[] getUsersPage(int afterUid, int limit) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersPage(afterUid, limit);
+            }
+            TimeTree<User>.TreeIterator iterator = iteratorAfter(this.userDateTree, afterUid);
+            MyArrayList<User> page = new MyArrayList<>();
+            while(iterator != null && iterator.hasNext() && page.size() < limit) {
+                page.add(iterator.next().getValue());
+            }
 
-                //If the value is less than or equal to the current node we are checking put it on the left.
-                if (comparison <= 0) {
-                    //The key of the location node is comparatively less or equal to the node we are inserting, we can recursively call the insert down the left of this tree.
-                    locationNode.left = insertNode(locationNode.left, insertingNode);
-                } else {
-                    //The key of the location node is comparatively more than the node we are inserting, we can recursively call the insert down the right of this tree.
-                    locationNode.right = insertNode(locationNode.right, insertingNode);
+            User[] toReturn = new User[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
+            }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * getUsersContainingPage() - One page of the results of getUsersContaining(), walking the same candidate users from the cursor and stopping as soon as limit users match.
+     * @param query - The query we want to check for in the user's names.
+     * @param afterUid - The id of the last user on the previous page, or FIRST_PAGE for the first page.
+     * @param limit - The most users to return.
+     * @return - An array of at most limit users having the query in their name which follow the cursor.
+     */
+    public User[] getUsersContainingPage(String query, int afterUid, int limit) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersContaining(query, afterUid, limit);
+            }
+            TimeTree<User> candidates = query.length() < 3 ? this.userDateTree : smallestTrigramPostings(query);
+            TimeTree<User>.TreeIterator iterator = candidates == null ? null : iteratorAfter(candidates, afterUid);
+            MyArrayList<User> page = new MyArrayList<>();
+            while(iterator != null && iterator.hasNext() && page.size() < limit) {
+                User user = iterator.next().getValue();
+                if(user.getName().contains(query)) {
+                    page.add(user);
                 }
+            }
 
-                //We have just inserted data into this nodes subtree somewhere, we should rebalance this node now so it maintains optimal data structure efficiency.
-                return locationNode.balanceNode();
-            } else {
-                return insertingNode;
+            User[] toReturn = new User[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
             }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
 
-        //O(logn) peroformance as it just makes a call to the function insertNode()
-        public void insertKeyValuePair(K key, V value) {
-            this.treeSize++;
-            root = insertNode(root, new Node<>(key, value));
+    //O(logn) method to get an iterator over a join date keyed tree starting just after the user with the cursor id, null if there is no such user.
+    private TimeTree<User>.TreeIterator iteratorAfter(TimeTree<User> tree, int afterUid) {
+        if(afterUid == FIRST_PAGE) {
+            return tree.iterator();
         }
-
-        //Check if the tree has data within it or not by comparing the root value to null as everything stems from this node.
-        public boolean isEmpty() {
-            return this.root == null;
+        User cursor = this.usersById.get(afterUid);
+        if(cursor == null) {
+            return null;
         }
 
-        //Clear the tree of all its nodes by deleting the greatest parent (root node)
-        public void clearTree() {
-            this.root = null;
+        //Start at the cursor's join date, then skip past the users sharing that date up to and including the cursor itself.
+        TimeTree<User>.TreeIterator iterator = tree.headIterator(cursor.getDateJoined().getTime(), true);
+        while(iterator.hasNext() && iterator.peek().getKey() == cursor.getDateJoined().getTime()) {
+            if(iterator.next().getValue() == cursor) {
+                break;
+            }
         }
+        return iterator;
+    }
 
-
-        //O(logn) performance as we traverse the tree to find the value found at the key, the maximum height of the tree is logn of the numbers of nodes.
-        public V get(K key) {
-            //The key isnt provided? return null we cant search for nothing.
-            if (key == null) {
-                return null;
+    /**
+     * getUsersContaining() - O(m) method to find all the users in the system who have a certain phrase/word contained within their name, where m is the size of the
+     * smallest trigram posting tree of the query, so the cost follows the number of likely matches rather than the number of users.
+     * Queries shorter than a trigram cant be looked up in the index, so they fall back to the O(n) check of every user.
+     * @param query - The query we want to check for in the user's names.
+     * @return - A user array of all the users having the query in their name.
+     */
+    public User[] getUsersContaining(String query) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersContaining(query, FIRST_PAGE, Integer.MAX_VALUE);
+            }
+            TimeTree<User> candidates;
+            if(query.length() < 3) {
+                candidates = this.userDateTree;
+            } else {
+                candidates = smallestTrigramPostings(query);
+                if(candidates == null) {
+                    //One of the query's trigrams isnt in any name, so no user can match.
+                    return new User[0];
+                }
             }
 
-            //The node we are trying to find, we will search recursively down the subtrees by calling the second get method below this (the private recursive method)
-            Node toFind = get(root, key);
-            if (toFind == null) {
-                return null;
+        	//Traverse the candidates in order so we get them sorted by join date, the same as the date tree.
+            TimeTree<User>.TreeIterator iterator = candidates.iterator();
+        
+            //Go through all the candidate users. If they really contain the specified query then add them to the arraylist.
+            MyArrayList<User> containingUsers = new MyArrayList<>();
+            while(iterator.hasNext()) {
+                User user = iterator.next().getValue();
+                if(user.getName().contains(query)) {
+                    //The user has the query, add them to the contains arraylist.
+                    containingUsers.add(user);
+                }
             }
 
-            //We found the node we were looking for, return the value associated within it as the recursive searched is only returning a node for abstraction purposes if needed later.
-            return (V) toFind.value;
+        	//Create the storage array which we can return of type User.
+        	User[] toReturn = new User[containingUsers.size()];
+        	for(int k=0; k<containingUsers.size(); k++) {
+        		toReturn[k] = containingUsers.get(k);
+        	}
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
 
-        private Node get(Node currentNode, K key) {
-            //Cant search against nothing, return null to show an error occured.
-            if (currentNode == null)
-                return null;
+    /**
+     * getUsersWithPrefix() - O(|prefix| + logn + limit) method for @mention autocomplete, getting the most recently joined users whose names start with the prefix, ignoring case.
+     * The trie node for the prefix already holds exactly those users sorted by join date, so only the users returned are looked at.
+     * @param prefix - The start of the name typed so far, an empty prefix matches every user.
+     * @param limit - The most users to return.
+     * @return - An array of at most limit users whose names start with the prefix, sorted by the date they joined.
+     */
+    public User[] getUsersWithPrefix(String prefix, int limit) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersWithPrefix(prefix, limit);
+            }
+            TimeTree<User> matching = prefix.isEmpty() ? this.userDateTree : this.usersByName.find(prefix);
+            if(matching == null) {
+                return new User[0];
+            }
 
-            //The comparison we are making between the the key we have and the key we are looking for in the avl tree structure
-            int comparison = ((Comparable<K>) currentNode.key).compareTo(key);
+            User[] toReturn = new User[Math.max(0, Math.min(limit, matching.getTreeSize()))];
+            TimeTree<User>.TreeIterator iterator = matching.iterator();
+            for(int i=0; i<toReturn.length; i++) {
+                toReturn[i] = iterator.next().getValue();
+            }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-            if (comparison < 0) {
-                //The node we are looking for has a key less than the current node, we should go down the left subtree.
-                return get(currentNode.left, key);
-            } else if (comparison > 0) {
-                //The key we are searching for has a value greater than the key at the current node, search down the right subtree.
-                return get(currentNode.right, key);
-            } else {
-                //We are at the node (comparison == 0) we are looking for, return this node.
-                return currentNode;
+    /**
+     * getUsersWithPrefix() - The users whose names start with the prefix ranked by how many followers they have, most first, then the most recently joined,
+     * then the largest id.
+     * Once rankByFollowers() has been called with the same follower store, and for a limit of at most RANKED_PREFIX_LIMIT, they are read straight off the top users
+     * the prefix's trie node keeps, O(|prefix| logc + limit).
+     * Otherwise every user with the prefix has to be counted, keeping the top limit in a sorted array as we go, O(|prefix| + m(logf + limit)) for the m users
+     * with the prefix, but m shrinks quickly as more of the name is typed. The users are copied out first and counted without holding our lock,
+     * as the follower store may be waiting on it to tell us of a new follow.
+     * @param prefix - The start of the name typed so far, an empty prefix matches every user.
+     * @param limit - The most users to return.
+     * @param followerStore - The follower store to count each user's followers from.
+     * @return - An array of at most limit users whose names start with the prefix, the most followed first.
+     */
+    public User[] getUsersWithPrefix(String prefix, int limit, IFollowerStore followerStore) {
+        User[] matching;
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersWithPrefix(prefix, limit, followerStore);
+            }
+            if(limit <= 0) {
+                return new User[0];
+            }
+            if(followerStore == this.rankedBy && limit <= RANKED_PREFIX_LIMIT) {
+                return this.usersByName.topUsers(prefix, limit);
+            }
+            TimeTree<User> tree = prefix.isEmpty() ? this.userDateTree : this.usersByName.find(prefix);
+            if(tree == null) {
+                return new User[0];
+            }
+            matching = new User[tree.getTreeSize()];
+            TimeTree<User>.TreeIterator iterator = tree.iterator();
+            for(int i=0; iterator.hasNext(); i++) {
+                matching[i] = iterator.next().getValue();
             }
+        } finally {
+            this.lock.readLock().unlock();
         }
 
+        //The best limit users so far, most followed first.
+        User[] top = new User[Math.min(limit, matching.length)];
+        int[] topCounts = new int[top.length];
+        int size = 0;
+        for(int i=0; i<matching.length; i++) {
+            User usr = matching[i];
+            int count = followerStore.getNumFollowers(usr.getId());
+            if(size == top.length && !ranksAbove(count, usr, topCounts[size - 1], top[size - 1])) {
+                continue;
+            }
+            int slot = size < top.length ? size++ : size - 1;
+            while(slot > 0 && ranksAbove(count, usr, topCounts[slot - 1], top[slot - 1])) {
+                top[slot] = top[slot - 1];
+                topCounts[slot] = topCounts[slot - 1];
+                slot--;
+            }
+            top[slot] = usr;
+            topCounts[slot] = count;
+        }
+        return top;
+    }
 
-        //Internal storage for the nodes we have traversed in the tree, if this was to be improved I would abstract this outside of the tree so we can define
-        //search paramaters elsewhere in the program to stop the need for having to iterate across all the nodes again once traversed to see which ones match the condition.
-        private MyArrayList<Node<K, V>> nodes = new MyArrayList<>();
+    /**
+     * rankByFollowers() - O(n L) method making every node of the name trie keep its top RANKED_PREFIX_LIMIT users by follower count, so getUsersWithPrefix()
+     * with this follower store reads them straight off rather than counting the followers of every user with the prefix.
+     * The follower store tells us each user's new count as they gain a follower, moving them up the top users of each prefix of their name, O(L RANKED_PREFIX_LIMIT).
+     * A follow is never taken away so a user only ever moves up, and the top users stay exact. A compact store doesnt keep User objects to rank, so it always counts.
+     * @param followerStore - The follower store to rank by.
+     * @throws IllegalStateException - If the store is already ranked by a different follower store.
+     */
+    public void rankByFollowers(FollowerStore followerStore) {
+        this.lock.writeLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return;
+            }
+            if(this.followerCounts != null) {
+                if(this.rankedBy == followerStore) {
+                    return;
+                }
+                throw new IllegalStateException("The users are already ranked by another follower store");
+            }
+            this.followerCounts = new IntIntHashMap();
+            this.usersByName.rankUsers(this.followerCounts, this.userDateTree);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        //Not while holding our lock, the follower store holds its own while it tells us the counts.
+        followerStore.addFollowerCountListener((uid, followers) -> followerCountChanged(uid, followers));
+        this.lock.writeLock().lock();
+        try {
+            this.rankedBy = followerStore;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
 
-        //O(n) performance to get all the nodes in the list in ascending order by key.
-        public void inOrderTraversal(Node n) {
-            //The node doesnt exist, we cant traverse this.
-            if(n == null) {
+    //Called by the follower store we are ranked by each time a user's follower count goes up, moving them up the top users of each prefix of their name.
+    //The count is kept even if the user hasnt been added yet, so they are ranked as soon as they are.
+    private void followerCountChanged(int uid, int followers) {
+        this.lock.writeLock().lock();
+        try {
+            if(followers <= this.followerCounts.get(uid)) {
                 return;
             }
+            this.followerCounts.put(uid, followers);
+            User usr = this.usersById.get(uid);
+            if(usr != null) {
+                this.usersByName.offer(usr);
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    //True if a user with a follower count ranks above another in getUsersWithPrefix(), by followers, then the later join date, then the larger id.
+    private static boolean ranksAbove(int count, User usr, int otherCount, User other) {
+        return ranksAbove(count, usr.getDateJoined().getTime(), usr.getId(), otherCount, other.getDateJoined().getTime(), other.getId());
+    }
 
-            inOrderTraversal(n.left); //left
-            //We must use addToTail so the list is inserted in ascending order based on the AVLTree comparable.
-            this.nodes.add(n); //root
-            inOrderTraversal(n.right); //right
+    private static boolean ranksAbove(int count, long joined, int id, int otherCount, long otherJoined, int otherId) {
+        if(count != otherCount) {
+            return count > otherCount;
         }
+        if(joined != otherJoined) {
+            return joined > otherJoined;
+        }
+        return id > otherId;
+    }
 
-        //Method to clear the locally stored nodes linked list.
-        public void clearNodes() {
-            this.nodes.clear();
+    /**
+     * indexName() - O(L logn) method adding a user to the posting tree of every trigram in their name, and to the name trie, where L is the length of the name.
+     * A trigram appearing more than once in the name is only posted once.
+     * @param usr - The user being added to the store.
+     */
+    private void indexName(User usr) {
+        this.usersByName.add(usr);
+
+        String[] trigrams = Terms.distinctTrigrams(usr.getName());
+        for(int i=0; i<trigrams.length; i++) {
+            TimeTree<User> postings = this.usersByTrigram.get(trigrams[i]);
+            if(postings == null) {
+                postings = new TimeTree<>();
+                this.usersByTrigram.insertKeyValuePair(trigrams[i], postings);
+            }
+            postings.insertKeyValuePair(usr.getDateJoined().getTime(), usr);
         }
+    }
 
-        //Getter method for the array found above the preOrderTraversal() method because the data for this is stored there.
-        public MyArrayList<Node<K, V>> getNodesTraversed() {
-            return this.nodes;
+    //O(L logn) lookup of every trigram in the query, returning the smallest posting tree or null if any trigram isnt in any name.
+    private TimeTree<User> smallestTrigramPostings(String query) {
+        TimeTree<User> smallest = null;
+        for(int i=0; i+3<=query.length(); i++) {
+            TimeTree<User> postings = this.usersByTrigram.get(query.substring(i, i + 3));
+            if(postings == null) {
+                return null;
+            }
+            if(smallest == null || postings.getTreeSize() < smallest.getTreeSize()) {
+                smallest = postings;
+            }
         }
+        return smallest;
+    }
 
-    //End of the AVLTree class
+    /**
+     * getUsersJoinedBefore() - O(logn + k) method to get all the users which joined the system before a provided date, where k is the number of users found.
+     * @param dateBefore - The date we want to use to compare against user joined dates. If the user joined before this date we will return them.
+     * @return - A user array of all the users joining the system before the date provided.
+     */
+    public User[] getUsersJoinedBefore(Date dateBefore) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactUsers != null) {
+                return this.compactUsers.getUsersJoinedBefore(dateBefore);
+            }
+            //Walk just the users who joined strictly before the date, sorted by the date they joined.
+            TimeTree<User>.TreeIterator iterator = this.userDateTree.headIterator(dateBefore.getTime(), false);
+            MyArrayList<User> usersBefore = new MyArrayList<>();
+            while(iterator.hasNext()) {
+                usersBefore.add(iterator.next().getValue());
+            }
+
+        	//Create the storage array which we can return of type User.
+        	User[] toReturn = new User[usersBefore.size()];
+        	for(int k=0; k<usersBefore.size(); k++) {
+        		toReturn[k] = usersBefore.get(k);
+        	}
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
-    class Node<K, V> {
-        //The data associated with the Node, the key value pair with the key being the Weet id and the value being the Weet
-        //Slightly inefficient use for memory as I am storing the id twice but its a negligible amount for the scale of this project.
-        public K key;
-        public V value;
 
-        //The pointers to the nodes surrounding this node, the sibling nodes and the parent.
-        public Node left;
-        public Node right;
-        public Node parent;
+    /**
+     * NameTrie class, a trie of the lower case user names used for prefix (autocomplete) searches. Each node is one character further into a name and keeps
+     * the users whose names start with its prefix in a join date keyed tree, so the users with a prefix are found by walking |prefix| nodes down and then just
+     * taking as many as are wanted from the front of that node's tree.
+     * Costs O(L) posting entries per user where L is the length of their name, the same as the trigram index.
+     */
+    class NameTrie {
 
-        //A useful variable to store the height of the subtree with this node as its parent, not strictly needed but helpful
-        //The number of nodes at both the left of this node and the right of this node summed.
-        public int height;
+        //The node for the empty prefix, it holds no users as the date tree already holds every user, but does keep the top users of them all once ranked.
+        private TrieNode root;
+        //The follower count of each user, which every node ranks its top users by, null unless rankUsers() has been called.
+        private IntIntHashMap followerCounts;
 
-        //Constructor to instantiate a new node within the AVL Tree.
-        public Node(K key, V value) {
-            this.key = key;
-            this.value = value;
-            this.height = 1;
+        public NameTrie() {
+            this.root = new TrieNode();
+            this.followerCounts = null;
         }
 
-        //A method to perform a right rotation on the tree to aid in its balancing.
-        //Just follows the procedures defined in the ADT specification.
-        //Rotations are ran in O(logn) time.
-        public Node rotateRight() {
-            //Store the left node temporarily, we will overwrite it but also want it again in the future.
-            Node tempNode = this.left;
+        /**
+         * add() - O(L logn) method adding a user to the node of every prefix of their name.
+         * @param usr - The user to add.
+         */
+        public void add(User usr) {
+            String name = usr.getName().toLowerCase(Locale.ROOT);
+            TrieNode node = this.root;
+            for(int i=0; i<name.length(); i++) {
+                node = node.child(name.charAt(i), true);
+                if(node.users == null) {
+                    node.users = new TimeTree<>();
+                }
+                node.users.insertKeyValuePair(usr.getDateJoined().getTime(), usr);
+            }
+            offer(usr);
+        }
 
-            //Update the current left node to the be the current right node.
-            this.left = tempNode.right;
-            this.calculateNodeHeight();
+        /**
+         * addRow() - O(L logk) method adding a compact store's row to the node of every prefix of the name, in place of a user.
+         * @param name - The user's name.
+         * @param row - The user's row.
+         * @param dates - The join dates of every row, in milliseconds.
+         */
+        public void addRow(String name, int row, long[] dates) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            TrieNode node = this.root;
+            for(int i=0; i<lower.length(); i++) {
+                node = node.child(lower.charAt(i), true);
+                if(node.rows == null) {
+                    node.rows = new RowList();
+                }
+                node.rows.insert(row, dates);
+            }
+        }
 
-            //Set the current right node to this node, (the parent of the current right node)
-            tempNode.right = this;
-            tempNode.calculateNodeHeight();
+        /**
+         * addSorted() - O(total L) bulk add of users into an empty trie, given in the date tree's order. Every node collects its users in that order,
+         * and its tree is then built bottom up from them rather than through rebalancing inserts.
+         * @param byDate - Nodes holding the users, sorted the same as the date tree.
+         * @param count - The number of nodes to use.
+         */
+        public void addSorted(TimeNode<User>[] byDate, int count) {
+            MyArrayList<TrieNode> touched = new MyArrayList<>();
+            for(int i=0; i<count; i++) {
+                User usr = byDate[i].value;
+                String name = usr.getName().toLowerCase(Locale.ROOT);
+                TrieNode node = this.root;
+                for(int j=0; j<name.length(); j++) {
+                    node = node.child(name.charAt(j), true);
+                    if(node.pending == null) {
+                        node.pending = new MyArrayList<>();
+                        touched.add(node);
+                    }
+                    node.pending.add(usr);
+                }
+            }
 
-            //Upward shift of the nodes.
-            tempNode.parent = this.parent;
+            for(int i=0; i<touched.size(); i++) {
+                TrieNode node = touched.get(i);
+                TimeNode<User>[] postings = TimeNode.newArray(node.pending.size());
+                for(int j=0; j<postings.length; j++) {
+                    User usr = node.pending.get(j);
+                    postings[j] = new TimeNode<User>(usr.getDateJoined().getTime(), usr);
+                }
+                node.users = new TimeTree<>();
+                node.users.buildFromSorted(postings, postings.length);
+                node.pending = null;
+            }
+            for(int i=0; i<count; i++) {
+                offer(byDate[i].value);
+            }
+        }
 
-            //Return an updated version of this node after having been rotated.
-            return tempNode;
+        /**
+         * rankUsers() - O(n L RANKED_PREFIX_LIMIT) method making every node keep its top users by follower count from now on, offering it every user already in the trie.
+         * @param followerCounts - The follower count of each user, kept up to date by the caller, who must offer() a user again whenever their count goes up.
+         * @param users - Every user in the trie.
+         */
+        public void rankUsers(IntIntHashMap followerCounts, TimeTree<User> users) {
+            this.followerCounts = followerCounts;
+            TimeTree<User>.TreeIterator iterator = users.iterator();
+            while(iterator.hasNext()) {
+                offer(iterator.next().getValue());
+            }
         }
 
-        //A left rotation on this node, aiding in the self balance of the tree to ensure O(logn) search times.
-        //Just follows the principles defined in the ADT definition.
-        //Rotations are ran in O(logn) time.
-        public Node rotateLeft() {
-            Node tempNode = this.right;
+        /**
+         * offer() - O(L RANKED_PREFIX_LIMIT) method moving a user up the top users of the node of every prefix of their name, or into them if they now rank above
+         * the last, after they have been added or their follower count has gone up. Nothing is kept until rankUsers() has been called.
+         * @param usr - The user, who must already be in the trie.
+         */
+        public void offer(User usr) {
+            if(this.followerCounts == null) {
+                return;
+            }
+            String name = usr.getName().toLowerCase(Locale.ROOT);
+            TrieNode node = this.root;
+            offerAt(node, usr);
+            for(int i=0; i<name.length(); i++) {
+                node = node.child(name.charAt(i), false);
+                offerAt(node, usr);
+            }
+        }
 
-            //Perform the leftward balance, making the current right node to be the current left node.
-            this.right = tempNode.left;
-            this.calculateNodeHeight();
+        //O(RANKED_PREFIX_LIMIT) insertion sort of a user into one node's top users, finding them first in case they are already there.
+        private void offerAt(TrieNode node, User usr) {
+            if(node.topUsers == null) {
+                node.topUsers = new User[RANKED_PREFIX_LIMIT];
+            }
+            User[] top = node.topUsers;
+            int count = followersOf(usr);
+            int slot = 0;
+            while(slot < node.topCount && top[slot].getId() != usr.getId()) {
+                slot++;
+            }
+            if(slot == node.topCount) {
+                if(node.topCount < top.length) {
+                    node.topCount++;
+                } else if(ranksAbove(count, usr, followersOf(top[slot - 1]), top[slot - 1])) {
+                    //The last user drops out to make room.
+                    slot--;
+                } else {
+                    return;
+                }
+            }
+            while(slot > 0 && ranksAbove(count, usr, followersOf(top[slot - 1]), top[slot - 1])) {
+                top[slot] = top[slot - 1];
+                slot--;
+            }
+            top[slot] = usr;
+        }
 
-            //second step in this balancing maneoveur, changing the left node of this tree to be itself.
-            tempNode.left = this;
-            tempNode.calculateNodeHeight();
+        private int followersOf(User usr) {
+            int count = this.followerCounts.get(usr.getId());
+            return count < 0 ? 0 : count;
+        }
 
-            //We now return the node again but the balanced version of it.
-            return tempNode;
+        //O(|prefix| logc + limit) copy of the first limit top users of a prefix's node, limit no more than RANKED_PREFIX_LIMIT.
+        public User[] topUsers(String prefix, int limit) {
+            TrieNode node = findNode(prefix);
+            if(node == null || node.topUsers == null) {
+                return new User[0];
+            }
+            User[] toReturn = new User[Math.min(limit, node.topCount)];
+            System.arraycopy(node.topUsers, 0, toReturn, 0, toReturn.length);
+            return toReturn;
         }
 
-        //Recalculates this nodes height from the top down in both the left and right subtrees.
-        public void calculateNodeHeight() {
-            int subTreeHeight = 1;
+        /**
+         * find() - O(|prefix| logc) lookup of the node for a prefix, where c is the most children a node has.
+         * @param prefix - The prefix to look for, any case.
+         * @return - The date keyed tree of the users whose names start with the prefix, null if there arent any.
+         */
+        public TimeTree<User> find(String prefix) {
+            TrieNode node = findNode(prefix);
+            return node == null ? null : node.users;
+        }
 
-            if (left != null)
-                subTreeHeight += left.height;
+        //The same as find() for a trie of rows, returning the rows whose names start with the prefix, null if there arent any.
+        public RowList findRows(String prefix) {
+            TrieNode node = findNode(prefix);
+            return node == null ? null : node.rows;
+        }
 
-            if (right != null)
-                subTreeHeight += right.height;
+        private TrieNode findNode(String prefix) {
+            String lower = prefix.toLowerCase(Locale.ROOT);
+            TrieNode node = this.root;
+            for(int i=0; i<lower.length() && node != null; i++) {
+                node = node.child(lower.charAt(i), false);
+            }
+            return node;
+        }
+    //End of the name trie class.
+    }
 
-            //Overwrite the current class height variable to be the newly computed height of this node.
-            this.height = subTreeHeight;
+    /**
+     * TrieNode class, one node of the NameTrie. The children are kept in a small array sorted by their character and binary searched, rather than an array
+     * with a slot for every possible character, as most nodes only have one or two children.
+     */
+    class TrieNode {
+
+        //The character leading to each child, sorted, and the children in the same order. Both are null until the first child is added.
+        private char[] labels;
+        private TrieNode[] children;
+        private int childCount;
+
+        //The users whose names start with this node's prefix, keyed by join date. In a compact store the node holds their rows instead and users is null.
+        private TimeTree<User> users;
+        private RowList rows;
+        //The users collected for this node by NameTrie.addSorted() before its tree is built, null otherwise.
+        private MyArrayList<User> pending;
+        //The top users of the node by follower count, best first, once the trie is ranked (NameTrie.rankUsers()). Null until then.
+        private User[] topUsers;
+        private int topCount;
+
+        public TrieNode() {
+            this.labels = null;
+            this.children = null;
+            this.childCount = 0;
+            this.users = null;
+            this.rows = null;
+            this.pending = null;
+            this.topUsers = null;
+            this.topCount = 0;
         }
 
-        //Returns the balance between this nodes left subtree and right subtree (the difference in heights between them)
-        private int calculateBalance() {
-            //Calculate the left height of this node.
-            int leftHeight = 0;
-            if (left != null)
-                leftHeight += left.height;
+        /**
+         * child() - O(logc) lookup of the child for a character, where c is the number of children, adding it in O(c) if it isnt there and create is true.
+         * @param label - The next character of the name.
+         * @param create - Whether to add the child if it isnt there.
+         * @return - The child, or null if it isnt there and create is false.
+         */
+        public TrieNode child(char label, boolean create) {
+            int low = 0;
+            int high = this.childCount - 1;
+            while(low <= high) {
+                int middle = (low + high) >>> 1;
+                if(this.labels[middle] < label) {
+                    low = middle + 1;
+                } else if(this.labels[middle] > label) {
+                    high = middle - 1;
+                } else {
+                    return this.children[middle];
+                }
+            }
+            if(!create) {
+                return null;
+            }
 
-            //Calculate the right height of this node
-            int rightHeight = 0;
-            if (right != null)
-                rightHeight += right.height;
+            //Not there, make room at low, where the binary search ended up, and put the new child in.
+            if(this.labels == null) {
+                this.labels = new char[1];
+                this.children = new TrieNode[1];
+            } else if(this.childCount == this.labels.length) {
+                char[] newLabels = new char[this.childCount * 2];
+                TrieNode[] newChildren = new TrieNode[this.childCount * 2];
+                System.arraycopy(this.labels, 0, newLabels, 0, this.childCount);
+                System.arraycopy(this.children, 0, newChildren, 0, this.childCount);
+                this.labels = newLabels;
+                this.children = newChildren;
+            }
+            System.arraycopy(this.labels, low, this.labels, low + 1, this.childCount - low);
+            System.arraycopy(this.children, low, this.children, low + 1, this.childCount - low);
+            TrieNode child = new TrieNode();
+            this.labels[low] = label;
+            this.children[low] = child;
+            this.childCount++;
+            return child;
+        }
+    //End of the trie node class.
+    }
 
-            //Returns the difference between the two heights, producing our "balance"
-            return leftHeight - rightHeight;
+    /**
+     * CompactUsers class, the storage used in place of the trees when the store is created in compact mode. Each user is a row of primitive parallel arrays,
+     * their id, join date in milliseconds and where their name starts in one shared UTF-8 byte arena, and every index holds row numbers in sorted int arrays
+     * (RowLists) rather than AVL nodes, Dates and boxed keys. User objects are only made when a query returns them.
+     * The price is paid when adding. A row has to go in date order, so a user who joined before the newest in a list shifts the newer rows up, O(k) rather than O(logk),
+     * but users join in date order so nearly every add is an append.
+     */
+    class CompactUsers {
+
+        //The number of rows in use.
+        private int count;
+        private int[] ids;
+        private long[] dates;
+        //nameStarts[row] is where the row's name starts in the arena and nameStarts[row + 1] is where it ends.
+        private int[] nameStarts;
+        private byte[] arena;
+
+        //The row of each user id, and the same indexes as the trees but holding rows.
+        private IntIntHashMap rowsById;
+        private RowList byDate;
+        private AVLTree<String, RowList> byTrigram;
+        private NameTrie byName;
+
+        public CompactUsers() {
+            this.count = 0;
+            this.ids = new int[16];
+            this.dates = new long[16];
+            this.nameStarts = new int[17];
+            this.arena = new byte[256];
+
+            this.rowsById = new IntIntHashMap();
+            this.byDate = new RowList();
+            this.byTrigram = new AVLTree<>();
+            this.byName = new NameTrie();
         }
 
+        public int size() {
+            return this.count;
+        }
 
-        //Balance the tree so that at most the tree is of O(logn) height. The tree can baalnce itself in O(logn) time as defined in the ADT specification.
-        public Node balanceNode() {
-            //Update the current node height, good practice so we can accuratley perform the following operations.
-            this.calculateNodeHeight();
+        //The number of arena bytes the names already take up.
+        public int nameBytes() {
+            return this.nameStarts[this.count];
+        }
 
-            int currentNodeBalance = this.calculateBalance();
+        public boolean contains(int id) {
+            return this.rowsById.get(id) >= 0;
+        }
 
-            //Check for a right skew on this nodes data, if so we should balance towards the left.
-            if (currentNodeBalance > 1) {
-                if (this.left.calculateBalance() < 0) {
-                    this.left = this.left.rotateLeft();
+        /**
+         * add() - O(L logn) method storing a user as a new row and adding the row to every index, where L is the length of their name.
+         * The user object isnt kept, only their fields are copied into the row.
+         * @param usr - The user to add, who must not already be stored.
+         */
+        public void add(User usr) {
+            byte[] name = usr.getName().getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(this.count + 1, this.nameStarts[this.count] + name.length);
+
+            int row = this.count++;
+            this.ids[row] = usr.getId();
+            this.dates[row] = usr.getDateJoined().getTime();
+            System.arraycopy(name, 0, this.arena, this.nameStarts[row], name.length);
+            this.nameStarts[row + 1] = this.nameStarts[row] + name.length;
+
+            this.rowsById.put(usr.getId(), row);
+            this.byDate.insert(row, this.dates);
+            this.byName.addRow(usr.getName(), row, this.dates);
+
+            String[] trigrams = Terms.distinctTrigrams(usr.getName());
+            for(int i=0; i<trigrams.length; i++) {
+                RowList rows = this.byTrigram.get(trigrams[i]);
+                if(rows == null) {
+                    rows = new RowList();
+                    this.byTrigram.insertKeyValuePair(trigrams[i], rows);
                 }
-                return rotateRight();
+                rows.insert(row, this.dates);
+            }
+        }
 
-            //Check for a left skew, if so balance towards the right.
-            } else if (currentNodeBalance < -1) {
-                if (this.right.calculateBalance() > 0) {
-                    this.right = this.right.rotateRight();
-                }
-                return rotateLeft();
+        /**
+         * ensureCapacity() - Grows the row arrays and the arena to hold at least the given number of rows and name bytes, so a bulk load can size them once.
+         * @param rows - The number of rows needed.
+         * @param nameBytes - The number of arena bytes needed.
+         */
+        public void ensureCapacity(int rows, int nameBytes) {
+            if(rows > this.ids.length) {
+                int capacity = Math.max(rows, this.ids.length * 2);
+                int[] newIds = new int[capacity];
+                long[] newDates = new long[capacity];
+                int[] newNameStarts = new int[capacity + 1];
+                System.arraycopy(this.ids, 0, newIds, 0, this.count);
+                System.arraycopy(this.dates, 0, newDates, 0, this.count);
+                System.arraycopy(this.nameStarts, 0, newNameStarts, 0, this.count + 1);
+                this.ids = newIds;
+                this.dates = newDates;
+                this.nameStarts = newNameStarts;
+            }
+            if(nameBytes > this.arena.length) {
+                byte[] newArena = new byte[Math.max(nameBytes, this.arena.length * 2)];
+                System.arraycopy(this.arena, 0, newArena, 0, this.nameStarts[this.count]);
+                this.arena = newArena;
             }
+        }
 
-            //Return this node again in its balanced form.
-            //This could also be potentially called if the node had no skew, and is therefore just returning itself
-            return this;
+        //Makes the User object for a row.
+        private User userAt(int row) {
+            String name = new String(this.arena, this.nameStarts[row], this.nameStarts[row + 1] - this.nameStarts[row], StandardCharsets.UTF_8);
+            return new User(name, this.ids[row], new Date(this.dates[row]));
         }
 
-        //Getters for the generic values found within the node. Used often when a traversal has occured and we want to get the data out from the tree.
-        public V getValue() {
-            return this.value;
+        public User get(int id) {
+            int row = this.rowsById.get(id);
+            return row < 0 ? null : userAt(row);
         }
 
-        public K getKey() {
-            return this.key;
+        //O(k) copy of the users at the first end positions of a list, newest first.
+        private User[] newestFirst(RowList rows, int end) {
+            User[] toReturn = new User[end];
+            for(int i=0; i<end; i++) {
+                toReturn[i] = userAt(rows.get(end - 1 - i));
+            }
+            return toReturn;
         }
 
-        //End of the Node class.
-    }
+        public User[] getUsers() {
+            return newestFirst(this.byDate, this.byDate.size());
+        }
 
+        public User[] getUsersJoinedBefore(Date dateBefore) {
+            return newestFirst(this.byDate, this.byDate.lowerBound(this.dates, dateBefore.getTime()));
+        }
 
-    class MyArrayList<E> {
+        public User[] getUsersWithPrefix(String prefix, int limit) {
+            RowList rows = prefix.isEmpty() ? this.byDate : this.byName.findRows(prefix);
+            if(rows == null) {
+                return new User[0];
+            }
+            User[] toReturn = new User[Math.max(0, Math.min(limit, rows.size()))];
+            for(int i=0; i<toReturn.length; i++) {
+                toReturn[i] = userAt(rows.get(rows.size() - 1 - i));
+            }
+            return toReturn;
+        }
 
-        //the internal object array which holds all of our elements.
-        private Object[] array;
-        //the number of elements currently being held by the arraylist.
-        private int size;
-        //the maximum amount of elements we can currently hold without resizing the internal array.
-        private int capacity;
+        //The compact form of the follower ranked getUsersWithPrefix(), only the users returned are made into objects.
+        public User[] getUsersWithPrefix(String prefix, int limit, IFollowerStore followerStore) {
+            RowList rows = prefix.isEmpty() ? this.byDate : this.byName.findRows(prefix);
+            if(rows == null || limit <= 0) {
+                return new User[0];
+            }
 
-        public MyArrayList() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
-        }
+            int[] top = new int[Math.min(limit, rows.size())];
+            int[] topCounts = new int[top.length];
+            int size = 0;
+            for(int i=rows.size() - 1; i>=0; i--) {
+                int row = rows.get(i);
+                int count = followerStore.getNumFollowers(this.ids[row]);
+                if(size == top.length && !ranksAbove(count, row, topCounts[size - 1], top[size - 1])) {
+                    continue;
+                }
+                int slot = size < top.length ? size++ : size - 1;
+                while(slot > 0 && ranksAbove(count, row, topCounts[slot - 1], top[slot - 1])) {
+                    top[slot] = top[slot - 1];
+                    topCounts[slot] = topCounts[slot - 1];
+                    slot--;
+                }
+                top[slot] = row;
+                topCounts[slot] = count;
+            }
 
-        /**
-         * add() - O(1) method to add a new element to the arraylist at the next available position, in the case where the internal array is full a full copy of the arraylist is performed to double its capacity.
-         * In the situation where this occurs the add method runs in O(n) time.
-         * @param element - The element we are trying to add to the arraylist
-         * @return true when the element is added, false otherwise (should never actually be false).
-         */
-        public boolean add(E element) {
-            if (this.size == this.capacity) {
-                //The size is the same as the capacity we will have to resize the array, copy all elements over to the new array and then overwrite the old array and redefine the new capacity.
-                Object[] newArray = new Object[this.capacity * 2];
-                for (int i = 0; i < size; i++) {
-                    newArray[i] = this.array[i];
-                }
-                this.array = newArray;
-                this.capacity = this.capacity * 2;
-                this.array[size] = element;
-                this.size++;
-            } else {
-                this.array[size] = element;
-                this.size++;
+            User[] toReturn = new User[size];
+            for(int i=0; i<size; i++) {
+                toReturn[i] = userAt(top[i]);
             }
-            return true;
+            return toReturn;
+        }
+
+        //The order of the ranked getUsersWithPrefix() for two rows.
+        private boolean ranksAbove(int count, int row, int otherCount, int otherRow) {
+            return UserStore.ranksAbove(count, this.dates[row], this.ids[row], otherCount, this.dates[otherRow], this.ids[otherRow]);
         }
 
+        public User[] getUsersPage(int afterUid, int limit) {
+            return page(this.byDate, afterUid, limit, null);
+        }
 
         /**
-         * contains() - O(n) method that checks if the provided element is contained within the arraylist.
-         * @param element - The element to check for in the arraylist.
-         * @return - true if the element being checked exists, false otherwise.
+         * getUsersContaining() - The compact form of getUsersContaining() and getUsersContainingPage(), checking the rows of the smallest trigram list of the query
+         * (or every row for a query shorter than a trigram) from the cursor, newest first, until limit of them contain the query.
+         * The check is done on the UTF-8 bytes in the arena, so a name is only turned into a String when it matches.
+         * @param query - The word/phrase to look for.
+         * @param afterUid - The id of the last user on the previous page, or FIRST_PAGE.
+         * @param limit - The most users to return.
+         * @return - The matching users, sorted by join date.
          */
-        public boolean contains(E element) {
-            for (int i=0; i<size; i++) {
-                //Must use a .equals rather than == because it may not be off a primitve type due to the generic nature of the arraylist.
-                if(this.array[i].equals(element)) {
-                    return true;
+        public User[] getUsersContaining(String query, int afterUid, int limit) {
+            RowList candidates = query.length() < 3 ? this.byDate : smallestTrigramRows(query);
+            return page(candidates, afterUid, limit, query.getBytes(StandardCharsets.UTF_8));
+        }
+
+        //Walks a list newest first from just after the cursor, collecting up to limit rows whose name contains the query (every row if the query is null).
+        private User[] page(RowList rows, int afterUid, int limit, byte[] query) {
+            int position = rows == null ? -1 : positionAfter(rows, afterUid);
+            MyArrayList<User> page = new MyArrayList<>();
+            for(int i=position - 1; i>=0 && page.size() < limit; i--) {
+                int row = rows.get(i);
+                if(query == null || nameContains(row, query)) {
+                    page.add(userAt(row));
                 }
             }
-            return false;
-        }
 
-        /**
-         * clear() - O(1) method that resets the arraylist back to its post instantiated state, not used too often.
-         */
-        public void clear() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
+            User[] toReturn = new User[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
+            }
+            return toReturn;
         }
 
-        /**
-         * isEmpty() - O(1) method to check if the arraylist actually contains some elements.
-         */
-        public boolean isEmpty() {
-            return this.size() == 0;
+        //O(logk) method to find where a page carries on from in a list, the page then starts at the position below the one returned. Returns -1 if the cursor isnt a user.
+        //As with the trees, the rows sharing the cursor's join date are skipped up to and including the cursor, or all of them if the cursor isnt in this list.
+        private int positionAfter(RowList rows, int afterUid) {
+            if(afterUid == FIRST_PAGE) {
+                return rows.size();
+            }
+            int cursor = this.rowsById.get(afterUid);
+            if(cursor < 0) {
+                return -1;
+            }
+            int low = rows.lowerBound(this.dates, this.dates[cursor]);
+            for(int i=rows.upperBound(this.dates, this.dates[cursor]) - 1; i>=low; i--) {
+                if(rows.get(i) == cursor) {
+                    return i;
+                }
+            }
+            return low;
         }
 
-        /**
-         * size() - Essentially just a getter for the private size variable and is therefore O(1).
-         */
-        public int size() {
-            return size;
+        //O(L logn) lookup of every trigram in the query, returning the shortest list or null if any trigram isnt in any name.
+        private RowList smallestTrigramRows(String query) {
+            RowList smallest = null;
+            for(int i=0; i+3<=query.length(); i++) {
+                RowList rows = this.byTrigram.get(query.substring(i, i + 3));
+                if(rows == null) {
+                    return null;
+                }
+                if(smallest == null || rows.size() < smallest.size()) {
+                    smallest = rows;
+                }
+            }
+            return smallest;
         }
 
-        /**
-         * get() - O(1) method that returns the element contained at the index provieed.
-         * @param index - The position in the arraylist we want to get the data for.
-         * @return the element we have found in the arraylist at the provided index, the type of this element is E.
-         */
-        // This line allows us to cast our object to type (E) without any warnings.
-        // For further detais, please see: http://docs.oracle.com/javase/1.5.0/docs/api/java/lang/SuppressWarnings.html
-        @SuppressWarnings("unchecked")
-        public E get(int index) {
-            return (E) this.array[index];
+        //O(Lq) check of whether a row's name contains the query, on their UTF-8 bytes. A UTF-8 character never starts part way through another's bytes,
+        //so the bytes match exactly where the characters would.
+        private boolean nameContains(int row, byte[] query) {
+            int last = this.nameStarts[row + 1] - query.length;
+            for(int start=this.nameStarts[row]; start<=last; start++) {
+                int i = 0;
+                while(i < query.length && this.arena[start + i] == query[i]) {
+                    i++;
+                }
+                if(i == query.length) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         /**
-         * indexOf() - O(n) method that finds the index of an element in the arraylist when provided with the element itself.
-         * @param element - The element we want to find the index for.
-         * @return - The integer value of the index where this element exists in the arraylist.
+         * write() - Writes the users and the trigram index in the format saveSnapshot() uses for the trees, so either mode can load a snapshot saved by the other.
+         * @param out - The snapshot being written.
+         * @throws IOException - If it cant be written.
          */
-        public int indexOf(E element) {
-            for (int i=0;i<this.size();i++) {
-                if (element.equals(this.get(i))) {
-                    return i;
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.count);
+            for(int i=0; i<this.byDate.size(); i++) {
+                int row = this.byDate.get(i);
+                out.writeInt(this.ids[row]);
+                out.writeLong(this.dates[row]);
+                out.writeInt(this.nameStarts[row + 1] - this.nameStarts[row]);
+                out.write(this.arena, this.nameStarts[row], this.nameStarts[row + 1] - this.nameStarts[row]);
+            }
+
+            //The ids in each list are written newest first to match the trees.
+            out.writeInt(this.byTrigram.getTreeSize());
+            AVLTree<String, RowList>.TreeIterator trigrams = this.byTrigram.iterator();
+            while(trigrams.hasNext()) {
+                Node<String, RowList> trigram = trigrams.next();
+                SnapshotFile.writeString(out, trigram.getKey());
+                RowList rows = trigram.getValue();
+                out.writeInt(rows.size());
+                for(int i=rows.size() - 1; i>=0; i--) {
+                    out.writeInt(this.ids[rows.get(i)]);
                 }
             }
-            return -1;
         }
-    //End of the arraylist class.
+    //End of the compact users class.
     }
 
 }
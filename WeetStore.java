@@ -37,8 +37,20 @@ package uk.ac.warwick.java.cs126.services;
 import uk.ac.warwick.java.cs126.models.User;
 import uk.ac.warwick.java.cs126.models.Weet;
 
+import uk.ac.warwick.java.cs126.services.collections.*;
+import uk.ac.warwick.java.cs126.services.persistence.CsvFile;
+import uk.ac.warwick.java.cs126.services.persistence.SnapshotFile;
+import uk.ac.warwick.java.cs126.services.persistence.WriteAheadLog;
+
+import java.io.DataOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.io.BufferedReader;
 import java.util.Date;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.io.UncheckedIOException;
+import java.util.TimeZone;
 import java.io.FileReader;
 import java.text.ParseException;
 import java.io.IOException;
@@ -50,239 +62,1305 @@ import java.text.SimpleDateFormat;
 
 public class WeetStore implements IWeetStore {
 
-    //An AVLTree storing the weets indexed as integer keys which are the weet ids.
+    //A hash map storing the weets indexed by their weet ids.
     //This is used because sometimes you need to get certain weetss given a property about them, this wont work for dates because they could theoretically be non-unique.
+    //getWeet() runs for every weet rendered, so the ids are hashed straight to a slot without boxing rather than searched for in a tree.
     //O(n) storage space based on the number of weets.
-    private AVLTree<Integer, Weet> weetStore;
+    private IntHashMap<Weet> weetsById;
 
-    //An AVLTree storing all the weets indexed by date key, this aids in situations where we need to sort results because an inorder traversal of this tree produces all the weets
+    //A TimeTree storing all the weets indexed by the time they were weeted, this aids in situations where we need to sort results because an inorder traversal of this tree produces all the weets
     //sorted by the date they occured.
     //O(n) storage space based on the number of weets.
-    private AVLTree<Date, Weet> weetByDate;
+    private TimeTree<Weet> weetByDate;
 
-    //An ArrayList storing the list of trends contained within the weets, making use of the trend object defined below.
-    private MyArrayList<Trend> trends;
+    //An AVLTree of AVLTrees, the outer tree is keyed by user id and each inner tree holds only that user's weets keyed by date.
+    //This means a profile page only has to find the user (O(logn)) and then traverse their own weets rather than every weet in the system.
+    //O(n) storage space based on the number of weets, each weet is just referenced once more.
+    private AVLTree<Integer, TimeTree<Weet>> weetsByUser;
+
+    //An inverted index of every whole word (split on spaces) to a date keyed tree of the weets using that word, so hashtag/word pages dont scan every weet.
+    private AVLTree<String, TimeTree<Weet>> weetsByWord;
+
+    //An inverted index of every 3 character sequence (trigram) found in a weet message to the weets containing it, again keyed by date.
+    //Any substring query of 3 or more characters must contain all of its own trigrams, so the smallest of those posting trees is a superset of the answer
+    //and is all we have to check, rather than every weet. Costs O(L) extra entries per weet where L is the message length.
+    private AVLTree<String, TimeTree<Weet>> weetsByTrigram;
+
+    //The weets bucketed by the calendar day they were weeted on (the number of days since the epoch, in the local timezone), each bucket keyed by date.
+    //The "weets on this day" lookup is then a single bucket rather than a check of every weet.
+    private AVLTree<Long, TimeTree<Weet>> weetsByDay;
+
+    //The cursor to pass to the paged methods to get the first page, there is no weet before the first one.
+    public static final int FIRST_PAGE = -1;
+
+    //The first 4 bytes of every snapshot file of this store ("WWET" in ASCII), and the version of the snapshot format saveSnapshot() writes.
+    //Change the version whenever the format changes, loadSnapshot() wont read a version it doesnt know.
+    private static final int SNAPSHOT_MAGIC = 0x57574554;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    //The number of milliseconds in a day, used to turn a date into its day bucket.
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    //An AVLTree of every trend contained within the weets keyed by the hashtag, making use of the trend object defined below.
+    //Finding the trend for a hashtag is then O(logt) rather than a scan of every trend.
+    private AVLTree<String, Trend> trendsByTag;
+
+    //The current 10 most popular trends, most popular first, kept up to date on every hashtag occurence so getTrending() never has to sort.
+    //A trend only ever gains occurences and newer dates, so it can only move up the ranking, meaning the 10 slots are all we need to track.
+    private Trend[] topTrends;
+    //The number of the topTrends slots in use, less than 10 only while there are fewer than 10 trends in the system.
+    private int topTrendsSize;
+
+    //The sliding window trends used by getTrending() when a trending window has been set, null when we are counting every hashtag forever.
+    private TrendWindow trendWindow;
+
+    //The date of the most recent weet in the system, used as "now" by the trending window because the weets can be loaded in any order.
+    private Date latestWeetDate;
+
+    //Every weet in the order getWeets() returns them, copied for each caller until a weet is added, which sets it back to null so the next call rebuilds it.
+    //Volatile because it is filled in by readers holding only the read lock, two readers racing to rebuild it just build the same array.
+    private volatile Weet[] weetsSnapshot;
+
+    //The write ahead log every weet is appended to before addWeet() stores it, null unless openLog() has been called.
+    private WriteAheadLog<Weet> log;
+
+    //The rows holding every weet when the store is in compact mode, in which case the trees above are left empty. Null when the store uses the trees.
+    private CompactWeets compactWeets;
+
+    //Guards all of the structures above so the store can be shared by the web server's request threads. Any number of threads can hold the read lock
+    //and query at once, while adding a weet takes the write lock so no query can see a tree half way through an insert or rotation.
+    private ReentrantReadWriteLock lock;
 
     public WeetStore() {
-        //Instantiate all of the daat structures to be used when the weetstore class is instantiated.
-        this.weetStore = new AVLTree<>();
-        this.weetByDate = new AVLTree<>();
+        this(false);
+    }
 
-        this.trends = new MyArrayList<>();
+    /**
+     * WeetStore() - Creates an empty store, in compact mode if asked. A compact store keeps every weet as a row of primitive arrays with its message in a shared
+     * byte arena, and its indexes as sorted arrays of rows, using a fraction of the memory of the trees. Weet objects are only made as queries return them,
+     * so every query makes new ones, and getWeets() copies every weet out on each call rather than keeping the array.
+     * Adding a weet older than the newest ones already stored is slower than with the trees, see CompactWeets.
+     * @param compact - True to keep the weets in the compact form, false for the trees.
+     */
+    public WeetStore(boolean compact) {
+        //Instantiate all of the daat structures to be used when the weetstore class is instantiated.
+        this.weetsById = new IntHashMap<>();
+        this.weetByDate = new TimeTree<>();
+        this.weetsByUser = new AVLTree<>();
+        this.weetsByWord = new AVLTree<>();
+        this.weetsByTrigram = new AVLTree<>();
+        this.weetsByDay = new AVLTree<>();
+
+        this.trendsByTag = new AVLTree<>();
+        this.topTrends = new Trend[10];
+        this.topTrendsSize = 0;
+        this.trendWindow = null;
+        this.latestWeetDate = null;
+        this.weetsSnapshot = null;
+        this.log = null;
+        this.compactWeets = compact ? new CompactWeets() : null;
+
+        this.lock = new ReentrantReadWriteLock();
     }
 
     /**
      * addWeet() - Inserts a new weet object into the witter system, using my data structures.
-     * The insertion of the weets is performed in O(logn) time and the weet traversal to store trend data is performed in O(n^2) time depending on the number of trends in the system.
-     * This is justified because the quick operations are performed first, and the slow trend updating is performed last, this is a non-blocking operation.
-     * In a real world scenario the slow part of this would be added to a queue of tasks and performed on another machine because trends to weet existence does not need to be 100%
-     * exact as soon as the weets occur, it can be somewhat delayed in updating because trends dont update very often in a real system.
+     * The insertion of the weets is performed in O(logn) time and each hashtag in the weet updates its trend in O(logt) time, where t is the number of trends in the system.
+     * Updating the top 10 trends is then only a few comparisons against the 10 slots.
+     * 
+     * When a write ahead log is open the weet is appended to it first, and addWeet() waits for it to reach the disk as openLog()'s durability level says.
      * 
      * @param weet - A Weet object which we want to store in the data structures we have created.
      * @return true in the case where the weet is stored, false in the case where the weet isnt stored as one already exists with this exact object equality.
+     * @throws UncheckedIOException - If the weet couldnt be written to the log, in which case it isnt stored, or couldnt be forced to the disk after storing it.
      */
     public boolean addWeet(Weet weet) {
-        if(this.weetStore.get(weet.getId()) != null) {
-            return false;
+        WriteAheadLog<Weet> weetLog;
+        long record;
+        this.lock.writeLock().lock();
+        try {
+            if(containsWeet(weet.getId())) {
+                return false;
+            }
+            //Log the weet before storing it, if it cant be logged it isnt added.
+            weetLog = this.log;
+            record = WriteAheadLog.appendIfOpen(this.log, weet);
+            storeWeet(weet);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        //Wait for the weet to reach the disk outside of the lock, so the writers behind us can log theirs and share the same force.
+        WriteAheadLog.awaitIfOpen(weetLog, record);
+        return true;
+    }
+
+    //O(1) expected, true if a weet with the id is already stored. The caller must hold the lock.
+    private boolean containsWeet(int id) {
+        return this.compactWeets != null ? this.compactWeets.contains(id) : this.weetsById.get(id) != null;
+    }
+
+    //Stores a weet which isnt already in the store and counts its hashtags, without logging it. The caller must hold the write lock.
+    private void storeWeet(Weet weet) {
+        if(this.compactWeets != null) {
+            //Compact mode copies the weet into its rows instead of the trees.
+            this.compactWeets.add(weet);
+            this.weetsSnapshot = null;
         } else {
-            //The weet doesnt exist in the system, store it in both of the AVLTree's.
-            this.weetStore.insertKeyValuePair(weet.getId(), weet);
-            this.weetByDate.insertKeyValuePair(weet.getDateWeeted(), weet);
-
-            //We also now want to scan the weet for all the trend's inserted into them.
-            //This is done now, based on the justification above, rather than at the time when trends need to be found in the system.
-
-            //Split the weet down into its component words so we can find all trending words.
-            String[] weetWords = weet.getMessage().split(" ");
-
-            wordsLoop:
-            for(int i=0; i<weetWords.length; i++) {
-                if(weetWords[i].substring(0, 1).equals("#")) {
-                    //This is a trend, find the trend in the trend arraylist.
-                    for(int j=0; j<this.trends.size(); j++) {
-                        Trend trend = this.trends.get(j);
-                        if(weetWords[i].equals(trend.getMessage())) {
-                            //The trend message and the word in the tweet match, we can update the trend occurences.
-                            this.trends.get(j).addOccurence(weet.getDateWeeted());
-                            return true;
-                        }
+            //The weet doesnt exist in the system, store it in the id map and the date tree.
+            this.weetsById.put(weet.getId(), weet);
+            this.weetByDate.insertKeyValuePair(weet.getDateWeeted().getTime(), weet);
+            this.weetsSnapshot = null;
+
+            //Also file the weet under the user who weeted it, creating their date tree if this is their first weet.
+            TimeTree<Weet> userWeets = this.weetsByUser.get(weet.getUserId());
+            if(userWeets == null) {
+                userWeets = new TimeTree<>();
+                this.weetsByUser.insertKeyValuePair(weet.getUserId(), userWeets);
+            }
+            userWeets.insertKeyValuePair(weet.getDateWeeted().getTime(), weet);
+
+            //Same again for the calendar day the weet was made on.
+            long day = epochDay(weet.getDateWeeted());
+            TimeTree<Weet> dayWeets = this.weetsByDay.get(day);
+            if(dayWeets == null) {
+                dayWeets = new TimeTree<>();
+                this.weetsByDay.insertKeyValuePair(day, dayWeets);
+            }
+            dayWeets.insertKeyValuePair(weet.getDateWeeted().getTime(), weet);
+
+            //Add the weet to the word and trigram posting trees used by the search methods.
+            indexMessage(weet);
+        }
+
+        //Count the weet's hashtags towards the trends.
+        countTrends(weet);
+    }
+
+    /**
+     * addWeets() - O(n logn) bulk load of many weets at once, e.g. the whole of weets.csv on start up.
+     * Into an empty store the weets are sorted by date (across the processors), grouped by user, day, word and trigram in that order,
+     * and every tree is then built bottom up from its sorted group in O(n) rather than through rebalancing inserts. The trends are then counted
+     * in a single pass through the weets oldest first. Into a store which already has weets they are just stored one at a time.
+     * Like the rest of the bulk load they arent written to the write ahead log, the file they came from is already on the disk.
+     * A weet with the same id as an earlier one is skipped, the same as addWeet() would.
+     * @param weets - The weets to add.
+     * @return - The number of weets which were added.
+     */
+    public int addWeets(Weet[] weets) {
+        this.lock.writeLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return addCompactWeets(weets);
+            }
+            if(this.weetsById.size() != 0) {
+                //Stored one at a time but not logged, the same as the bulk build below.
+                int added = 0;
+                for(int i=0; i<weets.length; i++) {
+                    if(!containsWeet(weets[i].getId())) {
+                        storeWeet(weets[i]);
+                        added++;
+                    }
+                }
+                return added;
+            }
+
+            //Index the ids first, dropping any repeated ones, then sort the rest into the date tree's order.
+            TimeNode<Weet>[] byDate = TimeNode.newArray(weets.length);
+            int count = 0;
+            for(int i=0; i<weets.length; i++) {
+                if(this.weetsById.get(weets[i].getId()) == null) {
+                    this.weetsById.put(weets[i].getId(), weets[i]);
+                    byDate[count++] = new TimeNode<Weet>(weets[i].getDateWeeted().getTime(), weets[i]);
+                }
+            }
+            TimeTree.sortNodes(byDate, count);
+
+            //Taking the weets in date order means every group is already sorted for its posting tree.
+            AVLTree<Integer, MyArrayList<Weet>> userGroups = new AVLTree<>();
+            AVLTree<Long, MyArrayList<Weet>> dayGroups = new AVLTree<>();
+            AVLTree<String, MyArrayList<Weet>> wordGroups = new AVLTree<>();
+            AVLTree<String, MyArrayList<Weet>> trigramGroups = new AVLTree<>();
+            for(int i=0; i<count; i++) {
+                Weet weet = byDate[i].value;
+                addToGroup(userGroups, weet.getUserId(), weet);
+                addToGroup(dayGroups, epochDay(weet.getDateWeeted()), weet);
+
+                String[] words = Terms.distinctWords(weet.getMessage());
+                for(int j=0; j<words.length; j++) {
+                    addToGroup(wordGroups, words[j], weet);
+                }
+                String[] trigrams = Terms.distinctTrigrams(weet.getMessage());
+                for(int j=0; j<trigrams.length; j++) {
+                    addToGroup(trigramGroups, trigrams[j], weet);
+                }
+            }
+
+            this.weetByDate.buildFromSorted(byDate, count);
+            buildIndex(this.weetsByUser, userGroups);
+            buildIndex(this.weetsByDay, dayGroups);
+            buildIndex(this.weetsByWord, wordGroups);
+            buildIndex(this.weetsByTrigram, trigramGroups);
+
+            //Count the trends oldest first, exactly as if the weets had been added in date order.
+            for(int i=count - 1; i>=0; i--) {
+                countTrends(byDate[i].value);
+            }
+
+            this.weetsSnapshot = null;
+            return count;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    //O(n logn) bulk add into a compact store. The weets are sorted by date and added oldest first, so every row goes on the end of its lists rather than
+    //shifting any, and the arrays are grown once up front.
+    private int addCompactWeets(Weet[] weets) {
+        //Drop the ids already stored or repeated, keeping the first of each as addWeet() would, before the order is changed.
+        IntIntHashMap seen = new IntIntHashMap();
+        TimeNode<Weet>[] byDate = TimeNode.newArray(weets.length);
+        int count = 0;
+        //The arena holds UTF-8, so the messages are measured in those bytes rather than in chars, on top of the bytes already in it.
+        int messageBytes = this.compactWeets.messageBytes();
+        for(int i=0; i<weets.length; i++) {
+            if(!this.compactWeets.contains(weets[i].getId()) && seen.get(weets[i].getId()) < 0) {
+                seen.put(weets[i].getId(), i);
+                byDate[count++] = new TimeNode<Weet>(weets[i].getDateWeeted().getTime(), weets[i]);
+                messageBytes += weets[i].getMessage().getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        TimeTree.sortNodes(byDate, count);
+        this.compactWeets.ensureCapacity(this.compactWeets.size() + count, messageBytes);
+
+        //The sorted nodes are in the date tree's order, newest first, so they are added from the back.
+        for(int i=count - 1; i>=0; i--) {
+            Weet weet = byDate[i].value;
+            this.compactWeets.add(weet);
+            countTrends(weet);
+        }
+        this.weetsSnapshot = null;
+        return count;
+    }
+
+    //O(logg) addition of a weet to the end of its group, creating the group the first time we see the key.
+    private <K extends Comparable<K>> void addToGroup(AVLTree<K, MyArrayList<Weet>> groups, K key, Weet weet) {
+        MyArrayList<Weet> group = groups.get(key);
+        if(group == null) {
+            group = new MyArrayList<>();
+            groups.insertKeyValuePair(key, group);
+        }
+        group.add(weet);
+    }
+
+    //O(n) bottom up build of an index from groups of weets which are already in date order. The grouping tree iterates its keys in the index's order
+    //so the index itself can be built bottom up too.
+    private <K extends Comparable<K>> void buildIndex(AVLTree<K, TimeTree<Weet>> index, AVLTree<K, MyArrayList<Weet>> groups) {
+        Node<K, TimeTree<Weet>>[] keys = Node.newArray(groups.getTreeSize());
+        AVLTree<K, MyArrayList<Weet>>.TreeIterator iterator = groups.iterator();
+        for(int i=0; iterator.hasNext(); i++) {
+            Node<K, MyArrayList<Weet>> group = iterator.next();
+            MyArrayList<Weet> groupWeets = group.getValue();
+            TimeNode<Weet>[] postings = TimeNode.newArray(groupWeets.size());
+            for(int j=0; j<groupWeets.size(); j++) {
+                postings[j] = new TimeNode<Weet>(groupWeets.get(j).getDateWeeted().getTime(), groupWeets.get(j));
+            }
+            TimeTree<Weet> postingTree = new TimeTree<>();
+            postingTree.buildFromSorted(postings, postings.length);
+            keys[i] = new Node<K, TimeTree<Weet>>(group.getKey(), postingTree);
+        }
+        index.buildFromSorted(keys, keys.length);
+    }
+
+    //Loads a CSV file with its dates written in CsvFile.DATE_FORMAT, see loadWeets(path, dateFormat).
+    public int loadWeets(String path) throws IOException {
+        return loadWeets(path, CsvFile.DATE_FORMAT);
+    }
+
+    /**
+     * loadWeets() - Bulk loads every weet in a CSV file such as weets.csv through addWeets(), parsing the lines across all the processors.
+     * Each line is id,userId,message,date. The message is everything between the second and last comma so it may contain commas itself.
+     * A first line which doesnt start with an id is taken to be a header and skipped.
+     * @param path - The path of the CSV file.
+     * @param dateFormat - The SimpleDateFormat pattern the dates are written in.
+     * @return - The number of weets which were added.
+     * @throws IOException - If the file cant be read or one of its lines cant be parsed, in which case no weets are added.
+     */
+    public int loadWeets(String path, String dateFormat) throws IOException {
+        final String[] lines = CsvFile.readLines(path);
+        final Weet[] weets = new Weet[lines.length];
+        CsvFile.parse(path, lines, "weet", dateFormat, (i, line, format) -> {
+            int firstComma = line.indexOf(',');
+            int secondComma = line.indexOf(',', firstComma + 1);
+            int lastComma = line.lastIndexOf(',');
+            weets[i] = new Weet(Integer.parseInt(line.substring(0, firstComma).trim()), Integer.parseInt(line.substring(firstComma + 1, secondComma).trim()),
+                    line.substring(secondComma + 1, lastComma), format.parse(line.substring(lastComma + 1).trim()));
+        });
+        return addWeets(weets);
+    }
+
+    /**
+     * saveSnapshot() - O(n) method saving every weet and the indexes built from them to a compact binary snapshot file, which loadSnapshot() can read back
+     * on the next start far quicker than parsing weets.csv and indexing every message again.
+     * The file is SNAPSHOT_MAGIC and SNAPSHOT_VERSION, then:
+     * the number of weets and each weet's id, user id, date (milliseconds) and length prefixed UTF-8 message, oldest first,
+     * the user, word and trigram indexes, each as its number of keys and then every key followed by the ids of the weets posted under it in the order of its tree,
+     * the number of trends and each trend's hashtag, occurences and last date, then a CRC32 of everything before it.
+     * @param path - The path of the snapshot file, replaced if it already exists.
+     * @throws IOException - If the file cant be written.
+     */
+    public void saveSnapshot(String path) throws IOException {
+        this.lock.readLock().lock();
+        try {
+            SnapshotFile.write(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION, out -> {
+                if(this.compactWeets != null) {
+                    //The rows are written in the same format, without making any weet objects.
+                    this.compactWeets.write(out);
+                } else {
+                    Weet[] weets = getWeets();
+                    out.writeInt(weets.length);
+                    for(int i=weets.length - 1; i>=0; i--) {
+                        out.writeInt(weets[i].getId());
+                        out.writeInt(weets[i].getUserId());
+                        out.writeLong(weets[i].getDateWeeted().getTime());
+                        SnapshotFile.writeString(out, weets[i].getMessage());
                     }
 
-                    //We never found the weet we wanted, lets add it to the trend list as its assumed its a new trend in the system.
-                    this.trends.add(new Trend(weetWords[i], weet.getDateWeeted()));
+                    writeIndex(out, this.weetsByUser, (o, key) -> o.writeInt(key));
+                    writeIndex(out, this.weetsByWord, (o, key) -> SnapshotFile.writeString(o, key));
+                    writeIndex(out, this.weetsByTrigram, (o, key) -> SnapshotFile.writeString(o, key));
+                }
+
+                out.writeInt(this.trendsByTag.getTreeSize());
+                AVLTree<String, Trend>.TreeIterator trends = this.trendsByTag.iterator();
+                while(trends.hasNext()) {
+                    Trend trend = trends.next().getValue();
+                    SnapshotFile.writeString(out, trend.getMessage());
+                    out.writeInt(trend.getOccurences());
+                    out.writeLong(trend.getUpdatedAt().getTime());
                 }
+            });
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * loadSnapshot() - O(n) method loading the weets and indexes saved by saveSnapshot() into an empty store. The file is memory mapped rather than read through a stream,
+     * and its checksum and version are checked before anything is read. Everything was saved in the order of its tree, so every tree is linked straight back together
+     * with buildFromSorted() rather than sorting or tokenising any message. The day index isnt saved, as a calendar day depends on the local timezone,
+     * so it is grouped again from the weet dates in O(n). If the store already has weets the saved weets are added through addWeets() instead.
+     * @param path - The path of the snapshot file.
+     * @return - The number of weets which were added.
+     * @throws IOException - If the file cant be read, isnt a weet snapshot of a version we can read, or is corrupt, in which case the store is left as it was.
+     */
+    public int loadSnapshot(String path) throws IOException {
+        ByteBuffer buffer = SnapshotFile.map(path, SNAPSHOT_MAGIC, SNAPSHOT_VERSION);
+        try {
+            //Everything is decoded into new structures first, so a bad file leaves the store as it was.
+            Weet[] weets = new Weet[buffer.getInt()];
+            IntHashMap<Weet> byId = new IntHashMap<>();
+            TimeNode<Weet>[] byDate = TimeNode.newArray(weets.length);
+            for(int i=0; i<weets.length; i++) {
+                int id = buffer.getInt();
+                int userId = buffer.getInt();
+                Date dateWeeted = new Date(buffer.getLong());
+                weets[i] = new Weet(id, userId, SnapshotFile.readString(buffer), dateWeeted);
+                byId.put(id, weets[i]);
+                //Saved oldest first, the date tree's order is newest first.
+                byDate[weets.length - 1 - i] = new TimeNode<Weet>(dateWeeted.getTime(), weets[i]);
+            }
+            if(this.compactWeets != null) {
+                //A compact store rebuilds its row lists from the weets rather than linking trees it wont use.
+                return addWeets(weets);
             }
+            TimeTree<Weet> dateTree = new TimeTree<>();
+            dateTree.buildFromSorted(byDate, byDate.length);
 
-            return true;
+            AVLTree<Integer, TimeTree<Weet>> byUser = readIndex(buffer, byId, b -> b.getInt());
+            AVLTree<String, TimeTree<Weet>> byWord = readIndex(buffer, byId, b -> SnapshotFile.readString(b));
+            AVLTree<String, TimeTree<Weet>> byTrigram = readIndex(buffer, byId, b -> SnapshotFile.readString(b));
+
+            //The day index isnt saved as its days depend on this machine's timezone, it is grouped again from the weets, which are already in date order.
+            AVLTree<Long, MyArrayList<Weet>> dayGroups = new AVLTree<>();
+            for(int i=0; i<byDate.length; i++) {
+                addToGroup(dayGroups, epochDay(byDate[i].value.getDateWeeted()), byDate[i].value);
+            }
+            AVLTree<Long, TimeTree<Weet>> byDay = new AVLTree<>();
+            buildIndex(byDay, dayGroups);
+
+            Node<String, Trend>[] trends = Node.newArray(buffer.getInt());
+            for(int i=0; i<trends.length; i++) {
+                String tag = SnapshotFile.readString(buffer);
+                int occurences = buffer.getInt();
+                trends[i] = new Node<String, Trend>(tag, new Trend(tag, new Date(buffer.getLong()), occurences));
+            }
+            AVLTree<String, Trend> trendTree = new AVLTree<>();
+            trendTree.buildFromSorted(trends, trends.length);
+
+            this.lock.writeLock().lock();
+            try {
+                if(this.weetsById.size() != 0) {
+                    return addWeets(weets);
+                }
+
+                this.weetsById = byId;
+                this.weetByDate = dateTree;
+                this.weetsByUser = byUser;
+                this.weetsByDay = byDay;
+                this.weetsByWord = byWord;
+                this.weetsByTrigram = byTrigram;
+                this.trendsByTag = trendTree;
+                for(int i=0; i<trends.length; i++) {
+                    updateTopTrends(trends[i].value);
+                }
+                this.latestWeetDate = weets.length == 0 ? null : weets[weets.length - 1].getDateWeeted();
+                if(this.trendWindow != null) {
+                    backfillTrendWindow();
+                }
+                this.weetsSnapshot = null;
+                return weets.length;
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        } catch(BufferUnderflowException | NegativeArraySizeException e) {
+            throw new IOException(path + " ends part way through");
         }
     }
 
+    //Writes an index as its number of keys, then each key followed by the number of weets posted under it and their ids, in the order of the trees.
+    private <K extends Comparable<K>> void writeIndex(DataOutputStream out, AVLTree<K, TimeTree<Weet>> index, KeyWriter<K> keyWriter) throws IOException {
+        out.writeInt(index.getTreeSize());
+        AVLTree<K, TimeTree<Weet>>.TreeIterator keys = index.iterator();
+        while(keys.hasNext()) {
+            Node<K, TimeTree<Weet>> key = keys.next();
+            keyWriter.write(out, key.getKey());
+            out.writeInt(key.getValue().getTreeSize());
+            TimeTree<Weet>.TreeIterator postings = key.getValue().iterator();
+            while(postings.hasNext()) {
+                out.writeInt(postings.next().getValue().getId());
+            }
+        }
+    }
+
+    //Reads an index written by writeIndex() and links its trees back together bottom up, looking the weets up by id.
+    private <K extends Comparable<K>> AVLTree<K, TimeTree<Weet>> readIndex(ByteBuffer buffer, IntHashMap<Weet> byId, KeyReader<K> keyReader) throws IOException {
+        Node<K, TimeTree<Weet>>[] keys = Node.newArray(buffer.getInt());
+        for(int i=0; i<keys.length; i++) {
+            K key = keyReader.read(buffer);
+            TimeNode<Weet>[] postings = TimeNode.newArray(buffer.getInt());
+            for(int j=0; j<postings.length; j++) {
+                Weet weet = byId.get(buffer.getInt());
+                if(weet == null) {
+                    throw new IOException("The snapshot indexes a weet it doesnt contain");
+                }
+                postings[j] = new TimeNode<Weet>(weet.getDateWeeted().getTime(), weet);
+            }
+            TimeTree<Weet> postingTree = new TimeTree<>();
+            postingTree.buildFromSorted(postings, postings.length);
+            keys[i] = new Node<K, TimeTree<Weet>>(key, postingTree);
+        }
+        AVLTree<K, TimeTree<Weet>> index = new AVLTree<>();
+        index.buildFromSorted(keys, keys.length);
+        return index;
+    }
+
+    private interface KeyWriter<K> {
+        void write(DataOutputStream out, K key) throws IOException;
+    }
+
+    private interface KeyReader<K> {
+        K read(ByteBuffer buffer);
+    }
+
     /**
-     * getWeet() - Performs in O(logn) time as it performs a search on the AVLTree. Makes use of the keyed tree of integers because they are unique and cant produce
-     * unambiguous values where key's are equal across multiple nodes.
+     * openLog() - O(r logn) method opening a write ahead log at the path, creating it if it doesnt exist, where r is the number of weets in it.
+     * The weets already in the log are added first, bringing a store loaded from a snapshot or weets.csv up to date with the weets made since (any it already has are skipped).
+     * From then on every weet passed to addWeet() is appended to the log before it is stored. The bulk loaders dont log, the files they load from are already on the disk.
+     * @param path - The path of the log file.
+     * @param durability - WriteAheadLog.SYNC, BATCHED or ASYNC.
+     * @param batchMillis - How long BATCHED holds a force back for and how often ASYNC forces the log, not used by SYNC.
+     * @return - The number of weets added from the log.
+     * @throws IOException - If the log cant be opened or read, or isnt a weet log, in which case no log is opened.
+     */
+    public int openLog(String path, int durability, long batchMillis) throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if(this.log != null) {
+                throw new IllegalStateException("A log is already open");
+            }
+            //The log is only set once the replay is done, so the weets replayed through addWeet() arent logged a second time.
+            final int[] replayed = {0};
+            this.log = new WriteAheadLog<>(path, new WeetCodec(), durability, batchMillis, weet -> {
+                if(addWeet(weet)) {
+                    replayed[0]++;
+                }
+            });
+            return replayed[0];
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * closeLog() - Forces the rest of the write ahead log to the disk and closes it, weets added after this arent logged.
+     * @throws IOException - If the log couldnt be forced to the disk.
+     */
+    public void closeLog() throws IOException {
+        WriteAheadLog<Weet> closing;
+        this.lock.writeLock().lock();
+        try {
+            closing = this.log;
+            this.log = null;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        if(closing != null) {
+            closing.close();
+        }
+    }
+
+    //The weet log's record format, a weet's id, user id, date (milliseconds) and length prefixed UTF-8 message, the same as a snapshot.
+    private static class WeetCodec implements WriteAheadLog.RecordCodec<Weet> {
+
+        //The first 4 bytes of every write ahead log of this store ("WLWT" in ASCII).
+        public int magic() {
+            return 0x574c5754;
+        }
+
+        public int version() {
+            return 1;
+        }
+
+        public ByteBuffer encode(Weet weet) {
+            byte[] message = weet.getMessage().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = ByteBuffer.allocate(20 + message.length);
+            record.putInt(weet.getId()).putInt(weet.getUserId()).putLong(weet.getDateWeeted().getTime());
+            record.putInt(message.length).put(message).flip();
+            return record;
+        }
+
+        public Weet decode(ByteBuffer record) {
+            int id = record.getInt();
+            int userId = record.getInt();
+            Date dateWeeted = new Date(record.getLong());
+            return new Weet(id, userId, SnapshotFile.readString(record), dateWeeted);
+        }
+    }
+
+    /**
+     * countTrends() - O(h logt) method counting the hashtags of a newly added weet towards their trends, the top 10 and the trending window, where h is the number of hashtags.
+     * @param weet - The weet which was just added.
+     */
+    private void countTrends(Weet weet) {
+        if(this.latestWeetDate == null || weet.getDateWeeted().after(this.latestWeetDate)) {
+            this.latestWeetDate = weet.getDateWeeted();
+        }
+        if(this.trendWindow != null) {
+            this.trendWindow.moveTo(weet.getDateWeeted());
+        }
+
+        //We also now want to scan the weet for all the trend's inserted into them.
+        //This is done now, based on the justification above, rather than at the time when trends need to be found in the system.
+
+        //Split the weet down into its component words so we can find all trending words.
+        String[] weetWords = weet.getMessage().split(" ");
+
+        for(int i=0; i<weetWords.length; i++) {
+            if(weetWords[i].startsWith("#")) {
+                //This is a trend, find the trend in the trend tree.
+                Trend trend = this.trendsByTag.get(weetWords[i]);
+                if(trend == null) {
+                    //We never found the trend we wanted, lets add it to the trend tree as its assumed its a new trend in the system.
+                    trend = new Trend(weetWords[i], weet.getDateWeeted());
+                    this.trendsByTag.insertKeyValuePair(weetWords[i], trend);
+                } else {
+                    //The trend message and the word in the tweet match, we can update the trend occurences.
+                    trend.addOccurence(weet.getDateWeeted());
+                }
+                updateTopTrends(trend);
+
+                //Also count the hashtag in the trending window if one is set.
+                if(this.trendWindow != null) {
+                    this.trendWindow.addOccurence(weetWords[i], weet.getDateWeeted());
+                }
+            }
+        }
+    }
+
+    /**
+     * updateTopTrends() - O(1) method to move a trend which just had an occurence into its place in the top 10, if it now belongs there.
+     * @param trend - The trend which just gained an occurence.
+     */
+    private void updateTopTrends(Trend trend) {
+        //Find out if the trend is already in the top 10.
+        int position = -1;
+        for(int i=0; i<this.topTrendsSize; i++) {
+            if(this.topTrends[i] == trend) {
+                position = i;
+            }
+        }
+
+        if(position == -1) {
+            if(this.topTrendsSize < this.topTrends.length) {
+                //There is still a free slot, every trend makes the top 10.
+                position = this.topTrendsSize;
+                this.topTrendsSize++;
+            } else if(trend.compareTo(this.topTrends[this.topTrendsSize - 1]) > 0) {
+                //The trend has overtaken the 10th trend, it drops out of the top 10 and this one takes its slot.
+                position = this.topTrendsSize - 1;
+            } else {
+                return;
+            }
+            this.topTrends[position] = trend;
+        }
+
+        //Bubble the trend up past every trend it has now overtaken.
+        while(position > 0 && this.topTrends[position].compareTo(this.topTrends[position - 1]) > 0) {
+            Trend overtaken = this.topTrends[position - 1];
+            this.topTrends[position - 1] = this.topTrends[position];
+            this.topTrends[position] = overtaken;
+            position--;
+        }
+    }
+
+    /**
+     * getWeet() - Performs in O(1) expected time as it is a lookup in the id hash map. Makes use of the ids because they are unique and cant produce
+     * unambiguous values where key's are equal across multiple entries.
      * 
      * @param wid - A weet id, for which we want to find the weet object off.
      * @return - The weet which as the id provided in the argument, or null if it doesnt exist in the data store.
      */
     public Weet getWeet(int wid) {
-        return this.weetStore.get(wid);
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.get(wid);
+            }
+            return this.weetsById.get(wid);
+        } finally {
+            this.lock.readLock().unlock();
+        }
     }
 
     /**
-     * getWeets() - O(n) method traversing all the nodes in the weet tree.
+     * getWeets() - O(n) copy of the snapshot of every weet, only traversing all the nodes in the weet tree (also O(n) but far slower, a node at a time) on the first call after a weet is added.
+     * Each caller is given its own copy of the snapshot, so nothing a caller does to theirs can change what the next one sees.
      * @return - An array of all the weets
      */
     public Weet[] getWeets() {
-        //Traverse the AVLTree containing all the weets with the key being the date (this means we dont need to sort the weets)
-        this.weetByDate.clearNodes();
-        this.weetByDate.inOrderTraversal(this.weetByDate.getRoot());
-        MyArrayList<Node<Date, Weet>> foundByDate = this.weetByDate.getNodesTraversed();
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                //Keeping the array would keep an object for every weet, which is what compact mode is avoiding.
+                return this.compactWeets.getWeets();
+            }
+            Weet[] snapshot = this.weetsSnapshot;
+            if(snapshot == null) {
+                //Traverse the AVLTree containing all the weets with the key being the date (this means we dont need to sort the weets)
+                snapshot = toArray(this.weetByDate);
+                this.weetsSnapshot = snapshot;
+            }
+            return snapshot.clone();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
 
-        //Create the return array with a fixed size matching the number of weets.
-        Weet[] weetsReturn = new Weet[foundByDate.size()];
-        //Go across all the nodes traversed from the tree, extract the weet information into the return array.
-        for(int j=0; j<foundByDate.size(); j++) {
-            weetsReturn[j] = foundByDate.get(j).getValue();
+    //O(k) method to copy every weet in a date keyed tree into an array in the tree's order, most recent first.
+    //The tree's size is already known, so the iterator walks the tree straight into the array without any list in between.
+    private Weet[] toArray(TimeTree<Weet> tree) {
+        Weet[] weetsReturn = new Weet[tree.getTreeSize()];
+        TimeTree<Weet>.TreeIterator iterator = tree.iterator();
+        for(int j=0; iterator.hasNext(); j++) {
+            weetsReturn[j] = iterator.next().getValue();
         }
         return weetsReturn;
     }
 
+    /**
+     * getWeetsPage() - O(logn + limit) method to get one page of the weets, most recent first, without traversing or copying every weet.
+     * The page carries on from the weet with the cursor id, so passing the id of the last weet on a page gets the next page.
+     * @param afterWid - The id of the last weet on the previous page, or FIRST_PAGE for the first page.
+     * @param limit - The most weets to return.
+     * @return - An array of at most limit weets following the cursor, empty if the cursor isnt a weet or there are no more weets.
+     */
+    public Weet[] getWeetsPage(int afterWid, int limit) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsPage(afterWid, limit);
+            }
+            TimeTree<Weet>.TreeIterator iterator = iteratorAfter(this.weetByDate, afterWid);
+            MyArrayList<Weet> page = new MyArrayList<>();
+            while(iterator != null && iterator.hasNext() && page.size() < limit) {
+                page.add(iterator.next().getValue());
+            }
+
+            Weet[] toReturn = new Weet[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
+            }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    //O(logn) method to get an iterator over a date keyed weet tree starting just after the weet with the cursor id, null if there is no such weet.
+    private TimeTree<Weet>.TreeIterator iteratorAfter(TimeTree<Weet> tree, int afterWid) {
+        if(afterWid == FIRST_PAGE) {
+            return tree.iterator();
+        }
+        Weet cursor = this.weetsById.get(afterWid);
+        if(cursor == null) {
+            return null;
+        }
+
+        //Start at the cursor's date, then skip past the weets sharing that date up to and including the cursor itself.
+        TimeTree<Weet>.TreeIterator iterator = tree.headIterator(cursor.getDateWeeted().getTime(), true);
+        while(iterator.hasNext() && iterator.peek().getKey() == cursor.getDateWeeted().getTime()) {
+            if(iterator.next().getValue() == cursor) {
+                break;
+            }
+        }
+        return iterator;
+    }
+
     /** 
-     * getWeetsByUser() - O(n) method to find all the weets created by a given user.
+     * getWeetsByUser() - O(logn + k) method to find all the weets created by a given user, where k is the number of weets the user has made.
+     * We find the user's own date keyed tree in O(logn) and only traverse that, rather than every weet in the system.
      * @param usr - The user which we want to find all the weets by.
      * @return - An array of weets containing those which the user argument created.
     */
     public Weet[] getWeetsByUser(User usr) {
-        this.weetByDate.clearNodes();
-        this.weetByDate.inOrderTraversal(this.weetByDate.getRoot());
-        MyArrayList<Node<Date, Weet>> foundWeets = this.weetByDate.getNodesTraversed();
-
-        //Now we need to check the weets to check if the user who weeted was the one we want.
-        MyArrayList<Weet> foundByUser = new MyArrayList<>();
-        for(int i=0; i<foundWeets.size(); i++) {
-            Node<Date, Weet> node = foundWeets.get(i);
-            if(node.getValue().getUserId() == usr.getId()) {
-                foundByUser.add(node.getValue());
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsByUser(usr.getId());
+            }
+            TimeTree<Weet> userWeets = this.weetsByUser.get(usr.getId());
+            if(userWeets == null) {
+                //The user has never weeted, there is nothing to traverse.
+                return new Weet[0];
             }
-        }
 
-        //Now go over the arraylist of nodes in order of date and add them to the weet[]
-        Weet[] weetReturn = new Weet[foundByUser.size()];
-        for(int k=0; k<foundByUser.size(); k++) {
-            weetReturn[k] = foundByUser.get(k);
+            //The user tree is keyed by date so the traversal is already in the order we want to return.
+            return toArray(userWeets);
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return weetReturn;
     }
 
     
     /**
-     * getWeetsContaining() - O(n) method for finding all the weets containing a specific phrase.
+     * getWeetsContaining() - O(m) method for finding all the weets containing a specific phrase, where m is the size of the smallest trigram posting tree of the query.
+     * Queries shorter than a trigram cant be looked up in the index, so they fall back to the O(n) scan of every weet (they match most weets anyway).
      * @param query - The word/phrase which we are looking for in the weets to return.
      * @return - An array of weets where the weets contain the query provided in the argument.
      */
     public Weet[] getWeetsContaining(String query) {
-    	this.weetByDate.clearNodes();
-    	this.weetByDate.inOrderTraversal(this.weetByDate.getRoot());
-    	MyArrayList<Node<Date, Weet>> weetsFound = this.weetByDate.getNodesTraversed();
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsContaining(query, FIRST_PAGE, Integer.MAX_VALUE);
+            }
+            TimeTree<Weet> candidates;
+            if(query.length() < 3) {
+                candidates = this.weetByDate;
+            } else {
+                candidates = smallestTrigramPostings(query);
+                if(candidates == null) {
+                    //One of the query's trigrams never appears in any weet, so no weet can contain the query.
+                    return new Weet[0];
+                }
+            }
+
+            //The candidate tree is keyed by date so the matches come out already sorted, we just need to check each one really contains the query.
+        	TimeTree<Weet>.TreeIterator iterator = candidates.iterator();
+
+            MyArrayList<Weet> weetsContaining = new MyArrayList<>();
+            while(iterator.hasNext()) {
+                Weet weet = iterator.next().getValue();
+                if(weet.getMessage().contains(query)) {
+                    weetsContaining.add(weet);
+                }
+            }
+
+            Weet[] toReturn = new Weet[weetsContaining.size()];
+            for(int i=0; i<weetsContaining.size(); i++) {
+            	toReturn[i] = weetsContaining.get(i);
+            }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * getWeetsContainingPage() - One page of the results of getWeetsContaining(), most recent first.
+     * Walks the same candidate tree from the cursor and stops as soon as limit weets have matched, so it costs O(logn + limit) when most candidates match.
+     * @param query - The word/phrase which we are looking for in the weets to return.
+     * @param afterWid - The id of the last weet on the previous page, or FIRST_PAGE for the first page.
+     * @param limit - The most weets to return.
+     * @return - An array of at most limit weets containing the query which follow the cursor.
+     */
+    public Weet[] getWeetsContainingPage(String query, int afterWid, int limit) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsContaining(query, afterWid, limit);
+            }
+            TimeTree<Weet> candidates = query.length() < 3 ? this.weetByDate : smallestTrigramPostings(query);
+            TimeTree<Weet>.TreeIterator iterator = candidates == null ? null : iteratorAfter(candidates, afterWid);
+
+            MyArrayList<Weet> page = new MyArrayList<>();
+            while(iterator != null && iterator.hasNext() && page.size() < limit) {
+                Weet weet = iterator.next().getValue();
+                if(weet.getMessage().contains(query)) {
+                    page.add(weet);
+                }
+            }
 
-        MyArrayList<Weet> weetsContaining = new MyArrayList<>();
-        for(int i=0; i<weetsFound.size(); i++) {
-            if(weetsFound.get(i).getValue().getMessage().contains(query)) {
-                weetsContaining.add(weetsFound.get(i).getValue());
+            Weet[] toReturn = new Weet[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
             }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
         }
+    }
+
+    /**
+     * getWeetsWithWord() - O(logn + k) method for finding the weets which use the exact word provided (such as a hashtag), where k is the number of those weets.
+     * Unlike getWeetsContaining() this wont match the word inside of a longer word, it is a straight lookup in the inverted word index.
+     * @param word - The whole word we want the weets for, e.g. "#cs126"
+     * @return - An array of the weets using the word, most recent first.
+     */
+    public Weet[] getWeetsWithWord(String word) {
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsWithWord(word);
+            }
+            TimeTree<Weet> postings = this.weetsByWord.get(word);
+            if(postings == null) {
+                return new Weet[0];
+            }
 
-        Weet[] toReturn = new Weet[weetsContaining.size()];
-        for(int i=0; i<weetsContaining.size(); i++) {
-        	toReturn[i] = weetsContaining.get(i);
+            return toArray(postings);
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return toReturn;
     }
 
     /**
-     * getWeetsOn() - O(n) method for finding all the weets created on a given day.
+     * indexMessage() - O(L logn) method adding a weet to the word and trigram posting trees, where L is the length of the message.
+     * Each word/trigram is only posted once per weet even if it appears multiple times in the message.
+     * @param weet - The weet being added to the store.
+     */
+    private void indexMessage(Weet weet) {
+        String[] words = Terms.distinctWords(weet.getMessage());
+        for(int i=0; i<words.length; i++) {
+            addPosting(this.weetsByWord, words[i], weet);
+        }
+
+        String[] trigrams = Terms.distinctTrigrams(weet.getMessage());
+        for(int i=0; i<trigrams.length; i++) {
+            addPosting(this.weetsByTrigram, trigrams[i], weet);
+        }
+    }
+
+    //O(logn) addition of a weet to the posting tree of the given term, creating the posting tree the first time we see the term.
+    private void addPosting(AVLTree<String, TimeTree<Weet>> index, String term, Weet weet) {
+        TimeTree<Weet> postings = index.get(term);
+        if(postings == null) {
+            postings = new TimeTree<>();
+            index.insertKeyValuePair(term, postings);
+        }
+        postings.insertKeyValuePair(weet.getDateWeeted().getTime(), weet);
+    }
+
+    //O(L logn) lookup of every trigram in the query, returning the smallest posting tree or null if any trigram has never been weeted.
+    private TimeTree<Weet> smallestTrigramPostings(String query) {
+        TimeTree<Weet> smallest = null;
+        for(int i=0; i+3<=query.length(); i++) {
+            TimeTree<Weet> postings = this.weetsByTrigram.get(query.substring(i, i + 3));
+            if(postings == null) {
+                return null;
+            }
+            if(smallest == null || postings.getTreeSize() < smallest.getTreeSize()) {
+                smallest = postings;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * getWeetsOn() - O(logd + k) method for finding all the weets created on a given day, where d is the number of days with weets and k is the number of weets that day.
      * @param dateOn - The date which we want to find all the weets which are posted on the day provided.
      * @return - All the weets which were created on the day provided in the dateOn argument.
      */
     public Weet[] getWeetsOn(Date dateOn) {
-        //Get all the nodes of the weet tree. aka all the weets
-        this.weetByDate.clearNodes();
-        this.weetByDate.inOrderTraversal(this.weetByDate.getRoot());
-        MyArrayList<Node<Date, Weet>> nodesFound = this.weetByDate.getNodesTraversed();
-
-        MyArrayList<Weet> weetsOn = new MyArrayList<>();
-        for(int i=0; i<nodesFound.size(); i++) {
-            Node<Date, Weet> node = nodesFound.get(i);
-            if(node.getKey().getDay() == dateOn.getDay()) {
-                weetsOn.add(node.getValue());
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsOn(epochDay(dateOn));
+            }
+            //Find the bucket for the calendar day, if there isnt one nobody weeted that day.
+            TimeTree<Weet> dayWeets = this.weetsByDay.get(epochDay(dateOn));
+            if(dayWeets == null) {
+                return new Weet[0];
             }
-        }
 
-        //Create the return array.
-        Weet[] weetReturn = new Weet[weetsOn.size()];
-        for(int j=0; j<weetsOn.size(); j++) {
-            weetReturn[j] = weetsOn.get(j);
+            return toArray(dayWeets);
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return weetReturn;
+    }
 
+    //O(1) conversion of a date into the number of whole days since the epoch in the local timezone, so all the times on one calendar day share a key.
+    private long epochDay(Date date) {
+        long localTime = date.getTime() + TimeZone.getDefault().getOffset(date.getTime());
+        return Math.floorDiv(localTime, MILLIS_PER_DAY);
     }
 
     
     /**
-     * getWeetsBefore() - A method to find all the weets before a given date.
-     * //Time efficiency: O(n) - very hard to get it any quicker as you have to consider every weet having the possibility of being before the argument date.
+     * getWeetsBefore() - O(logn + k) method to find all the weets before a given date, where k is the number of weets found.
+     * The date tree only visits the subtrees which can hold weets before the date, rather than every weet.
      * @param dateBefore - The date for which we want to return all the weets before it.
      * @return - A weet array of all the weets before the date provided in the argument. The returned weets are sorted so that the most recent weet is first.
      */
     public Weet[] getWeetsBefore(Date dateBefore) {
-        //Use the getWeets method to find all the weets in the system sorted by date.
-        Weet[] allWeets = getWeets();
-
-        //Iterate across al the weets, checking if the weet is before the date provided in the argument.
-        //All the weets found with the condition are placed into the arraylist as its dynamically sized.
-        MyArrayList<Weet> weetsBefore = new MyArrayList<>();
-        for(int i=0; i<allWeets.length; i++) {
-            Weet weet = allWeets[i];
-            if(weet.getDateWeeted().before(dateBefore)) {
-                weetsBefore.add(weet);
+        this.lock.readLock().lock();
+        try {
+            if(this.compactWeets != null) {
+                return this.compactWeets.getWeetsBefore(dateBefore);
+            }
+            //Walk just the weets strictly before the date, these are already sorted by date as they come from the date tree.
+            TimeTree<Weet>.TreeIterator iterator = this.weetByDate.headIterator(dateBefore.getTime(), false);
+            MyArrayList<Weet> weetsBefore = new MyArrayList<>();
+            while(iterator.hasNext()) {
+                weetsBefore.add(iterator.next().getValue());
             }
-        }
 
-        //All of the weets found within the weetsBefore should already be sorted as we got them sorted originally.
-        //We just now need to transform the arraylist of weets to an array of weets.
-        Weet[] toReturn = new Weet[weetsBefore.size()];
-        for(int i=0; i<weetsBefore.size(); i++) {
-            toReturn[i] = weetsBefore.get(i);
+            //We just now need to transform the arraylist to an array of weets.
+            Weet[] toReturn = new Weet[weetsBefore.size()];
+            for(int i=0; i<weetsBefore.size(); i++) {
+                toReturn[i] = weetsBefore.get(i);
+            }
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
         }
-        return toReturn;
     }
 
     /**
      * getTrending() - Gets the most popular trends from the weets and presents it to the UI on the frontend.
-     * O(n) performance based on the number of trends in the trends arraylist.
+     * O(1) performance as the top 10 trends are kept up to date as the weets are added.
      * @return A fixed size String array of the 10 most popular trends based on the criteria specified in the coursework javadocs.
      */
     public String[] getTrending() {
-        //The template array to return of fixed length 10. All values intialised to null because this is required when a trend isnt present.
-		String[] toReturn = new String[]{null, null, null, null, null, null, null, null, null, null};
+        this.lock.readLock().lock();
+        try {
+            if(this.trendWindow != null) {
+                //Only the hashtags used within the window count.
+                return this.trendWindow.getTrending();
+            }
+
+            //The template array to return of fixed length 10. All values intialised to null because this is required when a trend isnt present.
+    		String[] toReturn = new String[]{null, null, null, null, null, null, null, null, null, null};
+
+            //Add the hashtag of each of the top trends to the return array, any unused slots stay null.
+            for(int i=0; i<this.topTrendsSize; i++) {
+                toReturn[i] = this.topTrends[i].getMessage();
+            }
+
+            return toReturn;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * setTrendingWindow() - Switches getTrending() to only count the hashtags used within the most recent window of time (e.g. the last hour or day),
+     * so a hashtag which is popular right now can outrank one which was popular a long time ago. "Now" is the date of the most recent weet in the system.
+     * The hashtags of the weets already within the window are counted straight away, which is O(k) in the number of those weets.
+     * @param windowMillis - The length of the window in milliseconds, 0 or less goes back to counting every hashtag forever.
+     * @param buckets - The number of time buckets the window is split into, more buckets make hashtags expire more smoothly but use more memory per trend.
+     */
+    public void setTrendingWindow(long windowMillis, int buckets) {
+        this.lock.writeLock().lock();
+        try {
+            if(windowMillis <= 0) {
+                this.trendWindow = null;
+                return;
+            }
 
-        //Creation of a Trend object keyed tree so we can order the trends based on the comparator they implement. The trend tree is loaded with the data from the trend arraylist.
-        AVLTree<Trend, String> trendTree = new AVLTree<>();
-        for(int i=0; i<this.trends.size(); i++) {
-            trendTree.insertKeyValuePair(this.trends.get(i), this.trends.get(i).getMessage());
+            this.trendWindow = new TrendWindow(windowMillis, buckets);
+            backfillTrendWindow();
+        } finally {
+            this.lock.writeLock().unlock();
         }
+    }
 
-        //Traverse the tree and store the nodes within an arraylist so we extract the data and present it to the user in the return array.
-        trendTree.clearNodes();
-        trendTree.inOrderTraversal(trendTree.getRoot());
-        MyArrayList<Node<Trend, String>> sortedTrends = trendTree.getNodesTraversed();
+    //O(k) count of the hashtags of the k weets already inside of a newly set trending window.
+    private void backfillTrendWindow() {
+        if(this.latestWeetDate == null) {
+            return;
+        }
 
-        //Iterate across the 10 most popular trends and add the weet message, aka the hashtag to the return array.
-        for(int i=0; i<10; i++) {
-            toReturn[i] = sortedTrends.get(i).getKey().getMessage();
+        this.trendWindow.moveTo(this.latestWeetDate);
+        Date windowStart = new Date(this.latestWeetDate.getTime() - this.trendWindow.getWindowMillis());
+        if(this.compactWeets != null) {
+            Weet[] windowWeets = this.compactWeets.getWeetsFrom(windowStart);
+            for(int i=0; i<windowWeets.length; i++) {
+                countWindowHashtags(windowWeets[i]);
+            }
+            return;
+        }
+        TimeTree<Weet>.TreeIterator windowWeets = this.weetByDate.tailIterator(windowStart.getTime(), true);
+        while(windowWeets.hasNext()) {
+            countWindowHashtags(windowWeets.next().getValue());
+        }
+    }
+
+    //Counts the hashtags of one weet towards the trending window.
+    private void countWindowHashtags(Weet weet) {
+        String[] weetWords = weet.getMessage().split(" ");
+        for(int j=0; j<weetWords.length; j++) {
+            if(weetWords[j].startsWith("#")) {
+                this.trendWindow.addOccurence(weetWords[j], weet.getDateWeeted());
+            }
+        }
+    }
+
+    /**
+     * TrendWindow class, counts the hashtags used within a sliding window of time rather than forever.
+     * The window is split into a ring of equally sized time buckets and each trend keeps its own count for every bucket. When time moves on past a bucket
+     * we only subtract the counts of the trends used in that bucket, so nothing is ever recounted. Trends which drop to no uses are thrown away once they
+     * outnumber the live ones, so the memory used grows with the hashtags used inside of the window and not with the whole history.
+     */
+    class TrendWindow {
+
+        //The length of the whole window in milliseconds.
+        private long windowMillis;
+        //The length of each bucket in milliseconds, and the number of buckets in the ring.
+        private long bucketMillis;
+        private int bucketCount;
+        //The number (time / bucketMillis) of the most recent bucket, the window is this bucket and the bucketCount - 1 before it.
+        private long headBucket;
+        //The trends with a count in each slot of the ring, so expiring a slot only touches the trends used in it.
+        private MyArrayList<MyArrayList<WindowTrend>> bucketTrends;
+
+        //Every trend we are holding keyed by hashtag, some of these may have expired and have a count of 0.
+        private AVLTree<String, WindowTrend> trendsByTag;
+        //The number of trends in the tree which still have a use in the window.
+        private int liveTrends;
+
+        //The last top 10 worked out, thrown away whenever a count changes.
+        //Volatile because it is filled in by getTrending(), which only holds the read lock so may be running on several threads at once.
+        private volatile String[] cachedTrending;
+
+        public TrendWindow(long windowMillis, int buckets) {
+            this.windowMillis = windowMillis;
+            this.bucketCount = Math.max(1, buckets);
+            this.bucketMillis = Math.max(1, windowMillis / this.bucketCount);
+            this.headBucket = Long.MIN_VALUE;
+            this.bucketTrends = new MyArrayList<>();
+            for(int i=0; i<this.bucketCount; i++) {
+                this.bucketTrends.add(new MyArrayList<WindowTrend>());
+            }
+            this.trendsByTag = new AVLTree<>();
+            this.liveTrends = 0;
+            this.cachedTrending = null;
+        }
+
+        public long getWindowMillis() {
+            return this.windowMillis;
+        }
+
+        /**
+         * addOccurence() - Amortised O(logt) method to count a use of a hashtag at the given date, moving the window on first if the date is newer than it.
+         * Uses which are older than the window are ignored.
+         * @param message - The hashtag used.
+         * @param date - The date of the weet using the hashtag.
+         */
+        public void addOccurence(String message, Date date) {
+            moveTo(date);
+            long bucket = Math.floorDiv(date.getTime(), this.bucketMillis);
+            if(bucket <= this.headBucket - this.bucketCount) {
+                //Too old to be in the window.
+                return;
+            }
+
+            WindowTrend trend = this.trendsByTag.get(message);
+            if(trend == null) {
+                trend = new WindowTrend(message, this.bucketCount);
+                this.trendsByTag.insertKeyValuePair(message, trend);
+            }
+            if(trend.getOccurences() == 0) {
+                this.liveTrends++;
+            }
+
+            int slot = (int) Math.floorMod(bucket, (long) this.bucketCount);
+            if(trend.addOccurence(slot, date)) {
+                //First use of the trend in this bucket, remember it so the bucket can be expired later.
+                this.bucketTrends.get(slot).add(trend);
+            }
+            this.cachedTrending = null;
+        }
+
+        /**
+         * moveTo() - Moves the window on so that it ends at the given date, if that is newer than where it ends already.
+         * Called for every weet and not just the ones with hashtags, because the window follows the most recent weet in the system.
+         * @param date - The date of a weet being added.
+         */
+        public void moveTo(Date date) {
+            long bucket = Math.floorDiv(date.getTime(), this.bucketMillis);
+            if(this.headBucket == Long.MIN_VALUE) {
+                this.headBucket = bucket;
+            } else if(bucket > this.headBucket) {
+                advanceTo(bucket);
+            }
         }
 
-        return toReturn;
+        //Moves the head of the window on to the given bucket, expiring every bucket which falls out of the window on the way.
+        private void advanceTo(long bucket) {
+            long expiring = Math.min(bucket - this.headBucket, (long) this.bucketCount);
+            for(long i=1; i<=expiring; i++) {
+                //The slot the new bucket will use is the one of the bucket which just fell out of the window.
+                int slot = (int) Math.floorMod(this.headBucket + i, (long) this.bucketCount);
+                MyArrayList<WindowTrend> expired = this.bucketTrends.get(slot);
+                for(int j=0; j<expired.size(); j++) {
+                    if(expired.get(j).expire(slot)) {
+                        this.liveTrends--;
+                    }
+                }
+                if(!expired.isEmpty()) {
+                    this.bucketTrends.set(slot, new MyArrayList<WindowTrend>());
+                    this.cachedTrending = null;
+                }
+            }
+            this.headBucket = bucket;
+
+            //Once the expired trends outnumber the live ones rebuild the tree with just the live ones, this keeps the memory bounded by the window.
+            if(this.trendsByTag.getTreeSize() - this.liveTrends > Math.max(this.liveTrends, 64)) {
+                AVLTree<String, WindowTrend>.TreeIterator held = this.trendsByTag.iterator();
+                AVLTree<String, WindowTrend> liveByTag = new AVLTree<>();
+                while(held.hasNext()) {
+                    Node<String, WindowTrend> node = held.next();
+                    if(node.getValue().getOccurences() > 0) {
+                        liveByTag.insertKeyValuePair(node.getKey(), node.getValue());
+                    }
+                }
+                this.trendsByTag = liveByTag;
+            }
+        }
+
+        /**
+         * getTrending() - O(t) method to get the 10 most popular hashtags in the window, where t is the number of trends held.
+         * The result is kept until a count next changes, so repeated page views between weets are O(1).
+         * @return A fixed size String array of the 10 most popular trends in the window, unused slots are null.
+         */
+        public String[] getTrending() {
+            if(this.cachedTrending == null) {
+                AVLTree<String, WindowTrend>.TreeIterator held = this.trendsByTag.iterator();
+
+                //Insert each live trend into its place in the top 10 if it makes it.
+                WindowTrend[] top = new WindowTrend[10];
+                int topSize = 0;
+                while(held.hasNext()) {
+                    WindowTrend trend = held.next().getValue();
+                    if(trend.getOccurences() == 0 || (topSize == top.length && trend.compareTo(top[topSize - 1]) <= 0)) {
+                        continue;
+                    }
+                    int position = topSize < top.length ? topSize++ : topSize - 1;
+                    while(position > 0 && trend.compareTo(top[position - 1]) > 0) {
+                        top[position] = top[position - 1];
+                        position--;
+                    }
+                    top[position] = trend;
+                }
+
+                String[] trending = new String[10];
+                for(int i=0; i<topSize; i++) {
+                    trending[i] = top[i].getMessage();
+                }
+                this.cachedTrending = trending;
+            }
+
+            String[] toReturn = new String[10];
+            for(int i=0; i<10; i++) {
+                toReturn[i] = this.cachedTrending[i];
+            }
+            return toReturn;
+        }
+    }
+
+    /**
+     * WindowTrend class, a trend in the trending window. It keeps a ring of counts, one per bucket of the window, and the total of them.
+     * Ordered the same way as the Trend class, by the uses in the window and then the date it was last used.
+     */
+    class WindowTrend implements Comparable<WindowTrend> {
+
+        private String message;
+        private Date updatedAt;
+        //The uses of the trend in each bucket of the window.
+        private int[] bucketCounts;
+        //The total of the bucket counts, the number of uses inside of the window.
+        private int occurences;
+
+        public WindowTrend(String message, int bucketCount) {
+            this.message = message;
+            this.updatedAt = null;
+            this.bucketCounts = new int[bucketCount];
+            this.occurences = 0;
+        }
+
+        //Counts a use in the given slot, returns true if it was the first use in that slot.
+        public boolean addOccurence(int slot, Date date) {
+            this.bucketCounts[slot]++;
+            this.occurences++;
+            if(this.updatedAt == null || date.after(this.updatedAt)) {
+                this.updatedAt = date;
+            }
+            return this.bucketCounts[slot] == 1;
+        }
+
+        //Removes the uses in a slot which has fallen out of the window, returns true if the trend now has no uses left in the window.
+        public boolean expire(int slot) {
+            int expired = this.bucketCounts[slot];
+            this.occurences -= expired;
+            this.bucketCounts[slot] = 0;
+            return expired > 0 && this.occurences == 0;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+
+        public Date getUpdatedAt() {
+            return this.updatedAt;
+        }
+
+        public int getOccurences() {
+            return this.occurences;
+        }
+
+        //The same ordering as the Trend class, more uses in the window wins and then the most recent use.
+        @Override
+        public int compareTo(WindowTrend otherTrend) {
+            if(this.occurences > otherTrend.getOccurences()) {
+                return 1;
+            } else if (this.occurences < otherTrend.getOccurences()) {
+                return -1;
+            } else {
+                return this.updatedAt.compareTo(otherTrend.getUpdatedAt());
+            }
+        }
     }
 
     /**
@@ -305,6 +1383,13 @@ public class WeetStore implements IWeetStore {
             this.occurences = 1;
         }
 
+        //Recreates a trend which has already been counted, e.g. from a snapshot.
+        public Trend(String message, Date date, int occurences) {
+            this.message = message;
+            this.updatedAt = date;
+            this.occurences = occurences;
+        }
+
 		public void addOccurence(Date date) {
             this.occurences++;
             //here we should only update the date of the occurence if its newer than the one currently stored, this is needed as the weets arent loaded in order.
@@ -350,323 +1435,264 @@ public class WeetStore implements IWeetStore {
     }
 
 
-    class AVLTree<K extends Comparable<K>, V> {
-
-        //The root node of this tree. The single node at the top for which every other node stems from.
-        private Node root;
-        //the number of nodes within the tree (root = 1)
-        private int treeSize;
-
-        //Constructor for the tree, just sets the treesize to an intiial amount which can be configured.
-        public AVLTree() {
-            this.treeSize = 0;
-        }
-
-        public Node getRoot() {
-            return this.root;
+    /**
+     * CompactWeets class, the storage used in place of the trees when the store is created in compact mode. Each weet is a row of primitive parallel arrays,
+     * its id, user id, date in milliseconds and where its message starts in one shared UTF-8 byte arena, and every index holds row numbers in sorted int arrays
+     * (RowLists) rather than AVL nodes, Dates and boxed keys. Weet objects are only made when a query returns them.
+     * A weet then costs about 20 bytes plus its message and 4 bytes per index posting, against a Weet, a Date, a String and an AVL node per index in the tree form.
+     * The price is paid when adding. A row has to go in date order, so a weet older than the newest in a list shifts the newer rows up, O(k) rather than O(logk),
+     * but weets arrive in date order so nearly every add is an append.
+     */
+    class CompactWeets {
+
+        //The number of rows in use.
+        private int count;
+        private int[] ids;
+        private int[] userIds;
+        private long[] dates;
+        //messageStarts[row] is where the row's message starts in the arena and messageStarts[row + 1] is where it ends.
+        private int[] messageStarts;
+        private byte[] arena;
+
+        //The row of each weet id, and the same indexes as the trees but holding rows.
+        private IntIntHashMap rowsById;
+        private RowList byDate;
+        private AVLTree<Integer, RowList> byUser;
+        private AVLTree<Long, RowList> byDay;
+        private AVLTree<String, RowList> byWord;
+        private AVLTree<String, RowList> byTrigram;
+
+        public CompactWeets() {
+            this.count = 0;
+            this.ids = new int[16];
+            this.userIds = new int[16];
+            this.dates = new long[16];
+            this.messageStarts = new int[17];
+            this.arena = new byte[256];
+
+            this.rowsById = new IntIntHashMap();
+            this.byDate = new RowList();
+            this.byUser = new AVLTree<>();
+            this.byDay = new AVLTree<>();
+            this.byWord = new AVLTree<>();
+            this.byTrigram = new AVLTree<>();
         }
 
-        public int getTreeSize() {
-            return this.treeSize;
+        public int size() {
+            return this.count;
         }
 
-        public void setRoot(Node n) {
-            this.root = n;
+        //The number of arena bytes the messages already take up.
+        public int messageBytes() {
+            return this.messageStarts[this.count];
         }
 
-        public void setTreeSize(int size) {
-            this.treeSize = size;
+        public boolean contains(int id) {
+            return this.rowsById.get(id) >= 0;
         }
 
-        //O(logn) insertion in this tree as we need to traverse the tree to find the right location.
-        private Node insertNode(Node locationNode, Node insertingNode) {
-            if (locationNode != null) {
-                //Compare the location node we intend to the key of the node we are inserting.
-                int comparison = ((Comparable<K>) locationNode.key).compareTo((K) insertingNode.key);
-
-                //If the value is less than or equal to the current node we are checking put it on the left.
-                if (comparison <= 0) {
-                    //The key of the location node is comparatively less or equal to the node we are inserting, we can recursively call the insert down the left of this tree.
-                    locationNode.left = insertNode(locationNode.left, insertingNode);
-                } else {
-                    //The key of the location node is comparatively more than the node we are inserting, we can recursively call the insert down the right of this tree.
-                    locationNode.right = insertNode(locationNode.right, insertingNode);
-                }
-
-                //We have just inserted data into this nodes subtree somewhere, we should rebalance this node now so it maintains optimal data structure efficiency.
-                return locationNode.balanceNode();
-            } else {
-                return insertingNode;
+        /**
+         * add() - O(L logn) method storing a weet as a new row and adding the row to every index, where L is the length of the message.
+         * The weet object isnt kept, only its fields are copied into the row.
+         * @param weet - The weet to add, which must not already be stored.
+         */
+        public void add(Weet weet) {
+            byte[] message = weet.getMessage().getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(this.count + 1, this.messageStarts[this.count] + message.length);
+
+            int row = this.count++;
+            this.ids[row] = weet.getId();
+            this.userIds[row] = weet.getUserId();
+            this.dates[row] = weet.getDateWeeted().getTime();
+            System.arraycopy(message, 0, this.arena, this.messageStarts[row], message.length);
+            this.messageStarts[row + 1] = this.messageStarts[row] + message.length;
+
+            this.rowsById.put(weet.getId(), row);
+            this.byDate.insert(row, this.dates);
+            addRow(this.byUser, weet.getUserId(), row);
+            addRow(this.byDay, epochDay(weet.getDateWeeted()), row);
+
+            String[] words = Terms.distinctWords(weet.getMessage());
+            for(int i=0; i<words.length; i++) {
+                addRow(this.byWord, words[i], row);
+            }
+            String[] trigrams = Terms.distinctTrigrams(weet.getMessage());
+            for(int i=0; i<trigrams.length; i++) {
+                addRow(this.byTrigram, trigrams[i], row);
             }
         }
 
-        //O(logn) peroformance as it just makes a call to the function insertNode()
-        public void insertKeyValuePair(K key, V value) {
-            this.treeSize++;
-            root = insertNode(root, new Node<>(key, value));
-        }
-
-        //Check if the tree has data within it or not by comparing the root value to null as everything stems from this node.
-        public boolean isEmpty() {
-            return this.root == null;
-        }
-
-        //Clear the tree of all its nodes by deleting the greatest parent (root node)
-        public void clearTree() {
-            this.root = null;
-        }
-
-
-        //O(logn) performance as we traverse the tree to find the value found at the key, the maximum height of the tree is logn of the numbers of nodes.
-        public V get(K key) {
-            //The key isnt provided? return null we cant search for nothing.
-            if (key == null) {
-                return null;
+        /**
+         * ensureCapacity() - Grows the row arrays and the arena to hold at least the given number of rows and message bytes, so a bulk load can size them once.
+         * @param rows - The number of rows needed.
+         * @param messageBytes - The number of arena bytes needed.
+         */
+        public void ensureCapacity(int rows, int messageBytes) {
+            if(rows > this.ids.length) {
+                int capacity = Math.max(rows, this.ids.length * 2);
+                int[] newIds = new int[capacity];
+                int[] newUserIds = new int[capacity];
+                long[] newDates = new long[capacity];
+                int[] newMessageStarts = new int[capacity + 1];
+                System.arraycopy(this.ids, 0, newIds, 0, this.count);
+                System.arraycopy(this.userIds, 0, newUserIds, 0, this.count);
+                System.arraycopy(this.dates, 0, newDates, 0, this.count);
+                System.arraycopy(this.messageStarts, 0, newMessageStarts, 0, this.count + 1);
+                this.ids = newIds;
+                this.userIds = newUserIds;
+                this.dates = newDates;
+                this.messageStarts = newMessageStarts;
             }
-
-            //The node we are trying to find, we will search recursively down the subtrees by calling the second get method below this (the private recursive method)
-            Node toFind = get(root, key);
-            if (toFind == null) {
-                return null;
+            if(messageBytes > this.arena.length) {
+                byte[] newArena = new byte[Math.max(messageBytes, this.arena.length * 2)];
+                System.arraycopy(this.arena, 0, newArena, 0, this.messageStarts[this.count]);
+                this.arena = newArena;
             }
-
-            //We found the node we were looking for, return the value associated within it as the recursive searched is only returning a node for abstraction purposes if needed later.
-            return (V) toFind.value;
         }
 
-        private Node get(Node currentNode, K key) {
-            //Cant search against nothing, return null to show an error occured.
-            if (currentNode == null)
-                return null;
-
-            //The comparison we are making between the the key we have and the key we are looking for in the avl tree structure
-            int comparison = ((Comparable<K>) currentNode.key).compareTo(key);
-
-            if (comparison < 0) {
-                //The node we are looking for has a key less than the current node, we should go down the left subtree.
-                return get(currentNode.left, key);
-            } else if (comparison > 0) {
-                //The key we are searching for has a value greater than the key at the current node, search down the right subtree.
-                return get(currentNode.right, key);
-            } else {
-                //We are at the node (comparison == 0) we are looking for, return this node.
-                return currentNode;
+        //O(logn) addition of a row to the list for a key, creating the list the first time we see the key.
+        private <K extends Comparable<K>> void addRow(AVLTree<K, RowList> index, K key, int row) {
+            RowList rows = index.get(key);
+            if(rows == null) {
+                rows = new RowList();
+                index.insertKeyValuePair(key, rows);
             }
+            rows.insert(row, this.dates);
         }
 
+        //Makes the Weet object for a row.
+        private Weet weetAt(int row) {
+            String message = new String(this.arena, this.messageStarts[row], this.messageStarts[row + 1] - this.messageStarts[row], StandardCharsets.UTF_8);
+            return new Weet(this.ids[row], this.userIds[row], message, new Date(this.dates[row]));
+        }
 
-        //Internal storage for the nodes we have traversed in the tree, if this was to be improved I would abstract this outside of the tree so we can define
-        //search paramaters elsewhere in the program to stop the need for having to iterate across all the nodes again once traversed to see which ones match the condition.
-        private MyArrayList<Node<K, V>> nodes = new MyArrayList<>();
+        public Weet get(int id) {
+            int row = this.rowsById.get(id);
+            return row < 0 ? null : weetAt(row);
+        }
 
-        //O(n) performance to get all the nodes in the list in ascending order by key.
-        public void inOrderTraversal(Node n) {
-            //The node doesnt exist, we cant traverse this.
-            if(n == null) {
-                return;
+        //O(k) copy of the weets at the first end positions of a list, newest first.
+        private Weet[] newestFirst(RowList rows, int end) {
+            Weet[] toReturn = new Weet[end];
+            for(int i=0; i<end; i++) {
+                toReturn[i] = weetAt(rows.get(end - 1 - i));
             }
-
-            inOrderTraversal(n.left); //left
-            //We must use addToTail so the list is inserted in ascending order based on the AVLTree comparable.
-            this.nodes.add(n); //root
-            inOrderTraversal(n.right); //right
+            return toReturn;
         }
 
-        //Method to clear the locally stored nodes linked list.
-        public void clearNodes() {
-            this.nodes.clear();
+        public Weet[] getWeets() {
+            return newestFirst(this.byDate, this.byDate.size());
         }
 
-        //Getter method for the array found above the preOrderTraversal() method because the data for this is stored there.
-        public MyArrayList<Node<K, V>> getNodesTraversed() {
-            return this.nodes;
+        public Weet[] getWeetsBefore(Date dateBefore) {
+            return newestFirst(this.byDate, this.byDate.lowerBound(this.dates, dateBefore.getTime()));
         }
 
-    //End of the AVLTree class
-    }
-
-    class Node<K, V> {
-        //The data associated with the Node, the key value pair with the key being the Weet id and the value being the Weet
-        //Slightly inefficient use for memory as I am storing the id twice but its a negligible amount for the scale of this project.
-        public K key;
-        public V value;
-
-        //The pointers to the nodes surrounding this node, the sibling nodes and the parent.
-        public Node left;
-        public Node right;
-        public Node parent;
-
-        //A useful variable to store the height of the subtree with this node as its parent, not strictly needed but helpful
-        //The number of nodes at both the left of this node and the right of this node summed.
-        public int height;
-
-        //Constructor to instantiate a new node within the AVL Tree.
-        public Node(K key, V value) {
-            this.key = key;
-            this.value = value;
-            this.height = 1;
+        //The weets from a date onwards, newest first, used to fill a new trending window.
+        public Weet[] getWeetsFrom(Date dateFrom) {
+            int start = this.byDate.lowerBound(this.dates, dateFrom.getTime());
+            Weet[] toReturn = new Weet[this.byDate.size() - start];
+            for(int i=0; i<toReturn.length; i++) {
+                toReturn[i] = weetAt(this.byDate.get(this.byDate.size() - 1 - i));
+            }
+            return toReturn;
         }
 
-        //A method to perform a right rotation on the tree to aid in its balancing.
-        //Just follows the procedures defined in the ADT specification.
-        //Rotations are ran in O(logn) time.
-        public Node rotateRight() {
-            //Store the left node temporarily, we will overwrite it but also want it again in the future.
-            Node tempNode = this.left;
-
-            //Update the current left node to the be the current right node.
-            this.left = tempNode.right;
-            this.calculateNodeHeight();
-
-            //Set the current right node to this node, (the parent of the current right node)
-            tempNode.right = this;
-            tempNode.calculateNodeHeight();
-
-            //Upward shift of the nodes.
-            tempNode.parent = this.parent;
-
-            //Return an updated version of this node after having been rotated.
-            return tempNode;
+        public Weet[] getWeetsByUser(int uid) {
+            RowList rows = this.byUser.get(uid);
+            return rows == null ? new Weet[0] : newestFirst(rows, rows.size());
         }
 
-        //A left rotation on this node, aiding in the self balance of the tree to ensure O(logn) search times.
-        //Just follows the principles defined in the ADT definition.
-        //Rotations are ran in O(logn) time.
-        public Node rotateLeft() {
-            Node tempNode = this.right;
-
-            //Perform the leftward balance, making the current right node to be the current left node.
-            this.right = tempNode.left;
-            this.calculateNodeHeight();
-
-            //second step in this balancing maneoveur, changing the left node of this tree to be itself.
-            tempNode.left = this;
-            tempNode.calculateNodeHeight();
-
-            //We now return the node again but the balanced version of it.
-            return tempNode;
+        public Weet[] getWeetsOn(long day) {
+            RowList rows = this.byDay.get(day);
+            return rows == null ? new Weet[0] : newestFirst(rows, rows.size());
         }
 
-        //Recalculates this nodes height from the top down in both the left and right subtrees.
-        public void calculateNodeHeight() {
-            int subTreeHeight = 1;
-
-            if (left != null)
-                subTreeHeight += left.height;
-
-            if (right != null)
-                subTreeHeight += right.height;
-
-            //Overwrite the current class height variable to be the newly computed height of this node.
-            this.height = subTreeHeight;
+        public Weet[] getWeetsWithWord(String word) {
+            RowList rows = this.byWord.get(word);
+            return rows == null ? new Weet[0] : newestFirst(rows, rows.size());
         }
 
-        //Returns the balance between this nodes left subtree and right subtree (the difference in heights between them)
-        private int calculateBalance() {
-            //Calculate the left height of this node.
-            int leftHeight = 0;
-            if (left != null)
-                leftHeight += left.height;
-
-            //Calculate the right height of this node
-            int rightHeight = 0;
-            if (right != null)
-                rightHeight += right.height;
-
-            //Returns the difference between the two heights, producing our "balance"
-            return leftHeight - rightHeight;
+        /**
+         * getWeetsContaining() - The compact form of getWeetsContaining() and getWeetsContainingPage(), checking the rows of the smallest trigram list of the query
+         * (or every row for a query shorter than a trigram) from the cursor, newest first, until limit of them contain the query.
+         * The check is done on the UTF-8 bytes in the arena, so a message is only turned into a String when it matches.
+         * @param query - The word/phrase to look for.
+         * @param afterWid - The id of the last weet on the previous page, or FIRST_PAGE.
+         * @param limit - The most weets to return.
+         * @return - The matching weets, most recent first.
+         */
+        public Weet[] getWeetsContaining(String query, int afterWid, int limit) {
+            RowList candidates = query.length() < 3 ? this.byDate : smallestTrigramRows(query);
+            return page(candidates, afterWid, limit, query.getBytes(StandardCharsets.UTF_8));
         }
 
+        public Weet[] getWeetsPage(int afterWid, int limit) {
+            return page(this.byDate, afterWid, limit, null);
+        }
 
-        //Balance the tree so that at most the tree is of O(logn) height. The tree can baalnce itself in O(logn) time as defined in the ADT specification.
-        public Node balanceNode() {
-            //Update the current node height, good practice so we can accuratley perform the following operations.
-            this.calculateNodeHeight();
-
-            int currentNodeBalance = this.calculateBalance();
-
-            //Check for a right skew on this nodes data, if so we should balance towards the left.
-            if (currentNodeBalance > 1) {
-                if (this.left.calculateBalance() < 0) {
-                    this.left = this.left.rotateLeft();
-                }
-                return rotateRight();
-
-            //Check for a left skew, if so balance towards the right.
-            } else if (currentNodeBalance < -1) {
-                if (this.right.calculateBalance() > 0) {
-                    this.right = this.right.rotateRight();
+        //Walks a list newest first from just after the cursor, collecting up to limit rows whose message contains the query (every row if the query is null).
+        private Weet[] page(RowList rows, int afterWid, int limit, byte[] query) {
+            int position = rows == null ? -1 : positionAfter(rows, afterWid);
+            MyArrayList<Weet> page = new MyArrayList<>();
+            for(int i=position - 1; i>=0 && page.size() < limit; i--) {
+                int row = rows.get(i);
+                if(query == null || messageContains(row, query)) {
+                    page.add(weetAt(row));
                 }
-                return rotateLeft();
             }
 
-            //Return this node again in its balanced form.
-            //This could also be potentially called if the node had no skew, and is therefore just returning itself
-            return this;
-        }
-
-        //Getters for the generic values found within the node. Used often when a traversal has occured and we want to get the data out from the tree.
-        public V getValue() {
-            return this.value;
-        }
-
-        public K getKey() {
-            return this.key;
+            Weet[] toReturn = new Weet[page.size()];
+            for(int i=0; i<page.size(); i++) {
+                toReturn[i] = page.get(i);
+            }
+            return toReturn;
         }
 
-        //End of the Node class.
-    }
-
-
-    class MyArrayList<E> {
-
-        //the internal object array which holds all of our elements.
-        private Object[] array;
-        //the number of elements currently being held by the arraylist.
-        private int size;
-        //the maximum amount of elements we can currently hold without resizing the internal array.
-        private int capacity;
-
-        public MyArrayList() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
+        //O(logk) method to find where a page carries on from in a list, the page then starts at the position below the one returned. Returns -1 if the cursor isnt a weet.
+        //As with the trees, the rows sharing the cursor's date are skipped up to and including the cursor, or all of them if the cursor isnt in this list.
+        private int positionAfter(RowList rows, int afterWid) {
+            if(afterWid == FIRST_PAGE) {
+                return rows.size();
+            }
+            int cursor = this.rowsById.get(afterWid);
+            if(cursor < 0) {
+                return -1;
+            }
+            int low = rows.lowerBound(this.dates, this.dates[cursor]);
+            for(int i=rows.upperBound(this.dates, this.dates[cursor]) - 1; i>=low; i--) {
+                if(rows.get(i) == cursor) {
+                    return i;
+                }
+            }
+            return low;
         }
 
-        /**
-         * add() - O(1) method to add a new element to the arraylist at the next available position, in the case where the internal array is full a full copy of the arraylist is performed to double its capacity.
-         * In the situation where this occurs the add method runs in O(n) time.
-         * @param element - The element we are trying to add to the arraylist
-         * @return true when the element is added, false otherwise (should never actually be false).
-         */
-        public boolean add(E element) {
-            if (this.size == this.capacity) {
-                //The size is the same as the capacity we will have to resize the array, copy all elements over to the new array and then overwrite the old array and redefine the new capacity.
-                Object[] newArray = new Object[this.capacity * 2];
-                for (int i = 0; i < size; i++) {
-                    newArray[i] = this.array[i];
+        //O(L logn) lookup of every trigram in the query, returning the shortest list or null if any trigram has never been weeted.
+        private RowList smallestTrigramRows(String query) {
+            RowList smallest = null;
+            for(int i=0; i+3<=query.length(); i++) {
+                RowList rows = this.byTrigram.get(query.substring(i, i + 3));
+                if(rows == null) {
+                    return null;
+                }
+                if(smallest == null || rows.size() < smallest.size()) {
+                    smallest = rows;
                 }
-                this.array = newArray;
-                this.capacity = this.capacity * 2;
-                this.array[size] = element;
-                this.size++;
-            } else {
-                this.array[size] = element;
-                this.size++;
             }
-            return true;
+            return smallest;
         }
 
-
-        /**
-         * contains() - O(n) method that checks if the provided element is contained within the arraylist.
-         * @param element - The element to check for in the arraylist.
-         * @return - true if the element being checked exists, false otherwise.
-         */
-        public boolean contains(E element) {
-            for (int i=0; i<size; i++) {
-                //Must use a .equals rather than == because it may not be off a primitve type due to the generic nature of the arraylist.
-                if(this.array[i].equals(element)) {
+        //O(Lq) check of whether a row's message contains the query, on their UTF-8 bytes. A UTF-8 character never starts part way through another's bytes,
+        //so the bytes match exactly where the characters would.
+        private boolean messageContains(int row, byte[] query) {
+            int last = this.messageStarts[row + 1] - query.length;
+            for(int start=this.messageStarts[row]; start<=last; start++) {
+                int i = 0;
+                while(i < query.length && this.arena[start + i] == query[i]) {
+                    i++;
+                }
+                if(i == query.length) {
                     return true;
                 }
             }
@@ -674,54 +1700,41 @@ public class WeetStore implements IWeetStore {
         }
 
         /**
-         * clear() - O(1) method that resets the arraylist back to its post instantiated state, not used too often.
+         * write() - Writes the weets and the indexes in the format saveSnapshot() uses for the trees, so either mode can load a snapshot saved by the other.
+         * @param out - The snapshot being written.
+         * @throws IOException - If it cant be written.
          */
-        public void clear() {
-            this.capacity = 128;
-            this.array = new Object[capacity];
-            this.size = 0;
-        }
-
-        /**
-         * isEmpty() - O(1) method to check if the arraylist actually contains some elements.
-         */
-        public boolean isEmpty() {
-            return this.size() == 0;
-        }
-
-        /**
-         * size() - Essentially just a getter for the private size variable and is therefore O(1).
-         */
-        public int size() {
-            return size;
-        }
+        public void write(DataOutputStream out) throws IOException {
+            out.writeInt(this.count);
+            for(int i=0; i<this.byDate.size(); i++) {
+                int row = this.byDate.get(i);
+                out.writeInt(this.ids[row]);
+                out.writeInt(this.userIds[row]);
+                out.writeLong(this.dates[row]);
+                out.writeInt(this.messageStarts[row + 1] - this.messageStarts[row]);
+                out.write(this.arena, this.messageStarts[row], this.messageStarts[row + 1] - this.messageStarts[row]);
+            }
 
-        /**
-         * get() - O(1) method that returns the element contained at the index provieed.
-         * @param index - The position in the arraylist we want to get the data for.
-         * @return the element we have found in the arraylist at the provided index, the type of this element is E.
-         */
-        // This line allows us to cast our object to type (E) without any warnings.
-        // For further detais, please see: http://docs.oracle.com/javase/1.5.0/docs/api/java/lang/SuppressWarnings.html
-        @SuppressWarnings("unchecked")
-        public E get(int index) {
-            return (E) this.array[index];
+            writeRowIndex(out, this.byUser, (o, key) -> o.writeInt(key));
+            writeRowIndex(out, this.byWord, (o, key) -> SnapshotFile.writeString(o, key));
+            writeRowIndex(out, this.byTrigram, (o, key) -> SnapshotFile.writeString(o, key));
         }
 
-        /**
-         * indexOf() - O(n) method that finds the index of an element in the arraylist when provided with the element itself.
-         * @param element - The element we want to find the index for.
-         * @return - The integer value of the index where this element exists in the arraylist.
-         */
-        public int indexOf(E element) {
-            for (int i=0;i<this.size();i++) {
-                if (element.equals(this.get(i))) {
-                    return i;
+        //The same as writeIndex(), the ids in each list are written newest first to match the trees.
+        private <K extends Comparable<K>> void writeRowIndex(DataOutputStream out, AVLTree<K, RowList> index, KeyWriter<K> keyWriter) throws IOException {
+            out.writeInt(index.getTreeSize());
+            AVLTree<K, RowList>.TreeIterator keys = index.iterator();
+            while(keys.hasNext()) {
+                Node<K, RowList> key = keys.next();
+                keyWriter.write(out, key.getKey());
+                RowList rows = key.getValue();
+                out.writeInt(rows.size());
+                for(int i=rows.size() - 1; i>=0; i--) {
+                    out.writeInt(this.ids[rows.get(i)]);
                 }
             }
-            return -1;
         }
-    //End of the arraylist class.
+    //End of the compact weets class.
     }
 //End of weetstore class.
 }
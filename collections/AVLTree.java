@@ -0,0 +1,295 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * AVLTree class, the self balancing binary search tree every store keeps its data in. Larger keys are kept down the left, so an in order walk gives the
+ * largest key first (the most recent date, the highest id), and a key equal to one already in the tree goes down the left too, so the last one added comes first.
+ * Insert and search are O(logn), and trees can be built bottom up from sorted nodes in O(n) with sortNodes() and buildFromSorted().
+ */
+public class AVLTree<K extends Comparable<K>, V> {
+
+    //The root node of this tree. The single node at the top for which every other node stems from.
+    private Node<K, V> root;
+    //the number of nodes within the tree (root = 1)
+    private int treeSize;
+
+    public AVLTree() {
+        this.treeSize = 0;
+    }
+
+    public int getTreeSize() {
+        return this.treeSize;
+    }
+
+    //O(logn) insertion in this tree as we need to traverse the tree to find the right location.
+    private Node<K, V> insertNode(Node<K, V> locationNode, Node<K, V> insertingNode) {
+        if (locationNode != null) {
+            //If the key of the location node is less than or equal to the key we are inserting it goes down the left, else down the right.
+            if (locationNode.key.compareTo(insertingNode.key) <= 0) {
+                locationNode.left = insertNode(locationNode.left, insertingNode);
+            } else {
+                locationNode.right = insertNode(locationNode.right, insertingNode);
+            }
+
+            //We have just inserted data into this nodes subtree somewhere, we should rebalance this node now so it maintains optimal data structure efficiency.
+            return locationNode.balanceNode();
+        } else {
+            return insertingNode;
+        }
+    }
+
+    //O(logn) peroformance as it just makes a call to the function insertNode()
+    public void insertKeyValuePair(K key, V value) {
+        this.treeSize++;
+        this.root = insertNode(this.root, new Node<>(key, value));
+    }
+
+    //Check if the tree has data within it or not by comparing the root value to null as everything stems from this node.
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    //Clear the tree of all its nodes by deleting the greatest parent (root node)
+    public void clearTree() {
+        this.root = null;
+        this.treeSize = 0;
+    }
+
+    //O(logn) performance as we walk down the tree to find the value found at the key, the maximum height of the tree is logn of the numbers of nodes.
+    //A loop rather than recursion, so a lookup doesnt make a call per level.
+    public V get(K key) {
+        //The key isnt provided? return null we cant search for nothing.
+        if (key == null) {
+            return null;
+        }
+
+        Node<K, V> currentNode = this.root;
+        while (currentNode != null) {
+            int comparison = currentNode.key.compareTo(key);
+            if (comparison < 0) {
+                //The key at this node is smaller, the key we are looking for is down the left with the larger keys.
+                currentNode = currentNode.left;
+            } else if (comparison > 0) {
+                currentNode = currentNode.right;
+            } else {
+                return currentNode.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * buildFromSorted() - O(n) method replacing the contents of the tree with nodes which are already in the tree's order (largest key first, see sortNodes()).
+     * The middle node becomes the root and each half is linked below it the same way, so the tree is built perfectly balanced from the bottom up
+     * rather than through n inserts each rebalancing its way down from the root.
+     * @param nodes - The nodes in the tree's order.
+     * @param count - The number of nodes at the start of the array to build the tree from.
+     */
+    public void buildFromSorted(Node<K, V>[] nodes, int count) {
+        this.root = link(nodes, 0, count - 1);
+        this.treeSize = count;
+    }
+
+    //Links the nodes between the two indexes into a balanced subtree and returns its root. Only recurses log2(n) deep.
+    private Node<K, V> link(Node<K, V>[] nodes, int low, int high) {
+        if(low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        Node<K, V> node = nodes[middle];
+        node.left = link(nodes, low, middle - 1);
+        node.right = link(nodes, middle + 1, high);
+        node.calculateNodeHeight();
+        return node;
+    }
+
+    /**
+     * sortNodes() - O(n logn) stable merge sort of nodes into the tree's order for buildFromSorted(). Nodes with equal keys end up in the order inserting them
+     * one at a time would have left them, the last one first, so a bulk built tree iterates exactly like one built by insertKeyValuePair().
+     * Large arrays are split in half across threads, up to one thread per processor, before the sorted halves are merged. It uses nothing from a tree, so it is static.
+     * @param nodes - The nodes, in the order they would have been inserted.
+     * @param count - The number of nodes at the start of the array to sort.
+     */
+    public static <K extends Comparable<K>, V> void sortNodes(Node<K, V>[] nodes, int count) {
+        //Reversing first and then sorting stably puts the later of two equal keys first.
+        for(int i=0, j=count - 1; i<j; i++, j--) {
+            Node<K, V> swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        mergeSort(nodes, Node.newArray(count), 0, count, Runtime.getRuntime().availableProcessors());
+    }
+
+    //Sorts the nodes from low up to (not including) high, largest key first, using the same part of the buffer so the threads never share any slots.
+    private static <K extends Comparable<K>, V> void mergeSort(final Node<K, V>[] nodes, final Node<K, V>[] buffer, final int low, final int high, final int threads) {
+        if(high - low <= 16) {
+            //Insertion sort is quicker for the small ranges at the bottom.
+            for(int i=low + 1; i<high; i++) {
+                Node<K, V> node = nodes[i];
+                int j = i - 1;
+                while(j >= low && comesBefore(node, nodes[j])) {
+                    nodes[j + 1] = nodes[j];
+                    j--;
+                }
+                nodes[j + 1] = node;
+            }
+            return;
+        }
+
+        final int middle = (low + high) >>> 1;
+        if(threads > 1 && high - low >= 65536) {
+            //Sort the first half on another thread while this one sorts the second half.
+            Thread firstHalf = new Thread(() -> mergeSort(nodes, buffer, low, middle, threads / 2));
+            firstHalf.start();
+            mergeSort(nodes, buffer, middle, high, threads - threads / 2);
+            joinUninterruptibly(firstHalf);
+        } else {
+            mergeSort(nodes, buffer, low, middle, 1);
+            mergeSort(nodes, buffer, middle, high, 1);
+        }
+
+        if(!comesBefore(nodes[middle], nodes[middle - 1])) {
+            //The halves are already in order, which is common when the input was nearly sorted.
+            return;
+        }
+        System.arraycopy(nodes, low, buffer, low, middle - low);
+        int left = low;
+        int right = middle;
+        int out = low;
+        while(left < middle && right < high) {
+            //Taking from the left on a tie keeps the sort stable.
+            if(comesBefore(nodes[right], buffer[left])) {
+                nodes[out++] = nodes[right++];
+            } else {
+                nodes[out++] = buffer[left++];
+            }
+        }
+        while(left < middle) {
+            nodes[out++] = buffer[left++];
+        }
+    }
+
+    //True if the first node has a strictly larger key, so comes before the second in the tree's order.
+    private static <K extends Comparable<K>, V> boolean comesBefore(Node<K, V> first, Node<K, V> second) {
+        return first.key.compareTo(second.key) > 0;
+    }
+
+    //Waits for a sorting thread to finish. It is still writing into the arrays so we cant give up on it if interrupted, we just pass the interrupt on afterwards.
+    static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while(true) {
+            try {
+                thread.join();
+                break;
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //An iterator over every node in the tree's order, the largest key first as the larger keys are inserted down the left.
+    public TreeIterator iterator() {
+        return new TreeIterator(null, false, null, false);
+    }
+
+    //An iterator over the nodes with a key less than (or equal to if inclusive) the key provided, starting at the largest of them.
+    public TreeIterator headIterator(K highKey, boolean inclusive) {
+        return new TreeIterator(highKey, inclusive, null, false);
+    }
+
+    //An iterator over the nodes with a key greater than (or equal to if inclusive) the key provided, stopping as soon as it reaches a smaller key.
+    public TreeIterator tailIterator(K lowKey, boolean inclusive) {
+        return new TreeIterator(null, false, lowKey, inclusive);
+    }
+
+    //An iterator over the nodes with a key between the two keys provided.
+    public TreeIterator subIterator(K lowKey, boolean lowInclusive, K highKey, boolean highInclusive) {
+        return new TreeIterator(highKey, highInclusive, lowKey, lowInclusive);
+    }
+
+    /**
+     * TreeIterator class, walks the nodes of the tree in order one at a time without recursion. It keeps its own small stack of the nodes left to visit
+     * (at most the height of the tree) rather than copying every node into a list, so a query only allocates the iterator itself no matter how many
+     * nodes it reads, can start part way through the tree, and can stop as soon as it has what it needs.
+     * Every iterator has its own stack, so any number of them can walk the same tree at once.
+     */
+    public class TreeIterator {
+
+        //The nodes we still have to visit (and their right subtrees), the next node is at the top.
+        //64 covers the height of any tree we could hold in memory, it only grows if the balancing has gone badly wrong.
+        private Node<K, V>[] stack;
+        private int stackSize;
+
+        //The smallest key to stop at, null to carry on to the end of the tree.
+        private K lowKey;
+        private boolean lowInclusive;
+
+        //O(logn) set up, finding the first node at or below the high key (the first node of the tree if the high key is null).
+        TreeIterator(K highKey, boolean highInclusive, K lowKey, boolean lowInclusive) {
+            this.stack = Node.newArray(64);
+            this.stackSize = 0;
+            this.lowKey = lowKey;
+            this.lowInclusive = lowInclusive;
+
+            Node<K, V> n = root;
+            while(n != null) {
+                int comparison = highKey == null ? -1 : n.key.compareTo(highKey);
+                if(comparison < 0 || (comparison == 0 && highInclusive)) {
+                    //This node is in range, so are the nodes to its right, but there may be more in range to its left (the larger keys) which come first.
+                    push(n);
+                    n = n.left;
+                } else {
+                    //This node and everything to its left is too large, the first node must be to the right.
+                    n = n.right;
+                }
+            }
+        }
+
+        //O(1) check for another node, false once we run out of nodes or reach a key below the low key.
+        public boolean hasNext() {
+            if(this.stackSize == 0) {
+                return false;
+            }
+            if(this.lowKey == null) {
+                return true;
+            }
+            int comparison = this.stack[this.stackSize - 1].key.compareTo(this.lowKey);
+            return comparison > 0 || (comparison == 0 && this.lowInclusive);
+        }
+
+        //The next node without moving on from it, null if there are no nodes left.
+        public Node<K, V> peek() {
+            if(!hasNext()) {
+                return null;
+            }
+            return this.stack[this.stackSize - 1];
+        }
+
+        //O(1) amortised, returns the next node and moves on to the one after it. Only call this when hasNext() is true.
+        public Node<K, V> next() {
+            Node<K, V> n = this.stack[--this.stackSize];
+            this.stack[this.stackSize] = null;
+
+            //The nodes after this one are in its right subtree, starting from the far left of it.
+            Node<K, V> following = n.right;
+            while(following != null) {
+                push(following);
+                following = following.left;
+            }
+            return n;
+        }
+
+        private void push(Node<K, V> n) {
+            if(this.stackSize == this.stack.length) {
+                Node<K, V>[] newStack = Node.newArray(this.stack.length * 2);
+                System.arraycopy(this.stack, 0, newStack, 0, this.stackSize);
+                this.stack = newStack;
+            }
+            this.stack[this.stackSize++] = n;
+        }
+    }
+
+//End of the AVLTree class
+}
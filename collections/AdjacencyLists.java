@@ -0,0 +1,639 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * AdjacencyLists class, one side of the follower graph (every user's follows, or every user's followers) as sorted primitive arrays rather than trees.
+ * Each user with at least one edge has a slot, found from their id through an IntIntHashMap in O(1) expected, and a slot is a run of the other users' ids in
+ * ascending order with the follow times (milliseconds) in a parallel array. An edge costs 4 bytes for the id and 8 for the time in each direction,
+ * against a whole tree node (object header, two child pointers and a height as well as the id and time), and reading a user's edges is a sequential walk through one array.
+ *
+ * After buildFromSorted() or compact() every slot is a slice of one shared pair of arrays, laid out user after user with no gaps (compressed sparse row).
+ * A slice is always full, so the first insert into a user moves their run out into arrays of their own with room to grow, doubling as they fill,
+ * and nothing is ever written into the shared arrays. compact() packs the runs back together when the spare room is worth reclaiming.
+ *
+ * The ids of a very long run (a popular user's followers) are compressed into a RoaringIntSet once there are more than COMPRESS_AT of them, as long as they are
+ * packed closely enough that the set is smaller. Their times stay in an array in the same order, as the position of an id in the set is the position of its time.
+ * Everything here works on either form the same way, so the queries on the store dont know which a user has.
+ *
+ * Every run also keeps its ids a second time in the order the follows happened (the earliest first, and for the same time the larger id first),
+ * so the date ordered queries read them straight off rather than sorting the run on every call. This is 4 more bytes an edge, as the times arent repeated,
+ * a time is found through the id's position in the run when one is needed. A new follow is almost always the latest, which just goes on the end.
+ */
+public class AdjacencyLists {
+
+    //The slot of each user who has a run.
+    private IntIntHashMap slots;
+    //The number of slots in use.
+    private int slotCount;
+
+    //For each slot, the user it belongs to, the arrays holding their run, where the run starts in them, its length and how far it can grow before it has to move.
+    //A compressed run has its ids in its set rather than an array, and the offset and capacity are then just for its times and date order.
+    //The date order of a run is in its own arrays (byTime) but at the same offset as the ids and times, so it moves and grows along with them.
+    private int[] users;
+    private int[][] ids;
+    private RoaringIntSet[] sets;
+    private long[][] times;
+    private int[][] byTime;
+    private int[] offsets;
+    private int[] sizes;
+    private int[] capacities;
+
+    //The total number of edges across every run.
+    private long edgeCount;
+
+    //intersect() gallops when one run is more than this many times the size of the other.
+    private static final int GALLOP_RATIO = 32;
+    //A run is compressed once it has more than this many ids, if on average at least COMPRESS_MIN_PER_CONTAINER of them share each of the set's containers.
+    //Each container costs about as much as 20 ids save by going from 4 bytes to 2, so sparser ids are left in the array where they are smaller.
+    private static final int COMPRESS_AT = 4096;
+    private static final int COMPRESS_MIN_PER_CONTAINER = 32;
+
+    public AdjacencyLists() {
+        clear();
+    }
+
+    //Empties the lists, dropping every run.
+    private void clear() {
+        this.slots = new IntIntHashMap();
+        this.slotCount = 0;
+        this.users = new int[16];
+        this.ids = new int[16][];
+        this.sets = new RoaringIntSet[16];
+        this.times = new long[16][];
+        this.byTime = new int[16][];
+        this.offsets = new int[16];
+        this.sizes = new int[16];
+        this.capacities = new int[16];
+        this.edgeCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.slotCount == 0;
+    }
+
+    //The number of users with at least one edge.
+    public int userCount() {
+        return this.slotCount;
+    }
+
+    public long edgeCount() {
+        return this.edgeCount;
+    }
+
+    //O(1) expected, the slot of a user's run or -1 if they have no edges.
+    public int slotOf(int user) {
+        return this.slots.get(user);
+    }
+
+    //The user a slot belongs to. Slots are numbered from 0 to userCount() - 1 in the order the users got their first edge (or their order in buildFromSorted()).
+    public int userAt(int slot) {
+        return this.users[slot];
+    }
+
+    //The number of edges in a slot's run.
+    public int size(int slot) {
+        return this.sizes[slot];
+    }
+
+    //The id at a position in a slot's run, the positions are in ascending id order. O(1), or O(logc) plus a walk of a bitmap container's words if it is compressed.
+    public int idAt(int slot, int position) {
+        if(this.sets[slot] != null) {
+            return this.sets[slot].get(position);
+        }
+        return this.ids[slot][this.offsets[slot] + position];
+    }
+
+    //O(k) copy of every id in a slot's run into an array in ascending order, the quickest way to read all of a compressed run.
+    public void copyIds(int slot, int[] into) {
+        if(this.sets[slot] != null) {
+            this.sets[slot].copyTo(into);
+        } else {
+            System.arraycopy(this.ids[slot], this.offsets[slot], into, 0, this.sizes[slot]);
+        }
+    }
+
+    //True if the slot's ids have been compressed into a RoaringIntSet.
+    public boolean isCompressed(int slot) {
+        return this.sets[slot] != null;
+    }
+
+    //The follow time at a position in a slot's run.
+    public long timeAt(int slot, int position) {
+        return this.times[slot][this.offsets[slot] + position];
+    }
+
+    /**
+     * copyIdsByTime() - O(count) copy of a slot's ids in the order the follows happened, the latest first, and for the same time the smaller id first.
+     * @param slot - The slot to read.
+     * @param into - The array to copy them into, from its start.
+     * @param count - The number of the latest ids to copy, no more than the size of the run.
+     */
+    public void copyIdsByTime(int slot, int[] into, int count) {
+        int[] order = this.byTime[slot];
+        int last = this.offsets[slot] + this.sizes[slot] - 1;
+        for(int i=0; i<count; i++) {
+            into[i] = order[last - i];
+        }
+    }
+
+    /**
+     * countSince() - O(logk logk) binary search of a slot's date order for the number of follows at or after a time, finding each time it compares with through its id.
+     * @param slot - The slot to search.
+     * @param time - The earliest time to count, in milliseconds.
+     * @return - The number of edges in the run with a time no earlier than the one given.
+     */
+    public int countSince(int slot, long time) {
+        int[] order = this.byTime[slot];
+        int offset = this.offsets[slot];
+        int low = 0;
+        int high = this.sizes[slot];
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(timeOf(slot, order[offset + middle]) < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return this.sizes[slot] - low;
+    }
+
+    //O(logk) lookup of the time of an id which is in a slot's run.
+    private long timeOf(int slot, int id) {
+        return timeAt(slot, indexOf(slot, id));
+    }
+
+    /**
+     * indexOf() - O(logk) binary search of a slot's run for an id, where k is the length of the run, or RoaringIntSet.indexOf() if it is compressed.
+     * @param slot - The slot to search.
+     * @param id - The id to look for.
+     * @return - The position of the id in the run, or -(insertion point) - 1 if it isnt there.
+     */
+    public int indexOf(int slot, int id) {
+        if(this.sets[slot] != null) {
+            return this.sets[slot].indexOf(id);
+        }
+        int[] run = this.ids[slot];
+        int offset = this.offsets[slot];
+        int low = 0;
+        int high = this.sizes[slot] - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = run[offset + middle];
+            if(found < id) {
+                low = middle + 1;
+            } else if(found > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    //O(logk), true if the user has an edge to the id. A compressed run with the id in a bitmap container is a single bit test.
+    public boolean contains(int user, int id) {
+        int slot = slotOf(user);
+        if(slot < 0) {
+            return false;
+        }
+        if(this.sets[slot] != null) {
+            return this.sets[slot].contains(id);
+        }
+        return indexOf(slot, id) >= 0;
+    }
+
+    /**
+     * insert() - O(logk) search for the id's place in the user's run, then O(k) to shift the larger ids and times along (O(1) when it is the largest).
+     * The id also goes into the run's date order, O(1) when it is the latest follow and otherwise an O(logk logk) search and O(k) shift.
+     * A user without a run is given one, and a run which is full (including every run in the shared arrays) is first copied into arrays double its length.
+     * A run with more than COMPRESS_AT ids is compressed when it next fills up, if its ids are packed closely enough. A compressed run only shifts its times,
+     * the id goes into the set.
+     * @param user - The user to add the edge to.
+     * @param id - The other user of the edge.
+     * @param time - When the follow happened, in milliseconds.
+     * @return - true if the edge was added, false if the user already had an edge to the id.
+     */
+    public boolean insert(int user, int id, long time) {
+        int slot = slotOf(user);
+        if(slot < 0) {
+            slot = addSlot(user, new int[2], new long[2], new int[2], 0, 0, 2);
+        }
+
+        int size = this.sizes[slot];
+        RoaringIntSet set = this.sets[slot];
+        if(set == null && size == this.capacities[slot] && worthCompressing(slot, size + 1)) {
+            set = RoaringIntSet.fromSorted(this.ids[slot], this.offsets[slot], size);
+            this.sets[slot] = set;
+            this.ids[slot] = null;
+        }
+
+        int position;
+        if(set != null) {
+            //The set adds the id itself and gives back its position.
+            position = set.add(id);
+            if(position < 0) {
+                return false;
+            }
+        } else {
+            position = indexOf(slot, id);
+            if(position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+        }
+
+        if(size == this.capacities[slot]) {
+            long[] newTimes = new long[size * 2];
+            System.arraycopy(this.times[slot], this.offsets[slot], newTimes, 0, size);
+            int[] newOrder = new int[size * 2];
+            System.arraycopy(this.byTime[slot], this.offsets[slot], newOrder, 0, size);
+            this.byTime[slot] = newOrder;
+            if(set == null) {
+                int[] newIds = new int[size * 2];
+                System.arraycopy(this.ids[slot], this.offsets[slot], newIds, 0, size);
+                this.ids[slot] = newIds;
+            }
+            this.times[slot] = newTimes;
+            this.offsets[slot] = 0;
+            this.capacities[slot] = size * 2;
+        }
+
+        int at = this.offsets[slot] + position;
+        if(set == null) {
+            int[] run = this.ids[slot];
+            System.arraycopy(run, at, run, at + 1, size - position);
+            run[at] = id;
+        }
+        long[] runTimes = this.times[slot];
+        System.arraycopy(runTimes, at, runTimes, at + 1, size - position);
+        runTimes[at] = time;
+        this.sizes[slot] = size + 1;
+        this.edgeCount++;
+
+        //Now the id is in the run its time can be found, the ones already in the date order can be too.
+        int[] order = this.byTime[slot];
+        int from = this.offsets[slot];
+        int place = size;
+        if(size > 0 && comesAfter(slot, order[from + size - 1], id, time)) {
+            //Not the latest follow, search for the first one which comes after it.
+            int low = 0;
+            int high = size - 1;
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(comesAfter(slot, order[from + middle], id, time)) {
+                    high = middle;
+                } else {
+                    low = middle + 1;
+                }
+            }
+            place = low;
+            System.arraycopy(order, from + place, order, from + place + 1, size - place);
+        }
+        order[from + place] = id;
+        return true;
+    }
+
+    //True if the edge to the other id comes after the edge to the id at the time given in a slot's date order, later or at the same time with a smaller id.
+    private boolean comesAfter(int slot, int otherId, int id, long time) {
+        long otherTime = timeOf(slot, otherId);
+        return otherTime > time || (otherTime == time && otherId < id);
+    }
+
+    //O(k) check of whether a slot's run, once it has the given number of ids, is long enough to compress and its ids are packed closely enough to be smaller
+    //as a RoaringIntSet, counting the containers they would need. insert() and addRun() both ask here so a run is compressed at the same length either way.
+    private boolean worthCompressing(int slot, int newSize) {
+        if(newSize <= COMPRESS_AT) {
+            return false;
+        }
+        int[] run = this.ids[slot];
+        int offset = this.offsets[slot];
+        int size = this.sizes[slot];
+        int containers = 0;
+        int lastKey = -1;
+        for(int i=0; i<size; i++) {
+            int key = (run[offset + i] ^ Integer.MIN_VALUE) >>> 16;
+            if(key != lastKey) {
+                containers++;
+                lastKey = key;
+            }
+        }
+        return (long) containers * COMPRESS_MIN_PER_CONTAINER <= size;
+    }
+
+    /**
+     * buildFromSorted() - O(n) method replacing the contents of the lists with edges sorted by user and then id, both ascending, with no edge repeated.
+     * The ids and times arrays are kept as the shared arrays every run is a slice of, so they mustnt be changed afterwards.
+     * Each run's date order is sorted from its times, O(k logk), into one more shared array.
+     * Runs which are long and packed closely enough are compressed, and if any are the rest are packed again so their ids dont leave gaps in the shared array.
+     * @param edgeUsers - The user of each edge.
+     * @param edgeIds - The other user of each edge.
+     * @param edgeTimes - When each follow happened, in milliseconds.
+     * @param count - The number of edges at the start of the arrays.
+     */
+    public void buildFromSorted(int[] edgeUsers, int[] edgeIds, long[] edgeTimes, int count) {
+        clear();
+        int[] edgeOrder = new int[count];
+        int[] buffer = new int[count];
+        boolean compressed = false;
+        int start = 0;
+        while(start < count) {
+            int end = start + 1;
+            while(end < count && edgeUsers[end] == edgeUsers[start]) {
+                end++;
+            }
+            sortByTime(edgeIds, edgeTimes, start, end, edgeOrder, buffer);
+            compressed |= addRun(edgeUsers[start], edgeIds, edgeTimes, edgeOrder, start, end - start);
+            start = end;
+        }
+        this.edgeCount = count;
+        if(compressed) {
+            compact();
+        }
+    }
+
+    /**
+     * buildFromRuns() - O(n) method replacing the contents of the lists with runs already laid out the way buildFromSorted() leaves them, date order and all,
+     * such as one side of the graph read back from a snapshot, so nothing has to be sorted again.
+     * The arrays are kept as the shared arrays every run is a slice of, so they mustnt be changed afterwards.
+     * @param runUsers - The user of each run, no user more than once.
+     * @param runSizes - The number of edges in each run, the runs are end to end in the edge arrays in the same order.
+     * @param runCount - The number of runs at the start of the run arrays.
+     * @param edgeIds - The ids of each run in ascending order.
+     * @param edgeTimes - When each follow happened, in milliseconds, alongside its id.
+     * @param edgeOrder - The ids of each run in date order, the earliest first, and for the same time the larger id first.
+     */
+    public void buildFromRuns(int[] runUsers, int[] runSizes, int runCount, int[] edgeIds, long[] edgeTimes, int[] edgeOrder) {
+        clear();
+        boolean compressed = false;
+        int start = 0;
+        for(int r=0; r<runCount; r++) {
+            compressed |= addRun(runUsers[r], edgeIds, edgeTimes, edgeOrder, start, runSizes[r]);
+            start += runSizes[r];
+        }
+        this.edgeCount = start;
+        if(compressed) {
+            compact();
+        }
+    }
+
+    //Gives a user a slot for their run of a bulk build, a slice of the shared arrays, compressing its ids if it is long and packed closely enough.
+    //Returns true if it was compressed, in which case the build has to pack the shared arrays again.
+    private boolean addRun(int user, int[] edgeIds, long[] edgeTimes, int[] edgeOrder, int start, int size) {
+        int slot = addSlot(user, edgeIds, edgeTimes, edgeOrder, start, size, size);
+        if(worthCompressing(slot, size)) {
+            this.sets[slot] = RoaringIntSet.fromSorted(edgeIds, start, size);
+            this.ids[slot] = null;
+            return true;
+        }
+        return false;
+    }
+
+    //Fills the order between start and end with the ids of that run in date order. The edges are put in from the largest id down
+    //and then merge sorted by time, which is stable, so edges with the same time stay largest id first.
+    private static void sortByTime(int[] edgeIds, long[] edgeTimes, int start, int end, int[] order, int[] buffer) {
+        for(int i=start; i<end; i++) {
+            order[i] = end - 1 - (i - start);
+        }
+        mergeSortByTime(edgeTimes, order, buffer, start, end);
+        for(int i=start; i<end; i++) {
+            order[i] = edgeIds[order[i]];
+        }
+    }
+
+    //Sorts the edge indexes from low up to (not including) high by their times, earliest first, the same way as AVLTree.sortNodes() but on primitive indexes.
+    private static void mergeSortByTime(long[] edgeTimes, int[] order, int[] buffer, int low, int high) {
+        if(high - low <= 16) {
+            for(int i=low + 1; i<high; i++) {
+                int edge = order[i];
+                int j = i - 1;
+                while(j >= low && edgeTimes[order[j]] > edgeTimes[edge]) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = edge;
+            }
+            return;
+        }
+
+        int middle = (low + high) >>> 1;
+        mergeSortByTime(edgeTimes, order, buffer, low, middle);
+        mergeSortByTime(edgeTimes, order, buffer, middle, high);
+        if(edgeTimes[order[middle - 1]] <= edgeTimes[order[middle]]) {
+            //The halves are already in order, as they are when the follows were made in id order.
+            return;
+        }
+        System.arraycopy(order, low, buffer, low, middle - low);
+        int left = low;
+        int right = middle;
+        int out = low;
+        while(left < middle && right < high) {
+            //Taking from the left on a tie keeps the sort stable.
+            if(edgeTimes[order[right]] < edgeTimes[buffer[left]]) {
+                order[out++] = order[right++];
+            } else {
+                order[out++] = buffer[left++];
+            }
+        }
+        while(left < middle) {
+            order[out++] = buffer[left++];
+        }
+    }
+
+    /**
+     * compact() - O(n) method packing every run into one new shared pair of arrays with no spare room, giving back the up to half of each grown run which is unused.
+     * The runs keep their slots, and the next insert into any of them moves that run back out.
+     * A compressed run has no ids to share the offset of its times with, so its times and date order are given arrays of their own of exactly their length instead.
+     */
+    public void compact() {
+        long uncompressed = 0;
+        for(int slot=0; slot<this.slotCount; slot++) {
+            if(this.sets[slot] == null) {
+                uncompressed += this.sizes[slot];
+            }
+        }
+        int[] packedIds = new int[(int) uncompressed];
+        long[] packedTimes = new long[(int) uncompressed];
+        int[] packedOrder = new int[(int) uncompressed];
+        int next = 0;
+        for(int slot=0; slot<this.slotCount; slot++) {
+            int size = this.sizes[slot];
+            if(this.sets[slot] != null) {
+                long[] ownTimes = new long[size];
+                System.arraycopy(this.times[slot], this.offsets[slot], ownTimes, 0, size);
+                int[] ownOrder = new int[size];
+                System.arraycopy(this.byTime[slot], this.offsets[slot], ownOrder, 0, size);
+                this.times[slot] = ownTimes;
+                this.byTime[slot] = ownOrder;
+                this.offsets[slot] = 0;
+                this.capacities[slot] = size;
+                continue;
+            }
+            System.arraycopy(this.ids[slot], this.offsets[slot], packedIds, next, size);
+            System.arraycopy(this.times[slot], this.offsets[slot], packedTimes, next, size);
+            System.arraycopy(this.byTime[slot], this.offsets[slot], packedOrder, next, size);
+            this.ids[slot] = packedIds;
+            this.times[slot] = packedTimes;
+            this.byTime[slot] = packedOrder;
+            this.offsets[slot] = next;
+            this.capacities[slot] = size;
+            next += size;
+        }
+    }
+
+    /**
+     * intersect() - Finds the ids two runs have in common, picking the quickest way for their forms and sizes. With a and b the sizes of the smaller and larger run:
+     * Two compressed runs are intersected container by container, ANDing their bitmaps a word at a time (RoaringIntSet.intersect()).
+     * A run and a compressed run are walked together, testing each id of the run in the set's containers (RoaringIntSet.intersectRun()).
+     * Otherwise, when one run is many times the size of the other each id of the smaller is galloped to in the larger, O(a log(b/a)),
+     * and when they are closer in size the two are merged, O(a + b).
+     * There is no bitmap for two long runs which are still arrays, a run long and dense enough for a bitmap to beat the merge is compressed, and so takes the first way.
+     * @param slot1 - The first run's slot.
+     * @param slot2 - The second run's slot.
+     * @param ids - Filled with the ids in common, in ascending order. This and the positions must be at least as long as the smaller run.
+     * @param positions1 - Filled with the position in the first run of each id in common.
+     * @param positions2 - Filled with the position in the second run of each of the same ids.
+     * @return - The number of ids in common.
+     */
+    public int intersect(int slot1, int slot2, int[] ids, int[] positions1, int[] positions2) {
+        int size1 = this.sizes[slot1];
+        int size2 = this.sizes[slot2];
+        RoaringIntSet set1 = this.sets[slot1];
+        RoaringIntSet set2 = this.sets[slot2];
+        if(set1 != null && set2 != null) {
+            return set1.intersect(set2, ids, positions1, positions2);
+        }
+        if(set2 != null) {
+            return set2.intersectRun(this.ids[slot1], this.offsets[slot1], size1, ids, positions1, positions2);
+        }
+        if(set1 != null) {
+            return set1.intersectRun(this.ids[slot2], this.offsets[slot2], size2, ids, positions2, positions1);
+        }
+
+        //Work with the smaller run as the first, swapping the output arrays to match.
+        if(size1 > size2) {
+            return intersect(slot2, slot1, ids, positions2, positions1);
+        }
+        if((long) size1 * GALLOP_RATIO < size2) {
+            return gallopIntersect(slot1, slot2, ids, positions1, positions2);
+        }
+        return mergeIntersect(slot1, slot2, ids, positions1, positions2);
+    }
+
+    //Walks the two runs side by side, moving on whichever has the smaller id.
+    private int mergeIntersect(int slot1, int slot2, int[] ids, int[] positions1, int[] positions2) {
+        int[] run1 = this.ids[slot1];
+        int[] run2 = this.ids[slot2];
+        int offset1 = this.offsets[slot1];
+        int offset2 = this.offsets[slot2];
+        int end1 = offset1 + this.sizes[slot1];
+        int end2 = offset2 + this.sizes[slot2];
+        int i = offset1;
+        int j = offset2;
+        int found = 0;
+        while(i < end1 && j < end2) {
+            int id1 = run1[i];
+            int id2 = run2[j];
+            if(id1 < id2) {
+                i++;
+            } else if(id1 > id2) {
+                j++;
+            } else {
+                ids[found] = id1;
+                positions1[found] = i - offset1;
+                positions2[found] = j - offset2;
+                found++;
+                i++;
+                j++;
+            }
+        }
+        return found;
+    }
+
+    //For each id of the first (smaller) run, steps through the second run in doubling strides from where the last id was found until it passes the id,
+    //then binary searches the last stride. The ids are ascending so the search never goes back.
+    private int gallopIntersect(int slot1, int slot2, int[] ids, int[] positions1, int[] positions2) {
+        int[] run1 = this.ids[slot1];
+        int[] run2 = this.ids[slot2];
+        int offset1 = this.offsets[slot1];
+        int offset2 = this.offsets[slot2];
+        int size1 = this.sizes[slot1];
+        int end2 = offset2 + this.sizes[slot2];
+        int low = offset2;
+        int found = 0;
+        for(int i=0; i<size1 && low<end2; i++) {
+            int id = run1[offset1 + i];
+            //Gallop until run2[high] >= id (or the end), everything before low is smaller than id.
+            int stride = 1;
+            int high = low;
+            while(high < end2 && run2[high] < id) {
+                low = high + 1;
+                high += stride;
+                stride <<= 1;
+            }
+            if(high > end2) {
+                high = end2;
+            }
+            //Binary search low to high for the first id not smaller.
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(run2[middle] < id) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if(low < end2 && run2[low] == id) {
+                ids[found] = id;
+                positions1[found] = i;
+                positions2[found] = low - offset2;
+                found++;
+                low++;
+            }
+        }
+        return found;
+    }
+
+    //Gives a user the next slot, doubling the per slot arrays if they are full, and returns it.
+    private int addSlot(int user, int[] runIds, long[] runTimes, int[] runOrder, int offset, int size, int capacity) {
+        if(this.slotCount == this.users.length) {
+            int length = this.slotCount * 2;
+            int[] newUsers = new int[length];
+            int[][] newIds = new int[length][];
+            RoaringIntSet[] newSets = new RoaringIntSet[length];
+            long[][] newTimes = new long[length][];
+            int[][] newOrders = new int[length][];
+            int[] newOffsets = new int[length];
+            int[] newSizes = new int[length];
+            int[] newCapacities = new int[length];
+            System.arraycopy(this.users, 0, newUsers, 0, this.slotCount);
+            System.arraycopy(this.ids, 0, newIds, 0, this.slotCount);
+            System.arraycopy(this.sets, 0, newSets, 0, this.slotCount);
+            System.arraycopy(this.times, 0, newTimes, 0, this.slotCount);
+            System.arraycopy(this.byTime, 0, newOrders, 0, this.slotCount);
+            System.arraycopy(this.offsets, 0, newOffsets, 0, this.slotCount);
+            System.arraycopy(this.sizes, 0, newSizes, 0, this.slotCount);
+            System.arraycopy(this.capacities, 0, newCapacities, 0, this.slotCount);
+            this.users = newUsers;
+            this.ids = newIds;
+            this.sets = newSets;
+            this.times = newTimes;
+            this.byTime = newOrders;
+            this.offsets = newOffsets;
+            this.sizes = newSizes;
+            this.capacities = newCapacities;
+        }
+
+        int slot = this.slotCount++;
+        this.users[slot] = user;
+        this.ids[slot] = runIds;
+        this.times[slot] = runTimes;
+        this.byTime[slot] = runOrder;
+        this.offsets[slot] = offset;
+        this.sizes[slot] = size;
+        this.capacities[slot] = capacity;
+        this.slots.put(user, slot);
+        return slot;
+    }
+
+//End of the adjacency lists class.
+}
@@ -0,0 +1,99 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * IntHashMap class, an open addressing hash map from primitive int keys to objects, used as the id index.
+ * Unlike an AVLTree<Integer, V> a lookup doesnt box the id or call compareTo, it hashes straight to a slot in the array and probes along from there,
+ * so it is O(1) expected and touches one or two neighbouring array slots rather than O(logn) nodes spread across the heap.
+ * Linear probing with the table kept at most half full keeps the probe sequences short even when the ids are dense or clustered, which the hash mixing spreads out.
+ * Entries are never removed, as the stores never remove anything, so there are no tombstones to deal with. Null values cant be stored, a null slot means empty.
+ */
+public class IntHashMap<V> {
+
+    //The keys and values of each slot, a slot is in use when its value is not null.
+    private int[] keys;
+    private Object[] values;
+    //The number of entries in the map.
+    private int size;
+    //The table length - 1, the length is always a power of 2 so this masks a hash into a slot.
+    private int mask;
+
+    public IntHashMap() {
+        this.keys = new int[16];
+        this.values = new Object[16];
+        this.size = 0;
+        this.mask = 15;
+    }
+
+    /**
+     * get() - O(1) expected lookup of the value for a key.
+     * @param key - The key to look up.
+     * @return - The value stored for the key, null if there isnt one.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = slotFor(key);
+        while(this.values[slot] != null) {
+            if(this.keys[slot] == key) {
+                return (V) this.values[slot];
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * put() - O(1) amortised method to store a value for a key, doubling the table when it gets half full.
+     * @param key - The key to store the value under.
+     * @param value - The value to store, must not be null.
+     * @return - True if the key was added, false if it was already in the map (the value is replaced).
+     */
+    public boolean put(int key, V value) {
+        int slot = slotFor(key);
+        while(this.values[slot] != null) {
+            if(this.keys[slot] == key) {
+                this.values[slot] = value;
+                return false;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.size++;
+
+        if(this.size * 2 > this.values.length) {
+            resize();
+        }
+        return true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    //Multiplies by the golden ratio constant and folds the top bits down, so keys that only differ in a few bits (sequential ids) still spread across the table.
+    private int slotFor(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+
+    //O(n) doubling of the table, every entry has to be put into its slot in the new table.
+    private void resize() {
+        int[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.keys = new int[oldKeys.length * 2];
+        this.values = new Object[oldValues.length * 2];
+        this.mask = this.values.length - 1;
+        for(int i=0; i<oldValues.length; i++) {
+            if(oldValues[i] != null) {
+                int slot = slotFor(oldKeys[i]);
+                while(this.values[slot] != null) {
+                    slot = (slot + 1) & this.mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+            }
+        }
+    }
+//End of the int hash map class.
+}
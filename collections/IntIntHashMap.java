@@ -0,0 +1,80 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * IntIntHashMap class, the same open addressing map as IntHashMap but with int values, used by the compact mode to find a row from an id without boxing it.
+ * The values are stored plus one so that 0 can mark an empty slot.
+ */
+public class IntIntHashMap {
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public IntIntHashMap() {
+        this.keys = new int[16];
+        this.values = new int[16];
+        this.size = 0;
+        this.mask = 15;
+    }
+
+    /**
+     * get() - O(1) expected lookup of the value for a key.
+     * @param key - The key to look up.
+     * @return - The value stored for the key, -1 if there isnt one.
+     */
+    public int get(int key) {
+        int slot = slotFor(key);
+        while(this.values[slot] != 0) {
+            if(this.keys[slot] == key) {
+                return this.values[slot] - 1;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * put() - O(1) amortised method to store a value for a key, doubling the table when it gets half full.
+     * @param key - The key to store the value under.
+     * @param value - The value to store, must not be negative.
+     */
+    public void put(int key, int value) {
+        int slot = slotFor(key);
+        while(this.values[slot] != 0) {
+            if(this.keys[slot] == key) {
+                this.values[slot] = value + 1;
+                return;
+            }
+            slot = (slot + 1) & this.mask;
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value + 1;
+        this.size++;
+
+        if(this.size * 2 > this.values.length) {
+            int[] oldKeys = this.keys;
+            int[] oldValues = this.values;
+            this.keys = new int[oldKeys.length * 2];
+            this.values = new int[oldValues.length * 2];
+            this.mask = this.values.length - 1;
+            for(int i=0; i<oldValues.length; i++) {
+                if(oldValues[i] != 0) {
+                    int newSlot = slotFor(oldKeys[i]);
+                    while(this.values[newSlot] != 0) {
+                        newSlot = (newSlot + 1) & this.mask;
+                    }
+                    this.keys[newSlot] = oldKeys[i];
+                    this.values[newSlot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    //The same hash as IntHashMap.
+    private int slotFor(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & this.mask;
+    }
+//End of the int int hash map class.
+}
@@ -0,0 +1,114 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * MyArrayList class, a growable array of elements. Every store makes lots of these, one per group when bulk loading and one per query page,
+ * so a new list doesnt allocate anything until the first add and then starts small, doubling as it fills.
+ */
+public class MyArrayList<E> {
+
+    //Shared by every list which hasnt had anything added yet.
+    private static final Object[] EMPTY = new Object[0];
+    //The capacity of a list after its first add.
+    private static final int FIRST_CAPACITY = 8;
+
+    //the internal object array which holds all of our elements.
+    private Object[] array;
+    //the number of elements currently being held by the arraylist.
+    private int size;
+
+    public MyArrayList() {
+        this.array = EMPTY;
+        this.size = 0;
+    }
+
+    //A list with room for the given number of elements before it has to grow, for when the final size is known up front.
+    public MyArrayList(int capacity) {
+        this.array = capacity == 0 ? EMPTY : new Object[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * add() - O(1) amortised method to add a new element to the arraylist at the next available position, in the case where the internal array is full it is copied
+     * into one double the size first, which is O(n).
+     * @param element - The element we are trying to add to the arraylist
+     * @return true when the element is added, false otherwise (should never actually be false).
+     */
+    public boolean add(E element) {
+        if (this.size == this.array.length) {
+            Object[] newArray = new Object[this.array.length == 0 ? FIRST_CAPACITY : this.array.length * 2];
+            System.arraycopy(this.array, 0, newArray, 0, this.size);
+            this.array = newArray;
+        }
+        this.array[this.size++] = element;
+        return true;
+    }
+
+    /**
+     * contains() - O(n) method that checks if the provided element is contained within the arraylist.
+     * @param element - The element to check for in the arraylist.
+     * @return - true if the element being checked exists, false otherwise.
+     */
+    public boolean contains(E element) {
+        return indexOf(element) >= 0;
+    }
+
+    /**
+     * clear() - O(n) method that empties the arraylist but keeps its array, so a list which is filled again doesnt have to grow again.
+     * The slots are nulled so the old elements can be garbage collected.
+     */
+    public void clear() {
+        for (int i=0; i<this.size; i++) {
+            this.array[i] = null;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * isEmpty() - O(1) method to check if the arraylist actually contains some elements.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * size() - Essentially just a getter for the private size variable and is therefore O(1).
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * get() - O(1) method that returns the element contained at the index provieed.
+     * @param index - The position in the arraylist we want to get the data for.
+     * @return the element we have found in the arraylist at the provided index, the type of this element is E.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        return (E) this.array[index];
+    }
+
+    /**
+     * set() - O(1) method that overwrites the element at the index provided.
+     * @param index - The position in the arraylist we want to overwrite, must be less than the size.
+     * @param element - The element to store at that position.
+     */
+    public void set(int index, E element) {
+        this.array[index] = element;
+    }
+
+    /**
+     * indexOf() - O(n) method that finds the index of an element in the arraylist when provided with the element itself.
+     * @param element - The element we want to find the index for.
+     * @return - The integer value of the index where this element exists in the arraylist, -1 if it isnt there.
+     */
+    public int indexOf(E element) {
+        for (int i=0; i<this.size; i++) {
+            if (element.equals(this.array[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+//End of the arraylist class.
+}
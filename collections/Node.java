@@ -0,0 +1,109 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * Node class, one key value pair of an AVLTree and its place in the tree. The fields are public so a store can build the nodes for AVLTree.buildFromSorted() itself.
+ */
+public class Node<K, V> {
+    //The data associated with the Node.
+    public K key;
+    public V value;
+
+    //The pointers to the nodes below this node.
+    public Node<K, V> left;
+    public Node<K, V> right;
+
+    //The height of the subtree with this node at the top, a leaf is 1.
+    public int height;
+
+    //Constructor to instantiate a new node within the AVL Tree.
+    public Node(K key, V value) {
+        this.key = key;
+        this.value = value;
+        this.height = 1;
+    }
+
+    //A new array of nodes of this type. Java cant create an array of a generic type, so an array of wildcard nodes is made and cast, which is safe as every slot starts null.
+    @SuppressWarnings("unchecked")
+    public static <K, V> Node<K, V>[] newArray(int length) {
+        return (Node<K, V>[]) new Node<?, ?>[length];
+    }
+
+    //A right rotation on this node, returning the node which takes its place. O(1).
+    Node<K, V> rotateRight() {
+        //Store the left node temporarily, it becomes the top of this subtree.
+        Node<K, V> tempNode = this.left;
+
+        //The left node's right subtree moves across to be this node's left subtree.
+        this.left = tempNode.right;
+        this.calculateNodeHeight();
+
+        //This node then goes down the right of the old left node.
+        tempNode.right = this;
+        tempNode.calculateNodeHeight();
+
+        return tempNode;
+    }
+
+    //A left rotation on this node, the mirror image of rotateRight(). O(1).
+    Node<K, V> rotateLeft() {
+        Node<K, V> tempNode = this.right;
+
+        this.right = tempNode.left;
+        this.calculateNodeHeight();
+
+        tempNode.left = this;
+        tempNode.calculateNodeHeight();
+
+        return tempNode;
+    }
+
+    //Recalculates this node's height from the heights of its two subtrees, which must already be right.
+    void calculateNodeHeight() {
+        int leftHeight = left == null ? 0 : left.height;
+        int rightHeight = right == null ? 0 : right.height;
+        this.height = 1 + (leftHeight > rightHeight ? leftHeight : rightHeight);
+    }
+
+    //Returns the balance between this nodes left subtree and right subtree (the difference in heights between them)
+    private int calculateBalance() {
+        int leftHeight = left == null ? 0 : left.height;
+        int rightHeight = right == null ? 0 : right.height;
+        return leftHeight - rightHeight;
+    }
+
+    //Balance this node so its subtrees differ in height by at most 1, returning the node which is now at the top of the subtree. O(1).
+    Node<K, V> balanceNode() {
+        this.calculateNodeHeight();
+
+        int currentNodeBalance = this.calculateBalance();
+
+        //Check for a left heavy subtree, if so we should rotate to the right.
+        if (currentNodeBalance > 1) {
+            if (this.left.calculateBalance() < 0) {
+                this.left = this.left.rotateLeft();
+            }
+            return rotateRight();
+
+        //Check for a right heavy subtree, if so rotate to the left.
+        } else if (currentNodeBalance < -1) {
+            if (this.right.calculateBalance() > 0) {
+                this.right = this.right.rotateRight();
+            }
+            return rotateLeft();
+        }
+
+        //The node was already balanced.
+        return this;
+    }
+
+    //Getters for the generic values found within the node. Used often when a traversal has occured and we want to get the data out from the tree.
+    public V getValue() {
+        return this.value;
+    }
+
+    public K getKey() {
+        return this.key;
+    }
+
+//End of the Node class.
+}
@@ -0,0 +1,291 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * RankTree class, an AVLTree which also keeps the number of nodes in every subtree (an order statistic tree), used for the follower leaderboard.
+ * It orders the same way as an AVLTree, the largest key first, but knowing the subtree sizes the place of a key in that order and the key at a place
+ * are both a single O(logn) walk down from the root rather than an O(n) traversal.
+ * The keys must all be different (compareTo() only 0 for the same key) so remove() takes out the right one. A key whose order changes has to be removed
+ * before it is changed and inserted again afterwards, which is O(logn) rather than sorting everything again.
+ */
+public class RankTree<K extends Comparable<K>> {
+
+    //The root node of this tree.
+    private RankNode<K> root;
+
+    public RankTree() {
+        this.root = null;
+    }
+
+    public int size() {
+        return size(this.root);
+    }
+
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    public void clear() {
+        this.root = null;
+    }
+
+    //O(logn) insertion, a larger key goes down the left so it comes first.
+    public void insert(K key) {
+        this.root = insertNode(this.root, key);
+    }
+
+    private RankNode<K> insertNode(RankNode<K> locationNode, K key) {
+        if(locationNode == null) {
+            return new RankNode<>(key);
+        }
+        if(locationNode.key.compareTo(key) <= 0) {
+            locationNode.left = insertNode(locationNode.left, key);
+        } else {
+            locationNode.right = insertNode(locationNode.right, key);
+        }
+        return locationNode.balanceNode();
+    }
+
+    /**
+     * buildFromSorted() - O(n) method replacing the contents of the tree with keys already in its order, the largest first, such as a leaderboard read back from a snapshot.
+     * The middle key becomes the root and each half is built the same way, so the tree comes out balanced without any rotations.
+     * @param keys - The keys in the tree's order, all different.
+     * @param count - The number of keys at the start of the array.
+     */
+    public void buildFromSorted(K[] keys, int count) {
+        this.root = buildNode(keys, 0, count - 1);
+    }
+
+    private RankNode<K> buildNode(K[] keys, int low, int high) {
+        if(low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        RankNode<K> node = new RankNode<>(keys[middle]);
+        node.left = buildNode(keys, low, middle - 1);
+        node.right = buildNode(keys, middle + 1, high);
+        node.calculateNode();
+        return node;
+    }
+
+    /**
+     * remove() - O(logn) removal of a key from the tree.
+     * @param key - The key to remove, it must still compare the same as when it was inserted.
+     * @return - True if the key was in the tree, false otherwise.
+     */
+    public boolean remove(K key) {
+        int before = size(this.root);
+        this.root = removeNode(this.root, key);
+        return size(this.root) != before;
+    }
+
+    private RankNode<K> removeNode(RankNode<K> locationNode, K key) {
+        if(locationNode == null) {
+            return null;
+        }
+        int comparison = locationNode.key.compareTo(key);
+        if(comparison < 0) {
+            locationNode.left = removeNode(locationNode.left, key);
+        } else if(comparison > 0) {
+            locationNode.right = removeNode(locationNode.right, key);
+        } else {
+            if(locationNode.left == null) {
+                return locationNode.right;
+            }
+            if(locationNode.right == null) {
+                return locationNode.left;
+            }
+            //The node comes after this one in the tree's order, the largest key down the right, takes its place.
+            RankNode<K> following = locationNode.right;
+            while(following.left != null) {
+                following = following.left;
+            }
+            following.right = removeFirst(locationNode.right);
+            following.left = locationNode.left;
+            return following.balanceNode();
+        }
+        return locationNode.balanceNode();
+    }
+
+    //Removes the first node (the largest key) of a subtree, returning what is left of it.
+    private RankNode<K> removeFirst(RankNode<K> locationNode) {
+        if(locationNode.left == null) {
+            return locationNode.right;
+        }
+        locationNode.left = removeFirst(locationNode.left);
+        return locationNode.balanceNode();
+    }
+
+    /**
+     * indexOf() - O(logn) method finding the place of a key in the tree's order, counting the keys larger than it on the way down.
+     * @param key - The key to find.
+     * @return - The place of the key, 0 for the largest, or -1 if it isnt in the tree.
+     */
+    public int indexOf(K key) {
+        int larger = 0;
+        RankNode<K> currentNode = this.root;
+        while(currentNode != null) {
+            int comparison = currentNode.key.compareTo(key);
+            if(comparison < 0) {
+                currentNode = currentNode.left;
+            } else if(comparison > 0) {
+                larger += size(currentNode.left) + 1;
+                currentNode = currentNode.right;
+            } else {
+                return larger + size(currentNode.left);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * get() - O(logn) method finding the key at a place in the tree's order.
+     * @param index - The place, 0 for the largest key.
+     * @return - The key at that place, null if the tree isnt that big.
+     */
+    public K get(int index) {
+        RankNode<K> currentNode = this.root;
+        while(currentNode != null) {
+            int leftSize = size(currentNode.left);
+            if(index < leftSize) {
+                currentNode = currentNode.left;
+            } else if(index == leftSize) {
+                return currentNode.key;
+            } else {
+                index -= leftSize + 1;
+                currentNode = currentNode.right;
+            }
+        }
+        return null;
+    }
+
+    private static int size(RankNode<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    //An iterator over the keys in the tree's order starting from the given place, O(logn) to start and then O(1) amortised for each key.
+    public TreeIterator iterator(int index) {
+        return new TreeIterator(index);
+    }
+
+    public class TreeIterator {
+
+        //The nodes still to be returned along with everything down their right, the top of the stack is next.
+        private Object[] stack;
+        private int stackSize;
+
+        TreeIterator(int index) {
+            this.stack = new Object[64];
+            this.stackSize = 0;
+
+            //Walk down to the starting place, stacking every node passed on its left as those come later.
+            RankNode<K> n = root;
+            while(n != null && index >= 0) {
+                int leftSize = size(n.left);
+                if(index < leftSize) {
+                    push(n);
+                    n = n.left;
+                } else if(index == leftSize) {
+                    push(n);
+                    break;
+                } else {
+                    index -= leftSize + 1;
+                    n = n.right;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            return this.stackSize > 0;
+        }
+
+        @SuppressWarnings("unchecked")
+        public K next() {
+            RankNode<K> n = (RankNode<K>) this.stack[--this.stackSize];
+            this.stack[this.stackSize] = null;
+
+            RankNode<K> following = n.right;
+            while(following != null) {
+                push(following);
+                following = following.left;
+            }
+            return n.key;
+        }
+
+        private void push(RankNode<K> n) {
+            if(this.stackSize == this.stack.length) {
+                Object[] newStack = new Object[this.stack.length * 2];
+                System.arraycopy(this.stack, 0, newStack, 0, this.stackSize);
+                this.stack = newStack;
+            }
+            this.stack[this.stackSize++] = n;
+        }
+    }
+
+    //A node of the tree, the same as an AVLTree Node but with the size of its subtree kept alongside the height.
+    private static class RankNode<K> {
+
+        private K key;
+        private RankNode<K> left;
+        private RankNode<K> right;
+        //The height of the subtree with this node at the top, a leaf is 1, and the number of nodes in it.
+        private int height;
+        private int size;
+
+        RankNode(K key) {
+            this.key = key;
+            this.height = 1;
+            this.size = 1;
+        }
+
+        RankNode<K> rotateRight() {
+            RankNode<K> tempNode = this.left;
+            this.left = tempNode.right;
+            this.calculateNode();
+            tempNode.right = this;
+            tempNode.calculateNode();
+            return tempNode;
+        }
+
+        RankNode<K> rotateLeft() {
+            RankNode<K> tempNode = this.right;
+            this.right = tempNode.left;
+            this.calculateNode();
+            tempNode.left = this;
+            tempNode.calculateNode();
+            return tempNode;
+        }
+
+        //Recalculates this node's height and size from its two subtrees, which must already be right.
+        void calculateNode() {
+            int leftHeight = left == null ? 0 : left.height;
+            int rightHeight = right == null ? 0 : right.height;
+            this.height = 1 + (leftHeight > rightHeight ? leftHeight : rightHeight);
+            this.size = 1 + size(left) + size(right);
+        }
+
+        private int calculateBalance() {
+            int leftHeight = left == null ? 0 : left.height;
+            int rightHeight = right == null ? 0 : right.height;
+            return leftHeight - rightHeight;
+        }
+
+        //Balances this node the same way as Node.balanceNode(), returning the node which is now at the top of the subtree. O(1).
+        RankNode<K> balanceNode() {
+            this.calculateNode();
+
+            int currentNodeBalance = this.calculateBalance();
+            if(currentNodeBalance > 1) {
+                if(this.left.calculateBalance() < 0) {
+                    this.left = this.left.rotateLeft();
+                }
+                return rotateRight();
+            } else if(currentNodeBalance < -1) {
+                if(this.right.calculateBalance() > 0) {
+                    this.right = this.right.rotateRight();
+                }
+                return rotateLeft();
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * RoaringIntSet class, a compressed sorted set of ints in the style of a Roaring bitmap, used by AdjacencyLists for the ids of users with very many edges.
+ * The ids are split by their top 16 bits into containers of up to 65536 possible ids, and each container is kept whichever way is smaller for how full it is:
+ * a sorted array of the bottom 16 bits (2 bytes an id) while it holds at most 4096 ids, and a bitmap of all 65536 (8KB, 1 bit a possible id) once it holds more.
+ * So a set never costs more than about 2 bytes an id, and far less when the ids are packed closely, as the followers of a very popular user are.
+ * The ids are ordered as signed ints, the same as a sorted int array, by flipping the sign bit before they are split.
+ *
+ * Every query runs on the containers as they are, nothing is decompressed. A container is found by binary searching the top 16 bits, and the position of an id
+ * in the set (the number of smaller ids) is the count of ids in the containers before it plus a search of the array or a popcount of the bitmap words before it.
+ */
+public class RoaringIntSet {
+
+    //A container changes from an array to a bitmap once it would hold more than this many ids, the point at which the bitmap becomes the smaller.
+    private static final int ARRAY_MAX = 4096;
+    //The number of longs in a bitmap container, one bit for each of the 65536 possible ids.
+    private static final int BITMAP_WORDS = 1024;
+
+    //For each container, the top 16 bits of its ids (with the sign bit flipped), ascending.
+    private int[] keys;
+    //For each container, either its sorted array of bottom 16 bits or its bitmap, the other one is null.
+    private char[][] arrays;
+    private long[][] bitmaps;
+    //For each container, the number of ids in it and the number of ids in all the containers before it.
+    private int[] cardinalities;
+    private int[] ranksBefore;
+    private int containerCount;
+    //The number of ids in the set.
+    private int size;
+
+    public RoaringIntSet() {
+        this.keys = new int[4];
+        this.arrays = new char[4][];
+        this.bitmaps = new long[4][];
+        this.cardinalities = new int[4];
+        this.ranksBefore = new int[4];
+        this.containerCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * fromSorted() - O(n) method making a set of ids which are already in ascending order, with no id repeated.
+     * @param ids - The array holding the ids.
+     * @param offset - Where the ids start in the array.
+     * @param count - The number of ids.
+     * @return - The new set.
+     */
+    public static RoaringIntSet fromSorted(int[] ids, int offset, int count) {
+        RoaringIntSet set = new RoaringIntSet();
+        int i = 0;
+        while(i < count) {
+            int key = keyOf(ids[offset + i]);
+            int end = i + 1;
+            while(end < count && keyOf(ids[offset + end]) == key) {
+                end++;
+            }
+
+            int container = set.containerCount;
+            set.insertContainer(container, key);
+            if(end - i > ARRAY_MAX) {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for(int j=i; j<end; j++) {
+                    int low = ids[offset + j] & 0xFFFF;
+                    bitmap[low >>> 6] |= 1L << low;
+                }
+                //insertContainer() opens an array container, this one is a bitmap instead.
+                set.arrays[container] = null;
+                set.bitmaps[container] = bitmap;
+            } else {
+                char[] array = new char[end - i];
+                for(int j=i; j<end; j++) {
+                    array[j - i] = (char) ids[offset + j];
+                }
+                set.arrays[container] = array;
+            }
+            set.cardinalities[container] = end - i;
+            set.size += end - i;
+            i = end;
+        }
+        return set;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    //The top 16 bits of an id once its sign bit is flipped, so the keys of negative ids come before those of positive ones. The bottom 16 bits arent changed by the flip.
+    private static int keyOf(int id) {
+        return (id ^ Integer.MIN_VALUE) >>> 16;
+    }
+
+    //The id made from a container's key and the bottom 16 bits.
+    private static int idOf(int key, int low) {
+        return ((key << 16) | low) ^ Integer.MIN_VALUE;
+    }
+
+    //O(logc) binary search for the container with a key, returning its index or -(insertion point) - 1.
+    private int containerIndex(int key) {
+        int low = 0;
+        int high = this.containerCount - 1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int found = this.keys[middle];
+            if(found < key) {
+                low = middle + 1;
+            } else if(found > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    //The number of ids before the container at an index, which may be one past the last container.
+    private int rankOfContainer(int container) {
+        return container < this.containerCount ? this.ranksBefore[container] : this.size;
+    }
+
+    //The position of the bottom 16 bits of an id within a container, or -(insertion point) - 1 if it isnt there.
+    //A binary search of an array, or for a bitmap the popcount of every word before the bit, up to 1024 words.
+    private int indexInContainer(int container, int low) {
+        char[] array = this.arrays[container];
+        if(array != null) {
+            return searchArray(array, this.cardinalities[container], low);
+        }
+        long[] bitmap = this.bitmaps[container];
+        int word = low >>> 6;
+        int before = 0;
+        for(int w=0; w<word; w++) {
+            before += Long.bitCount(bitmap[w]);
+        }
+        before += Long.bitCount(bitmap[word] & ((1L << low) - 1));
+        return (bitmap[word] & (1L << low)) != 0 ? before : -(before + 1);
+    }
+
+    //O(logk) binary search of the first count values of an array container.
+    private static int searchArray(char[] array, int count, int low) {
+        int from = 0;
+        int to = count - 1;
+        while(from <= to) {
+            int middle = (from + to) >>> 1;
+            int found = array[middle];
+            if(found < low) {
+                from = middle + 1;
+            } else if(found > low) {
+                to = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(from + 1);
+    }
+
+    /**
+     * contains() - O(logc + logk) check for an id, with c the number of containers. A bitmap container is a single bit test.
+     * @param id - The id to look for.
+     * @return - true if the id is in the set.
+     */
+    public boolean contains(int id) {
+        int container = containerIndex(keyOf(id));
+        if(container < 0) {
+            return false;
+        }
+        int low = id & 0xFFFF;
+        char[] array = this.arrays[container];
+        if(array != null) {
+            return searchArray(array, this.cardinalities[container], low) >= 0;
+        }
+        return (this.bitmaps[container][low >>> 6] & (1L << low)) != 0;
+    }
+
+    /**
+     * indexOf() - O(logc + logk) search for the position of an id in the set's ascending order, the same as a binary search of a sorted int array would give.
+     * In a bitmap container this counts the ids before it with popcounts of up to 1024 words.
+     * @param id - The id to look for.
+     * @return - The position of the id, or -(insertion point) - 1 if it isnt in the set.
+     */
+    public int indexOf(int id) {
+        int container = containerIndex(keyOf(id));
+        if(container < 0) {
+            return -(rankOfContainer(-container - 1) + 1);
+        }
+        int within = indexInContainer(container, id & 0xFFFF);
+        if(within >= 0) {
+            return this.ranksBefore[container] + within;
+        }
+        return -(this.ranksBefore[container] + (-within - 1) + 1);
+    }
+
+    /**
+     * add() - Adds an id to the set. O(logc) to find its container, then O(k) to shift the larger values of an array container along (at most 4096),
+     * or O(1) to set a bit in a bitmap, and O(c) to move up the counts of the containers after it.
+     * An array container which is full is turned into a bitmap first.
+     * @param id - The id to add.
+     * @return - The position the id now has in the set, or -(its position) - 1 if it was already there, in which case nothing changes.
+     */
+    public int add(int id) {
+        int key = keyOf(id);
+        int low = id & 0xFFFF;
+        int container = containerIndex(key);
+        if(container < 0) {
+            container = -container - 1;
+            insertContainer(container, key);
+        }
+
+        int within = indexInContainer(container, low);
+        if(within >= 0) {
+            return -(this.ranksBefore[container] + within + 1);
+        }
+        within = -within - 1;
+
+        int cardinality = this.cardinalities[container];
+        char[] array = this.arrays[container];
+        if(array != null && cardinality == ARRAY_MAX) {
+            //The array is full, the bitmap is now the smaller.
+            long[] bitmap = new long[BITMAP_WORDS];
+            for(int i=0; i<cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            this.arrays[container] = null;
+            this.bitmaps[container] = bitmap;
+            array = null;
+        }
+        if(array != null) {
+            if(cardinality == array.length) {
+                char[] newArray = new char[cardinality * 2 < ARRAY_MAX ? cardinality * 2 : ARRAY_MAX];
+                System.arraycopy(array, 0, newArray, 0, cardinality);
+                this.arrays[container] = newArray;
+                array = newArray;
+            }
+            System.arraycopy(array, within, array, within + 1, cardinality - within);
+            array[within] = (char) low;
+        } else {
+            this.bitmaps[container][low >>> 6] |= 1L << low;
+        }
+
+        this.cardinalities[container] = cardinality + 1;
+        for(int c=container + 1; c<this.containerCount; c++) {
+            this.ranksBefore[c]++;
+        }
+        this.size++;
+        return this.ranksBefore[container] + within;
+    }
+
+    //Opens an empty array container for a key at an index, moving the containers after it along one.
+    private void insertContainer(int container, int key) {
+        int rank = rankOfContainer(container);
+        if(this.containerCount == this.keys.length) {
+            int length = this.containerCount * 2;
+            int[] newKeys = new int[length];
+            char[][] newArrays = new char[length][];
+            long[][] newBitmaps = new long[length][];
+            int[] newCardinalities = new int[length];
+            int[] newRanksBefore = new int[length];
+            System.arraycopy(this.keys, 0, newKeys, 0, this.containerCount);
+            System.arraycopy(this.arrays, 0, newArrays, 0, this.containerCount);
+            System.arraycopy(this.bitmaps, 0, newBitmaps, 0, this.containerCount);
+            System.arraycopy(this.cardinalities, 0, newCardinalities, 0, this.containerCount);
+            System.arraycopy(this.ranksBefore, 0, newRanksBefore, 0, this.containerCount);
+            this.keys = newKeys;
+            this.arrays = newArrays;
+            this.bitmaps = newBitmaps;
+            this.cardinalities = newCardinalities;
+            this.ranksBefore = newRanksBefore;
+        }
+        int after = this.containerCount - container;
+        System.arraycopy(this.keys, container, this.keys, container + 1, after);
+        System.arraycopy(this.arrays, container, this.arrays, container + 1, after);
+        System.arraycopy(this.bitmaps, container, this.bitmaps, container + 1, after);
+        System.arraycopy(this.cardinalities, container, this.cardinalities, container + 1, after);
+        System.arraycopy(this.ranksBefore, container, this.ranksBefore, container + 1, after);
+        this.keys[container] = key;
+        this.arrays[container] = new char[4];
+        this.bitmaps[container] = null;
+        this.cardinalities[container] = 0;
+        this.ranksBefore[container] = rank;
+        this.containerCount++;
+    }
+
+    /**
+     * get() - O(logc) search for the container holding a position, then O(1) in an array or a walk of up to 1024 words in a bitmap.
+     * @param position - The position in the set's ascending order, less than size().
+     * @return - The id at that position.
+     */
+    public int get(int position) {
+        //The last container with no more ids before it than the position.
+        int low = 0;
+        int high = this.containerCount - 1;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(this.ranksBefore[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        int within = position - this.ranksBefore[low];
+        if(this.arrays[low] != null) {
+            return idOf(this.keys[low], this.arrays[low][within]);
+        }
+        long[] bitmap = this.bitmaps[low];
+        int word = 0;
+        int count = Long.bitCount(bitmap[0]);
+        while(count <= within) {
+            within -= count;
+            word++;
+            count = Long.bitCount(bitmap[word]);
+        }
+        long bits = bitmap[word];
+        for(int i=0; i<within; i++) {
+            bits &= bits - 1;
+        }
+        return idOf(this.keys[low], (word << 6) + Long.numberOfTrailingZeros(bits));
+    }
+
+    /**
+     * copyTo() - O(n) method writing every id into an array in ascending order. A bitmap container costs its 1024 words plus one step per id.
+     * @param into - The array to write to, with room for size() ids.
+     */
+    public void copyTo(int[] into) {
+        int out = 0;
+        for(int c=0; c<this.containerCount; c++) {
+            int key = this.keys[c];
+            char[] array = this.arrays[c];
+            if(array != null) {
+                for(int i=0; i<this.cardinalities[c]; i++) {
+                    into[out++] = idOf(key, array[i]);
+                }
+            } else {
+                long[] bitmap = this.bitmaps[c];
+                for(int w=0; w<BITMAP_WORDS; w++) {
+                    long bits = bitmap[w];
+                    while(bits != 0) {
+                        into[out++] = idOf(key, (w << 6) + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * intersectRun() - Finds the ids of a sorted int run which are in the set, walking the containers forwards alongside it. O(a(logk)) for a run of a ids against
+     * array containers, and O(a + w) against bitmap containers, with w the words passed over, as the popcount before each bit carries on from the last one.
+     * @param run - The array holding the run, in ascending order.
+     * @param offset - Where the run starts in the array.
+     * @param count - The length of the run.
+     * @param ids - Filled with the ids in common, ascending.
+     * @param runPositions - Filled with the position of each in the run.
+     * @param setPositions - Filled with the position of each in the set.
+     * @return - The number of ids in common.
+     */
+    public int intersectRun(int[] run, int offset, int count, int[] ids, int[] runPositions, int[] setPositions) {
+        int found = 0;
+        int container = 0;
+        //The word of the current bitmap container counted up to, and the ids in the words before it.
+        int word = 0;
+        int counted = 0;
+        for(int i=0; i<count; i++) {
+            int id = run[offset + i];
+            int key = keyOf(id);
+            while(container < this.containerCount && this.keys[container] < key) {
+                container++;
+                word = 0;
+                counted = 0;
+            }
+            if(container == this.containerCount) {
+                break;
+            }
+            if(this.keys[container] != key) {
+                continue;
+            }
+
+            int low = id & 0xFFFF;
+            int within;
+            if(this.arrays[container] != null) {
+                within = searchArray(this.arrays[container], this.cardinalities[container], low);
+            } else {
+                long[] bitmap = this.bitmaps[container];
+                while(word < (low >>> 6)) {
+                    counted += Long.bitCount(bitmap[word]);
+                    word++;
+                }
+                long bit = 1L << low;
+                within = (bitmap[word] & bit) != 0 ? counted + Long.bitCount(bitmap[word] & (bit - 1)) : -1;
+            }
+            if(within >= 0) {
+                ids[found] = id;
+                runPositions[found] = i;
+                setPositions[found] = this.ranksBefore[container] + within;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * intersect() - O(c1 + c2) walk of the two sets' containers, intersecting only those with the same key: two bitmaps are ANDed a word at a time,
+     * a bitmap and an array by testing each value of the array, and two arrays by merging them.
+     * @param other - The set to intersect with.
+     * @param ids - Filled with the ids in common, ascending.
+     * @param positions - Filled with the position of each in this set.
+     * @param otherPositions - Filled with the position of each in the other set.
+     * @return - The number of ids in common.
+     */
+    public int intersect(RoaringIntSet other, int[] ids, int[] positions, int[] otherPositions) {
+        int found = 0;
+        int c1 = 0;
+        int c2 = 0;
+        while(c1 < this.containerCount && c2 < other.containerCount) {
+            int key1 = this.keys[c1];
+            int key2 = other.keys[c2];
+            if(key1 < key2) {
+                c1++;
+            } else if(key1 > key2) {
+                c2++;
+            } else {
+                if(this.arrays[c1] == null && other.arrays[c2] != null) {
+                    found = intersectContainers(other, c2, this, c1, ids, otherPositions, positions, found);
+                } else {
+                    found = intersectContainers(this, c1, other, c2, ids, positions, otherPositions, found);
+                }
+                c1++;
+                c2++;
+            }
+        }
+        return found;
+    }
+
+    //Intersects two containers with the same key, the first of which is an array unless both are bitmaps, adding what they share after the first found results.
+    private static int intersectContainers(RoaringIntSet set1, int c1, RoaringIntSet set2, int c2, int[] ids, int[] positions1, int[] positions2, int found) {
+        int key = set1.keys[c1];
+        int base1 = set1.ranksBefore[c1];
+        int base2 = set2.ranksBefore[c2];
+        char[] array1 = set1.arrays[c1];
+        char[] array2 = set2.arrays[c2];
+
+        if(array1 != null && array2 != null) {
+            int count1 = set1.cardinalities[c1];
+            int count2 = set2.cardinalities[c2];
+            int i = 0;
+            int j = 0;
+            while(i < count1 && j < count2) {
+                if(array1[i] < array2[j]) {
+                    i++;
+                } else if(array1[i] > array2[j]) {
+                    j++;
+                } else {
+                    ids[found] = idOf(key, array1[i]);
+                    positions1[found] = base1 + i;
+                    positions2[found] = base2 + j;
+                    found++;
+                    i++;
+                    j++;
+                }
+            }
+        } else if(array1 != null) {
+            //Test each value of the array against the bitmap, counting the bitmap's ids as we pass its words.
+            long[] bitmap2 = set2.bitmaps[c2];
+            int word = 0;
+            int counted = 0;
+            for(int i=0; i<set1.cardinalities[c1]; i++) {
+                int low = array1[i];
+                while(word < (low >>> 6)) {
+                    counted += Long.bitCount(bitmap2[word]);
+                    word++;
+                }
+                long bit = 1L << low;
+                if((bitmap2[word] & bit) != 0) {
+                    ids[found] = idOf(key, low);
+                    positions1[found] = base1 + i;
+                    positions2[found] = base2 + counted + Long.bitCount(bitmap2[word] & (bit - 1));
+                    found++;
+                }
+            }
+        } else {
+            long[] bitmap1 = set1.bitmaps[c1];
+            long[] bitmap2 = set2.bitmaps[c2];
+            int counted1 = 0;
+            int counted2 = 0;
+            for(int w=0; w<BITMAP_WORDS; w++) {
+                long both = bitmap1[w] & bitmap2[w];
+                while(both != 0) {
+                    long bit = both & -both;
+                    ids[found] = idOf(key, (w << 6) + Long.numberOfTrailingZeros(bit));
+                    positions1[found] = base1 + counted1 + Long.bitCount(bitmap1[w] & (bit - 1));
+                    positions2[found] = base2 + counted2 + Long.bitCount(bitmap2[w] & (bit - 1));
+                    found++;
+                    both ^= bit;
+                }
+                counted1 += Long.bitCount(bitmap1[w]);
+                counted2 += Long.bitCount(bitmap2[w]);
+            }
+        }
+        return found;
+    }
+
+//End of the roaring int set class.
+}
@@ -0,0 +1,73 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * RowList class, a growable array of row numbers used by the compact mode in place of a date keyed tree, kept sorted oldest first by the dates of the rows.
+ * Reading it backwards gives the newest first order the trees give.
+ */
+public class RowList {
+
+    private int[] rows;
+    private int size;
+
+    public RowList() {
+        this.rows = new int[1];
+        this.size = 0;
+    }
+
+    /**
+     * insert() - O(logk) search for a row's place by its date, then O(1) when it is the newest (the usual case) or O(k) to shift the newer rows up.
+     * A row goes after every row with the same date, so reading backwards gives the most recently added first, the same as the trees.
+     * @param row - The row to insert.
+     * @param dates - The dates of every row, in milliseconds.
+     */
+    public void insert(int row, long[] dates) {
+        int position = upperBound(dates, dates[row]);
+        if(this.size == this.rows.length) {
+            int[] newRows = new int[this.size * 2];
+            System.arraycopy(this.rows, 0, newRows, 0, this.size);
+            this.rows = newRows;
+        }
+        System.arraycopy(this.rows, position, this.rows, position + 1, this.size - position);
+        this.rows[position] = row;
+        this.size++;
+    }
+
+    public int get(int position) {
+        return this.rows[position];
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    //O(logk) binary search for the first position whose row is dated at or after the date.
+    public int lowerBound(long[] dates, long date) {
+        int low = 0;
+        int high = this.size;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(dates[this.rows[middle]] < date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    //O(logk) binary search for the first position whose row is dated after the date.
+    public int upperBound(long[] dates, long date) {
+        int low = 0;
+        int high = this.size;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(dates[this.rows[middle]] <= date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+//End of the row list class.
+}
@@ -0,0 +1,61 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * Terms class, splitting text into the terms the search indexes are keyed by, the words of a weet and the trigrams (every 3 character sequence) of a weet or a user's name.
+ * Every index is built from these, one at a time, in bulk and in compact mode, so they all post exactly the same terms for the same text.
+ * Each term is only given once per text even if it appears more than once, so nothing is posted twice.
+ */
+public class Terms {
+
+    private Terms() {
+    }
+
+    /**
+     * distinctWords() - O(L logw) method to get the distinct words of a text, split on spaces, where L is the length of the text and w the number of words.
+     * @param text - The text to split, e.g. a weet's message.
+     * @return - Every word once, in the order they first appear, leaving out the empty ones between repeated spaces.
+     */
+    public static String[] distinctWords(String text) {
+        String[] words = text.split(" ");
+        //Small tree of the words we have already kept so repeats are left out.
+        AVLTree<String, String> seen = new AVLTree<>();
+        int count = 0;
+        for(int i=0; i<words.length; i++) {
+            if(!words[i].isEmpty() && seen.get(words[i]) == null) {
+                seen.insertKeyValuePair(words[i], words[i]);
+                words[count++] = words[i];
+            }
+        }
+        return trim(words, count);
+    }
+
+    /**
+     * distinctTrigrams() - O(L logL) method to get the distinct 3 character sequences of a text, where L is the length of the text.
+     * @param text - The text to split, e.g. a weet's message or a user's name.
+     * @return - Every trigram once, in the order they first appear, empty if the text is shorter than 3 characters.
+     */
+    public static String[] distinctTrigrams(String text) {
+        String[] trigrams = new String[Math.max(0, text.length() - 2)];
+        AVLTree<String, String> seen = new AVLTree<>();
+        int count = 0;
+        for(int i=0; i+3<=text.length(); i++) {
+            String trigram = text.substring(i, i + 3);
+            if(seen.get(trigram) == null) {
+                seen.insertKeyValuePair(trigram, trigram);
+                trigrams[count++] = trigram;
+            }
+        }
+        return trim(trigrams, count);
+    }
+
+    //The first count terms, the same array if they fill it.
+    private static String[] trim(String[] terms, int count) {
+        if(count == terms.length) {
+            return terms;
+        }
+        String[] toReturn = new String[count];
+        System.arraycopy(terms, 0, toReturn, 0, count);
+        return toReturn;
+    }
+//End of the terms class.
+}
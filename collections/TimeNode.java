@@ -0,0 +1,81 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+//A node of a TimeTree, the same as Node but holding its key as a primitive time in milliseconds. There is no parent pointer as nothing walks up the tree.
+public class TimeNode<V> {
+    public long key;
+    public V value;
+
+    public TimeNode<V> left;
+    public TimeNode<V> right;
+
+    public int height;
+
+    public TimeNode(long key, V value) {
+        this.key = key;
+        this.value = value;
+        this.height = 1;
+    }
+
+    //A new array of nodes of this type, made as an array of wildcard nodes and cast for the same reason as Node.newArray().
+    @SuppressWarnings("unchecked")
+    public static <V> TimeNode<V>[] newArray(int length) {
+        return (TimeNode<V>[]) new TimeNode<?>[length];
+    }
+
+    TimeNode<V> rotateRight() {
+        TimeNode<V> tempNode = this.left;
+        this.left = tempNode.right;
+        this.calculateNodeHeight();
+        tempNode.right = this;
+        tempNode.calculateNodeHeight();
+        return tempNode;
+    }
+
+    TimeNode<V> rotateLeft() {
+        TimeNode<V> tempNode = this.right;
+        this.right = tempNode.left;
+        this.calculateNodeHeight();
+        tempNode.left = this;
+        tempNode.calculateNodeHeight();
+        return tempNode;
+    }
+
+    void calculateNodeHeight() {
+        int leftHeight = left == null ? 0 : left.height;
+        int rightHeight = right == null ? 0 : right.height;
+        this.height = 1 + (leftHeight > rightHeight ? leftHeight : rightHeight);
+    }
+
+    private int calculateBalance() {
+        int leftHeight = left == null ? 0 : left.height;
+        int rightHeight = right == null ? 0 : right.height;
+        return leftHeight - rightHeight;
+    }
+
+    TimeNode<V> balanceNode() {
+        this.calculateNodeHeight();
+        int currentNodeBalance = this.calculateBalance();
+        if (currentNodeBalance > 1) {
+            if (this.left.calculateBalance() < 0) {
+                this.left = this.left.rotateLeft();
+            }
+            return rotateRight();
+        } else if (currentNodeBalance < -1) {
+            if (this.right.calculateBalance() > 0) {
+                this.right = this.right.rotateRight();
+            }
+            return rotateLeft();
+        }
+        return this;
+    }
+
+    public V getValue() {
+        return this.value;
+    }
+
+    public long getKey() {
+        return this.key;
+    }
+
+//End of the time node class.
+}
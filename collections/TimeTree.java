@@ -0,0 +1,215 @@
+package uk.ac.warwick.java.cs126.services.collections;
+
+/**
+ * TimeTree class, the AVLTree specialised for keys which are times in milliseconds, used for everything ordered by date. The key is a primitive long in the node
+ * rather than a Date object, so each comparison is a single long compare the JIT can inline rather than a call to compareTo() on another object,
+ * and no Date has to be kept for every node. It orders and iterates exactly like an AVLTree<Date, V>, the latest time first and, for equal times, the last added first.
+ */
+public class TimeTree<V> {
+
+    //The root node of this tree.
+    private TimeNode<V> root;
+    //The number of nodes within the tree.
+    private int treeSize;
+
+    public TimeTree() {
+        this.treeSize = 0;
+    }
+
+    public int getTreeSize() {
+        return this.treeSize;
+    }
+
+    public boolean isEmpty() {
+        return this.root == null;
+    }
+
+    //O(logn) insertion, an equal or later time goes down the left so it comes first.
+    private TimeNode<V> insertNode(TimeNode<V> locationNode, TimeNode<V> insertingNode) {
+        if (locationNode != null) {
+            if (locationNode.key <= insertingNode.key) {
+                locationNode.left = insertNode(locationNode.left, insertingNode);
+            } else {
+                locationNode.right = insertNode(locationNode.right, insertingNode);
+            }
+            return locationNode.balanceNode();
+        } else {
+            return insertingNode;
+        }
+    }
+
+    public void insertKeyValuePair(long key, V value) {
+        this.treeSize++;
+        root = insertNode(root, new TimeNode<>(key, value));
+    }
+
+    /**
+     * buildFromSorted() - O(n) method replacing the contents of the tree with nodes which are already in the tree's order, the same as AVLTree.buildFromSorted().
+     * @param nodes - The nodes in the tree's order.
+     * @param count - The number of nodes at the start of the array to build the tree from.
+     */
+    public void buildFromSorted(TimeNode<V>[] nodes, int count) {
+        this.root = link(nodes, 0, count - 1);
+        this.treeSize = count;
+    }
+
+    private TimeNode<V> link(TimeNode<V>[] nodes, int low, int high) {
+        if(low > high) {
+            return null;
+        }
+        int middle = (low + high) >>> 1;
+        TimeNode<V> node = nodes[middle];
+        node.left = link(nodes, low, middle - 1);
+        node.right = link(nodes, middle + 1, high);
+        node.calculateNodeHeight();
+        return node;
+    }
+
+    /**
+     * sortNodes() - O(n logn) stable merge sort of nodes into the tree's order for buildFromSorted(), the same as AVLTree.sortNodes() so equal times
+     * end up the last one first and large arrays are split across the processors. It uses nothing from a tree, so it also sorts nodes keyed by any long.
+     * @param nodes - The nodes, in the order they would have been inserted.
+     * @param count - The number of nodes at the start of the array to sort.
+     */
+    public static <V> void sortNodes(TimeNode<V>[] nodes, int count) {
+        for(int i=0, j=count - 1; i<j; i++, j--) {
+            TimeNode<V> swap = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = swap;
+        }
+        mergeSort(nodes, TimeNode.newArray(count), 0, count, Runtime.getRuntime().availableProcessors());
+    }
+
+    //Sorts the nodes from low up to (not including) high, latest time first.
+    private static <V> void mergeSort(final TimeNode<V>[] nodes, final TimeNode<V>[] buffer, final int low, final int high, final int threads) {
+        if(high - low <= 16) {
+            for(int i=low + 1; i<high; i++) {
+                TimeNode<V> node = nodes[i];
+                int j = i - 1;
+                while(j >= low && node.key > nodes[j].key) {
+                    nodes[j + 1] = nodes[j];
+                    j--;
+                }
+                nodes[j + 1] = node;
+            }
+            return;
+        }
+
+        final int middle = (low + high) >>> 1;
+        if(threads > 1 && high - low >= 65536) {
+            Thread firstHalf = new Thread(() -> mergeSort(nodes, buffer, low, middle, threads / 2));
+            firstHalf.start();
+            mergeSort(nodes, buffer, middle, high, threads - threads / 2);
+            AVLTree.joinUninterruptibly(firstHalf);
+        } else {
+            mergeSort(nodes, buffer, low, middle, 1);
+            mergeSort(nodes, buffer, middle, high, 1);
+        }
+
+        if(nodes[middle].key <= nodes[middle - 1].key) {
+            return;
+        }
+        System.arraycopy(nodes, low, buffer, low, middle - low);
+        int left = low;
+        int right = middle;
+        int out = low;
+        while(left < middle && right < high) {
+            if(nodes[right].key > buffer[left].key) {
+                nodes[out++] = nodes[right++];
+            } else {
+                nodes[out++] = buffer[left++];
+            }
+        }
+        while(left < middle) {
+            nodes[out++] = buffer[left++];
+        }
+    }
+
+    //An iterator over every node, the latest time first.
+    public TreeIterator iterator() {
+        return new TreeIterator(Long.MAX_VALUE, true, Long.MIN_VALUE, true);
+    }
+
+    //An iterator over the nodes before (or at if inclusive) the time provided, starting at the latest of them.
+    public TreeIterator headIterator(long highKey, boolean inclusive) {
+        return new TreeIterator(highKey, inclusive, Long.MIN_VALUE, true);
+    }
+
+    //An iterator over the nodes after (or at if inclusive) the time provided, stopping as soon as it reaches an earlier time.
+    public TreeIterator tailIterator(long lowKey, boolean inclusive) {
+        return new TreeIterator(Long.MAX_VALUE, true, lowKey, inclusive);
+    }
+
+    //An iterator over the nodes between the two times provided.
+    public TreeIterator subIterator(long lowKey, boolean lowInclusive, long highKey, boolean highInclusive) {
+        return new TreeIterator(highKey, highInclusive, lowKey, lowInclusive);
+    }
+
+    /**
+     * TreeIterator class, the same walk as AVLTree.TreeIterator with its own stack of the nodes left to visit. As the keys are primitive the open ends of a range are
+     * Long.MAX_VALUE and Long.MIN_VALUE, inclusive, rather than null.
+     */
+    public class TreeIterator {
+
+        private TimeNode<V>[] stack;
+        private int stackSize;
+
+        private long lowKey;
+        private boolean lowInclusive;
+
+        TreeIterator(long highKey, boolean highInclusive, long lowKey, boolean lowInclusive) {
+            this.stack = TimeNode.newArray(64);
+            this.stackSize = 0;
+            this.lowKey = lowKey;
+            this.lowInclusive = lowInclusive;
+
+            TimeNode<V> n = root;
+            while(n != null) {
+                if(n.key < highKey || (n.key == highKey && highInclusive)) {
+                    push(n);
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+
+        public boolean hasNext() {
+            if(this.stackSize == 0) {
+                return false;
+            }
+            long key = this.stack[this.stackSize - 1].key;
+            return key > this.lowKey || (key == this.lowKey && this.lowInclusive);
+        }
+
+        public TimeNode<V> peek() {
+            if(!hasNext()) {
+                return null;
+            }
+            return this.stack[this.stackSize - 1];
+        }
+
+        public TimeNode<V> next() {
+            TimeNode<V> n = this.stack[--this.stackSize];
+            this.stack[this.stackSize] = null;
+
+            TimeNode<V> following = n.right;
+            while(following != null) {
+                push(following);
+                following = following.left;
+            }
+            return n;
+        }
+
+        private void push(TimeNode<V> n) {
+            if(this.stackSize == this.stack.length) {
+                TimeNode<V>[] newStack = TimeNode.newArray(this.stack.length * 2);
+                System.arraycopy(this.stack, 0, newStack, 0, this.stackSize);
+                this.stack = newStack;
+            }
+            this.stack[this.stackSize++] = n;
+        }
+    }
+
+//End of the time tree class.
+}
@@ -0,0 +1,117 @@
+package uk.ac.warwick.java.cs126.services.persistence;
+
+import uk.ac.warwick.java.cs126.services.collections.MyArrayList;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * CsvFile class, reading the CSV files the stores bulk load on start up (names.csv, weets.csv and followers.csv).
+ * The lines are read in one go and then parsed across all the processors, each thread parsing an equal share of them into the store's arrays,
+ * so the stores only say how to turn one line into a row.
+ */
+public class CsvFile {
+
+    //The format of the dates in the CSV files unless a store is given another, e.g. 25/08/2025 19:46:35.
+    public static final String DATE_FORMAT = "dd/MM/yyyy HH:mm:ss";
+
+    private CsvFile() {
+    }
+
+    /**
+     * readLines() - O(n) read of every non blank line of a CSV file, leaving out a header line if the first line doesnt start with a number.
+     * @param path - The path of the CSV file.
+     * @return - The lines, in the order they are in the file.
+     * @throws IOException - If the file cant be read.
+     */
+    public static String[] readLines(String path) throws IOException {
+        MyArrayList<String> lines = new MyArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(!line.trim().isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        int first = 0;
+        if(lines.size() > 0) {
+            String firstLine = lines.get(0).trim();
+            if(!firstLine.isEmpty() && !Character.isDigit(firstLine.charAt(0)) && firstLine.charAt(0) != '-') {
+                first = 1;
+            }
+        }
+        String[] toReturn = new String[lines.size() - first];
+        for(int i=first; i<lines.size(); i++) {
+            toReturn[i - first] = lines.get(i);
+        }
+        return toReturn;
+    }
+
+    /**
+     * parse() - O(n / p) method parsing every line across the p processors. Each thread is given an equal share of the lines and its own DateFormat,
+     * as SimpleDateFormat isnt thread safe. A thread stops at the first line it cant parse.
+     * @param path - The path the lines came from, for the error message.
+     * @param lines - The lines from readLines().
+     * @param what - What a line holds, e.g. "weet", for the error message.
+     * @param dateFormat - The SimpleDateFormat pattern of the dates in the lines.
+     * @param parser - Parses one line into the store's arrays at its index.
+     * @throws IOException - If any line couldnt be parsed, naming the first one found.
+     */
+    public static void parse(String path, final String[] lines, String what, final String dateFormat, final LineParser parser) throws IOException {
+        final String[] errors = new String[Runtime.getRuntime().availableProcessors()];
+        Thread[] workers = new Thread[errors.length];
+        for(int t=0; t<workers.length; t++) {
+            final int worker = t;
+            final int from = (int) ((long) lines.length * t / workers.length);
+            final int to = (int) ((long) lines.length * (t + 1) / workers.length);
+            workers[t] = new Thread(() -> {
+                DateFormat format = new SimpleDateFormat(dateFormat);
+                for(int i=from; i<to && errors[worker] == null; i++) {
+                    try {
+                        parser.parse(i, lines[i], format);
+                    } catch(ParseException | RuntimeException e) {
+                        errors[worker] = lines[i];
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        joinAll(workers);
+
+        for(int t=0; t<errors.length; t++) {
+            if(errors[t] != null) {
+                throw new IOException("Couldnt parse the " + what + " in " + path + ": " + errors[t]);
+            }
+        }
+    }
+
+    //Waits for every parsing thread to finish. They are still writing into the results so we cant give up on them if interrupted, we just pass the interrupt on afterwards.
+    private static void joinAll(Thread[] threads) {
+        boolean interrupted = false;
+        for(int i=0; i<threads.length; i++) {
+            while(true) {
+                try {
+                    threads[i].join();
+                    break;
+                } catch(InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public interface LineParser {
+        //Parses the line at an index into the store's arrays at the same index.
+        void parse(int index, String line, DateFormat format) throws ParseException;
+    }
+//End of the csv file class.
+}
@@ -0,0 +1,111 @@
+package uk.ac.warwick.java.cs126.services.persistence;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * SnapshotFile class, the file format the stores save their snapshots in. A snapshot is the store's magic number and the version of its format,
+ * then whatever the store writes, then a CRC32 of everything before it so a damaged file is never loaded.
+ * A snapshot is written to a temporary file and moved into place, and read back by memory mapping it, so all three stores share the same two halves here
+ * and only write and read their own bodies.
+ */
+public class SnapshotFile {
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * write() - Writes a snapshot to a temporary file next to the real one and then moves it into place, so a crash part way through never leaves a half written snapshot.
+     * The writer fills in the body, the CRC32 of everything it wrote is then added on the end.
+     * @param path - The path of the snapshot file, replaced if it already exists.
+     * @param magic - The store's magic number.
+     * @param version - The version of the store's snapshot format.
+     * @param writer - Writes the body.
+     * @throws IOException - If the file cant be written.
+     */
+    public static void write(String path, int magic, int version, Writer writer) throws IOException {
+        Path target = Paths.get(path).toAbsolutePath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(temporary.toFile()), crc)))) {
+            out.writeInt(magic);
+            out.writeInt(version);
+            writer.write(out);
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * map() - Maps a snapshot file into memory and checks it before anything is read from it. The CRC32 at the end must match the rest of the file,
+     * and the header must have the store's magic number and the version it reads.
+     * @param path - The path of the snapshot file.
+     * @param magic - The store's magic number.
+     * @param version - The version of the store's snapshot format.
+     * @return - The body of the snapshot, positioned just after the header and limited to just before the checksum.
+     * @throws IOException - If the file cant be read, is another store's snapshot or a different version, or is corrupt.
+     */
+    public static ByteBuffer map(String path, int magic, int version) throws IOException {
+        try(FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if(size < 16) {
+                throw new IOException(path + " is too short to be a snapshot");
+            }
+            if(size > Integer.MAX_VALUE) {
+                throw new IOException(path + " is too large to map into memory");
+            }
+            //The mapping stays valid after the channel is closed.
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyEnd = (int) size - 8;
+
+            ByteBuffer body = buffer.duplicate();
+            body.limit(bodyEnd);
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            if(crc.getValue() != buffer.getLong(bodyEnd)) {
+                throw new IOException(path + " is corrupt, its checksum doesnt match");
+            }
+            if(buffer.getInt() != magic) {
+                throw new IOException(path + " isnt a snapshot of this store");
+            }
+            int fileVersion = buffer.getInt();
+            if(fileVersion != version) {
+                throw new IOException(path + " is a version " + fileVersion + " snapshot, only version " + version + " can be read");
+            }
+            buffer.limit(bodyEnd);
+            return buffer;
+        }
+    }
+
+    //Reads a length prefixed UTF-8 string, as written by writeString().
+    public static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Writes a string as its length in bytes and then its UTF-8 bytes.
+    public static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+//End of the snapshot file class.
+}
@@ -0,0 +1,416 @@
+package uk.ac.warwick.java.cs126.services.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog class, an append only file of the additions made to a store, each appended before the addition is made so nothing the store has acknowledged
+ * is lost if the process dies. Every record is its length, the CRC32 of its bytes and then the bytes, so a record torn by a crash part way through writing it
+ * fails its check on replay and is cut off the end of the log rather than read as garbage.
+ * Writers append while holding the store's write lock, which keeps the records in the order the additions were made, but wait for the fsync after letting
+ * it go. While one writer is forcing the file every other writer waiting joins in behind it, and the next force covers all of their records at once (group commit),
+ * so a busy store does one fsync per batch of writes rather than one per write.
+ * All three stores share this class, each passing a RecordCodec which turns its additions (weets, users or follows) into record bytes and back.
+ */
+public class WriteAheadLog<T> {
+
+    //The durability levels a log can be opened with. SYNC forces each record to the disk before awaitDurable() returns. BATCHED waits for the disk too,
+    //but holds each force back for the batch time so the writers arriving in the meantime share it. ASYNC returns straight away and the log is forced
+    //every batch time in the background, so a crash can lose the last batch time of records.
+    public static final int SYNC = 0;
+    public static final int BATCHED = 1;
+    public static final int ASYNC = 2;
+
+    private FileChannel channel;
+    //Turns the store's additions into record bytes and back, and says which store's log this is.
+    private RecordCodec<T> codec;
+    //The offset of the end of the last record, where the next one is written.
+    private long end;
+    //SYNC, BATCHED or ASYNC.
+    private int durability;
+    private long batchMillis;
+
+    //Guards the fields below and the appends to the channel. The force itself runs without it so writers can keep appending during one.
+    private ReentrantLock logLock;
+    //Signalled whenever a force finishes.
+    private Condition synced;
+    //The number of records appended, and how many of them are known to be on the disk.
+    private long appended;
+    private long durable;
+    //True while a thread is forcing the channel, anyone else needing a force waits for it and then checks whether it covered them.
+    private boolean syncing;
+    //The first write or force to fail. After that we cant know what made it to the disk, so every later write fails as well.
+    private IOException failure;
+    private boolean closed;
+    //Forces the log every batchMillis in the background, only used by ASYNC.
+    private Thread flusher;
+
+    /**
+     * WriteAheadLog() - O(r) constructor opening the log at the path, creating it if it doesnt exist, and passing each of the r records already in it to the replayer in order.
+     * Anything after the last whole record is cut off so new records follow straight on from the good ones.
+     * @param path - The path of the log file.
+     * @param codec - The store's record format.
+     * @param durability - SYNC, BATCHED or ASYNC.
+     * @param batchMillis - How long BATCHED holds a force back for more writers to join, and how often ASYNC forces the log.
+     * @param replayer - Given every record in the log.
+     * @throws IOException - If the file cant be opened or read, or isnt a log of this store.
+     */
+    public WriteAheadLog(String path, RecordCodec<T> codec, int durability, long batchMillis, Replayer<T> replayer) throws IOException {
+        if(durability < SYNC || durability > ASYNC) {
+            throw new IllegalArgumentException("Unknown durability level " + durability);
+        }
+        this.codec = codec;
+        this.durability = durability;
+        this.batchMillis = batchMillis;
+        this.logLock = new ReentrantLock();
+        this.synced = this.logLock.newCondition();
+        this.appended = 0;
+        this.durable = 0;
+        this.syncing = false;
+        this.failure = null;
+        this.closed = false;
+
+        this.channel = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            replay(path, replayer);
+        } catch(IOException | RuntimeException e) {
+            this.channel.close();
+            throw e;
+        }
+
+        if(durability == ASYNC) {
+            this.flusher = new Thread(() -> flushEvery());
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+    }
+
+    //Reads every whole record after the header into the replayer, then cuts the file off after the last one. A new or empty file just gets the header.
+    //The file is read rather than memory mapped so it can be truncated afterwards on every platform.
+    private void replay(String path, Replayer<T> replayer) throws IOException {
+        long size = this.channel.size();
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException(path + " is too large to replay");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while(buffer.hasRemaining()) {
+            if(this.channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+
+        if(size < 8) {
+            //Nothing has been logged yet, or the crash happened while the header was being written.
+            this.channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(this.codec.magic()).putInt(this.codec.version()).flip();
+            write(header, 0);
+            this.channel.force(false);
+            this.end = 8;
+            return;
+        }
+        if(buffer.getInt() != this.codec.magic()) {
+            throw new IOException(path + " isnt a log of this store");
+        }
+        int version = buffer.getInt();
+        if(version != this.codec.version()) {
+            throw new IOException(path + " is a version " + version + " log, only version " + this.codec.version() + " can be read");
+        }
+
+        CRC32 crc = new CRC32();
+        while(buffer.remaining() >= 8) {
+            int start = buffer.position();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if(length < 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            ByteBuffer record = buffer.slice();
+            record.limit(length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if((int) crc.getValue() != checksum) {
+                buffer.position(start);
+                break;
+            }
+            try {
+                replayer.replay(this.codec.decode(record));
+            } catch(BufferUnderflowException e) {
+                throw new IOException(path + " has a record which is too short");
+            }
+            buffer.position(start + 8 + length);
+            this.appended++;
+        }
+        this.durable = this.appended;
+
+        if(buffer.position() < size) {
+            this.channel.truncate(buffer.position());
+            this.channel.force(false);
+        }
+        this.end = buffer.position();
+    }
+
+    /**
+     * append() - O(L) method writing a record of length L onto the end of the log. It is only in the operating system's cache until a later force.
+     * @param addition - The addition to log, turned into bytes by the codec.
+     * @return - The number of the record, to pass to awaitDurable().
+     * @throws IOException - If the log is closed, has failed before, or cant be written to.
+     */
+    public long append(T addition) throws IOException {
+        ByteBuffer record = this.codec.encode(addition);
+        ByteBuffer framed = ByteBuffer.allocate(8 + record.remaining());
+        CRC32 crc = new CRC32();
+        crc.update(record.duplicate());
+        framed.putInt(record.remaining()).putInt((int) crc.getValue()).put(record).flip();
+
+        this.logLock.lock();
+        try {
+            checkWritable();
+            try {
+                write(framed, this.end);
+                this.end += framed.limit();
+            } catch(IOException e) {
+                //A record could be half written, anything appended after it would be lost on replay.
+                this.failure = e;
+                throw e;
+            }
+            return ++this.appended;
+        } finally {
+            this.logLock.unlock();
+        }
+    }
+
+    /**
+     * awaitDurable() - Waits until a record is on the disk. SYNC forces the log straight away, BATCHED waits batchMillis first so the writers arriving
+     * in the meantime share the force, and ASYNC doesnt wait at all, leaving it to the background flusher. Either way, when a force is already running
+     * we wait for it and only force again if it didnt cover our record.
+     * @param record - The number append() returned for the record.
+     * @throws IOException - If the log couldnt be forced to the disk.
+     */
+    public void awaitDurable(long record) throws IOException {
+        if(this.durability == ASYNC) {
+            return;
+        }
+        boolean interrupted = false;
+        this.logLock.lock();
+        try {
+            while(this.durable < record) {
+                if(this.failure != null) {
+                    throw new IOException("The log couldnt be written to the disk", this.failure);
+                }
+                if(this.syncing) {
+                    this.synced.awaitUninterruptibly();
+                    continue;
+                }
+
+                this.syncing = true;
+                try {
+                    if(this.durability == BATCHED) {
+                        //Hold the force back so the writers that arrive in the meantime are covered by it too. The lock is let go while we wait.
+                        long remaining = this.batchMillis * 1000000L;
+                        long deadline = System.nanoTime() + remaining;
+                        while(remaining > 0) {
+                            try {
+                                this.synced.awaitNanos(remaining);
+                            } catch(InterruptedException e) {
+                                interrupted = true;
+                            }
+                            remaining = deadline - System.nanoTime();
+                        }
+                    }
+                    force();
+                } finally {
+                    this.syncing = false;
+                    this.synced.signalAll();
+                }
+            }
+        } finally {
+            this.logLock.unlock();
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * close() - Forces everything appended so far to the disk and closes the file, any write after this fails.
+     * @throws IOException - If the last force fails.
+     */
+    public void close() throws IOException {
+        Thread stopping;
+        IOException lastFailure;
+        this.logLock.lock();
+        try {
+            if(this.closed) {
+                return;
+            }
+            this.closed = true;
+            while(this.syncing) {
+                this.synced.awaitUninterruptibly();
+            }
+            this.syncing = true;
+            try {
+                force();
+            } finally {
+                this.syncing = false;
+                this.synced.signalAll();
+            }
+            stopping = this.flusher;
+            lastFailure = this.failure;
+        } finally {
+            this.logLock.unlock();
+        }
+
+        if(stopping != null) {
+            stopping.interrupt();
+            joinUninterruptibly(stopping);
+        }
+        this.channel.close();
+        if(lastFailure != null) {
+            throw new IOException("The log couldnt be written to the disk", lastFailure);
+        }
+    }
+
+    //Forces everything appended so far to the disk, letting go of the log lock while the force runs. Must be called holding the lock with syncing set.
+    private void force() {
+        long target = this.appended;
+        IOException error = null;
+        this.logLock.unlock();
+        try {
+            this.channel.force(false);
+        } catch(IOException e) {
+            error = e;
+        } finally {
+            this.logLock.lock();
+        }
+        if(error != null) {
+            if(this.failure == null) {
+                this.failure = error;
+            }
+        } else if(target > this.durable) {
+            this.durable = target;
+        }
+    }
+
+    //The ASYNC flusher, forcing whatever has been appended every batchMillis until the log is closed.
+    private void flushEvery() {
+        while(true) {
+            try {
+                Thread.sleep(Math.max(1, this.batchMillis));
+            } catch(InterruptedException e) {
+                //close() interrupts us, which is checked for below.
+            }
+            this.logLock.lock();
+            try {
+                if(this.closed) {
+                    return;
+                }
+                if(!this.syncing && this.failure == null && this.durable < this.appended) {
+                    this.syncing = true;
+                    try {
+                        force();
+                    } finally {
+                        this.syncing = false;
+                        this.synced.signalAll();
+                    }
+                }
+            } finally {
+                this.logLock.unlock();
+            }
+        }
+    }
+
+    private void checkWritable() throws IOException {
+        if(this.closed) {
+            throw new IOException("The log is closed");
+        }
+        if(this.failure != null) {
+            throw new IOException("The log couldnt be written to the disk", this.failure);
+        }
+    }
+
+    //Writes all of a buffer at a position, a channel can write less than asked for in one go.
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while(true) {
+            try {
+                thread.join();
+                break;
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * appendIfOpen() - Appends an addition to a store's log if it has one open, for the add methods which cant throw a checked exception.
+     * @param log - The store's log, null if none is open.
+     * @param addition - The addition to log.
+     * @return - The number of the record to wait for, or 0 if there is no log.
+     * @throws UncheckedIOException - If the addition couldnt be written to the log, in which case the store mustnt make it.
+     */
+    public static <T> long appendIfOpen(WriteAheadLog<T> log, T addition) {
+        if(log == null) {
+            return 0;
+        }
+        try {
+            return log.append(addition);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * awaitIfOpen() - Waits for a record appendIfOpen() gave back to reach the disk, if there was a log. Called after letting go of the store's lock,
+     * so the writers behind can log theirs and share the same force.
+     * @param log - The log the record was appended to, null if there wasnt one.
+     * @param record - The number appendIfOpen() returned.
+     * @throws UncheckedIOException - If the log couldnt be forced to the disk.
+     */
+    public static void awaitIfOpen(WriteAheadLog<?> log, long record) {
+        if(log == null) {
+            return;
+        }
+        try {
+            log.awaitDurable(record);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * RecordCodec interface, a store's record format. The magic number and version go in the header of the log so one store never replays another's log,
+     * or a log written in a format it no longer reads. Change the version whenever encode() changes.
+     */
+    public interface RecordCodec<T> {
+        int magic();
+        int version();
+        //The bytes of the record for an addition, from the buffer's position to its limit.
+        ByteBuffer encode(T addition);
+        //Reads an addition back from the bytes encode() gave. Running off the end of the record is reported as a record which is too short.
+        T decode(ByteBuffer record) throws IOException;
+    }
+
+    public interface Replayer<T> {
+        void replay(T addition);
+    }
+//End of the write ahead log class.
+}
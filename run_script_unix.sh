@@ -18,6 +18,14 @@ cp WeetStore.java $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/
 
 cp FollowerStore.java $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/
 
+mkdir -p $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/collections
+
+cp collections/*.java $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/collections/
+
+mkdir -p $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/persistence
+
+cp persistence/*.java $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/persistence/
+
 rm $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/WeetStore.class
 rm $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/UserStore.class
 rm $WORK_DIR/witter-tmp/WEB-INF/classes/uk/ac/warwick/java/cs126/services/FollowerStore.class
@@ -18,6 +18,14 @@ copy WeetStore.java %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs1
 
 copy FollowerStore.java %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\
 
+mkdir %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\collections
+
+copy collections\*.java %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\collections\
+
+mkdir %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\persistence
+
+copy persistence\*.java %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\persistence\
+
 del %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\WeetStore.class
 del %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\UserStore.class
 del %WORK_DIR%\witter-tmp\WEB-INF\classes\uk\ac\warwick\java\cs126\services\FollowerStore.class
@@ -0,0 +1,399 @@
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.lang.management.ManagementFactory;
+
+import uk.ac.warwick.java.cs126.services.IWeetStore;
+import uk.ac.warwick.java.cs126.services.IUserStore;
+import uk.ac.warwick.java.cs126.services.IFollowerStore;
+import uk.ac.warwick.java.cs126.services.WeetStore;
+import uk.ac.warwick.java.cs126.services.UserStore;
+import uk.ac.warwick.java.cs126.services.FollowerStore;
+import uk.ac.warwick.java.cs126.models.Weet;
+import uk.ac.warwick.java.cs126.models.User;
+
+/*
+ * Benchmarks every IWeetStore, IUserStore and IFollowerStore method against synthetic data, so a change to the
+ * stores can be measured rather than guessed at. For each scale (the number of weets, users and follower edges)
+ * it prints the throughput, the median and 99th percentile latency and the bytes allocated per call.
+ *
+ * Run it using:
+ *
+ *     java -cp witter-models.jar:. Benchmarks [scale ...]
+ *
+ * The reads of getWeetsByUser and getFollowers are also measured from 1, 2, 4 and 8 threads sharing the same store, where the
+ * ops/s is the total across the threads, to see how well the read locks let readers run side by side.
+ *
+ * The default scales are 1000, 10000 and 100000. Larger scales (up to 10000000) can be passed on the command line
+ * but need a bigger heap, e.g. java -Xmx8g -cp witter-models.jar:. Benchmarks 1000000 10000000
+ */
+public class Benchmarks
+{
+
+    // How long each read benchmark is warmed up for before measuring, and then measured for
+    private static final long WARMUP_NANOS = 500000000L;
+    private static final long MEASURE_NANOS = 1000000000L;
+    // The most calls we keep a latency for in one benchmark
+    private static final int MAX_SAMPLES = 1 << 20;
+    // The numbers of threads the concurrent read benchmarks share a store between
+    private static final int[] READER_THREADS = {1, 2, 4, 8};
+
+    private static final int VOCABULARY_SIZE = 2000;
+    private static final int HASHTAG_COUNT = 200;
+    private static final int WORDS_PER_WEET = 8;
+
+    // Results are added in here so the JIT can't throw away the calls being measured
+    private static long sink;
+
+    private interface Op
+    {
+        void run(int i);
+    }
+
+    // A read for the concurrent benchmarks, which returns its result so each thread can add them up itself rather than every thread writing to sink
+    private interface ReadOp
+    {
+        long run(int i);
+    }
+
+    public static void main(String[] args)
+    {
+        int[] scales = {1000, 10000, 100000};
+        if (args.length > 0)
+        {
+            scales = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                scales[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        if (allocatedBytes() < 0)
+        {
+            System.out.println("[INFO]: This JVM can't count allocations, alloc columns will show -1");
+        }
+
+        for (int scale : scales)
+        {
+            runScale(scale);
+        }
+
+        // Print the sink so it is used
+        System.out.println("(" + sink + ")");
+    }
+
+    private static void runScale(int n)
+    {
+        System.out.println();
+        System.out.println("[Scale " + n + " weets / users / follower edges]");
+        System.out.println(String.format("%-34s %12s %12s %12s %12s %14s", "benchmark", "ops/s", "p50 ns", "p99 ns", "alloc B/op", "alloc MB/s"));
+
+        Random random = new Random(126);
+        long start = 1350000000000L;
+
+        // Users join a few minutes apart with made up names
+        final User[] users = new User[n];
+        for (int i = 0; i < n; i++)
+        {
+            users[i] = new User(randomName(random), i + 1, new Date(start + i * 60000L));
+        }
+
+        // Weets are a few words from a fixed vocabulary, with a hashtag every so often, weeted a little after each other
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++)
+        {
+            vocabulary[i] = randomName(random).toLowerCase();
+        }
+        final Weet[] weets = new Weet[n];
+        long weetTime = start;
+        for (int i = 0; i < n; i++)
+        {
+            StringBuilder message = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_WEET; w++)
+            {
+                if (w > 0)
+                {
+                    message.append(' ');
+                }
+                // Skew towards the start of the vocabulary so some words are much more common than others
+                double r = random.nextDouble();
+                message.append(vocabulary[(int) (r * r * VOCABULARY_SIZE)]);
+            }
+            if (random.nextInt(4) == 0)
+            {
+                double r = random.nextDouble();
+                message.append(" #tag").append((int) (r * r * HASHTAG_COUNT));
+            }
+            weetTime += 1 + random.nextInt(120000);
+            weets[i] = new Weet(i + 1, 1 + random.nextInt(n), message.toString(), new Date(weetTime));
+        }
+
+        // A few users get most of the followers, like a real network
+        final int[] followerIds = new int[n];
+        final int[] followedIds = new int[n];
+        final Date[] followDates = new Date[n];
+        for (int i = 0; i < n; i++)
+        {
+            double r = random.nextDouble();
+            followerIds[i] = 1 + random.nextInt(n);
+            followedIds[i] = 1 + (int) (r * r * r * n);
+            followDates[i] = new Date(start + i * 30000L);
+        }
+
+        // Things to query with, chosen up front so choosing them isn't measured
+        final int[] userIds = new int[1024];
+        final Date[] dates = new Date[1024];
+        final String[] words = new String[1024];
+        final int[] followingIds = new int[1024];
+        final int[] followedByIds = new int[1024];
+        for (int i = 0; i < 1024; i++)
+        {
+            // Users taken from the edges, so they have followers or follows for the follower queries
+            int edge = random.nextInt(n);
+            followingIds[i] = followerIds[edge];
+            followedByIds[i] = followedIds[edge];
+            userIds[i] = 1 + random.nextInt(n);
+            dates[i] = new Date(start + (long) (random.nextDouble() * (weetTime - start)));
+            words[i] = vocabulary[random.nextInt(VOCABULARY_SIZE)];
+        }
+        final int mask = 1023;
+
+        // Adds are measured loading the whole data set into an empty store, after loading it once to warm up
+        final IWeetStore[] weetStore = new IWeetStore[1];
+        final IUserStore[] userStore = new IUserStore[1];
+        final IFollowerStore[] followerStore = new IFollowerStore[1];
+
+        weetStore[0] = new WeetStore();
+        measureEach("addWeet (warm up)", n, i -> weetStore[0].addWeet(weets[i]), false);
+        weetStore[0] = new WeetStore();
+        measureEach("addWeet", n, i -> weetStore[0].addWeet(weets[i]), true);
+
+        userStore[0] = new UserStore();
+        measureEach("addUser (warm up)", n, i -> userStore[0].addUser(users[i]), false);
+        userStore[0] = new UserStore();
+        measureEach("addUser", n, i -> userStore[0].addUser(users[i]), true);
+
+        followerStore[0] = new FollowerStore();
+        measureEach("addFollower (warm up)", n, i -> followerStore[0].addFollower(followerIds[i], followedIds[i], followDates[i]), false);
+        followerStore[0] = new FollowerStore();
+        measureEach("addFollower", n, i -> followerStore[0].addFollower(followerIds[i], followedIds[i], followDates[i]), true);
+
+        final IWeetStore ws = weetStore[0];
+        final IUserStore us = userStore[0];
+        final IFollowerStore fs = followerStore[0];
+
+        // IWeetStore
+        measure("getWeet", i -> sink += ws.getWeet(userIds[i & mask]).getId());
+        measure("getWeets", i -> sink += ws.getWeets().length);
+        measure("getWeetsByUser", i -> sink += ws.getWeetsByUser(users[userIds[i & mask] - 1]).length);
+        measure("getWeetsContaining (word)", i -> sink += ws.getWeetsContaining(words[i & mask]).length);
+        measure("getWeetsContaining (short)", i -> sink += ws.getWeetsContaining(words[i & mask].substring(0, 2)).length);
+        measure("getWeetsOn", i -> sink += ws.getWeetsOn(dates[i & mask]).length);
+        measure("getWeetsBefore", i -> sink += ws.getWeetsBefore(dates[i & mask]).length);
+        measure("getTrending", i -> sink += ws.getTrending().length);
+
+        // IUserStore
+        measure("getUser", i -> sink += us.getUser(userIds[i & mask]).getId());
+        measure("getUsers", i -> sink += us.getUsers().length);
+        measure("getUsersContaining", i -> sink += us.getUsersContaining(words[i & mask].substring(0, 3)).length);
+        measure("getUsersJoinedBefore", i -> sink += us.getUsersJoinedBefore(dates[i & mask]).length);
+
+        // IFollowerStore
+        measure("isAFollower", i -> sink += fs.isAFollower(userIds[i & mask], followedByIds[i & mask]) ? 1 : 0);
+        measure("getFollowers", i -> sink += length(fs.getFollowers(followedByIds[i & mask])));
+        measure("getFollows", i -> sink += length(fs.getFollows(followingIds[i & mask])));
+        measure("getNumFollowers", i -> sink += fs.getNumFollowers(followedByIds[i & mask]));
+        // Pairs of users who both have followers, or both follow someone, so the mutual methods have work to do
+        measure("getMutualFollowers", i -> sink += length(fs.getMutualFollowers(followedByIds[i & mask], followedByIds[(i + 1) & mask])));
+        measure("getMutualFollows", i -> sink += length(fs.getMutualFollows(followingIds[i & mask], followingIds[(i + 1) & mask])));
+        measure("getTopUsers", i -> sink += fs.getTopUsers().length);
+
+        // Concurrent reads, the stores are shared between request threads which should only queue behind each other for writes
+        for (int threads : READER_THREADS)
+        {
+            measureConcurrent("getWeetsByUser x" + threads, threads, i -> ws.getWeetsByUser(users[userIds[i & mask] - 1]).length);
+        }
+        for (int threads : READER_THREADS)
+        {
+            measureConcurrent("getFollowers x" + threads, threads, i -> length(fs.getFollowers(followedByIds[i & mask])));
+        }
+    }
+
+    /*
+     * Measures a read, calling it over and over for WARMUP_NANOS to let the JIT compile it and then for MEASURE_NANOS timing every call
+     */
+    private static void measure(String name, Op op)
+    {
+        long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+        int i = 0;
+        while (System.nanoTime() < warmupEnd)
+        {
+            op.run(i++);
+        }
+
+        long[] latencies = new long[MAX_SAMPLES];
+        int ops = 0;
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long end = start + MEASURE_NANOS;
+        long now = start;
+        while (now < end && ops < MAX_SAMPLES)
+        {
+            op.run(ops);
+            long after = System.nanoTime();
+            latencies[ops++] = after - now;
+            now = after;
+        }
+        report(name, latencies, ops, now - start, allocatedBytes() - allocatedBefore);
+    }
+
+    /*
+     * Measures a read made by several threads at once on the same store, each warming up and then timing its own calls for the same MEASURE_NANOS.
+     * The ops/s is the total across the threads, and the latencies and allocations are those of every thread together
+     */
+    private static void measureConcurrent(String name, int threads, final ReadOp op)
+    {
+        final long[][] latencies = new long[threads][MAX_SAMPLES / threads];
+        final int[] ops = new int[threads];
+        final long[] allocated = new long[threads];
+        final long[] sums = new long[threads];
+        final CyclicBarrier ready = new CyclicBarrier(threads);
+        final long[] elapsed = new long[threads];
+        Thread[] readers = new Thread[threads];
+        for (int t = 0; t < threads; t++)
+        {
+            final int reader = t;
+            readers[t] = new Thread(() -> {
+                // Each thread starts from a different query so they aren't all reading the same user at once
+                int i = reader * 97;
+                long warmupEnd = System.nanoTime() + WARMUP_NANOS;
+                while (System.nanoTime() < warmupEnd)
+                {
+                    sums[reader] += op.run(i++);
+                }
+                try
+                {
+                    ready.await();
+                }
+                catch (InterruptedException | BrokenBarrierException e)
+                {
+                    return;
+                }
+
+                long[] mine = latencies[reader];
+                long allocatedBefore = allocatedBytes();
+                long start = System.nanoTime();
+                long end = start + MEASURE_NANOS;
+                long now = start;
+                int count = 0;
+                while (now < end && count < mine.length)
+                {
+                    sums[reader] += op.run(i++);
+                    long after = System.nanoTime();
+                    mine[count++] = after - now;
+                    now = after;
+                }
+                ops[reader] = count;
+                elapsed[reader] = now - start;
+                allocated[reader] = allocatedBytes() - allocatedBefore;
+            });
+            readers[t].start();
+        }
+
+        int totalOps = 0;
+        long longestNanos = 0;
+        long totalAllocated = 0;
+        for (int t = 0; t < threads; t++)
+        {
+            try
+            {
+                readers[t].join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            totalOps += ops[t];
+            longestNanos = Math.max(longestNanos, elapsed[t]);
+            totalAllocated = totalAllocated < 0 || allocated[t] < 0 ? -1 : totalAllocated + allocated[t];
+            sink += sums[t];
+        }
+
+        long[] allLatencies = new long[totalOps];
+        int filled = 0;
+        for (int t = 0; t < threads; t++)
+        {
+            System.arraycopy(latencies[t], 0, allLatencies, filled, ops[t]);
+            filled += ops[t];
+        }
+        report(name, allLatencies, totalOps, longestNanos, totalAllocated);
+    }
+
+    /*
+     * Measures a write by calling it once for every item in the data set, timing every call
+     */
+    private static void measureEach(String name, int count, Op op, boolean print)
+    {
+        long[] latencies = new long[count];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long now = start;
+        for (int i = 0; i < count; i++)
+        {
+            op.run(i);
+            long after = System.nanoTime();
+            latencies[i] = after - now;
+            now = after;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+        if (print)
+        {
+            report(name, latencies, count, now - start, allocated);
+        }
+    }
+
+    private static void report(String name, long[] latencies, int ops, long elapsedNanos, long allocated)
+    {
+        Arrays.sort(latencies, 0, ops);
+        double seconds = elapsedNanos / 1e9;
+        long bytesPerOp = allocated < 0 ? -1 : allocated / Math.max(ops, 1);
+        double megabytesPerSecond = allocated < 0 ? -1 : allocated / seconds / (1024 * 1024);
+        System.out.println(String.format("%-34s %12.0f %12d %12d %12d %14.1f", name, ops / seconds,
+                latencies[ops / 2], latencies[Math.min(ops - 1, (int) (ops * 0.99))], bytesPerOp, megabytesPerSecond));
+    }
+
+    /*
+     * The bytes this thread has allocated so far, or -1 if the JVM can't tell us
+     */
+    private static long allocatedBytes()
+    {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static int length(int[] ids)
+    {
+        return ids == null ? 0 : ids.length;
+    }
+
+    private static String randomName(Random random)
+    {
+        String[] syllables = {"ka", "lo", "mi", "ra", "te", "su", "no", "vi", "an", "el", "or", "ju", "be", "dy", "fa", "go"};
+        StringBuilder name = new StringBuilder();
+        int length = 2 + random.nextInt(3);
+        for (int i = 0; i < length; i++)
+        {
+            name.append(syllables[random.nextInt(syllables.length)]);
+        }
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+}
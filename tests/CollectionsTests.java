@@ -0,0 +1,545 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import uk.ac.warwick.java.cs126.services.collections.AVLTree;
+import uk.ac.warwick.java.cs126.services.collections.AdjacencyLists;
+import uk.ac.warwick.java.cs126.services.collections.IntHashMap;
+import uk.ac.warwick.java.cs126.services.collections.IntIntHashMap;
+import uk.ac.warwick.java.cs126.services.collections.Node;
+import uk.ac.warwick.java.cs126.services.collections.RankTree;
+import uk.ac.warwick.java.cs126.services.collections.RoaringIntSet;
+import uk.ac.warwick.java.cs126.services.collections.TimeNode;
+import uk.ac.warwick.java.cs126.services.collections.TimeTree;
+
+class CollectionsTests {
+
+
+    /*
+     * Tests adding to a RoaringIntSet against a TreeSet, across several containers and negative ids, and through an array container filling up and becoming a bitmap
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRoaringIntSet()
+    {
+        // Create a new set and a TreeSet to check it against, with one container filled past 4096 ids and a few sparse ones either side of 0
+        RoaringIntSet set = new RoaringIntSet();
+        TreeSet<Integer> reference = new TreeSet<>();
+        boolean added = true;
+        for (int i = 0; i < 5000; i++) {
+            int id = 200000 + i * 3;
+            added = added && addBoth(set, reference, id);
+            if (i == 4095) {
+                // The container is full as an array, the next id turns it into a bitmap
+                added = added && sameAsReference(set, reference);
+            }
+        }
+        Random random = new Random(126);
+        for (int i = 0; i < 2000; i++) {
+            added = added && addBoth(set, reference, random.nextInt(400000) - 200000);
+        }
+        added = added && addBoth(set, reference, Integer.MIN_VALUE) && addBoth(set, reference, Integer.MAX_VALUE)
+            && addBoth(set, reference, -1) && addBoth(set, reference, 0);
+
+        // Issue the commands, suitably storing the return values
+        int repeated = set.add(200003);
+        int[] copied = new int[set.size()];
+        set.copyTo(copied);
+        int[] sorted = toArray(reference);
+        RoaringIntSet built = RoaringIntSet.fromSorted(sorted, 0, sorted.length);
+
+        // We expect the set to agree with the TreeSet on every id and position, the repeated id to be refused with its position, and a set built in one go to be the same
+        if (added && sameAsReference(set, reference) && sameAsReference(built, reference)
+            && repeated == -(reference.headSet(200003).size() + 1)
+            && Arrays.equals(copied, sorted) && set.size() == reference.size()
+            && set.get(0) == Integer.MIN_VALUE && set.get(set.size() - 1) == Integer.MAX_VALUE)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests intersecting RoaringIntSets with sorted runs and with each other against a TreeSet, for array containers against bitmaps, bitmaps against bitmaps
+     * and arrays against arrays, including negative ids and containers only one side has
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRoaringIntersect()
+    {
+        // Create sets where the same container is a bitmap in one and an array in the other, a bitmap in both, and an array in both
+        TreeSet<Integer> reference1 = new TreeSet<>();
+        TreeSet<Integer> reference2 = new TreeSet<>();
+        for (int i = 0; i < 6000; i++) {
+            reference1.add(i * 2);
+            reference2.add(65536 + i * 3);
+            reference1.add(65536 + i * 5);
+        }
+        for (int i = 0; i < 100; i++) {
+            reference2.add(i * 7);
+            reference1.add(-1000 + i * 3);
+            reference2.add(-1000 + i * 4);
+            reference1.add((1 << 20) + i);
+        }
+        reference2.add(1 << 24);
+        RoaringIntSet set1 = fromReference(reference1);
+        RoaringIntSet set2 = fromReference(reference2);
+
+        // Issue the commands, suitably storing the return values
+        int[] run = toArray(reference2);
+        int most = Math.min(reference1.size(), reference2.size());
+        int[] ids = new int[most];
+        int[] positions1 = new int[most];
+        int[] positions2 = new int[most];
+        int found = set1.intersect(set2, ids, positions1, positions2);
+        boolean setsMatch = sameIntersection(reference1, reference2, ids, positions1, positions2, found);
+        int swappedFound = set2.intersect(set1, ids, positions2, positions1);
+        setsMatch = setsMatch && sameIntersection(reference1, reference2, ids, positions1, positions2, swappedFound);
+
+        int[] runIds = new int[most];
+        int[] runPositions = new int[most];
+        int[] setPositions = new int[most];
+        int runFound = set1.intersectRun(run, 0, run.length, runIds, runPositions, setPositions);
+        boolean runMatches = sameIntersection(reference2, reference1, runIds, runPositions, setPositions, runFound);
+
+        int[] selfIds = new int[reference1.size()];
+        int selfFound = set1.intersect(set1, selfIds, new int[selfIds.length], new int[selfIds.length]);
+
+        // We expect exactly the ids in both, ascending, with their positions in each
+        if (setsMatch && runMatches && found > 0 && found == runFound
+            && selfFound == reference1.size() && Arrays.equals(selfIds, toArray(reference1)))
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the head, tail and sub iterators of an AVLTree against filtering every node in order, for bounds on a key, between keys and outside all of them,
+     * inclusive and not, with many nodes sharing each key
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAVLTreeRanges()
+    {
+        // Create a new tree of 400 nodes with only the even keys 0 to 98 so the odd bounds fall between keys, the value being the order they were added
+        AVLTree<Integer, Integer> tree = new AVLTree<>();
+        AVLTree<Integer, Integer> empty = new AVLTree<>();
+        Random random = new Random(126);
+        int[][] ordered = new int[400][];
+        for (int i = 0; i < ordered.length; i++) {
+            int key = random.nextInt(50) * 2;
+            tree.insertKeyValuePair(key, i);
+            ordered[i] = new int[] {key, i};
+        }
+        // The tree's order, the largest key first and the last added first between equal keys
+        Arrays.sort(ordered, (first, second) -> first[0] != second[0] ? second[0] - first[0] : second[1] - first[1]);
+
+        // Issue the commands, suitably storing the return values, for every pair of bounds, null being no bound
+        Integer[] bounds = {null, -1, 0, 1, 50, 51, 98, 99};
+        boolean[] inclusive = {true, false};
+        boolean ranges = true;
+        boolean emptyRanges = true;
+        for (Integer low : bounds) {
+            for (Integer high : bounds) {
+                for (boolean lowInclusive : inclusive) {
+                    for (boolean highInclusive : inclusive) {
+                        ranges = ranges && sameRange(rangeOf(tree, low, lowInclusive, high, highInclusive), ordered, low, lowInclusive, high, highInclusive);
+                        emptyRanges = emptyRanges && !rangeOf(empty, low, lowInclusive, high, highInclusive).hasNext();
+                    }
+                }
+            }
+        }
+
+        // We expect every range to be exactly the nodes between its bounds in the tree's order, and nothing from an empty tree
+        if (ranges && emptyRanges && tree.getTreeSize() == ordered.length)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the int keyed hash maps against a HashMap as they grow through several resizes, with negative and extreme keys,
+     * keys which all hash to the same slot, replaced values and a value of 0 in the int map
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testIntHashMaps()
+    {
+        // Create new maps, and the keys: 16 only differing in their top 4 bits all hash to slot 0 until the table has 4096 slots, then random keys either side of 0
+        IntHashMap<Integer> map = new IntHashMap<>();
+        IntIntHashMap intMap = new IntIntHashMap();
+        HashMap<Integer, Integer> reference = new HashMap<>();
+        int[] keys = new int[3020];
+        for (int i = 0; i < 16; i++) {
+            keys[i] = i << 28;
+        }
+        keys[16] = Integer.MIN_VALUE + 1;
+        keys[17] = Integer.MAX_VALUE;
+        keys[18] = -1;
+        keys[19] = 1;
+        Random random = new Random(126);
+        for (int i = 20; i < keys.length; i++) {
+            keys[i] = random.nextInt(4000) - 2000;
+        }
+
+        // Issue the commands, suitably storing the return values, checking every key added so far after each few. Key 0 is put first with a value of 0
+        boolean added = true;
+        boolean same = true;
+        for (int i = 0; i < keys.length; i++) {
+            boolean isNew = !reference.containsKey(keys[i]);
+            reference.put(keys[i], i);
+            added = added && map.put(keys[i], i) == isNew;
+            intMap.put(keys[i], i);
+            if (i < 40 || i % 250 == 0) {
+                same = same && sameAsReference(map, intMap, reference);
+            }
+        }
+        same = same && sameAsReference(map, intMap, reference);
+        boolean missing = true;
+        for (int key = 2000; key < 2100; key++) {
+            missing = missing && map.get(key) == null && intMap.get(key) == -1 && map.get(-key - 1) == null && intMap.get(-key - 1) == -1;
+        }
+
+        // We expect both maps to agree with the HashMap throughout, with the last value put for a repeated key, and nothing for keys never put
+        if (added && same && missing && map.size() == reference.size()
+            && map.get(Integer.MAX_VALUE - 1) == null && intMap.get(Integer.MAX_VALUE - 1) == -1)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests building a TimeTree in bulk with sortNodes() and buildFromSorted() gives the same tree as inserting the nodes one at a time, with many nodes sharing each time,
+     * for nodes added in a random order, oldest first and newest first, and only sorting the start of the array
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testTimeTreeBuildFromSorted()
+    {
+        // Create the times of 3000 nodes in three orders, with only 30 different times so about 100 share each one
+        Random random = new Random(126);
+        long[][] orders = new long[3][3000];
+        for (int i = 0; i < 3000; i++) {
+            orders[0][i] = 1000L * random.nextInt(30);
+            orders[1][i] = 1000L * (i / 100);
+            orders[2][i] = 1000L * (29 - i / 100);
+        }
+
+        // Issue the commands, suitably storing the return values, building each order both ways, the value being the order the node was added
+        boolean same = true;
+        for (long[] times : orders) {
+            for (int count : new int[] {0, 1, 17, times.length}) {
+                TimeTree<Integer> inserted = new TimeTree<>();
+                TimeTree<Integer> built = new TimeTree<>();
+                TimeNode<Integer>[] nodes = TimeNode.newArray(times.length);
+                for (int i = 0; i < times.length; i++) {
+                    if (i < count) {
+                        inserted.insertKeyValuePair(times[i], i);
+                    }
+                    nodes[i] = new TimeNode<>(times[i], i);
+                }
+                TimeTree.sortNodes(nodes, count);
+                built.buildFromSorted(nodes, count);
+                same = same && sameTimeTrees(built, inserted) && nodes.length == times.length
+                    && (count == times.length || nodes[count].getValue() == count);
+            }
+        }
+
+        // We expect the bulk built trees to iterate exactly like the inserted ones, the last added first between equal times, whole and over ranges on a shared time
+        if (same)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the order statistic tree the follower leaderboard is kept in against a TreeSet, finding every key's place and the key at every place,
+     * iterating from the middle, and removing keys until it is empty, most of them with two children
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRankTree()
+    {
+        // Create a new tree of 500 keys inserted in a random order, and a TreeSet in the same largest first order
+        RankTree<Integer> tree = new RankTree<>();
+        TreeSet<Integer> reference = new TreeSet<>(Collections.reverseOrder());
+        Random random = new Random(126);
+        while (reference.size() < 500) {
+            int key = random.nextInt(10000) - 5000;
+            if (reference.add(key)) {
+                tree.insert(key);
+            }
+        }
+
+        // Issue the commands, suitably storing the return values
+        boolean sameOrder = sameRanks(tree, reference);
+        int middle = reference.size() / 2;
+        RankTree<Integer>.TreeIterator fromMiddle = tree.iterator(middle);
+        Iterator<Integer> expected = reference.tailSet(tree.get(middle), true).iterator();
+        while (expected.hasNext() && fromMiddle.hasNext()) {
+            sameOrder = sameOrder && expected.next().equals(fromMiddle.next());
+        }
+        sameOrder = sameOrder && !expected.hasNext() && !fromMiddle.hasNext() && !tree.iterator(reference.size()).hasNext();
+        boolean missing = tree.indexOf(20000) == -1 && !tree.remove(20000) && tree.get(reference.size()) == null;
+
+        // Take the keys back out in a random order, checking the places of the rest each time
+        boolean removed = true;
+        Integer[] keys = reference.toArray(new Integer[0]);
+        for (int i = keys.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Integer swap = keys[i];
+            keys[i] = keys[j];
+            keys[j] = swap;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            removed = removed && tree.remove(keys[i]) && reference.remove(keys[i]);
+            if (i % 50 == 0) {
+                removed = removed && sameRanks(tree, reference);
+            }
+        }
+
+        // We expect the tree to agree with the TreeSet throughout, and to be empty at the end
+        if (sameOrder && missing && removed && tree.isEmpty() && tree.size() == 0)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the date order the adjacency lists keep alongside each run against sorting the edges, with the edges inserted in a random order of times and ids,
+     * including repeated times, and countSince() at, between and either side of the times
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAdjacencyListsByTime()
+    {
+        // Create new lists, giving user 1 edges in a random order with only 20 different times so many share one
+        AdjacencyLists lists = new AdjacencyLists();
+        TreeSet<Long> edges = new TreeSet<>();
+        TreeSet<Integer> ids = new TreeSet<>();
+        Random random = new Random(126);
+        boolean inserted = true;
+        for (int i = 0; i < 300; i++) {
+            int id = random.nextInt(1000);
+            long time = 1000L * random.nextInt(20);
+            boolean isNew = ids.add(id);
+            if (isNew) {
+                // Ordered the same as copyIdsByTime(), the latest first and then the smallest id, by packing the time above the id
+                edges.add(-time * 4096 + id);
+            }
+            inserted = inserted && lists.insert(1, id, time) == isNew;
+        }
+
+        // Issue the commands, suitably storing the return values
+        int slot = lists.slotOf(1);
+        int[] byTime = new int[lists.size(slot)];
+        lists.copyIdsByTime(slot, byTime, byTime.length);
+        int[] latest = new int[3];
+        lists.copyIdsByTime(slot, latest, latest.length);
+        boolean sameOrder = byTime.length == edges.size();
+        int i = 0;
+        for (long edge : edges) {
+            sameOrder = sameOrder && byTime[i++] == (int) Math.floorMod(edge, 4096L);
+        }
+        boolean counted = true;
+        for (long time = -500; time <= 20500; time += 500) {
+            int expected = 0;
+            for (long edge : edges) {
+                if (-Math.floorDiv(edge, 4096L) >= time) {
+                    expected++;
+                }
+            }
+            counted = counted && lists.countSince(slot, time) == expected;
+        }
+
+        // We expect the date order to match sorting the edges, the latest to be the start of it, and the counts to include edges exactly at the time
+        if (inserted && sameOrder && counted && lists.slotOf(2) == -1
+            && Arrays.equals(latest, Arrays.copyOf(byTime, 3))
+            && lists.countSince(slot, Long.MIN_VALUE) == byTime.length && lists.countSince(slot, Long.MAX_VALUE) == 0)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    //The iterator over the nodes between the bounds, using the head, tail or sub iterator depending on which bounds there are
+    private AVLTree<Integer, Integer>.TreeIterator rangeOf(AVLTree<Integer, Integer> tree, Integer low, boolean lowInclusive, Integer high, boolean highInclusive)
+    {
+        if (low == null && high == null) {
+            return tree.iterator();
+        }
+        else if (low == null) {
+            return tree.headIterator(high, highInclusive);
+        }
+        else if (high == null) {
+            return tree.tailIterator(low, lowInclusive);
+        }
+        return tree.subIterator(low, lowInclusive, high, highInclusive);
+    }
+
+    //True if the iterator gives the key and value pairs between the bounds in the order given and then stops, with peek() giving each node before next() does
+    private boolean sameRange(AVLTree<Integer, Integer>.TreeIterator iterator, int[][] ordered, Integer low, boolean lowInclusive, Integer high, boolean highInclusive)
+    {
+        for (int[] pair : ordered) {
+            boolean aboveLow = low == null || pair[0] > low || (lowInclusive && pair[0] == low);
+            boolean belowHigh = high == null || pair[0] < high || (highInclusive && pair[0] == high);
+            if (aboveLow && belowHigh) {
+                if (!iterator.hasNext()) {
+                    return false;
+                }
+                Node<Integer, Integer> peeked = iterator.peek();
+                Node<Integer, Integer> node = iterator.next();
+                if (peeked != node || node.key != pair[0] || node.value != pair[1]) {
+                    return false;
+                }
+            }
+        }
+        return !iterator.hasNext() && iterator.peek() == null;
+    }
+
+    //True if both maps have every key of the HashMap with the same value, and the object map is the same size
+    private boolean sameAsReference(IntHashMap<Integer> map, IntIntHashMap intMap, HashMap<Integer, Integer> reference)
+    {
+        if (map.size() != reference.size()) {
+            return false;
+        }
+        for (int key : reference.keySet()) {
+            int value = reference.get(key);
+            if (map.get(key) == null || map.get(key) != value || intMap.get(key) != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //True if the trees are the same size and give the same times and values in the same order, whole and from, up to and between the times either side of 5000
+    private boolean sameTimeTrees(TimeTree<Integer> built, TimeTree<Integer> inserted)
+    {
+        if (built.getTreeSize() != inserted.getTreeSize()) {
+            return false;
+        }
+        boolean[] inclusive = {true, false};
+        for (boolean lowInclusive : inclusive) {
+            for (boolean highInclusive : inclusive) {
+                if (!sameNodes(built.headIterator(5000, highInclusive), inserted.headIterator(5000, highInclusive))
+                    || !sameNodes(built.tailIterator(5000, lowInclusive), inserted.tailIterator(5000, lowInclusive))
+                    || !sameNodes(built.subIterator(4000, lowInclusive, 6000, highInclusive), inserted.subIterator(4000, lowInclusive, 6000, highInclusive))) {
+                    return false;
+                }
+            }
+        }
+        return sameNodes(built.iterator(), inserted.iterator());
+    }
+
+    private boolean sameNodes(TimeTree<Integer>.TreeIterator first, TimeTree<Integer>.TreeIterator second)
+    {
+        while (first.hasNext() && second.hasNext()) {
+            TimeNode<Integer> firstNode = first.next();
+            TimeNode<Integer> secondNode = second.next();
+            if (firstNode.getKey() != secondNode.getKey() || !firstNode.getValue().equals(secondNode.getValue())) {
+                return false;
+            }
+        }
+        return !first.hasNext() && !second.hasNext();
+    }
+
+    //True if every key of the TreeSet has the same place in the tree, and the tree has the same key at each place
+    private boolean sameRanks(RankTree<Integer> tree, TreeSet<Integer> reference)
+    {
+        if (tree.size() != reference.size()) {
+            return false;
+        }
+        int index = 0;
+        for (Integer key : reference) {
+            if (tree.indexOf(key) != index || !key.equals(tree.get(index))) {
+                return false;
+            }
+            index++;
+        }
+        return true;
+    }
+
+    //Adds an id to both the set and the TreeSet, true if the set gave back the position the TreeSet says it has
+    private boolean addBoth(RoaringIntSet set, TreeSet<Integer> reference, int id)
+    {
+        boolean isNew = reference.add(id);
+        int position = reference.headSet(id).size();
+        return set.add(id) == (isNew ? position : -(position + 1));
+    }
+
+    //True if the set has the same ids as the TreeSet, at the same positions, and doesnt have the ids either side of each
+    private boolean sameAsReference(RoaringIntSet set, TreeSet<Integer> reference)
+    {
+        if (set.size() != reference.size()) {
+            return false;
+        }
+        int position = 0;
+        for (int id : reference) {
+            if (!set.contains(id) || set.indexOf(id) != position || set.get(position) != id) {
+                return false;
+            }
+            if (id != Integer.MAX_VALUE && !reference.contains(id + 1)
+                && (set.contains(id + 1) || set.indexOf(id + 1) != -(position + 1) - 1)) {
+                return false;
+            }
+            position++;
+        }
+        return true;
+    }
+
+    //True if the first found ids are those in both TreeSets, ascending, with each one's position in the first and second
+    private boolean sameIntersection(TreeSet<Integer> first, TreeSet<Integer> second, int[] ids, int[] positions1, int[] positions2, int found)
+    {
+        TreeSet<Integer> both = new TreeSet<>(first);
+        both.retainAll(second);
+        if (found != both.size()) {
+            return false;
+        }
+        Iterator<Integer> expected = both.iterator();
+        for (int i = 0; i < found; i++) {
+            int id = expected.next();
+            if (ids[i] != id || positions1[i] != first.headSet(id).size() || positions2[i] != second.headSet(id).size()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private RoaringIntSet fromReference(TreeSet<Integer> reference)
+    {
+        int[] sorted = toArray(reference);
+        return RoaringIntSet.fromSorted(sorted, 0, sorted.length);
+    }
+
+    private int[] toArray(TreeSet<Integer> reference)
+    {
+        int[] toReturn = new int[reference.size()];
+        int i = 0;
+        for (int id : reference) {
+            toReturn[i++] = id;
+        }
+        return toReturn;
+    }
+}
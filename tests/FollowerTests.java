@@ -0,0 +1,443 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.text.ParseException;
+
+import uk.ac.warwick.java.cs126.services.IFollowerStore;
+import uk.ac.warwick.java.cs126.services.FollowerStore;
+import uk.ac.warwick.java.cs126.services.persistence.WriteAheadLog;
+
+class FollowerTests {
+
+
+    /*
+     * Tests adding single follows, that a repeated follow is refused and that isAFollower and getNumFollowers see every follow, only one way round
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddFollower()
+    {
+        // Create new Follower Store
+        FollowerStore followerStore = new FollowerStore();
+
+        // Issue the commands, suitably storing the return values
+        boolean first = followerStore.addFollower(1, 2, createDate("01/11/12 10:00"));
+        boolean repeated = followerStore.addFollower(1, 2, createDate("02/11/12 10:00"));
+        boolean reversed = followerStore.addFollower(2, 1, createDate("03/11/12 10:00"));
+        boolean second = followerStore.addFollower(3, 2, createDate("04/11/12 10:00"));
+
+        // We expect the repeat to be refused without changing the date, and the reverse follow to be a new one
+        if (first && !repeated && reversed && second
+            && followerStore.isAFollower(1, 2) && followerStore.isAFollower(2, 1) && followerStore.isAFollower(3, 2)
+            && !followerStore.isAFollower(2, 3) && !followerStore.isAFollower(1, 3) && !followerStore.isAFollower(7, 8)
+            && followerStore.getNumFollowers(2) == 2 && followerStore.getNumFollowers(1) == 1
+            && followerStore.getNumFollowers(3) == 0 && followerStore.getNumFollowers(7) == 0
+            && Arrays.equals(followerStore.getFollowers(2, 10, createDate("01/11/12 10:00")), new int[] {3, 1})
+            && followerStore.getFollowers(3) == null && followerStore.getFollows(7) == null)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests bulk adding follows, both into an empty store and into one which already has follows (which is packed back together afterwards),
+     * gives the same results as adding them one at a time, with repeated follows skipped
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddFollowers()
+    {
+        // Create a store to bulk add to and one to add to one at a time, the later repeat of 1 following 2 is skipped in both
+        FollowerStore bulkStore = new FollowerStore();
+        FollowerStore followerStore = new FollowerStore();
+        int[] uid1s = {1, 3, 1, 4, 2};
+        int[] uid2s = {2, 2, 2, 2, 1};
+        Date[] dates = {createDate("01/11/12 10:00"), createDate("02/11/12 10:00"), createDate("03/11/12 10:00"),
+            createDate("02/11/12 10:00"), createDate("04/11/12 10:00")};
+        for (int i = 0; i < uid1s.length; i++) {
+            followerStore.addFollower(uid1s[i], uid2s[i], dates[i]);
+        }
+
+        // Issue the commands, suitably storing the return values
+        int added = bulkStore.addFollowers(uid1s, uid2s, dates);
+
+        // A second batch goes into the now non empty store, repeating a stored follow and one of its own
+        int[] moreUid1s = {5, 3, 1, 5, 6};
+        int[] moreUid2s = {2, 2, 3, 2, 1};
+        Date[] moreDates = {createDate("05/11/12 10:00"), createDate("05/11/12 10:00"), createDate("05/11/12 11:00"),
+            createDate("06/11/12 10:00"), createDate("01/11/12 09:00")};
+        for (int i = 0; i < moreUid1s.length; i++) {
+            followerStore.addFollower(moreUid1s[i], moreUid2s[i], moreDates[i]);
+        }
+        int addedMore = bulkStore.addFollowers(moreUid1s, moreUid2s, moreDates);
+
+        // A follow after the lists were packed back together
+        bulkStore.addFollower(7, 2, createDate("07/11/12 10:00"));
+        followerStore.addFollower(7, 2, createDate("07/11/12 10:00"));
+
+        // We expect the bulk store to answer exactly as the one added to a follow at a time
+        boolean same = true;
+        for (int uid = 1; uid <= 7; uid++) {
+            same = same && Arrays.equals(bulkStore.getFollowers(uid), followerStore.getFollowers(uid))
+                && Arrays.equals(bulkStore.getFollows(uid), followerStore.getFollows(uid))
+                && bulkStore.getNumFollowers(uid) == followerStore.getNumFollowers(uid);
+        }
+        if (added == 4 && addedMore == 3 && same
+            && Arrays.equals(bulkStore.getFollowers(2), new int[] {7, 5, 3, 4, 1})
+            && Arrays.equals(bulkStore.getTopUsers(), followerStore.getTopUsers())
+            && bulkStore.isAFollower(6, 1) && !bulkStore.isAFollower(2, 5))
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests followers and follows come back most recent first, and that follows on the same date come back smallest id first whatever order they were added in
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetFollowersOrder()
+    {
+        // Create new Follower Store, with three followers on the same date added out of id order
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(5, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(3, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(6, 1, createDate("01/11/12 10:00"));
+        followerStore.addFollower(4, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(2, 1, createDate("03/11/12 10:00"));
+        followerStore.addFollower(5, 9, createDate("01/11/12 10:00"));
+        followerStore.addFollower(5, 8, createDate("03/11/12 10:00"));
+        followerStore.addFollower(5, 7, createDate("01/11/12 10:00"));
+
+        // The same follows bulk added in another order
+        FollowerStore bulkStore = new FollowerStore();
+        bulkStore.addFollowers(new int[] {4, 5, 2, 3, 6, 5, 5, 5}, new int[] {1, 7, 1, 1, 1, 8, 9, 1},
+            new Date[] {createDate("02/11/12 10:00"), createDate("01/11/12 10:00"), createDate("03/11/12 10:00"), createDate("02/11/12 10:00"),
+                createDate("01/11/12 10:00"), createDate("03/11/12 10:00"), createDate("01/11/12 10:00"), createDate("02/11/12 10:00")});
+
+        // Issue the commands, suitably storing the return values
+        int[] followers = followerStore.getFollowers(1);
+        int[] follows = followerStore.getFollows(5);
+
+        // We expect the latest first, ties smallest id first, the same for both stores
+        if (Arrays.equals(followers, new int[] {2, 3, 4, 5, 6})
+            && Arrays.equals(follows, new int[] {8, 1, 7, 9})
+            && Arrays.equals(bulkStore.getFollowers(1), followers)
+            && Arrays.equals(bulkStore.getFollows(5), follows))
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests mutual followers and follows through each way of intersecting two users' edges: merging lists of a similar size, galloping through a list many times longer,
+     * lists with nothing in common, a user against themselves and a popular user whose followers are compressed
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetMutualFollowers()
+    {
+        // Create new Follower Store, users 11 and 12 have followers in common on the same date
+        FollowerStore followerStore = new FollowerStore();
+        for (int uid = 1; uid <= 4; uid++) {
+            followerStore.addFollower(uid, 11, createDate("01/11/12 10:00"));
+            followerStore.addFollower(uid + 2, 12, createDate("02/11/12 10:00"));
+        }
+        followerStore.addFollower(8, 13, createDate("02/11/12 10:00"));
+
+        // User 21 has over 32 times as many followers as user 20
+        for (int uid = 1; uid <= 100; uid++) {
+            followerStore.addFollower(uid, 21, new Date(createDate("01/11/12 10:00").getTime() + uid * 60000L));
+        }
+        followerStore.addFollower(50, 20, createDate("01/11/12 09:00"));
+        followerStore.addFollower(7, 20, createDate("02/11/12 10:00"));
+        followerStore.addFollower(500, 20, createDate("03/11/12 10:00"));
+
+        // User 30 has enough followers to be compressed, user 31 only a few
+        for (int uid = 1000; uid <= 6000; uid++) {
+            followerStore.addFollower(uid, 30, new Date(createDate("01/11/12 10:00").getTime() + uid));
+        }
+        followerStore.addFollower(1500, 31, createDate("05/11/12 10:00"));
+        followerStore.addFollower(5999, 31, createDate("05/11/12 10:00"));
+        followerStore.addFollower(9999, 31, createDate("05/11/12 10:00"));
+
+        // Issue the commands, suitably storing the return values
+        int[] merged = followerStore.getMutualFollowers(11, 12);
+        int[] galloped = followerStore.getMutualFollowers(21, 20);
+        int[] none = followerStore.getMutualFollowers(11, 13);
+        int[] unknown = followerStore.getMutualFollowers(11, 99);
+        int[] themselves = followerStore.getMutualFollowers(20, 20);
+        int[] compressed = followerStore.getMutualFollowers(31, 30);
+        int[] bothCompressed = followerStore.getMutualFollowers(30, 30);
+        int[] follows = followerStore.getMutualFollows(3, 4);
+
+        // We expect the most recent first by the earlier of the two follows, ties smallest id first
+        if (Arrays.equals(merged, new int[] {3, 4})
+            && Arrays.equals(galloped, new int[] {7, 50})
+            && none.length == 0 && unknown.length == 0
+            && Arrays.equals(themselves, followerStore.getFollowers(20))
+            && Arrays.equals(compressed, new int[] {5999, 1500})
+            && Arrays.equals(bothCompressed, followerStore.getFollowers(30)) && bothCompressed.length == 5001
+            && Arrays.equals(follows, new int[] {12, 21, 11}))
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the leaderboard of users by followers, ties going to whoever reached their count first, along with its first few places and each user's rank,
+     * and that changing the array returned doesnt change the leaderboard
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTopUsers()
+    {
+        // Create new Follower Store, users 2 and 3 have the same number of followers but user 3 reached it first
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(5, 1, createDate("01/11/12 10:00"));
+        followerStore.addFollower(6, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(7, 1, createDate("03/11/12 10:00"));
+        followerStore.addFollower(5, 2, createDate("01/11/12 10:00"));
+        followerStore.addFollower(6, 2, createDate("02/11/12 10:00"));
+        followerStore.addFollower(5, 3, createDate("01/11/12 09:00"));
+        followerStore.addFollower(6, 3, createDate("01/11/12 10:00"));
+        followerStore.addFollower(5, 4, createDate("01/11/12 10:00"));
+
+        // Issue the commands, suitably storing the return values
+        int[] topUsers = followerStore.getTopUsers();
+        int[] topTwo = followerStore.getTopUsers(2);
+        int[] topTen = followerStore.getTopUsers(10);
+        int[] none = followerStore.getTopUsers(0);
+        int[] negative = followerStore.getTopUsers(-1);
+        int rankBefore = followerStore.getUserRank(2);
+        topUsers[0] = 99;
+        int[] unchanged = followerStore.getTopUsers();
+
+        // User 4 then goes past users 2 and 3 but not user 1
+        followerStore.addFollower(6, 4, createDate("04/11/12 10:00"));
+        followerStore.addFollower(7, 4, createDate("05/11/12 10:00"));
+        int[] after = followerStore.getTopUsers();
+
+        // We expect the most followers first, and the rank to match the place in the leaderboard
+        if (Arrays.equals(unchanged, new int[] {1, 3, 2, 4})
+            && Arrays.equals(topTwo, new int[] {1, 3}) && Arrays.equals(topTen, unchanged)
+            && none.length == 0 && negative.length == 0 && rankBefore == 3
+            && Arrays.equals(after, new int[] {1, 4, 3, 2})
+            && followerStore.getUserRank(1) == 1 && followerStore.getUserRank(4) == 2 && followerStore.getUserRank(2) == 4
+            && followerStore.getUserRank(5) == -1 && followerStore.getUserRank(99) == -1)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the latest followers and follows of a user by limit and date, a follow exactly at the date counting, and the difference between a user with no follows (null)
+     * and one with none in range (empty)
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetFollowersSince()
+    {
+        // Create new Follower Store, with the follows added out of date order
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(2, 1, createDate("03/11/12 10:00"));
+        followerStore.addFollower(3, 1, createDate("01/11/12 10:00"));
+        followerStore.addFollower(4, 1, createDate("04/11/12 10:00"));
+        followerStore.addFollower(5, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(6, 1, createDate("02/11/12 10:00"));
+        followerStore.addFollower(2, 7, createDate("01/11/12 10:00"));
+
+        // Issue the commands, suitably storing the return values
+        int[] atDate = followerStore.getFollowers(1, 10, createDate("02/11/12 10:00"));
+        int[] justAfter = followerStore.getFollowers(1, 10, createDate("02/11/12 10:01"));
+        int[] limited = followerStore.getFollowers(1, 2, createDate("01/11/12 10:00"));
+        int[] noLimit = followerStore.getFollowers(1, Integer.MAX_VALUE, null);
+        int[] zero = followerStore.getFollowers(1, 0, null);
+        int[] negative = followerStore.getFollowers(1, -5, null);
+        int[] tooLate = followerStore.getFollowers(1, 10, createDate("05/11/12 10:00"));
+        int[] noFollowers = followerStore.getFollowers(2, 10, null);
+        int[] follows = followerStore.getFollows(2, 1, createDate("01/11/12 10:00"));
+        int[] noFollows = followerStore.getFollows(1, 10, null);
+
+        // We expect follows at the date to be included, the latest first, and an empty array rather than null for a user who has follows but none in range
+        if (Arrays.equals(atDate, new int[] {4, 2, 5, 6}) && Arrays.equals(justAfter, new int[] {4, 2})
+            && Arrays.equals(limited, new int[] {4, 2}) && Arrays.equals(noLimit, followerStore.getFollowers(1))
+            && Arrays.equals(noLimit, new int[] {4, 2, 5, 6, 3})
+            && zero != null && zero.length == 0 && negative != null && negative.length == 0
+            && tooLate != null && tooLate.length == 0
+            && noFollowers == null && Arrays.equals(follows, new int[] {1}) && noFollows == null)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests loading a CSV file laid out like followers.csv gives the same results as adding the follows one at a time,
+     * and that loading into a store with a write ahead log open doesnt log the loaded follows
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testLoadFollowers()
+    {
+        // Create two new Follower Stores, one to load the file and one to add to one at a time
+        FollowerStore loadedStore = new FollowerStore();
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(4, 1, createDate("01/11/12 09:00"));
+        followerStore.addFollower(1, 2, createDate("01/11/12 10:00"));
+        followerStore.addFollower(3, 2, createDate("02/11/12 10:00"));
+        followerStore.addFollower(2, 1, createDate("02/11/12 10:00"));
+
+        try
+        {
+            File csv = File.createTempFile("followers", ".csv");
+            csv.deleteOnExit();
+            Files.write(csv.toPath(), ("uid1,uid2,date\n"
+                + "1,2,01/11/2012 10:00:00\n"
+                + "3,2,02/11/2012 10:00:00\n"
+                + "2,1,02/11/2012 10:00:00\n"
+                + "1,2,03/11/2012 10:00:00\n").getBytes("UTF-8"));
+            File log = File.createTempFile("followers", ".log");
+            log.delete();
+            log.deleteOnExit();
+
+            // Issue the commands, suitably storing the return values, the file going into a store which already has a logged follow
+            loadedStore.openLog(log.getPath(), WriteAheadLog.SYNC, 0);
+            loadedStore.addFollower(4, 1, createDate("01/11/12 09:00"));
+            int loaded = loadedStore.loadFollowers(csv.getPath());
+            loadedStore.closeLog();
+            int replayed = new FollowerStore().openLog(log.getPath(), WriteAheadLog.SYNC, 0);
+
+            // We expect the repeated follow to be skipped, and only the follow added on its own to be in the log
+            if (loaded == 3 && replayed == 1
+                && Arrays.equals(loadedStore.getFollowers(2), followerStore.getFollowers(2))
+                && Arrays.equals(loadedStore.getFollowers(1), followerStore.getFollowers(1))
+                && Arrays.equals(loadedStore.getFollows(1), followerStore.getFollows(1))
+                && Arrays.equals(loadedStore.getTopUsers(), followerStore.getTopUsers()))
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests a snapshot loads back the same relationships, date order and leaderboard, both into an empty store and one which already has relationships,
+     * and that a damaged snapshot is refused
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testSnapshot()
+    {
+        // Create new Follower Store, with a user popular enough for their followers to be compressed
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(1, 2, createDate("01/11/12 10:00"));
+        followerStore.addFollower(3, 2, createDate("01/11/12 10:00"));
+        followerStore.addFollower(1, 3, createDate("02/11/12 10:00"));
+        followerStore.addFollower(2, 4, createDate("02/11/12 10:00"));
+        for (int i = 10; i < 5010; i++) {
+            followerStore.addFollower(i, 5, new Date(createDate("03/11/12 10:00").getTime() + i));
+        }
+
+        try
+        {
+            File snapshot = File.createTempFile("followers", ".snap");
+            snapshot.deleteOnExit();
+            followerStore.saveSnapshot(snapshot.getPath());
+
+            // Issue the commands, suitably storing the return values
+            FollowerStore loadedStore = new FollowerStore();
+            int loaded = loadedStore.loadSnapshot(snapshot.getPath());
+            FollowerStore mergedStore = new FollowerStore();
+            mergedStore.addFollower(1, 2, createDate("01/11/12 10:00"));
+            mergedStore.addFollower(6, 2, createDate("04/11/12 10:00"));
+            int merged = mergedStore.loadSnapshot(snapshot.getPath());
+
+            // A follow after loading should move the rankings on from where the snapshot left them
+            loadedStore.addFollower(9, 4, createDate("01/11/12 10:00"));
+            followerStore.addFollower(9, 4, createDate("01/11/12 10:00"));
+
+            // Flip a bit in the middle of the file, the checksum should catch it
+            byte[] bytes = Files.readAllBytes(snapshot.toPath());
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(snapshot.toPath(), bytes);
+            boolean refused = false;
+            try
+            {
+                new FollowerStore().loadSnapshot(snapshot.getPath());
+            }
+            catch (IOException e)
+            {
+                refused = true;
+            }
+
+            // We expect the loaded store to answer the same as the saved one
+            boolean same = Arrays.equals(loadedStore.getTopUsers(), followerStore.getTopUsers())
+                && Arrays.equals(loadedStore.getFollowers(5), followerStore.getFollowers(5))
+                && Arrays.equals(loadedStore.getFollowers(2), followerStore.getFollowers(2))
+                && Arrays.equals(loadedStore.getFollows(1), followerStore.getFollows(1))
+                && Arrays.equals(loadedStore.getFollowers(5, 3, createDate("03/11/12 10:00")), followerStore.getFollowers(5, 3, createDate("03/11/12 10:00")))
+                && loadedStore.getUserRank(4) == followerStore.getUserRank(4) && loadedStore.getNumFollowers(5) == 5000
+                && loadedStore.isAFollower(4000, 5) && !loadedStore.isAFollower(5, 4000);
+            if (loaded == 5004 && merged == 5003 && refused && same
+                && mergedStore.getNumFollowers(2) == 3 && mergedStore.getNumFollowers(5) == 5000)
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Returns a Date based on the input string
+     * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00
+     * @return Returns the create Date
+     */
+    private Date createDate(String inputString) // This method is useful for creating dates quickly, where can be good for testing
+    {
+        try {
+            // Take input string and create date
+            DateFormat dateFormatter = new SimpleDateFormat("dd/MM/yy H:m");
+            return dateFormatter.parse(inputString);
+        }
+        catch (ParseException pe)
+        {
+            // Bad input string
+            System.out.println("Couldn't parse " + inputString);
+            return new Date();
+        }
+    }
+}
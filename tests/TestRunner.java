@@ -40,6 +40,156 @@ public class TestRunner
             System.out.println("...fail.");
         }
 
+        // Call our get weets by user method, checking other users' weets are left out
+        System.out.print("--> testGetWeetsByUser : \t");
+        boolean testGetWeetsByUser = e.testGetWeetsByUser();
+        if (testGetWeetsByUser == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get weets containing method, checking the index doesnt miss or add matches
+        System.out.print("--> testGetWeetsContaining : \t");
+        boolean testGetWeetsContaining = e.testGetWeetsContaining();
+        if (testGetWeetsContaining == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get weets on method, checking weets a week apart arent mixed up
+        System.out.print("--> testGetWeetsOn : \t");
+        boolean testGetWeetsOn = e.testGetWeetsOn();
+        if (testGetWeetsOn == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get trending method, checking the order of the top trends
+        System.out.print("--> testGetTrending : \t");
+        boolean testGetTrending = e.testGetTrending();
+        if (testGetTrending == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our trending window method, checking old hashtags drop out
+        System.out.print("--> testGetTrendingWindow : \t");
+        boolean testGetTrendingWindow = e.testGetTrendingWindow();
+        if (testGetTrendingWindow == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our paged weets method, checking the pages join up
+        System.out.print("--> testGetWeetsPage : \t");
+        boolean testGetWeetsPage = e.testGetWeetsPage();
+        if (testGetWeetsPage == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our paged search method, checking the pages join up in both kinds of store
+        System.out.print("--> testGetWeetsContainingPage : \t");
+        boolean testGetWeetsContainingPage = e.testGetWeetsContainingPage();
+        if (testGetWeetsContainingPage == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get weets snapshot method, checking each caller gets its own copy and it is replaced after an add
+        System.out.print("--> testGetWeetsSnapshot : \t");
+        boolean testGetWeetsSnapshot = e.testGetWeetsSnapshot();
+        if (testGetWeetsSnapshot == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our bulk load method, checking it matches adding the weets one at a time
+        System.out.print("--> testAddWeets : \t");
+        boolean testAddWeets = e.testAddWeets();
+        if (testAddWeets == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our CSV load method, checking it matches adding the weets one at a time
+        System.out.print("--> testLoadWeets : \t");
+        boolean testLoadWeets = e.testLoadWeets();
+        if (testLoadWeets == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our snapshot method, checking the weets load back and damage is caught
+        System.out.print("--> testSnapshot : \t");
+        boolean testSnapshot = e.testSnapshot();
+        if (testSnapshot == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our snapshot timezone method, checking the days follow the timezone the snapshot is loaded in
+        System.out.print("--> testSnapshotTimezone : \t");
+        boolean testSnapshotTimezone = e.testSnapshotTimezone();
+        if (testSnapshotTimezone == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our write ahead log method, checking logged weets come back after a crash
+        System.out.print("--> testWriteAheadLog : \t");
+        boolean testWriteAheadLog = e.testWriteAheadLog();
+        if (testWriteAheadLog == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our compact mode method, checking it matches a normal store
+        System.out.print("--> testCompactMode : \t");
+        boolean testCompactMode = e.testCompactMode();
+        if (testCompactMode == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our concurrent reads method, checking threads dont see each others traversals
+        System.out.print("--> testConcurrentReads : \t");
+        boolean testConcurrentReads = e.testConcurrentReads();
+        if (testConcurrentReads == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
 
         // TODO: Test remaining IWeetStore methods (pass and fail).
         //
@@ -47,13 +197,248 @@ public class TestRunner
         
 
         // User Tests
-        // TODO: Test IUserStore methods (pass and fail).
-            System.out.println("--> I need to make and complete UserTests.java");
+        UserTests u = new UserTests();
+        System.out.println("[Testing Users]");
+
+        // Call our get users containing method, checking the name index doesnt miss or add matches
+        System.out.print("--> testGetUsersContaining : \t");
+        boolean testGetUsersContaining = u.testGetUsersContaining();
+        if (testGetUsersContaining == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get users method, checking each caller gets its own copy
+        System.out.print("--> testGetUsersCopy : \t");
+        boolean testGetUsersCopy = u.testGetUsersCopy();
+        if (testGetUsersCopy == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our paged users method, checking the pages join up in both kinds of store
+        System.out.print("--> testGetUsersPage : \t");
+        boolean testGetUsersPage = u.testGetUsersPage();
+        if (testGetUsersPage == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get users with prefix method, checking the autocomplete order
+        System.out.print("--> testGetUsersWithPrefix : \t");
+        boolean testGetUsersWithPrefix = u.testGetUsersWithPrefix();
+        if (testGetUsersWithPrefix == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our prefix method ranked by followers, checking the kept ranking matches counting every user
+        System.out.print("--> testRankByFollowers : \t");
+        boolean testRankByFollowers = u.testRankByFollowers();
+        if (testRankByFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our compact mode method, checking it matches a normal store
+        System.out.print("--> testCompactMode : \t");
+        boolean testCompactUsers = u.testCompactMode();
+        if (testCompactUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our CSV load method, checking it matches adding the users one at a time
+        System.out.print("--> testLoadUsers : \t");
+        boolean testLoadUsers = u.testLoadUsers();
+        if (testLoadUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our snapshot method, checking the users load back and damage is caught
+        System.out.print("--> testSnapshot : \t");
+        boolean testUserSnapshot = u.testSnapshot();
+        if (testUserSnapshot == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
 
 
         // Follower Tests
-        // TODO: Test IFollowerStore methods (pass and fail).
-            System.out.println("--> I need to make and complete FollowerTests.java");
+        FollowerTests f = new FollowerTests();
+        System.out.println("[Testing Followers]");
+
+        // Call our add method, checking repeats are refused and isAFollower and getNumFollowers see the follows
+        System.out.print("--> testAddFollower : \t");
+        boolean testAddFollower = f.testAddFollower();
+        if (testAddFollower == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our bulk add method, into an empty store and into one which already has follows
+        System.out.print("--> testAddFollowers : \t");
+        boolean testAddFollowers = f.testAddFollowers();
+        if (testAddFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our get followers and follows methods, checking the date order and the order of ties
+        System.out.print("--> testGetFollowersOrder : \t");
+        boolean testGetFollowersOrder = f.testGetFollowersOrder();
+        if (testGetFollowersOrder == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our mutual followers and follows methods, through every way of intersecting two users' edges
+        System.out.print("--> testGetMutualFollowers : \t");
+        boolean testGetMutualFollowers = f.testGetMutualFollowers();
+        if (testGetMutualFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our leaderboard methods, checking the order, the first few places and each user's rank
+        System.out.print("--> testGetTopUsers : \t");
+        boolean testGetTopUsers = f.testGetTopUsers();
+        if (testGetTopUsers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our latest followers and follows methods, checking the limit, the since date and null against empty results
+        System.out.print("--> testGetFollowersSince : \t");
+        boolean testGetFollowersSince = f.testGetFollowersSince();
+        if (testGetFollowersSince == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our CSV load method, checking it matches adding the follows one at a time
+        System.out.print("--> testLoadFollowers : \t");
+        boolean testLoadFollowers = f.testLoadFollowers();
+        if (testLoadFollowers == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our snapshot method, checking the relationships and leaderboard load back and damage is caught
+        System.out.print("--> testSnapshot : \t");
+        boolean testFollowerSnapshot = f.testSnapshot();
+        if (testFollowerSnapshot == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+
+        // Collections Tests
+        CollectionsTests c = new CollectionsTests();
+        System.out.println("[Testing Collections]");
+
+        // Call our AVL tree ranges method, checking the head, tail and sub iterators stop at the right nodes
+        System.out.print("--> testAVLTreeRanges : \t");
+        boolean testAVLTreeRanges = c.testAVLTreeRanges();
+        if (testAVLTreeRanges == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our time tree bulk build method, checking it matches inserting one at a time with repeated times
+        System.out.print("--> testTimeTreeBuildFromSorted : \t");
+        boolean testTimeTreeBuildFromSorted = c.testTimeTreeBuildFromSorted();
+        if (testTimeTreeBuildFromSorted == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our int hash maps method, checking them against a HashMap through resizes and collisions
+        System.out.print("--> testIntHashMaps : \t");
+        boolean testIntHashMaps = c.testIntHashMaps();
+        if (testIntHashMaps == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our compressed set's add and lookup methods, checking them against a TreeSet
+        System.out.print("--> testRoaringIntSet : \t");
+        boolean testRoaringIntSet = c.testRoaringIntSet();
+        if (testRoaringIntSet == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our compressed set's intersections, with sorted runs and with each other
+        System.out.print("--> testRoaringIntersect : \t");
+        boolean testRoaringIntersect = c.testRoaringIntersect();
+        if (testRoaringIntersect == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our leaderboard tree's methods, checking every place against a TreeSet as keys are added and removed
+        System.out.print("--> testRankTree : \t");
+        boolean testRankTree = c.testRankTree();
+        if (testRankTree == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
+
+        // Call our adjacency lists' date order and count, with edges inserted out of order
+        System.out.print("--> testAdjacencyListsByTime : \t");
+        boolean testAdjacencyListsByTime = c.testAdjacencyListsByTime();
+        if (testAdjacencyListsByTime == true) {
+            System.out.println("...success");
+        }
+        else {
+            System.out.println("...fail.");
+        }
     
     }
 
@@ -0,0 +1,455 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.text.ParseException;
+
+import uk.ac.warwick.java.cs126.services.IUserStore;
+import uk.ac.warwick.java.cs126.services.UserStore;
+import uk.ac.warwick.java.cs126.services.FollowerStore;
+import uk.ac.warwick.java.cs126.models.User;
+
+class UserTests {
+
+
+    /*
+     * Tests searching user names, including inside of longer names, short queries and paging through the matches
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetUsersContaining()
+    {
+        // Create new User Store
+        UserStore userStore = new UserStore();
+
+        User alice = new User("Alice Smith", 1, createDate("01/11/12 10:00"));
+        User malice = new User("Malice", 2, createDate("02/11/12 10:00"));
+        User bob = new User("Bob Smithers", 3, createDate("03/11/12 10:00"));
+        userStore.addUser( alice );
+        userStore.addUser( malice );
+        userStore.addUser( bob );
+
+        // Issue the commands, suitably storing the return values
+        User[] lice = userStore.getUsersContaining("lice");
+        User[] smith = userStore.getUsersContaining("Smith");
+        User[] shortQuery = userStore.getUsersContaining("Bo");
+        User[] missing = userStore.getUsersContaining("Carol");
+        User[] firstPage = userStore.getUsersContainingPage("lice", UserStore.FIRST_PAGE, 1);
+        User[] secondPage = userStore.getUsersContainingPage("lice", firstPage[0].getId(), 1);
+
+        // We expect substring matches newest first, with no false positives, and the pages to follow on from each other
+        if (lice.length == 2 && lice[0] == malice && lice[1] == alice
+            && smith.length == 2 && smith[0] == bob && smith[1] == alice
+            && shortQuery.length == 1 && shortQuery[0] == bob && missing.length == 0
+            && firstPage.length == 1 && firstPage[0] == malice
+            && secondPage.length == 1 && secondPage[0] == alice)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests getUsers gives each caller its own copy, so sorting or clearing one doesnt change what the next caller sees
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetUsersCopy()
+    {
+        // Create new User Store
+        UserStore userStore = new UserStore();
+
+        User alice = new User("Alice Smith", 1, createDate("01/11/12 10:00"));
+        User bob = new User("Bob Smithers", 2, createDate("02/11/12 10:00"));
+        userStore.addUser( alice );
+        userStore.addUser( bob );
+
+        // Issue the commands, suitably storing the return values, changing the first array
+        User[] first = userStore.getUsers();
+        first[0] = alice;
+        first[1] = null;
+        User[] second = userStore.getUsers();
+
+        // We expect the second caller to still get both users, newest first
+        if (second != first && second.length == 2 && second[0] == bob && second[1] == alice)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests paging through every user and through the users containing a query, with a cursor, in a normal and a compact store,
+     * with several users sharing each join date so the cursor has to tell them apart
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetUsersPage()
+    {
+        // Create a normal and a compact User Store with the same 40 users, five joining on each of eight days
+        UserStore userStore = new UserStore();
+        UserStore compactStore = new UserStore(true);
+        String[] names = {"Alice ", "Bob ", "Malice ", "Carol ", "Bobby "};
+        for (int i = 0; i < 40; i++) {
+            User user = new User(names[i % names.length] + i, i + 1, createDate("0" + (1 + i % 8) + "/11/12 10:00"));
+            userStore.addUser( user );
+            compactStore.addUser( user );
+        }
+
+        // Issue the commands, suitably storing the return values, paging with several limits including one larger than the store
+        boolean joinUp = true;
+        for (UserStore store : new UserStore[] {userStore, compactStore}) {
+            for (int limit : new int[] {1, 3, 7, 40, 100}) {
+                joinUp = joinUp && pagesJoinUp(store, null, limit) && pagesJoinUp(store, "lice", limit)
+                    && pagesJoinUp(store, "Bo", limit) && pagesJoinUp(store, "Dave", limit);
+            }
+        }
+        User[] badCursor = userStore.getUsersPage(99, 5);
+        User[] compactBadCursor = compactStore.getUsersPage(99, 5);
+        User[] noLimit = userStore.getUsersPage(UserStore.FIRST_PAGE, 0);
+        User[] lastPage = userStore.getUsersPage(userStore.getUsers()[39].getId(), 5);
+
+        // We expect the pages to give every user once in the order of the full list, and nothing for a cursor which isnt a user, a limit of 0 or after the last user
+        if (joinUp && badCursor.length == 0 && compactBadCursor.length == 0 && noLimit.length == 0 && lastPage.length == 0)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    //True if paging through with the limit, each page carrying on from the last user of the one before, gives the full list once in the same order.
+    //The query is null for every user, otherwise the users containing it
+    private boolean pagesJoinUp(UserStore userStore, String query, int limit)
+    {
+        User[] expected = query == null ? userStore.getUsers() : userStore.getUsersContaining(query);
+        int found = 0;
+        int cursor = UserStore.FIRST_PAGE;
+        while (found <= expected.length) {
+            User[] page = query == null ? userStore.getUsersPage(cursor, limit) : userStore.getUsersContainingPage(query, cursor, limit);
+            if (page.length == 0) {
+                break;
+            }
+            if (page.length > limit) {
+                return false;
+            }
+            // A compact store makes a new User each time, so the users are compared by id
+            for (User user : page) {
+                if (found >= expected.length || user.getId() != expected[found++].getId()) {
+                    return false;
+                }
+            }
+            cursor = page[page.length - 1].getId();
+        }
+        return found == expected.length;
+    }
+
+    /*
+     * Tests the autocomplete of user names by prefix, ignoring case, by join date and by follower count
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetUsersWithPrefix()
+    {
+        // Create new User Store, and a Follower Store so the users can be ranked
+        UserStore userStore = new UserStore();
+        FollowerStore followerStore = new FollowerStore();
+
+        User alice = new User("Alice Smith", 1, createDate("01/11/12 10:00"));
+        User alex = new User("alex", 2, createDate("02/11/12 10:00"));
+        User bob = new User("Bob Smithers", 3, createDate("03/11/12 10:00"));
+        User alan = new User("Alan", 4, createDate("04/11/12 10:00"));
+        userStore.addUser( alice );
+        userStore.addUser( alex );
+        userStore.addUser( bob );
+        userStore.addUser( alan );
+        followerStore.addFollower(3, 2, createDate("05/11/12 10:00"));
+        followerStore.addFollower(4, 2, createDate("05/11/12 11:00"));
+        followerStore.addFollower(3, 1, createDate("05/11/12 12:00"));
+
+        // Issue the commands, suitably storing the return values
+        User[] al = userStore.getUsersWithPrefix("AL", 10);
+        User[] ale = userStore.getUsersWithPrefix("ale", 10);
+        User[] limited = userStore.getUsersWithPrefix("al", 2);
+        User[] missing = userStore.getUsersWithPrefix("alz", 10);
+        User[] middle = userStore.getUsersWithPrefix("smith", 10);
+        User[] ranked = userStore.getUsersWithPrefix("al", 2, followerStore);
+
+        // We expect only names starting with the prefix, newest first, or most followed first when ranked
+        if (al.length == 3 && al[0] == alan && al[1] == alex && al[2] == alice
+            && ale.length == 1 && ale[0] == alex && limited.length == 2 && limited[1] == alex
+            && missing.length == 0 && middle.length == 0
+            && ranked.length == 2 && ranked[0] == alex && ranked[1] == alice)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests the autocomplete kept ranked by follower count answers the same as counting the followers of every user with the prefix,
+     * as follows are added one at a time, in bulk and from a follower snapshot, with users added before and after the ranking starts
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testRankByFollowers()
+    {
+        // Create a User Store ranked by a Follower Store, and one which isnt to count against
+        UserStore userStore = new UserStore();
+        UserStore countingStore = new UserStore();
+        FollowerStore followerStore = new FollowerStore();
+        followerStore.addFollower(9, 1, createDate("01/11/12 10:00"));
+        User[] users = new User[30];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User((i % 3 == 0 ? "Alan " : "Alex ") + i, i + 1, createDate("01/11/12 10:00"));
+        }
+        userStore.addUsers(Arrays.copyOf(users, 10));
+        userStore.rankByFollowers(followerStore);
+        for (int i = 10; i < users.length; i++) {
+            userStore.addUser(users[i]);
+        }
+        countingStore.addUsers(users);
+
+        // Issue the commands, suitably storing the return values, checking after each way of adding follows
+        followerStore.addFollower(9, 20, createDate("02/11/12 10:00"));
+        followerStore.addFollower(8, 20, createDate("02/11/12 10:00"));
+        followerStore.addFollower(8, 5, createDate("02/11/12 10:00"));
+        boolean single = sameRanking(userStore, countingStore, followerStore);
+        followerStore.addFollowers(new int[] {1, 2, 3, 4, 5}, new int[] {25, 25, 25, 5, 5},
+            new Date[] {createDate("03/11/12 10:00"), createDate("03/11/12 10:00"), createDate("03/11/12 10:00"), createDate("03/11/12 10:00"), createDate("03/11/12 10:00")});
+        boolean bulk = sameRanking(userStore, countingStore, followerStore);
+        User[] top = userStore.getUsersWithPrefix("al", 3, followerStore);
+
+        boolean loaded = false;
+        try
+        {
+            File snapshot = File.createTempFile("followers", ".snap");
+            snapshot.deleteOnExit();
+            followerStore.saveSnapshot(snapshot.getPath());
+            FollowerStore loadedFollowers = new FollowerStore();
+            UserStore loadedUsers = new UserStore();
+            loadedUsers.addUsers(users);
+            loadedUsers.rankByFollowers(loadedFollowers);
+            loadedFollowers.loadSnapshot(snapshot.getPath());
+            loaded = sameRanking(loadedUsers, countingStore, loadedFollowers);
+        }
+        catch (IOException e)
+        {
+            loaded = false;
+        }
+
+        // We expect the most followed first, the larger id first between the same counts and join dates, and the same order either way
+        if (single && bulk && loaded && top.length == 3
+            && top[0] == users[24] && top[1] == users[4] && top[2] == users[19])
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    //True if the ranked store gives the same users as the counting one for a few prefixes and limits, including one too large to answer from the ranking
+    private boolean sameRanking(UserStore rankedStore, UserStore countingStore, FollowerStore followerStore)
+    {
+        String[] prefixes = {"", "a", "al", "ALAN", "alex 2", "bob"};
+        int[] limits = {1, 5, UserStore.RANKED_PREFIX_LIMIT, 40};
+        for (String prefix : prefixes) {
+            for (int limit : limits) {
+                if (!Arrays.equals(rankedStore.getUsersWithPrefix(prefix, limit, followerStore), countingStore.getUsersWithPrefix(prefix, limit, followerStore))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Tests a compact store answers the same as a normal one
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testCompactMode()
+    {
+        // Create a compact User Store
+        UserStore userStore = new UserStore(true);
+        userStore.addUser( new User("Alice Smith", 1, createDate("01/11/12 10:00")) );
+        userStore.addUser( new User("Bob Smithers", 2, createDate("03/11/12 10:00")) );
+        userStore.addUser( new User("alex", 3, createDate("02/11/12 10:00")) );
+        userStore.addUser( new User("Repeated id", 1, createDate("04/11/12 10:00")) );
+
+        // Issue the commands, suitably storing the return values
+        User[] users = userStore.getUsers();
+        User[] smith = userStore.getUsersContaining("Smith");
+        User[] al = userStore.getUsersWithPrefix("AL", 10);
+        User[] before = userStore.getUsersJoinedBefore(createDate("03/11/12 10:00"));
+
+        // We expect the repeated id to be skipped and the users rebuilt newest first
+        if (users.length == 3 && users[0].getId() == 2 && users[1].getName().equals("alex") && users[2].getName().equals("Alice Smith")
+            && smith.length == 2 && smith[0].getId() == 2 && al.length == 2 && al[0].getId() == 3
+            && before.length == 2 && userStore.getUser(4) == null)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests loading a CSV file laid out like names.csv gives the same results as adding the users one at a time, and that a bad line is refused
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testLoadUsers()
+    {
+        // Create two new User Stores, one to load the file and one to add to one at a time
+        UserStore loadedStore = new UserStore();
+        UserStore userStore = new UserStore();
+        userStore.addUser( new User("Alice Smith", 1, createDate("01/11/12 10:00")) );
+        userStore.addUser( new User("Smith, Bob", 2, createDate("03/11/12 10:00")) );
+        userStore.addUser( new User("alex", 3, createDate("02/11/12 10:00")) );
+
+        try
+        {
+            File csv = File.createTempFile("names", ".csv");
+            csv.deleteOnExit();
+            Files.write(csv.toPath(), ("1,Alice Smith,01/11/2012 10:00:00\n"
+                + "2,Smith, Bob,03/11/2012 10:00:00\n"
+                + "3,alex,02/11/2012 10:00:00\n"
+                + "1,Repeated id,04/11/2012 10:00:00\n").getBytes("UTF-8"));
+            File other = File.createTempFile("names", ".csv");
+            other.deleteOnExit();
+            Files.write(other.toPath(), "4,Carol,2012-11-05\n".getBytes("UTF-8"));
+
+            // Issue the commands, suitably storing the return values, the second file into the same store in its own date format
+            int loaded = loadedStore.loadUsers(csv.getPath());
+            int loadedOther = loadedStore.loadUsers(other.getPath(), "yyyy-MM-dd");
+            boolean refused = false;
+            try
+            {
+                new UserStore().loadUsers(other.getPath());
+            }
+            catch (IOException e)
+            {
+                refused = true;
+            }
+
+            // We expect the repeated id to be skipped and the name to keep its comma
+            userStore.addUser( new User("Carol", 4, createDate("05/11/12 0:00")) );
+            User[] expected = userStore.getUsers();
+            User[] returned = loadedStore.getUsers();
+            boolean same = expected.length == returned.length;
+            for (int i = 0; same && i < expected.length; i++)
+            {
+                same = expected[i].getId() == returned[i].getId() && expected[i].getName().equals(returned[i].getName())
+                    && expected[i].getDateJoined().equals(returned[i].getDateJoined());
+            }
+            if (loaded == 3 && loadedOther == 1 && refused && same && loadedStore.getUsersContaining("Smith").length == 2)
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests a snapshot loads back the same users and name index, both into an empty store and one which already has users, and that a damaged snapshot is refused
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testSnapshot()
+    {
+        // Create new User Store
+        UserStore userStore = new UserStore();
+        userStore.addUser( new User("Alice Smith", 1, createDate("01/11/12 10:00")) );
+        userStore.addUser( new User("Bob Smithers", 2, createDate("03/11/12 10:00")) );
+        userStore.addUser( new User("alex", 3, createDate("02/11/12 10:00")) );
+
+        try
+        {
+            File snapshot = File.createTempFile("users", ".snap");
+            snapshot.deleteOnExit();
+            userStore.saveSnapshot(snapshot.getPath());
+
+            // Issue the commands, suitably storing the return values
+            UserStore loadedStore = new UserStore();
+            int loaded = loadedStore.loadSnapshot(snapshot.getPath());
+            UserStore mergedStore = new UserStore();
+            mergedStore.addUser( new User("Alice Smith", 1, createDate("01/11/12 10:00")) );
+            mergedStore.addUser( new User("Carol", 4, createDate("04/11/12 10:00")) );
+            int merged = mergedStore.loadSnapshot(snapshot.getPath());
+
+            // Flip a bit in the middle of the file, the checksum should catch it
+            byte[] bytes = Files.readAllBytes(snapshot.toPath());
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(snapshot.toPath(), bytes);
+            boolean refused = false;
+            try
+            {
+                new UserStore().loadSnapshot(snapshot.getPath());
+            }
+            catch (IOException e)
+            {
+                refused = true;
+            }
+
+            // We expect the loaded store to answer the same as the saved one, and the merged store to skip the user it already had
+            User[] users = loadedStore.getUsers();
+            User[] smith = loadedStore.getUsersContaining("Smith");
+            User[] al = loadedStore.getUsersWithPrefix("AL", 10);
+            User[] mergedUsers = mergedStore.getUsers();
+            if (loaded == 3 && merged == 2 && refused
+                && users.length == 3 && users[0].getId() == 2 && users[1].getId() == 3 && users[2].getName().equals("Alice Smith")
+                && smith.length == 2 && smith[0].getId() == 2 && smith[1].getId() == 1
+                && al.length == 2 && al[0].getId() == 3
+                && mergedUsers.length == 4 && mergedUsers[0].getId() == 4 && mergedStore.getUsersContaining("lex").length == 1)
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Returns a Date based on the input string
+     * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00
+     * @return Returns the create Date
+     */
+    private Date createDate(String inputString) // This method is useful for creating dates quickly, where can be good for testing
+    {
+        try {
+            // Take input string and create date
+            DateFormat dateFormatter = new SimpleDateFormat("dd/MM/yy H:m");
+            return dateFormatter.parse(inputString);
+        }
+        catch (ParseException pe) 
+        {
+            // Bad input string
+            System.out.println("Couldn't parse " + inputString);
+            return new Date();
+        }
+    }
+}
@@ -1,11 +1,17 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Date;
+import java.util.TimeZone;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 
 import uk.ac.warwick.java.cs126.services.IWeetStore;
 import uk.ac.warwick.java.cs126.services.WeetStore;
+import uk.ac.warwick.java.cs126.services.persistence.WriteAheadLog;
 import uk.ac.warwick.java.cs126.models.Weet;
+import uk.ac.warwick.java.cs126.models.User;
 
 class WeetTests {
     
@@ -91,6 +97,688 @@ class WeetTests {
         }
     }
 
+    /*
+     * Tests that only the weets of the given user are returned, most recent first
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsByUser()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        // Two weets from user 1 and one from user 2
+        Weet older = new Weet(1, 1, "First", createDate("02/11/12 10:00"));
+        Weet other = new Weet(2, 2, "Not mine", createDate("03/11/12 10:00"));
+        Weet newer = new Weet(3, 1, "Second", createDate("04/11/12 10:00"));
+        weetStore.addWeet( older );
+        weetStore.addWeet( other );
+        weetStore.addWeet( newer );
+
+        // Issue the command, suitably storing the return value
+        Weet[] returned = weetStore.getWeetsByUser(new User("Test", 1, createDate("01/11/12 10:00")));
+        Weet[] none = weetStore.getWeetsByUser(new User("Nobody", 3, createDate("01/11/12 10:00")));
+
+        // We expect user 1's weets, newest first, and nothing for a user who never weeted
+        if (returned.length == 2 && returned[0] == newer && returned[1] == older && none.length == 0)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests searching weets for a phrase, including inside of longer words and short queries
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsContaining()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        Weet cats = new Weet(1, 1, "I like cats", createDate("02/11/12 10:00"));
+        Weet concat = new Weet(2, 1, "Please concatenate these", createDate("03/11/12 10:00"));
+        Weet dogs = new Weet(3, 2, "Dogs are better", createDate("04/11/12 10:00"));
+        weetStore.addWeet( cats );
+        weetStore.addWeet( concat );
+        weetStore.addWeet( dogs );
+
+        // Issue the commands, suitably storing the return values
+        Weet[] cat = weetStore.getWeetsContaining("cat");
+        Weet[] phrase = weetStore.getWeetsContaining("are bet");
+        Weet[] shortQuery = weetStore.getWeetsContaining("at");
+        Weet[] missing = weetStore.getWeetsContaining("zebra");
+
+        // We expect substring matches newest first, with no false positives
+        if (cat.length == 2 && cat[0] == concat && cat[1] == cats
+            && phrase.length == 1 && phrase[0] == dogs
+            && shortQuery.length == 2 && missing.length == 0)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests that only weets from the same calendar day are returned, not the same day of the week
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsOn()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        Weet morning = new Weet(1, 1, "Morning", createDate("05/11/12 08:00"));
+        Weet evening = new Weet(2, 1, "Evening", createDate("05/11/12 22:30"));
+        Weet weekLater = new Weet(3, 1, "Same weekday", createDate("12/11/12 08:00"));
+        weetStore.addWeet( morning );
+        weetStore.addWeet( evening );
+        weetStore.addWeet( weekLater );
+
+        // Issue the commands, suitably storing the return values
+        Weet[] returned = weetStore.getWeetsOn(createDate("05/11/12 12:00"));
+        Weet[] none = weetStore.getWeetsOn(createDate("06/11/12 12:00"));
+
+        // We expect just the two weets from the 5th, newest first
+        if (returned.length == 2 && returned[0] == evening && returned[1] == morning && none.length == 0)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests the trending hashtags are ranked by occurences, then by the most recent use
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTrending()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        // #b is used twice, #a and #c once each with #c used most recently
+        weetStore.addWeet( new Weet(1, 1, "#a and #b", createDate("02/11/12 10:00")) );
+        weetStore.addWeet( new Weet(2, 1, "more #b", createDate("03/11/12 10:00")) );
+        weetStore.addWeet( new Weet(3, 2, "#c", createDate("04/11/12 10:00")) );
+
+        // Issue the command, suitably storing the return value
+        String[] trending = weetStore.getTrending();
+
+        // We expect the three trends in order with the rest of the 10 slots empty
+        if (trending.length == 10 && "#b".equals(trending[0]) && "#c".equals(trending[1])
+            && "#a".equals(trending[2]) && trending[3] == null)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests that a trending window only counts the hashtags used recently
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetTrendingWindow()
+    {
+        // Create new Weet Store, using the concrete class for the window setting
+        WeetStore weetStore = new WeetStore();
+
+        // #old was big a week ago, #new is only used today
+        weetStore.addWeet( new Weet(1, 1, "#old", createDate("01/11/12 10:00")) );
+        weetStore.addWeet( new Weet(2, 1, "#old", createDate("01/11/12 11:00")) );
+        weetStore.addWeet( new Weet(3, 1, "#old", createDate("01/11/12 12:00")) );
+        weetStore.addWeet( new Weet(4, 2, "#new", createDate("08/11/12 10:00")) );
+
+        // Issue the commands, a one day window split into 24 buckets
+        String[] allTime = weetStore.getTrending();
+        weetStore.setTrendingWindow(24L * 60 * 60 * 1000, 24);
+        String[] lastDay = weetStore.getTrending();
+
+        // We expect #old to lead overall but only #new to be in the window
+        if ("#old".equals(allTime[0]) && "#new".equals(lastDay[0]) && lastDay[1] == null)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests paging through the weets with a cursor gives every weet once, in order
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsPage()
+    {
+        // Create new Weet Store, using the concrete class for the paged methods
+        WeetStore weetStore = new WeetStore();
+
+        // Two of the weets share a date, so the cursor has to tell them apart
+        Weet first = new Weet(1, 1, "First", createDate("02/11/12 10:00"));
+        Weet second = new Weet(2, 1, "Second", createDate("03/11/12 10:00"));
+        Weet third = new Weet(3, 2, "Third", createDate("03/11/12 10:00"));
+        weetStore.addWeet( first );
+        weetStore.addWeet( second );
+        weetStore.addWeet( third );
+
+        // Issue the commands, two weets per page
+        Weet[] all = weetStore.getWeets();
+        Weet[] pageOne = weetStore.getWeetsPage(WeetStore.FIRST_PAGE, 2);
+        Weet[] pageTwo = weetStore.getWeetsPage(pageOne[pageOne.length - 1].getId(), 2);
+        Weet[] badCursor = weetStore.getWeetsPage(99, 2);
+
+        // We expect the pages to match the full list, and nothing for a cursor which isnt a weet
+        if (pageOne.length == 2 && pageTwo.length == 1 && pageOne[0] == all[0] && pageOne[1] == all[1]
+            && pageTwo[0] == all[2] && badCursor.length == 0)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests paging through the weets containing a query with a cursor, in a normal and a compact store, with several weets sharing each date
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsContainingPage()
+    {
+        // Create a normal and a compact Weet Store with the same 40 weets, five on each of eight days
+        WeetStore weetStore = new WeetStore();
+        WeetStore compactStore = new WeetStore(true);
+        String[] messages = {"Hello world ", "Goodbye ", "hello again ", "World cup #football ", "Hi "};
+        for (int i = 0; i < 40; i++) {
+            Weet weet = new Weet(i + 1, i % 6, messages[i % messages.length] + i, createDate("0" + (1 + i % 8) + "/11/12 10:00"));
+            weetStore.addWeet( weet );
+            compactStore.addWeet( weet );
+        }
+
+        // Issue the commands, suitably storing the return values, paging with several limits including one larger than the matches
+        boolean joinUp = true;
+        for (WeetStore store : new WeetStore[] {weetStore, compactStore}) {
+            for (int limit : new int[] {1, 3, 7, 40}) {
+                joinUp = joinUp && pagesJoinUp(store, "world", limit) && pagesJoinUp(store, "ello", limit)
+                    && pagesJoinUp(store, "Hi", limit) && pagesJoinUp(store, "nothing", limit);
+            }
+        }
+        Weet[] badCursor = weetStore.getWeetsContainingPage("ello", 99, 5);
+        Weet[] compactBadCursor = compactStore.getWeetsContainingPage("ello", 99, 5);
+
+        // We expect the pages to give every match once in the order of the full list, and nothing for a cursor which isnt a weet
+        if (joinUp && badCursor.length == 0 && compactBadCursor.length == 0)
+        {
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    //True if paging through the weets containing the query, each page carrying on from the last weet of the one before, gives the full list once in the same order
+    private boolean pagesJoinUp(WeetStore weetStore, String query, int limit)
+    {
+        Weet[] expected = weetStore.getWeetsContaining(query);
+        int found = 0;
+        int cursor = WeetStore.FIRST_PAGE;
+        while (found <= expected.length) {
+            Weet[] page = weetStore.getWeetsContainingPage(query, cursor, limit);
+            if (page.length == 0) {
+                break;
+            }
+            if (page.length > limit) {
+                return false;
+            }
+            // A compact store makes a new Weet each time, so the weets are compared by id
+            for (Weet weet : page) {
+                if (found >= expected.length || weet.getId() != expected[found++].getId()) {
+                    return false;
+                }
+            }
+            cursor = page[page.length - 1].getId();
+        }
+        return found == expected.length;
+    }
+
+    /*
+     * Tests getWeets gives each caller its own copy, so changing one doesnt change the next, and a new one including a weet once it is added
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testGetWeetsSnapshot()
+    {
+        // Create new Weet Store
+        IWeetStore weetStore = new WeetStore();
+
+        Weet first = new Weet(1, 1, "First", createDate("02/11/12 10:00"));
+        Weet second = new Weet(2, 1, "Second", createDate("03/11/12 10:00"));
+        weetStore.addWeet( first );
+
+        // Issue the commands, suitably storing the return values
+        Weet[] before = weetStore.getWeets();
+        before[0] = null;
+        Weet[] again = weetStore.getWeets();
+        weetStore.addWeet( second );
+        Weet[] after = weetStore.getWeets();
+
+        // We expect a copy which the first caller's change didnt reach, then one with both weets, newest first
+        if (again != before && again.length == 1 && again[0] == first && after != again
+            && after.length == 2 && after[0] == second && after[1] == first)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests bulk loading weets gives the same results as adding them one at a time, skipping repeated ids
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testAddWeets()
+    {
+        // Create two new Weet Stores, one to load in bulk and one to add to one at a time
+        WeetStore bulkStore = new WeetStore();
+        IWeetStore weetStore = new WeetStore();
+
+        Weet[] weets = {
+            new Weet(1, 1, "Hello #cs126", createDate("02/11/12 10:00")),
+            new Weet(2, 2, "Tied date #cs126", createDate("04/11/12 10:00")),
+            new Weet(3, 1, "Another #java", createDate("03/11/12 10:00")),
+            new Weet(4, 2, "Same date again", createDate("04/11/12 10:00")),
+            new Weet(1, 3, "Repeated id", createDate("05/11/12 10:00"))
+        };
+        for (int i = 0; i < weets.length; i++)
+        {
+            weetStore.addWeet( weets[i] );
+        }
+
+        // Issue the command, suitably storing the return value
+        int added = bulkStore.addWeets(weets);
+
+        Weet[] expected = weetStore.getWeets();
+        Weet[] returned = bulkStore.getWeets();
+        boolean sameOrder = expected.length == returned.length;
+        for (int i = 0; sameOrder && i < expected.length; i++)
+        {
+            sameOrder = expected[i] == returned[i];
+        }
+
+        // We expect the repeated id to be skipped and every index to match the one at a time store
+        if (added == 4 && sameOrder && bulkStore.getWeet(1) == weets[0]
+            && bulkStore.getWeetsContaining("cs126").length == 2
+            && bulkStore.getWeetsOn(createDate("04/11/12 12:00")).length == 2
+            && bulkStore.getTrending()[0].equals("#cs126") && bulkStore.getTrending()[1].equals("#java"))
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
+    /*
+     * Tests loading a CSV file laid out like weets.csv gives the same results as adding the weets one at a time, and that a bad line is refused
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testLoadWeets()
+    {
+        // Create two new Weet Stores, one to load the file and one to add to one at a time
+        WeetStore loadedStore = new WeetStore();
+        IWeetStore weetStore = new WeetStore();
+        weetStore.addWeet( new Weet(1, 1, "Hello, world #cs126", createDate("02/11/12 10:00")) );
+        weetStore.addWeet( new Weet(2, 2, "I like java #cs126", createDate("03/11/12 10:30")) );
+        weetStore.addWeet( new Weet(3, 1, "#java", createDate("03/11/12 10:30")) );
+
+        try
+        {
+            File csv = File.createTempFile("weets", ".csv");
+            csv.deleteOnExit();
+            Files.write(csv.toPath(), ("id,userId,message,date\n"
+                + "1,1,Hello, world #cs126,02/11/2012 10:00:00\n"
+                + "2,2,I like java #cs126,03/11/2012 10:30:00\n"
+                + "\n"
+                + "3,1,#java,03/11/2012 10:30:00\n"
+                + "1,3,Repeated id,04/11/2012 10:00:00\n").getBytes("UTF-8"));
+            File bad = File.createTempFile("weets", ".csv");
+            bad.deleteOnExit();
+            Files.write(bad.toPath(), "4,1,No date\n".getBytes("UTF-8"));
+
+            // Issue the commands, suitably storing the return values
+            int loaded = loadedStore.loadWeets(csv.getPath());
+            boolean refused = false;
+            try
+            {
+                new WeetStore().loadWeets(bad.getPath());
+            }
+            catch (IOException e)
+            {
+                refused = true;
+            }
+
+            // We expect the header, the blank line and the repeated id to be skipped, and the message to keep its comma
+            Weet[] expected = weetStore.getWeets();
+            Weet[] returned = loadedStore.getWeets();
+            boolean same = expected.length == returned.length;
+            for (int i = 0; same && i < expected.length; i++)
+            {
+                same = expected[i].getId() == returned[i].getId() && expected[i].getMessage().equals(returned[i].getMessage())
+                    && expected[i].getDateWeeted().equals(returned[i].getDateWeeted());
+            }
+            if (loaded == 3 && refused && same && loadedStore.getWeetsContaining("world").length == 1
+                && loadedStore.getTrending()[0].equals("#cs126") && loadedStore.getTrending()[1].equals("#java"))
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests a snapshot loads back the same weets and indexes, and that a damaged snapshot is refused
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testSnapshot()
+    {
+        // Create new Weet Store
+        WeetStore weetStore = new WeetStore();
+
+        Weet hello = new Weet(1, 1, "Hello #cs126", createDate("02/11/12 10:00"));
+        Weet java = new Weet(2, 2, "I like java #cs126", createDate("03/11/12 10:00"));
+        weetStore.addWeet( hello );
+        weetStore.addWeet( java );
+
+        try
+        {
+            File snapshot = File.createTempFile("weets", ".snap");
+            snapshot.deleteOnExit();
+            weetStore.saveSnapshot(snapshot.getPath());
+
+            // Issue the command, suitably storing the return value
+            WeetStore loadedStore = new WeetStore();
+            int loaded = loadedStore.loadSnapshot(snapshot.getPath());
+
+            // Flip a bit in the middle of the file, the checksum should catch it
+            byte[] bytes = Files.readAllBytes(snapshot.toPath());
+            bytes[bytes.length / 2] ^= 1;
+            Files.write(snapshot.toPath(), bytes);
+            boolean refused = false;
+            try
+            {
+                new WeetStore().loadSnapshot(snapshot.getPath());
+            }
+            catch (IOException e)
+            {
+                refused = true;
+            }
+
+            // We expect the loaded store to answer the same as the saved one
+            Weet[] returned = loadedStore.getWeets();
+            Weet[] containing = loadedStore.getWeetsContaining("java");
+            if (loaded == 2 && refused && returned.length == 2 && returned[0].getId() == 2 && returned[1].getId() == 1
+                && containing.length == 1 && containing[0].getId() == 2 && loadedStore.getWeet(1).getMessage().equals("Hello #cs126")
+                && loadedStore.getTrending()[0].equals("#cs126"))
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests a snapshot saved in one timezone and loaded in another buckets the weets by the calendar days of the timezone it is loaded in, in both kinds of store
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testSnapshotTimezone()
+    {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try
+        {
+            // Create new Weet Store in Auckland, with weets an hour either side of midnight in New York, which are on the same day in Auckland
+            TimeZone.setDefault(TimeZone.getTimeZone("Pacific/Auckland"));
+            WeetStore weetStore = new WeetStore();
+            weetStore.addWeet( new Weet(1, 1, "Late", new Date(1352088000000L)) );
+            weetStore.addWeet( new Weet(2, 1, "Early", new Date(1352095200000L)) );
+            File snapshot = File.createTempFile("weets", ".snap");
+            snapshot.deleteOnExit();
+            weetStore.saveSnapshot(snapshot.getPath());
+
+            // Issue the commands in New York, suitably storing the return values
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            WeetStore loadedStore = new WeetStore();
+            WeetStore compactStore = new WeetStore(true);
+            loadedStore.loadSnapshot(snapshot.getPath());
+            compactStore.loadSnapshot(snapshot.getPath());
+            loadedStore.addWeet( new Weet(3, 1, "Later", new Date(1352098800000L)) );
+            Weet[] lateDay = loadedStore.getWeetsOn(new Date(1352088000000L));
+            Weet[] earlyDay = loadedStore.getWeetsOn(new Date(1352095200000L));
+            Weet[] compactLateDay = compactStore.getWeetsOn(new Date(1352088000000L));
+
+            // We expect each weet on its own New York day, with the weet added after the load on the same day as the earlier one
+            if (lateDay.length == 1 && lateDay[0].getId() == 1 && earlyDay.length == 2 && earlyDay[0].getId() == 3 && earlyDay[1].getId() == 2
+                && compactLateDay.length == 1 && compactLateDay[0].getId() == 1)
+            {
+                return true;
+            }
+            else
+            {
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        finally
+        {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    /*
+     * Tests the weets added while a write ahead log is open are added back from it by a new store, even with a torn record on the end
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testWriteAheadLog()
+    {
+        try
+        {
+            File log = File.createTempFile("weets", ".log");
+            log.delete();
+            log.deleteOnExit();
+
+            // Create new Weet Store, logging every weet
+            WeetStore weetStore = new WeetStore();
+            weetStore.openLog(log.getPath(), WriteAheadLog.BATCHED, 1);
+            weetStore.addWeet( new Weet(1, 1, "Hello #cs126", createDate("02/11/12 10:00")) );
+            weetStore.addWeet( new Weet(2, 2, "I like java #cs126", createDate("03/11/12 10:00")) );
+            weetStore.closeLog();
+
+            // Half of a record is left on the end, as if we crashed while writing it
+            Files.write(log.toPath(), new byte[] {0, 0, 0, 40, 1, 2}, java.nio.file.StandardOpenOption.APPEND);
+
+            // Issue the command, suitably storing the return value
+            WeetStore replayedStore = new WeetStore();
+            int replayed = replayedStore.openLog(log.getPath(), WriteAheadLog.SYNC, 0);
+            replayedStore.addWeet( new Weet(3, 1, "After the crash", createDate("04/11/12 10:00")) );
+            replayedStore.closeLog();
+            WeetStore finalStore = new WeetStore();
+            int replayedAgain = finalStore.openLog(log.getPath(), WriteAheadLog.ASYNC, 10);
+            finalStore.closeLog();
+
+            // We expect both weets back, and the weet added after the torn record to follow on from them
+            Weet[] returned = finalStore.getWeets();
+            if (replayed == 2 && replayedAgain == 3 && returned.length == 3 && returned[0].getId() == 3
+                && replayedStore.getWeet(2).getMessage().equals("I like java #cs126") && finalStore.getTrending()[0].equals("#cs126"))
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests a compact store answers the same as a normal one, and that the two can load each other's snapshots
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testCompactMode()
+    {
+        try
+        {
+            // Create a compact Weet Store and a normal one with the same weets
+            WeetStore compactStore = new WeetStore(true);
+            WeetStore weetStore = new WeetStore();
+            Weet[] weets = {
+                new Weet(1, 1, "Hello #cs126", createDate("02/11/12 10:00")),
+                new Weet(2, 2, "I like java #cs126", createDate("04/11/12 10:00")),
+                new Weet(3, 1, "Late to the party", createDate("03/11/12 10:00")),
+                new Weet(4, 2, "Caf\u00e9 java", createDate("04/11/12 10:00"))
+            };
+            for (int i = 0; i < weets.length; i++)
+            {
+                compactStore.addWeet( weets[i] );
+                weetStore.addWeet( weets[i] );
+            }
+
+            File snapshot = File.createTempFile("weets", ".snap");
+            snapshot.deleteOnExit();
+            compactStore.saveSnapshot(snapshot.getPath());
+            WeetStore loadedStore = new WeetStore();
+            loadedStore.loadSnapshot(snapshot.getPath());
+
+            // Issue the commands, suitably storing the return values
+            Weet[] returned = compactStore.getWeets();
+            Weet[] expected = weetStore.getWeets();
+            Weet[] loaded = loadedStore.getWeets();
+            boolean sameOrder = returned.length == expected.length && loaded.length == expected.length;
+            for (int i = 0; sameOrder && i < expected.length; i++)
+            {
+                sameOrder = returned[i].getId() == expected[i].getId() && loaded[i].getId() == expected[i].getId();
+            }
+
+            // We expect the same weets in the same order, rebuilt with the same fields
+            if (sameOrder && compactStore.getWeet(4).getMessage().equals("Caf\u00e9 java")
+                && compactStore.getWeetsContaining("java").length == 2 && compactStore.getWeetsContaining("af\u00e9").length == 1
+                && compactStore.getWeetsByUser(new User("", 1, createDate("01/11/12 10:00"))).length == 2
+                && compactStore.getWeetsOn(createDate("04/11/12 12:00")).length == 2
+                && compactStore.getTrending()[0].equals("#cs126") && compactStore.getWeet(5) == null)
+            {
+                return true;
+            }
+            else 
+            { 
+                return false;
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /*
+     * Tests the store can be read by several threads while another thread is adding weets
+     * @return Returns true is the test passed, false is it failed
+     */
+    protected boolean testConcurrentReads()
+    {
+        // Create new Weet Store, shared by all of the threads
+        final IWeetStore weetStore = new WeetStore();
+        final boolean[] failed = new boolean[]{false};
+
+        // One thread adds weets while the others keep listing them
+        Thread writer = new Thread(new Runnable() {
+            public void run() {
+                for (int i = 0; i < 2000; i++) {
+                    weetStore.addWeet( new Weet(i, i % 10, "Weet #" + (i % 7), new Date(i * 1000L)) );
+                }
+            }
+        });
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            Weet[] weets = weetStore.getWeets();
+                            // Every listing must be complete and sorted, never a mix of two traversals
+                            for (int j = 1; j < weets.length; j++) {
+                                if (weets[j - 1].getDateWeeted().before(weets[j].getDateWeeted())) {
+                                    failed[0] = true;
+                                }
+                            }
+                            weetStore.getTrending();
+                        }
+                    }
+                    catch (RuntimeException re) {
+                        failed[0] = true;
+                    }
+                }
+            });
+        }
+
+        // Issue the commands, waiting for every thread to finish
+        try {
+            writer.start();
+            for (Thread reader : readers) {
+                reader.start();
+            }
+            writer.join();
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        catch (InterruptedException ie) {
+            return false;
+        }
+
+        // We expect no reader to have seen a broken listing, and every weet to be there at the end
+        if (!failed[0] && weetStore.getWeets().length == 2000)
+        {
+            return true;
+        }
+        else 
+        { 
+            return false;
+        }
+    }
+
     /*
      * Returns a Date based on the input string
      * @param inputString Takes a string of form dd/MM/yy hour:minute. Example: 01/03/12 18:00